@@ -0,0 +1,70 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.actions;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.controller.ImportDataController;
+import org.openstreetmap.josm.plugins.indoorhelper.io.optimizer.OutputOptimizer;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc.BIMtoOSMUtility;
+import org.openstreetmap.josm.actions.JosmAction;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.tools.GBC;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+/**
+ * Menu entry action to parse the last imported BIM file again with a different configuration.
+ */
+public class ReparseBIMDataAction extends JosmAction {
+
+    private final ImportDataController controller;
+
+    public ReparseBIMDataAction(ImportDataController controller) {
+        super(tr("Re-run BIM Import"), "dialogs/bim_small", tr("Parse last imported BIM file again with new configuration"),
+                null, false);
+        this.controller = controller;
+        setEnabled(false);
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent arg0) {
+        JComboBox<BIMtoOSMUtility.GeometrySolution> solutionBox = new JComboBox<>(BIMtoOSMUtility.GeometrySolution.values());
+        solutionBox.setSelectedItem(controller.getSolution());
+        OutputOptimizer.Configuration outputConfig = controller.getOutputConfiguration();
+        JCheckBox mergeBox = new JCheckBox(tr("Merge close nodes"), outputConfig.MERGE_CLOSE_NODES);
+        JSpinner distanceSpinner = new JSpinner(new SpinnerNumberModel(outputConfig.MERGE_DISTANCE, 0.0, 10.0, 0.01));
+        JCheckBox packTimeBox = new JCheckBox(tr("Share close nodes while packing"), outputConfig.MERGE_AT_PACK_TIME);
+        // section cut height only affects BODY geometry
+        JSpinner cutHeightSpinner = new JSpinner(new SpinnerNumberModel(controller.getSectionCutHeight(), 0.0, 100.0, 0.1));
+        cutHeightSpinner.setEnabled(solutionBox.getSelectedItem() == BIMtoOSMUtility.GeometrySolution.BODY);
+        solutionBox.addActionListener(e ->
+                cutHeightSpinner.setEnabled(solutionBox.getSelectedItem() == BIMtoOSMUtility.GeometrySolution.BODY));
+
+        long modelMemory = controller.getLoadedModelMemory();
+        JLabel memoryLabel = new JLabel(modelMemory > 0
+                ? tr("Loaded model is kept in memory (approx. {0} MB)", modelMemory / (1024 * 1024))
+                : tr("Model is not in memory and will be loaded again"));
+
+        JPanel panel = new JPanel(new GridBagLayout());
+        panel.add(new JLabel(tr("Geometry solution")), GBC.std().insets(0, 0, 10, 0));
+        panel.add(solutionBox, GBC.eol().fill(GBC.HORIZONTAL));
+        panel.add(new JLabel(tr("Section cut height (m)")), GBC.std().insets(0, 0, 10, 0));
+        panel.add(cutHeightSpinner, GBC.eol().fill(GBC.HORIZONTAL));
+        panel.add(mergeBox, GBC.eol());
+        panel.add(new JLabel(tr("Merge distance (m)")), GBC.std().insets(0, 0, 10, 0));
+        panel.add(distanceSpinner, GBC.eol().fill(GBC.HORIZONTAL));
+        panel.add(packTimeBox, GBC.eol());
+        panel.add(memoryLabel, GBC.eol().insets(0, 10, 0, 0));
+
+        int returnVal = JOptionPane.showConfirmDialog(MainApplication.getMainFrame(), panel, tr("Re-run BIM Import"),
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (returnVal == JOptionPane.OK_OPTION) {
+            controller.reparseBIMData((BIMtoOSMUtility.GeometrySolution) solutionBox.getSelectedItem(),
+                    new OutputOptimizer.Configuration(mergeBox.isSelected(),
+                            ((Number) distanceSpinner.getValue()).doubleValue(), packTimeBox.isSelected()),
+                    ((Number) cutHeightSpinner.getValue()).doubleValue());
+        }
+    }
+}
@@ -0,0 +1,329 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.cache;
+
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.tools.Logging;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Persistent cache of import results. Results are stored per SHA-256 hash of the ifc file content and the parser
+ * configuration, so a changed file or configuration never hits an outdated result. The cache size is bounded,
+ * least recently used results are evicted first.
+ * <p>
+ * Results are stored in a compact binary form: a string table of all tags and roles followed by node coordinates,
+ * ways referencing nodes by index and relations referencing member ways by index, compressed with deflate.
+ */
+public class ImportResultCache {
+
+    private static final int MAGIC = 0x49484331; // IHC1
+    private static final int VERSION = 3;
+    private static final String FILE_SUFFIX = ".osmcache";
+    private static final int HASH_BUFFER_SIZE = 1 << 16;
+
+    private final Path cacheDirectory;
+    private final long maxSize;
+
+    /**
+     * Constructor
+     *
+     * @param cacheDirectory directory to store results in, will be created if necessary
+     * @param maxSize        maximum size of all stored results in bytes
+     */
+    public ImportResultCache(Path cacheDirectory, long maxSize) {
+        this.cacheDirectory = cacheDirectory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets cache key of ifc file parsed with configuration
+     *
+     * @param filepath      of ifc file
+     * @param configuration description of all parser settings affecting the result
+     * @return cache key
+     * @throws IOException if file could not be read
+     */
+    public String getKey(String filepath, String configuration) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        try (InputStream input = Files.newInputStream(Paths.get(filepath))) {
+            byte[] buffer = new byte[HASH_BUFFER_SIZE];
+            int n;
+            while ((n = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        digest.update(configuration.getBytes(StandardCharsets.UTF_8));
+        digest.update(Integer.toString(VERSION).getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Loads stored result of key
+     *
+     * @param key of result
+     * @return stored result or null if no valid result is stored
+     */
+    public DataSet load(String key) {
+        Path file = cacheDirectory.resolve(key + FILE_SUFFIX);
+        if (!Files.isRegularFile(file)) return null;
+
+        long start = System.currentTimeMillis();
+        DataSet ds = new DataSet();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+
+            String[] strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(in);
+            }
+
+            ds.beginUpdate();
+            try {
+                Node[] nodes = new Node[in.readInt()];
+                for (int i = 0; i < nodes.length; i++) {
+                    nodes[i] = new Node(new LatLon(in.readDouble(), in.readDouble()));
+                    readTags(in, strings, nodes[i]);
+                    ds.addPrimitive(nodes[i]);
+                }
+                Way[] ways = new Way[in.readInt()];
+                for (int i = 0; i < ways.length; i++) {
+                    Way way = new Way();
+                    readTags(in, strings, way);
+                    int nodeCount = in.readInt();
+                    List<Node> wayNodes = new ArrayList<>(nodeCount);
+                    for (int n = 0; n < nodeCount; n++) {
+                        wayNodes.add(nodes[in.readInt()]);
+                    }
+                    way.setNodes(wayNodes);
+                    ds.addPrimitive(way);
+                    ways[i] = way;
+                }
+                int relationCount = in.readInt();
+                for (int i = 0; i < relationCount; i++) {
+                    Relation relation = new Relation();
+                    readTags(in, strings, relation);
+                    int memberCount = in.readInt();
+                    for (int m = 0; m < memberCount; m++) {
+                        relation.addMember(new RelationMember(strings[in.readInt()], ways[in.readInt()]));
+                    }
+                    ds.addPrimitive(relation);
+                }
+            } finally {
+                ds.endUpdate();
+            }
+        } catch (IOException | RuntimeException e) {
+            Logging.warn(String.format("%s: Could not load cached result %s: %s", ImportResultCache.class.getName(), key, e));
+            return null;
+        }
+
+        // mark as recently used
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            Logging.trace(e);
+        }
+        Logging.info(String.format("%s-CacheReport: result %s loaded in %d ms",
+                ImportResultCache.class.getName(), key, System.currentTimeMillis() - start));
+        return ds;
+    }
+
+    /**
+     * Stores result of key and evicts least recently used results if cache exceeds its maximum size
+     *
+     * @param key of result
+     * @param ds  result to store
+     */
+    public void store(String key, DataSet ds) {
+        try {
+            Files.createDirectories(cacheDirectory);
+            Path file = cacheDirectory.resolve(key + FILE_SUFFIX);
+            Path tmpFile = Files.createTempFile(cacheDirectory, key, ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(Files.newOutputStream(tmpFile))))) {
+                    writeResult(out, ds);
+                }
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                // incomplete result is not kept if writing failed
+                Files.deleteIfExists(tmpFile);
+            }
+            evict();
+        } catch (IOException | RuntimeException e) {
+            Logging.warn(String.format("%s: Could not store result %s: %s", ImportResultCache.class.getName(), key, e));
+        }
+    }
+
+    private static void writeResult(DataOutputStream out, DataSet ds) throws IOException {
+        Map<String, Integer> strings = new HashMap<>();
+        List<String> stringList = new ArrayList<>();
+        for (Node node : ds.getNodes()) collectStrings(node.getKeys(), strings, stringList);
+        for (Way way : ds.getWays()) collectStrings(way.getKeys(), strings, stringList);
+        for (Relation relation : ds.getRelations()) {
+            collectStrings(relation.getKeys(), strings, stringList);
+            for (RelationMember member : relation.getMembers()) collectString(member.getRole(), strings, stringList);
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(stringList.size());
+        for (String s : stringList) {
+            writeString(out, s);
+        }
+
+        Map<Node, Integer> nodeIndex = new IdentityHashMap<>();
+        out.writeInt(ds.getNodes().size());
+        for (Node node : ds.getNodes()) {
+            nodeIndex.put(node, nodeIndex.size());
+            out.writeDouble(node.lat());
+            out.writeDouble(node.lon());
+            writeTags(out, node.getKeys(), strings);
+        }
+        Map<Way, Integer> wayIndex = new IdentityHashMap<>();
+        out.writeInt(ds.getWays().size());
+        for (Way way : ds.getWays()) {
+            wayIndex.put(way, wayIndex.size());
+            writeTags(out, way.getKeys(), strings);
+            out.writeInt(way.getNodesCount());
+            for (Node node : way.getNodes()) {
+                out.writeInt(nodeIndex.get(node));
+            }
+        }
+        // relations of parser results only have way members
+        out.writeInt(ds.getRelations().size());
+        for (Relation relation : ds.getRelations()) {
+            writeTags(out, relation.getKeys(), strings);
+            out.writeInt(relation.getMembersCount());
+            for (RelationMember member : relation.getMembers()) {
+                out.writeInt(strings.get(member.getRole()));
+                out.writeInt(wayIndex.get(member.getWay()));
+            }
+        }
+    }
+
+    /**
+     * Writes string as length and UTF-8 bytes, unlike {@link DataOutputStream#writeUTF} not limited to 64 KB
+     *
+     * @param out stream to write to
+     * @param s   string to write
+     * @throws IOException if writing failed
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) throw new IOException("invalid string length " + length);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void collectStrings(Map<String, String> tags, Map<String, Integer> strings, List<String> stringList) {
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            collectString(tag.getKey(), strings, stringList);
+            collectString(tag.getValue(), strings, stringList);
+        }
+    }
+
+    private static void collectString(String s, Map<String, Integer> strings, List<String> stringList) {
+        if (!strings.containsKey(s)) {
+            strings.put(s, stringList.size());
+            stringList.add(s);
+        }
+    }
+
+    private static void writeTags(DataOutputStream out, Map<String, String> tags, Map<String, Integer> strings) throws IOException {
+        out.writeInt(tags.size());
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            out.writeInt(strings.get(tag.getKey()));
+            out.writeInt(strings.get(tag.getValue()));
+        }
+    }
+
+    private static void readTags(DataInputStream in, String[] strings, OsmPrimitive primitive) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            primitive.put(strings[in.readInt()], strings[in.readInt()]);
+        }
+    }
+
+    /**
+     * Deletes least recently used results until the cache does not exceed its maximum size
+     *
+     * @throws IOException if cache directory could not be read
+     */
+    private void evict() throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(cacheDirectory)) {
+            files = paths.filter(p -> p.getFileName().toString().endsWith(FILE_SUFFIX)).collect(Collectors.toList());
+        }
+        Map<Path, FileTime> lastUsed = new HashMap<>();
+        long size = 0;
+        for (Path file : files) {
+            try {
+                lastUsed.put(file, Files.getLastModifiedTime(file));
+                size += Files.size(file);
+            } catch (NoSuchFileException e) {
+                // evicted concurrently
+                lastUsed.put(file, FileTime.fromMillis(0));
+            }
+        }
+        files.sort(Comparator.comparing(lastUsed::get));
+
+        for (Path file : files) {
+            if (size <= maxSize) break;
+            try {
+                long fileSize = Files.size(file);
+                Files.delete(file);
+                size -= fileSize;
+                Logging.info(String.format("%s-CacheReport: evicted result %s", ImportResultCache.class.getName(), file.getFileName()));
+            } catch (NoSuchFileException e) {
+                // evicted concurrently
+                Logging.trace(e);
+            }
+        }
+    }
+}
@@ -2,8 +2,11 @@
 package org.openstreetmap.josm.plugins.indoorhelper.io.controller;
 
 import org.openstreetmap.josm.plugins.indoorhelper.io.actions.ImportBIMDataAction;
+import org.openstreetmap.josm.plugins.indoorhelper.io.actions.ReparseBIMDataAction;
 import org.openstreetmap.josm.plugins.indoorhelper.io.model.ImportDataModel;
+import org.openstreetmap.josm.plugins.indoorhelper.io.optimizer.OutputOptimizer;
 import org.openstreetmap.josm.plugins.indoorhelper.io.parser.BIMtoOSMParser;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc.BIMtoOSMUtility;
 import org.openstreetmap.josm.plugins.indoorhelper.io.renderer.ImportDataRenderer;
 import org.openstreetmap.josm.actions.JosmAction;
 import org.openstreetmap.josm.data.Preferences;
@@ -11,6 +14,7 @@ import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.MainMenu;
 import org.openstreetmap.josm.gui.MapFrame;
+import org.openstreetmap.josm.gui.util.GuiHelper;
 import org.openstreetmap.josm.gui.widgets.JMultilineLabel;
 import org.openstreetmap.josm.gui.widgets.UrlLabel;
 import org.openstreetmap.josm.spi.preferences.Config;
@@ -44,8 +48,10 @@ public class ImportDataController implements ImportEventListener {
     private final ImportDataModel model;
     private String importedFilepath;
     private final String pluginDir = Preferences.main().getPluginsDirectory().toString();
+    private final ReparseBIMDataAction reparseBIMAction;
+    // parser of last import, keeps loaded model to re-parse it
+    private BIMtoOSMParser parser;
 
-    private JFrame progressFrame;
     private JProgressBar progressBar;
     private JPanel infoPanel;
 
@@ -55,6 +61,8 @@ public class ImportDataController implements ImportEventListener {
         model = new ImportDataModel();
         JosmAction importBIMAction = new ImportBIMDataAction(this);
         MainMenu.add(MainApplication.getMenu().fileMenu, importBIMAction, false, 21);
+        reparseBIMAction = new ReparseBIMDataAction(this);
+        MainMenu.add(MainApplication.getMenu().fileMenu, reparseBIMAction, false, 22);
 
         // add log file handler
         try {
@@ -71,6 +79,9 @@ public class ImportDataController implements ImportEventListener {
         } catch (Exception e) {
             Logging.info(e.getMessage());
         }
+
+        // parse IFC schemas in background to speed up first import
+        BIMtoOSMParser.warmUpSchemaCache(pluginDir + "/indoorhelper/");
     }
 
     @Override
@@ -86,14 +97,101 @@ public class ImportDataController implements ImportEventListener {
     private void importBIMData(String filepath) {
         addInfoLabel();
         importedFilepath = filepath;
-        initProgressProcess();
-        progressFrame.setVisible(true);
+        // parser is created before parsing starts, so parsing can be cancelled at any time
+        BIMtoOSMParser previousParser = parser;
+        final BIMtoOSMParser p = new BIMtoOSMParser(this, pluginDir + "/indoorhelper/");
+        p.configureExtraction(Config.getPref().getInt("indoorhelper.import.extraction-threads", 1));
+        // size of import result cache in MB, 0 disables cache
+        p.configureCache(Config.getPref().getInt("indoorhelper.import.cache-size", 256) * 1024L * 1024L);
+        // show bounding boxes first if BODY geometry is parsed
+        p.configureProgressiveRefinement(Config.getPref().getBoolean("indoorhelper.import.progressive", true));
+        // height above storey elevation at which BODY geometry is sliced in m
+        p.configureSection(Config.getPref().getDouble("indoorhelper.import.cut-height", 1.0));
+        // share nodes of the same level within merge distance while packing
+        OutputOptimizer.Configuration outputConfig = p.getOutputConfiguration();
+        p.configure(p.getSolution(), p.getInputConfiguration(),
+                new OutputOptimizer.Configuration(outputConfig.MERGE_CLOSE_NODES, outputConfig.MERGE_DISTANCE,
+                        Config.getPref().getBoolean("indoorhelper.import.merge-at-pack-time", true)));
+        parser = p;
+        final JFrame frame = initProgressProcess(p);
+        frame.setVisible(true);
+        reparseBIMAction.setEnabled(false);
+        // worker uses the parser of this import, parser field may be replaced by the next import meanwhile
+        new Thread(() -> {
+            if (previousParser != null) previousParser.releaseModel();
+            finishParsing(p, frame, p.parse(filepath));
+        }).start();
+    }
+
+    /**
+     * Method parses last imported file again with new configuration. Loaded model of last import is reused if kept.
+     *
+     * @param solution     type of parsed data
+     * @param outputConfig configuration of OSM output optimization, merging at pack time is kept for next imports
+     * @param cutHeight    height above storey elevation at which BODY geometry is sliced in m, kept for next imports
+     */
+    public void reparseBIMData(BIMtoOSMUtility.GeometrySolution solution, OutputOptimizer.Configuration outputConfig,
+                               double cutHeight) {
+        final BIMtoOSMParser p = parser;
+        if (p == null) return;
+        Config.getPref().putDouble("indoorhelper.import.cut-height", cutHeight);
+        Config.getPref().putBoolean("indoorhelper.import.merge-at-pack-time", outputConfig.MERGE_AT_PACK_TIME);
+        final JFrame frame = initProgressProcess(p);
+        frame.setVisible(true);
+        reparseBIMAction.setEnabled(false);
         new Thread(() -> {
-            new BIMtoOSMParser(this, pluginDir + "/indoorhelper/").parse(importedFilepath);
-            progressFrame.setVisible(false);
+            p.configure(solution, p.getInputConfiguration(), outputConfig);
+            p.configureSection(cutHeight);
+            finishParsing(p, frame, p.reparse());
         }).start();
     }
 
+    /**
+     * Hides progress and enables re-parsing if parsing succeeded. Loaded model is released if it should not be kept.
+     *
+     * @param p      parser which finished parsing
+     * @param frame  progress frame of parsing
+     * @param parsed true if parsing succeeded
+     */
+    private void finishParsing(BIMtoOSMParser p, JFrame frame, boolean parsed) {
+        if (!Config.getPref().getBoolean("indoorhelper.import.keep-model", true)) {
+            p.releaseModel();
+        }
+        SwingUtilities.invokeLater(() -> {
+            frame.setVisible(false);
+            reparseBIMAction.setEnabled(parsed);
+        });
+    }
+
+    /**
+     * @return geometry solution of last import
+     */
+    public BIMtoOSMUtility.GeometrySolution getSolution() {
+        return parser != null ? parser.getSolution() : BIMtoOSMUtility.GeometrySolution.BOUNDING_BOX;
+    }
+
+    /**
+     * @return output optimization configuration of last import
+     */
+    public OutputOptimizer.Configuration getOutputConfiguration() {
+        return parser != null ? parser.getOutputConfiguration() : new OutputOptimizer.Configuration(true, 0.01,
+                Config.getPref().getBoolean("indoorhelper.import.merge-at-pack-time", true));
+    }
+
+    /**
+     * @return section cut height in m of last import
+     */
+    public double getSectionCutHeight() {
+        return parser != null ? parser.getSectionCutHeight() : Config.getPref().getDouble("indoorhelper.import.cut-height", 1.0);
+    }
+
+    /**
+     * @return approximate heap memory in bytes kept by the loaded model of last import
+     */
+    public long getLoadedModelMemory() {
+        return parser != null && parser.hasLoadedModel() ? parser.getLoadedModelMemory() : 0;
+    }
+
     @Override
     public void onDataParsed(DataSet ds) {
         model.setImportData(ds);
@@ -110,21 +208,44 @@ public class ImportDataController implements ImportEventListener {
         progressBar.setString(statusMsg);
     }
 
+    @Override
+    public void onProgressChanged(int percent) {
+        GuiHelper.runInEDT(() -> progressBar.setValue(percent));
+    }
+
+    /**
+     * Cancels running import, loaded model is released
+     *
+     * @param p   parser to cancel
+     * @param bar progress bar of parser
+     */
+    private void cancelParsing(BIMtoOSMParser p, JProgressBar bar) {
+        p.cancel();
+        bar.setString("cancelling");
+    }
+
     /**
      * Initializes progress frame and progress bar used while loading file
+     *
+     * @param p parser reporting to progress bar and cancelled by cancel button
+     * @return progress frame
      */
-    private void initProgressProcess() {
+    private JFrame initProgressProcess(BIMtoOSMParser p) {
         progressBar = new JProgressBar(0, 100);
         progressBar.setName("progressBar");
-        progressBar.setIndeterminate(true);
         progressBar.setStringPainted(true);
         progressBar.setString("loading file");
-        progressFrame = new JFrame();
-        progressFrame.add(progressBar, BorderLayout.PAGE_START);
+        JButton cancelButton = new JButton(tr("Cancel"));
+        JProgressBar bar = progressBar;
+        cancelButton.addActionListener(e -> cancelParsing(p, bar));
+        JFrame progressFrame = new JFrame();
+        progressFrame.add(progressBar, BorderLayout.CENTER);
+        progressFrame.add(cancelButton, BorderLayout.LINE_END);
         progressFrame.setUndecorated(true);
         progressBar.setStringPainted(true);
         progressFrame.setLocationRelativeTo(MainApplication.getMainFrame());
         progressFrame.pack();
+        return progressFrame;
     }
 
     /**
@@ -29,4 +29,12 @@ public interface ImportEventListener {
      * @param statusMsg new progress bar info
      */
     void onProcessStatusChanged(String statusMsg);
+
+    /**
+     * Will be called on parsing progress changed to update
+     * progress bar
+     *
+     * @param percent overall progress of parsing in percent
+     */
+    void onProgressChanged(int percent);
 }
\ No newline at end of file
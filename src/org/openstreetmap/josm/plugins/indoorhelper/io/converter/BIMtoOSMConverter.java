@@ -0,0 +1,367 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.converter;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.controller.ImportEventListener;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.BIMtoOSMParser;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc.BIMtoOSMUtility;
+import org.openstreetmap.josm.plugins.indoorhelper.io.writer.OsmPbfStreamWriter;
+import org.openstreetmap.josm.plugins.indoorhelper.io.writer.OsmStreamWriter;
+import org.openstreetmap.josm.plugins.indoorhelper.io.writer.OsmXmlStreamWriter;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.io.OsmWriter;
+import org.openstreetmap.josm.io.OsmWriterFactory;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Headless command line converter of IFC files to OSM files. Uses {@link BIMtoOSMParser} without JOSM GUI.
+ * <p>
+ * Usage: {@code BIMtoOSMConverter [options] <file|directory|glob>...}
+ * <ul>
+ *     <li>{@code -p <dir>} indoorhelper plugin directory holding the resources directory with IFC schemas, default: working directory</li>
+ *     <li>{@code -o <dir>} output directory, default: directory of each input file</li>
+ *     <li>{@code -t <n>} number of files converted concurrently, default: half of available processors</li>
+ *     <li>{@code -e <n>} number of threads used to extract geometry of one file, default: 1</li>
+ *     <li>{@code -s} stream OSM XML directly without building a data set, output is not optimized</li>
+ *     <li>{@code -f <xml|pbf>} output format, default: xml. PBF output is always streamed</li>
+ *     <li>{@code -g <bbox|body>} geometry solution, default: bbox</li>
+ *     <li>{@code -c <m>} height above storey elevation at which faceted brep bodies are sliced, default: 1. Implies
+ *     {@code -g body}, cannot be combined with {@code -g bbox}</li>
+ *     <li>{@code -r <MB>} cache results in the cache directory of plugin, at most the given size, default: disabled</li>
+ * </ul>
+ */
+public class BIMtoOSMConverter {
+
+    private static final String USAGE = "Usage: BIMtoOSMConverter [-p <plugin dir>] [-o <output dir>] [-t <files in parallel>] " +
+            "[-e <extraction threads per file>] [-s] [-f <xml|pbf>] [-g <bbox|body>] [-c <cut height>] [-r <cache size MB>] " +
+            "<file|directory|glob>...";
+
+    private final String pluginDirectory;
+    private final Path outputDirectory;
+    private final int extractionThreads;
+    private final boolean streamOutput;
+    private final boolean pbfOutput;
+    private BIMtoOSMUtility.GeometrySolution solution = BIMtoOSMUtility.GeometrySolution.BOUNDING_BOX;
+    private double cutHeight = 1.0;
+    private long cacheSize = 0;
+
+    /**
+     * Constructor
+     *
+     * @param pluginDirectory   of indoorHelper plugin holding the resources directory
+     * @param outputDirectory   to write osm files to or null to write next to input files
+     * @param extractionThreads number of threads used to extract geometry of one file
+     * @param streamOutput      true to stream OSM XML without building a data set
+     * @param pbfOutput         true to stream OSM PBF instead of OSM XML
+     */
+    public BIMtoOSMConverter(String pluginDirectory, Path outputDirectory, int extractionThreads, boolean streamOutput,
+                             boolean pbfOutput) {
+        this.pluginDirectory = pluginDirectory;
+        this.outputDirectory = outputDirectory;
+        this.extractionThreads = extractionThreads;
+        this.streamOutput = streamOutput || pbfOutput;
+        this.pbfOutput = pbfOutput;
+    }
+
+    /**
+     * Sets geometry solution of converted objects
+     *
+     * @param solution type of parsed data
+     */
+    public void setSolution(BIMtoOSMUtility.GeometrySolution solution) {
+        this.solution = solution;
+    }
+
+    /**
+     * Sets height above storey elevation at which faceted brep bodies are sliced, only used for BODY geometry
+     *
+     * @param cutHeight height in m
+     */
+    public void setCutHeight(double cutHeight) {
+        this.cutHeight = cutHeight;
+    }
+
+    /**
+     * Sets maximum size of the import result cache, batch conversions do not use the cache by default
+     *
+     * @param cacheSize maximum size of cached results in bytes, 0 to disable cache
+     */
+    public void setCacheSize(long cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public static void main(String[] args) {
+        String pluginDirectory = ".";
+        Path outputDirectory = null;
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        int extractionThreads = 1;
+        boolean streamOutput = false;
+        String format = "xml";
+        String geometry = null;
+        double cutHeight = 1.0;
+        boolean cutHeightSet = false;
+        long cacheSize = 0;
+        List<String> inputs = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-p":
+                        pluginDirectory = args[++i];
+                        break;
+                    case "-o":
+                        outputDirectory = Paths.get(args[++i]);
+                        break;
+                    case "-t":
+                        workers = Integer.parseInt(args[++i]);
+                        break;
+                    case "-e":
+                        extractionThreads = Integer.parseInt(args[++i]);
+                        break;
+                    case "-s":
+                        streamOutput = true;
+                        break;
+                    case "-f":
+                        format = args[++i];
+                        break;
+                    case "-g":
+                        geometry = args[++i];
+                        break;
+                    case "-c":
+                        cutHeight = Double.parseDouble(args[++i]);
+                        cutHeightSet = true;
+                        break;
+                    case "-r":
+                        cacheSize = Long.parseLong(args[++i]) * 1024 * 1024;
+                        break;
+                    default:
+                        inputs.add(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        // cut height only affects BODY geometry, so it selects BODY unless bounding boxes were requested explicitly
+        if (geometry == null) geometry = cutHeightSet ? "body" : "bbox";
+        if (inputs.isEmpty() || workers < 1 || extractionThreads < 1 || !(cutHeight >= 0.0) || cacheSize < 0
+                || !(format.equals("xml") || format.equals("pbf"))
+                || !(geometry.equals("bbox") || geometry.equals("body")) || (cutHeightSet && geometry.equals("bbox"))) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        try {
+            List<Path> files = resolveInputFiles(inputs);
+            if (outputDirectory != null) Files.createDirectories(outputDirectory);
+            BIMtoOSMConverter converter = new BIMtoOSMConverter(pluginDirectory, outputDirectory, extractionThreads,
+                    streamOutput, format.equals("pbf"));
+            converter.setSolution(geometry.equals("body")
+                    ? BIMtoOSMUtility.GeometrySolution.BODY : BIMtoOSMUtility.GeometrySolution.BOUNDING_BOX);
+            converter.setCutHeight(cutHeight);
+            converter.setCacheSize(cacheSize);
+            int failed = converter.convertAll(files, workers);
+            System.exit(failed == 0 ? 0 : 1);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Resolves input arguments to ifc files. Arguments may be files, directories (searched recursively for ifc files)
+     * or glob patterns like {@code buildings/*.ifc}.
+     *
+     * @param inputs arguments to resolve
+     * @return ifc files
+     * @throws IOException if a directory could not be read
+     */
+    static List<Path> resolveInputFiles(List<String> inputs) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String input : inputs) {
+            Path path = Paths.get(input.replaceAll("[*?\\[{].*$", ""));
+            if (!input.matches(".*[*?\\[{].*")) {
+                if (Files.isDirectory(path)) {
+                    files.addAll(findFiles(path, FileSystems.getDefault().getPathMatcher("glob:**.{ifc,IFC}")));
+                } else {
+                    files.add(path);
+                }
+                continue;
+            }
+
+            // glob, search below the fixed part of pattern
+            Path base = input.matches("^[*?\\[{].*") ? Paths.get(".") : path.getParent();
+            if (base == null) base = Paths.get(".");
+            files.addAll(findFiles(base, FileSystems.getDefault().getPathMatcher("glob:" + input)));
+        }
+        return files;
+    }
+
+    private static List<Path> findFiles(Path directory, PathMatcher matcher) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(p -> matcher.matches(p) || matcher.matches(directory.relativize(p)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Converts all files using a bounded pool of workers and prints a report line for each file
+     *
+     * @param files   ifc files to convert
+     * @param workers number of files converted concurrently
+     * @return number of failed conversions
+     */
+    public int convertAll(List<Path> files, int workers) {
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        int failed = 0;
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (Path file : files) {
+                results.add(pool.submit(() -> convert(file)));
+            }
+            for (Future<Boolean> result : results) {
+                try {
+                    if (!result.get()) failed++;
+                } catch (ExecutionException e) {
+                    failed++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed = files.size();
+        } finally {
+            pool.shutdownNow();
+        }
+        System.out.println(String.format(Locale.ROOT, "%d of %d files converted", files.size() - failed, files.size()));
+        return failed;
+    }
+
+    /**
+     * Converts ifc file into osm file
+     *
+     * @param file ifc file to convert
+     * @return true if conversion successful, else false
+     */
+    public boolean convert(Path file) {
+        long start = System.currentTimeMillis();
+        ConversionListener listener = new ConversionListener();
+        BIMtoOSMParser parser = new BIMtoOSMParser(listener, pluginDirectory);
+        parser.setShowErrorDialogs(false);
+        parser.configure(solution, parser.getInputConfiguration(), parser.getOutputConfiguration());
+        parser.configureExtraction(extractionThreads);
+        parser.configureSection(cutHeight);
+        parser.configureCache(cacheSize);
+
+        try {
+            if (streamOutput) {
+                return convertStreaming(parser, file, start);
+            }
+            if (!parser.parse(file.toString()) || listener.data == null) {
+                System.out.println(String.format(Locale.ROOT, "%s: FAILED after %d ms", file, System.currentTimeMillis() - start));
+                return false;
+            }
+            Path output = getOutputFile(file);
+            writeOsmFile(listener.data, output);
+            System.out.println(String.format(Locale.ROOT, "%s: %d ms, %d nodes, %d ways, %d relations -> %s", file,
+                    System.currentTimeMillis() - start, listener.data.getNodes().size(), listener.data.getWays().size(),
+                    listener.data.getRelations().size(), output));
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.out.println(String.format(Locale.ROOT, "%s: FAILED after %d ms: %s", file, System.currentTimeMillis() - start, e));
+            return false;
+        }
+    }
+
+    private boolean convertStreaming(BIMtoOSMParser parser, Path file, long start) throws IOException {
+        Path output = getOutputFile(file);
+        // output is written to temporary file first, a failed conversion does not leave a truncated output file
+        Path tmpFile = Files.createTempFile(output.toAbsolutePath().getParent(), output.getFileName().toString(), ".tmp");
+        try {
+            OsmStreamWriter writer;
+            FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            try (OsmStreamWriter w = pbfOutput ? new OsmPbfStreamWriter(channel) : new OsmXmlStreamWriter(channel)) {
+                writer = w;
+                if (!parser.parse(file.toString(), writer)) {
+                    System.out.println(String.format(Locale.ROOT, "%s: FAILED after %d ms", file, System.currentTimeMillis() - start));
+                    return false;
+                }
+            }
+            Files.move(tmpFile, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.println(String.format(Locale.ROOT, "%s: %d ms, %d nodes, %d ways, %d relations -> %s (streamed, %d KB)",
+                    file, System.currentTimeMillis() - start, writer.getNodeCount(), writer.getWayCount(),
+                    writer.getRelationCount(), output,
+                    Files.size(output) / 1024));
+            return true;
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    private Path getOutputFile(Path file) {
+        String name = file.getFileName().toString().replaceAll("(?i)\\.ifc$", "") + (pbfOutput ? ".osm.pbf" : ".osm");
+        Path directory = outputDirectory != null ? outputDirectory : file.toAbsolutePath().getParent();
+        return directory.resolve(name);
+    }
+
+    private static void writeOsmFile(DataSet ds, Path output) throws IOException {
+        Path tmpFile = Files.createTempFile(output.toAbsolutePath().getParent(), output.getFileName().toString(), ".tmp");
+        try {
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8));
+                 OsmWriter osmWriter = OsmWriterFactory.createOsmWriter(writer, false, OsmWriter.DEFAULT_API_VERSION)) {
+                osmWriter.write(ds);
+            }
+            Files.move(tmpFile, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // incomplete output is not kept if writing failed
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    /**
+     * Listener keeping the parsed data of one conversion
+     */
+    private static class ConversionListener implements ImportEventListener {
+        private DataSet data;
+
+        @Override
+        public void onBIMImport(String filepath) {
+            // conversion is started by converter
+        }
+
+        @Override
+        public void onDataParsed(DataSet ds) {
+            data = ds;
+        }
+
+        @Override
+        public void onProcessStatusChanged(String statusMsg) {
+            // no progress shown in batch mode
+        }
+
+        @Override
+        public void onProgressChanged(int percent) {
+            // no progress shown in batch mode
+        }
+    }
+}
@@ -101,6 +101,25 @@ public class BIMtoOSMCatalog {
         return ifcSiteTags;
     }
 
+    /**
+     * Returns all BIM tags of entities the import starts from. Entities not reachable from those are not used
+     * by the import.
+     *
+     * @return List of root tags
+     */
+    public static List<String> getRootTags() {
+        ArrayList<String> rootTags = new ArrayList<>();
+        for (BIMObject object : BIMObject.values()) {
+            rootTags.add(object.toString());
+        }
+        // project, units and spatial structure
+        rootTags.add("IfcProject");
+        rootTags.add("IfcUnitAssignment");
+        rootTags.add("IfcRelContainedInSpatialStructure");
+        rootTags.add("IfcRelAggregates");
+        return rootTags;
+    }
+
     /**
      * Relevant BIM objects
      *
@@ -0,0 +1,247 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.optimizer;
+
+import org.openstreetmap.josm.tools.Logging;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stream removing all STEP entities which are not reachable from a set of root entities over #id references.
+ * The reachable entities have to be collected in a first pass over the file by
+ * {@link #collectReachableIds(InputStream, Set)}. Expects STEP data without block comments.
+ */
+class EntityPruningInputStream extends InputStream {
+
+    private final StatementReader reader;
+    private final Set<Integer> reachableIds;
+    private byte[] statement = new byte[0];
+    private int position;
+
+    // report data
+    private boolean endOfStream;
+    private long entities;
+    private long entitiesRemoved;
+    private long bytesRemoved;
+
+    EntityPruningInputStream(InputStream in, Set<Integer> reachableIds) {
+        this.reader = new StatementReader(in);
+        this.reachableIds = reachableIds;
+    }
+
+    /**
+     * Collects ids of all entities reachable from entities of root types
+     *
+     * @param in        STEP data without block comments
+     * @param rootTypes IFC types of root entities
+     * @return ids of reachable entities
+     * @throws IOException if reading fails
+     */
+    static Set<Integer> collectReachableIds(InputStream in, Set<String> rootTypes) throws IOException {
+        Set<String> upperCaseRootTypes = new HashSet<>();
+        rootTypes.forEach(type -> upperCaseRootTypes.add(type.toUpperCase(Locale.ROOT)));
+
+        // entity id -> referenced entity ids
+        Map<Integer, int[]> references = new HashMap<>();
+        Deque<Integer> pending = new ArrayDeque<>();
+        StatementReader reader = new StatementReader(in);
+        byte[] statement;
+        while ((statement = reader.next()) != null) {
+            int[] header = parseEntityHeader(statement);
+            if (header == null) continue;
+            references.put(header[0], parseReferences(statement, header[1]));
+            if (upperCaseRootTypes.contains(parseEntityType(statement, header[1]))) {
+                pending.push(header[0]);
+            }
+        }
+
+        Set<Integer> reachableIds = new HashSet<>();
+        while (!pending.isEmpty()) {
+            Integer id = pending.pop();
+            if (!reachableIds.add(id)) continue;
+            int[] referencedIds = references.get(id);
+            if (referencedIds == null) continue;
+            for (int referencedId : referencedIds) {
+                if (!reachableIds.contains(referencedId)) pending.push(referencedId);
+            }
+        }
+        return reachableIds;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) return -1;
+        return statement[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        int n = 0;
+        while (n < len && fill()) {
+            int count = Math.min(len - n, statement.length - position);
+            System.arraycopy(statement, position, b, off + n, count);
+            position += count;
+            n += count;
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+        if (endOfStream) {
+            Logging.info(String.format("%s-InputOptimizerReport: %d of %d entities unreachable, %d bytes removed",
+                    InputOptimizer.class.getName(), entitiesRemoved, entities, bytesRemoved));
+        }
+    }
+
+    /**
+     * Loads next statement of reachable entity if current statement is consumed
+     *
+     * @return true if data is available, false if end of stream
+     * @throws IOException if reading fails
+     */
+    private boolean fill() throws IOException {
+        while (position == statement.length) {
+            byte[] next = reader.next();
+            if (next == null) {
+                endOfStream = true;
+                return false;
+            }
+            int[] header = parseEntityHeader(next);
+            if (header != null) {
+                entities++;
+                if (!reachableIds.contains(header[0])) {
+                    entitiesRemoved++;
+                    bytesRemoved += next.length;
+                    continue;
+                }
+            }
+            statement = next;
+            position = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Parses the id of entity statement like "#12=IFCWALL(...);"
+     *
+     * @param statement STEP statement
+     * @return array holding entity id and index after '=' or null if statement is no entity
+     */
+    private static int[] parseEntityHeader(byte[] statement) {
+        int i = skipWhitespaces(statement, 0);
+        if (i == statement.length || statement[i] != '#') return null;
+        i++;
+        int start = i;
+        int id = 0;
+        while (i < statement.length && statement[i] >= '0' && statement[i] <= '9') {
+            id = id * 10 + (statement[i++] - '0');
+        }
+        if (i == start) return null;
+        i = skipWhitespaces(statement, i);
+        if (i == statement.length || statement[i] != '=') return null;
+        return new int[]{id, i + 1};
+    }
+
+    /**
+     * Parses the type of entity statement
+     *
+     * @param statement STEP statement
+     * @param offset    index after '='
+     * @return upper case type
+     */
+    private static String parseEntityType(byte[] statement, int offset) {
+        int start = skipWhitespaces(statement, offset);
+        int end = start;
+        while (end < statement.length && (Character.isLetterOrDigit(statement[end]) || statement[end] == '_')) {
+            end++;
+        }
+        return new String(statement, start, end - start, StandardCharsets.US_ASCII)
+                .toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Parses all #id references of entity statement, ignoring string literals
+     *
+     * @param statement STEP statement
+     * @param offset    index after '='
+     * @return referenced ids
+     */
+    private static int[] parseReferences(byte[] statement, int offset) {
+        int[] ids = new int[8];
+        int count = 0;
+        boolean inString = false;
+        for (int i = offset; i < statement.length; i++) {
+            byte c = statement[i];
+            if (c == '\'') {
+                inString = !inString;
+            } else if (c == '#' && !inString) {
+                int id = 0;
+                int start = i + 1;
+                int j = start;
+                while (j < statement.length && statement[j] >= '0' && statement[j] <= '9') {
+                    id = id * 10 + (statement[j++] - '0');
+                }
+                if (j == start) continue;
+                if (count == ids.length) ids = Arrays.copyOf(ids, count * 2);
+                ids[count++] = id;
+                i = j - 1;
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    private static int skipWhitespaces(byte[] statement, int i) {
+        while (i < statement.length && Character.isWhitespace(statement[i])) i++;
+        return i;
+    }
+
+    /**
+     * Splits STEP data into statements terminated by ';'. Leading whitespaces belong to the following statement.
+     */
+    private static class StatementReader {
+
+        private final InputStream in;
+        private byte[] buffer = new byte[256];
+
+        StatementReader(InputStream in) {
+            this.in = new BufferedInputStream(in, 1 << 16);
+        }
+
+        /**
+         * Reads next statement
+         *
+         * @return statement including terminating ';' or null if end of stream
+         * @throws IOException if reading fails
+         */
+        byte[] next() throws IOException {
+            int count = 0;
+            boolean inString = false;
+            int c;
+            while ((c = in.read()) != -1) {
+                if (count == buffer.length) buffer = Arrays.copyOf(buffer, count * 2);
+                buffer[count++] = (byte) c;
+                if (c == '\'') inString = !inString;
+                else if (c == ';' && !inString) break;
+            }
+            if (count == 0) return null;
+            return Arrays.copyOf(buffer, count);
+        }
+
+        void close() throws IOException {
+            in.close();
+        }
+    }
+}
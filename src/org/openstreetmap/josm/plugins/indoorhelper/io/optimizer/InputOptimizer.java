@@ -1,11 +1,13 @@
 // License: AGPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.indoorhelper.io.optimizer;
 
+import org.openstreetmap.josm.plugins.indoorhelper.io.model.BIMtoOSMCatalog;
 import org.openstreetmap.josm.tools.Logging;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.util.Scanner;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.UnaryOperator;
 
 /**
  * Class providing methods to optimize IFC files before loading them
@@ -13,49 +15,196 @@ import java.util.Scanner;
 public class InputOptimizer {
 
     /**
-     * Optimizes an ifc file following the given config parameters
+     * Opens an ifc file as stream which will be optimized following the given config parameters while reading it.
+     * No temporary file is written, the optimized stream can be passed directly to the model loader.
      *
+     * @param config      describes the optimization
      * @param ifcFilepath to file to optimize
-     * @return optimized file as {@link File}
-     * @throws IOException
+     * @return optimized file as {@link InputStream}
+     * @throws IOException if file could not be opened
      */
-    public static File optimizeIfcFile(Configuration config, String ifcFilepath) throws IOException {
-        // TODO Maybe find a better way than creating a temporary file...
-        File tempFile = File.createTempFile(getFileName(ifcFilepath) + "_optimized", ".ifc");
-        tempFile.deleteOnExit();
+    public static InputStream optimizeIfcFile(Configuration config, String ifcFilepath) throws IOException {
+        return optimizeIfcFile(config, ifcFilepath, UnaryOperator.identity());
+    }
 
-        if (config.REMOVE_BLOCK_COMMENTS) {
-            StringBuilder optimizedInput = new StringBuilder("");
-            try {
-                File file = new File(ifcFilepath);
-                Scanner reader = new Scanner(file, StandardCharsets.UTF_8.name());
-                while (reader.hasNextLine()) {
-                    optimizedInput.append(reader.nextLine().replaceAll("/\\*.*?\\*/", "")).append("\n");
-                }
-                reader.close();
-            } catch (FileNotFoundException e) {
-                Logging.error(e.getMessage());
+    /**
+     * Opens an ifc file as stream which will be optimized following the given config parameters while reading it.
+     * Each stream of the file is wrapped before it is optimized, e.g. to track the bytes read from file. Pruning
+     * reads the file twice.
+     *
+     * @param config      describes the optimization
+     * @param ifcFilepath to file to optimize
+     * @param fileWrapper wraps each stream of file
+     * @return optimized file as {@link InputStream}
+     * @throws IOException if file could not be opened
+     */
+    public static InputStream optimizeIfcFile(Configuration config, String ifcFilepath,
+                                              UnaryOperator<InputStream> fileWrapper) throws IOException {
+        if (config.PRUNE_UNREACHABLE_ENTITIES) {
+            // first pass collects entities reachable from root entities, second pass drops all other entities
+            Set<Integer> reachableIds;
+            try (InputStream input = new BlockCommentFilterInputStream(fileWrapper.apply(new FileInputStream(ifcFilepath)))) {
+                reachableIds = EntityPruningInputStream.collectReachableIds(input,
+                        new HashSet<>(BIMtoOSMCatalog.getRootTags()));
             }
+            return new EntityPruningInputStream(
+                    new BlockCommentFilterInputStream(fileWrapper.apply(new FileInputStream(ifcFilepath))), reachableIds);
+        }
 
-            try (FileWriter writer = new FileWriter(tempFile)) {
-                writer.write(String.valueOf(optimizedInput));
-            }
+        InputStream input = fileWrapper.apply(new FileInputStream(ifcFilepath));
+        if (config.REMOVE_BLOCK_COMMENTS) {
+            input = new BlockCommentFilterInputStream(input);
         }
-        return tempFile;
+        return input;
     }
 
     /**
-     * Extracts the filename of path
-     *
-     * @param filepath to get name for
-     * @return file name without suffix or default string if no valid file name
+     * Stream removing block comments from STEP data. Comments may span multiple lines, string literals
+     * are kept untouched. Uses a single pass state machine on an internal buffer.
      */
-    private static String getFileName(String filepath) {
-        try {
-            String[] parts = filepath.split(File.separator.equals("\\") ? "\\\\" : "/");
-            return parts[parts.length - 1].split("\\.")[0];
-        } catch (NullPointerException e) {
-            return "indoorhelper_ifc_optimized";
+    static class BlockCommentFilterInputStream extends FilterInputStream {
+
+        private static final int BUFFER_SIZE = 1 << 16;
+
+        private enum State {
+            DATA, SLASH, COMMENT, COMMENT_STAR, STRING
+        }
+
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        // target of single byte reads
+        private final byte[] singleByte = new byte[1];
+        private int position;
+        private int limit;
+        private State state = State.DATA;
+        private int pushedBack = -1;
+        private boolean endOfStream;
+
+        // report data
+        private long bytesRead;
+        private long bytesRemoved;
+        private long filterNanos;
+
+        BlockCommentFilterInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int n = read(singleByte, 0, 1);
+            return n == -1 ? -1 : singleByte[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            long start = System.nanoTime();
+            int n = 0;
+            while (n < len) {
+                int c = next();
+                if (c == -1) break;
+                switch (state) {
+                    case DATA:
+                        if (c == '/') {
+                            state = State.SLASH;
+                            continue;
+                        }
+                        if (c == '\'') state = State.STRING;
+                        b[off + n++] = (byte) c;
+                        break;
+                    case SLASH:
+                        if (c == '*') {
+                            state = State.COMMENT;
+                            bytesRemoved += 2;
+                            continue;
+                        }
+                        // no comment, emit slash and process char again
+                        state = State.DATA;
+                        pushedBack = c;
+                        b[off + n++] = '/';
+                        break;
+                    case COMMENT:
+                        if (c == '*') state = State.COMMENT_STAR;
+                        bytesRemoved++;
+                        break;
+                    case COMMENT_STAR:
+                        if (c == '/') state = State.DATA;
+                        else if (c != '*') state = State.COMMENT;
+                        bytesRemoved++;
+                        break;
+                    case STRING:
+                        // escaped quotes ('') close and reopen the string
+                        if (c == '\'') state = State.DATA;
+                        b[off + n++] = (byte) c;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            // trailing slash at end of stream
+            if (endOfStream && state == State.SLASH && n < len) {
+                state = State.DATA;
+                b[off + n++] = '/';
+            }
+            filterNanos += System.nanoTime() - start;
+            if (n == 0 && endOfStream) {
+                return -1;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] skipBuffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(n, 0))];
+            long skipped = 0;
+            while (skipped < n) {
+                int r = read(skipBuffer, 0, (int) Math.min(skipBuffer.length, n - skipped));
+                if (r == -1) break;
+                skipped += r;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            if (endOfStream) {
+                double seconds = filterNanos / 1e9;
+                Logging.info(String.format("%s-InputOptimizerReport: %d bytes read, %d bytes of block comments removed, " +
+                                "throughput %.2f MB/s",
+                        InputOptimizer.class.getName(), bytesRead, bytesRemoved,
+                        seconds > 0 ? (bytesRead / 1e6) / seconds : 0.0));
+            }
+        }
+
+        /**
+         * Gets next byte of underlying stream
+         *
+         * @return next byte or -1 if end of stream
+         * @throws IOException if reading fails
+         */
+        private int next() throws IOException {
+            if (pushedBack != -1) {
+                int c = pushedBack;
+                pushedBack = -1;
+                return c;
+            }
+            if (position == limit) {
+                if (endOfStream) return -1;
+                int r = in.read(buffer, 0, buffer.length);
+                if (r <= 0) {
+                    endOfStream = true;
+                    return -1;
+                }
+                bytesRead += r;
+                position = 0;
+                limit = r;
+            }
+            return buffer[position++] & 0xff;
         }
     }
 
@@ -64,9 +213,19 @@ public class InputOptimizer {
      */
     public static class Configuration {
         public final boolean REMOVE_BLOCK_COMMENTS;
+        /**
+         * Removes all entities not reachable from {@link BIMtoOSMCatalog#getRootTags()} entities, e.g. property sets,
+         * materials and quantities. Block comments will be removed as well.
+         */
+        public final boolean PRUNE_UNREACHABLE_ENTITIES;
 
         public Configuration(boolean removeBlockCommands) {
+            this(removeBlockCommands, false);
+        }
+
+        public Configuration(boolean removeBlockCommands, boolean pruneUnreachableEntities) {
             REMOVE_BLOCK_COMMENTS = removeBlockCommands;
+            PRUNE_UNREACHABLE_ENTITIES = pruneUnreachableEntities;
         }
     }
 
@@ -2,14 +2,23 @@
 package org.openstreetmap.josm.plugins.indoorhelper.io.optimizer;
 
 import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.ParserGeoMath;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ImportProgress;
 import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ParserUtility;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.tools.Logging;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Class providing methods to optimize OSM data files to avoid unnecessary nodes/ways in data set
@@ -23,16 +32,45 @@ public class OutputOptimizer {
      * @param ds     to optimize
      */
     public static void optimize(Configuration config, DataSet ds) {
+        optimize(config, ds, ImportProgress.silent());
+    }
+
+    /**
+     * Method optimizes the osm data following the set configurations. Nodes checked for merges are reported as
+     * progress of {@link ImportProgress.Stage#OPTIMIZE} stage.
+     *
+     * @param config   describes the optimization
+     * @param ds       to optimize
+     * @param progress to report to
+     * @throws java.util.concurrent.CancellationException if import was cancelled
+     */
+    public static void optimize(Configuration config, DataSet ds, ImportProgress progress) {
         if (config.MERGE_CLOSE_NODES) {
             int preCount = ds.getNodes().size() + ds.getWays().size();
+            long findTime = 0;
+            long mergeTime = 0;
 
-            // for each level merge possible nodes
+            // for each level merge possible nodes, all levels are merged in one data set update
+            Map<Integer, List<Node>> nodesByLevel = getNodesByLevel(ds);
             ArrayList<Integer> levels = ParserUtility.getLevelList(ds);
-            for (Integer level : levels) {
-                ArrayList<Merge> merges = findMerges(ds, config.MERGE_DISTANCE, level);
-                mergeData(merges, ds);
+            progress.beginStage(ImportProgress.Stage.OPTIMIZE, nodesByLevel.values().stream().mapToInt(List::size).sum());
+            ds.beginUpdate();
+            try {
+                for (Integer level : levels) {
+                    long start = System.currentTimeMillis();
+                    ArrayList<Merge> merges = findMerges(nodesByLevel.getOrDefault(level, Collections.emptyList()), config.MERGE_DISTANCE, progress);
+                    findTime += System.currentTimeMillis() - start;
+                    start = System.currentTimeMillis();
+                    mergeData(merges, ds);
+                    mergeTime += System.currentTimeMillis() - start;
+                }
+            } finally {
+                ds.endUpdate();
             }
 
+            Logging.info(String.format("%s-OutputOptimizerReport: merges of %d nodes found in %d ms, applied in %d ms",
+                    OutputOptimizer.class.getName(),
+                    nodesByLevel.values().stream().mapToInt(List::size).sum(), findTime, mergeTime));
             Logging.info(String.format("%s-OutputOptimizerReport: OSM primitives reduced by factor %.2f",
                     OutputOptimizer.class.getName(),
                     1.0 - ((double) (ds.getNodes().size() + ds.getWays().size()) / preCount)));
@@ -40,89 +78,223 @@ public class OutputOptimizer {
     }
 
     /**
-     * Method merges nodes in data set following the mergeLayout.
+     * Method merges nodes in data set following the mergeLayout. Merge candidates are replaced by their target in
+     * all parent ways, each affected way is rewritten once. Loops collapsed by merging are removed from rewritten
+     * ways, ways left with less than two nodes or closed ways with less than four nodes are removed. Must be called
+     * within an update of the data set.
      *
      * @param mergeLayout holding information about merge targets and candidates
      * @param ds          data set to merge data in
      */
     private static void mergeData(ArrayList<Merge> mergeLayout, DataSet ds) {
-        Collections.reverse(mergeLayout);
-
+        Map<Node, Node> replacements = new HashMap<>();
+        Set<Way> affectedWays = new LinkedHashSet<>();
         for (Merge target : mergeLayout) {
             Node dsTarget = (Node) ds.getPrimitiveById(target.target.getPrimitiveId());
+            affectedWays.addAll(dsTarget.getParentWays());
 
             for (Node candidate : target.mergeCandidates) {
                 Node dsCandidate = (Node) ds.getPrimitiveById(candidate.getPrimitiveId());
                 if (dsCandidate == null) {
-                    //TODO Improve the merge to avoid this case!
                     Logging.info(String.format("%s-OutputOptimizerReport: Merge candidate is NULL, this should not happen!",
                             OutputOptimizer.class.getName()));
                     continue;
                 }
-                // replace nodes in parent ways
-                dsCandidate.getParentWays().forEach(way -> {
-                    while (way.containsNode(dsCandidate)) {
-                        way.addNode(way.getNodes().indexOf(dsCandidate), dsTarget);
-                        way.removeNode(dsCandidate);
-                    }
-                });
-                // remove primitive
-                ds.removePrimitive(dsCandidate);
+                replacements.put(dsCandidate, dsTarget);
+                affectedWays.addAll(dsCandidate.getParentWays());
+            }
+        }
+        if (replacements.isEmpty()) return;
+
+        // replace nodes in parent ways, nodes merged into their neighbour are dropped
+        Set<Node> droppedNodes = new HashSet<>();
+        int removedWays = 0;
+        for (Way way : affectedWays) {
+            List<Node> wayNodes = new ArrayList<>(way.getNodesCount());
+            for (Node node : way.getNodes()) {
+                Node replacement = replacements.getOrDefault(node, node);
+                if (wayNodes.isEmpty() || wayNodes.get(wayNodes.size() - 1) != replacement) {
+                    wayNodes.add(replacement);
+                }
+            }
+            wayNodes = removeLoops(wayNodes);
+            droppedNodes.addAll(way.getNodes());
+
+            if (wayNodes.size() < 2 || (wayNodes.size() < 4 && wayNodes.get(0) == wayNodes.get(wayNodes.size() - 1))) {
+                // collapsed ways leave their multipolygons, empty multipolygons are removed as well
+                for (OsmPrimitive referrer : way.getReferrers()) {
+                    if (!(referrer instanceof Relation)) continue;
+                    Relation relation = (Relation) referrer;
+                    relation.removeMembersFor(way);
+                    if (relation.getMembersCount() == 0) ds.removePrimitive(relation);
+                }
+                way.setNodes(Collections.emptyList());
+                ds.removePrimitive(way);
+                removedWays++;
+            } else {
+                way.setNodes(wayNodes);
+            }
+        }
+        // remove primitives, nodes of rewritten ways are removed if not used anymore
+        replacements.keySet().forEach(ds::removePrimitive);
+        droppedNodes.removeAll(replacements.keySet());
+        for (Node node : droppedNodes) {
+            if (node.getDataSet() == ds && node.getReferrers().isEmpty() && !node.hasKeys()) ds.removePrimitive(node);
+        }
+
+        if (removedWays > 0) {
+            Logging.info(String.format("%s-OutputOptimizerReport: %d ways collapsed by merging removed",
+                    OutputOptimizer.class.getName(), removedWays));
+        }
+    }
+
+    /**
+     * Removes loops between non-consecutive occurrences of the same node, like spikes of two neighbours merged into
+     * one node. For closed ways the larger part of the ring is kept, for open ways the part connecting both ends.
+     *
+     * @param nodes of way without consecutive duplicates
+     * @return nodes of way without loops
+     */
+    private static List<Node> removeLoops(List<Node> nodes) {
+        boolean closed = nodes.size() > 1 && nodes.get(0) == nodes.get(nodes.size() - 1);
+        List<Node> loop = new ArrayList<>(closed ? nodes.subList(0, nodes.size() - 1) : nodes);
+
+        Map<Node, Integer> indices = new HashMap<>();
+        for (int i = 0; i < loop.size(); i++) {
+            Integer first = indices.putIfAbsent(loop.get(i), i);
+            if (first == null) continue;
+
+            int inner = i - first;
+            if (closed && inner > loop.size() - inner) {
+                loop = new ArrayList<>(loop.subList(first, i));
+            } else {
+                loop.subList(first + 1, i + 1).clear();
             }
+            // indices changed, check again from start
+            indices.clear();
+            i = -1;
         }
 
-        Collections.reverse(mergeLayout);
+        if (closed && !loop.isEmpty()) loop.add(loop.get(0));
+        return loop;
     }
 
     /**
-     * This method creates a {@link Merge} object for each node in dataset on defined level.
-     * The {@link Merge} object holds the node as target and a list of other nodes (tagged with the same level tag)
-     * as merge candidates. Whether a node is a merge candidate or not will be determined by the distance between
-     * target and node which needs to be smaller than the mergeDistance.
-     * If a target has no merge candidates it will not be included in the returned list.
+     * Groups the nodes of data set by their level tag. Nodes without level tag are not included.
      *
-     * @param ds            data set to find merges in
+     * @param ds data set to get nodes from
+     * @return map of level and nodes on level
+     */
+    private static Map<Integer, List<Node>> getNodesByLevel(DataSet ds) {
+        Map<Integer, List<Node>> nodesByLevel = new HashMap<>();
+        for (Node node : ds.getNodes()) {
+            Number level;
+            try {
+                level = ParserUtility.getLevelTag(node);
+            } catch (NumberFormatException e) {
+                // parent way without level tag
+                continue;
+            }
+            if (level == null) continue;
+            nodesByLevel.computeIfAbsent(level.intValue(), k -> new ArrayList<>()).add(node);
+        }
+        return nodesByLevel;
+    }
+
+    /**
+     * This method creates a {@link Merge} object for each cluster of close nodes. Nodes are visited in order, the
+     * first node of a cluster is its target. A node becomes a merge candidate of the closest target whose distance
+     * is smaller than the mergeDistance, if it is not part of the same way as the target or any other candidate of
+     * the cluster. Otherwise the node becomes target of a new cluster. Candidates are only compared with targets, so
+     * chains of close nodes do not collapse into one node.
+     * <p>
+     * Targets are looked up in a uniform grid with cells of size mergeDistance, so only targets in neighbouring
+     * cells have to be compared.
+     *
+     * @param nodes         nodes of one level to find merges in
      * @param mergeDistance distance between nodes so that the nodes can be merged
-     * @param level         only object with this level tag will be considered
+     * @param progress      to report checked nodes to
      * @return Set of merges
      */
-    private static ArrayList<Merge> findMerges(DataSet ds, double mergeDistance, int level) {
-        //TODO find merges by using clustering algorithm
-
+    private static ArrayList<Merge> findMerges(List<Node> nodes, double mergeDistance, ImportProgress progress) {
         ArrayList<Merge> merges = new ArrayList<>();
-        ArrayList<Node> nodes = new ArrayList<>(ds.getNodes());
-
-        for (int i = 0; i < nodes.size(); ++i) {
-            Node targetNode = nodes.get(i);
-            // skip if node is part of another or none level
-            Number targetLevel = ParserUtility.getLevelTag(targetNode);
-            if (targetLevel == null || (int) targetLevel != level) continue;
-            Merge merge = new Merge(targetNode);
-
-            for (int j = i + 1; j < nodes.size(); ++j) {
-                Node mergeCandidate = nodes.get(j);
-                // skip if node is part of another or none level
-                Number candidateLevel = ParserUtility.getLevelTag(mergeCandidate);
-                if (candidateLevel == null || (int) candidateLevel != level) continue;
-                // skip (for now) if node is part of the same way
-                if (ParserUtility.nodesPartOfSameWay(targetNode, mergeCandidate)) continue;
-
-                // check distance between target and merge candidate
-                double distance = ParserGeoMath.getDistance(
-                        targetNode.lat(), targetNode.lon(), mergeCandidate.lat(), mergeCandidate.lon());
-                if (distance < mergeDistance) {
-                    merge.mergeCandidates.add(mergeCandidate);
+        if (nodes.size() < 2 || mergeDistance <= 0.0) return merges;
+
+        // project nodes to plane, longitude is scaled with the smallest cosine of all nodes, so projected
+        // distances never exceed the real distances and no close pair is missed
+        double unitsPerDegree = ParserGeoMath.getDistance(0.0, 0.0, 1.0, 0.0);
+        double minCos = 1.0;
+        for (Node node : nodes) {
+            minCos = Math.min(minCos, Math.cos(Math.toRadians(node.lat())));
+        }
+
+        List<Merge> targets = new ArrayList<>();
+        Map<Long, List<Merge>> grid = new HashMap<>();
+        for (Node node : nodes) {
+            long cellX = (long) Math.floor(node.lon() * unitsPerDegree * minCos / mergeDistance);
+            long cellY = (long) Math.floor(node.lat() * unitsPerDegree / mergeDistance);
+
+            // find closest target in neighbouring cells the node can be merged into
+            Merge closest = null;
+            double closestDistance = mergeDistance;
+            for (long x = cellX - 1; x <= cellX + 1; x++) {
+                for (long y = cellY - 1; y <= cellY + 1; y++) {
+                    List<Merge> cell = grid.get(getCellKey(x, y));
+                    if (cell == null) continue;
+                    for (Merge merge : cell) {
+                        double distance = ParserGeoMath.getDistance(node.lat(), node.lon(), merge.target.lat(), merge.target.lon());
+                        if (distance >= closestDistance || !canMerge(merge, node)) continue;
+                        closest = merge;
+                        closestDistance = distance;
+                    }
                 }
             }
 
-            if (!merge.mergeCandidates.isEmpty()) {
-                merges.add(merge);
+            if (closest != null) {
+                closest.mergeCandidates.add(node);
+            } else {
+                Merge merge = new Merge(node);
+                targets.add(merge);
+                grid.computeIfAbsent(getCellKey(cellX, cellY), k -> new ArrayList<>()).add(merge);
             }
+            progress.advance(1);
         }
 
+        // targets without candidates are not included
+        for (Merge merge : targets) {
+            if (!merge.mergeCandidates.isEmpty()) merges.add(merge);
+        }
         return merges;
     }
 
+    /**
+     * Checks if node can be merged into target of merge. Merging a node which is part of the same way as the
+     * target or another candidate would collapse way segments.
+     *
+     * @param merge to add node to
+     * @param node  to check
+     * @return true if node is not part of the same way as target or any candidate, else false
+     */
+    private static boolean canMerge(Merge merge, Node node) {
+        // skip (for now) if node is part of the same way
+        if (ParserUtility.nodesPartOfSameWay(merge.target, node)) return false;
+        for (Node candidate : merge.mergeCandidates) {
+            if (ParserUtility.nodesPartOfSameWay(candidate, node)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets key of grid cell. Colliding keys only add candidates to compare.
+     *
+     * @param cellX x index of cell
+     * @param cellY y index of cell
+     * @return key of cell
+     */
+    private static long getCellKey(long cellX, long cellY) {
+        return (cellX << 32) ^ (cellY & 0xffffffffL);
+    }
+
     private static class Merge {
         public final Node target;
         public final List<Node> mergeCandidates; // merge to target
@@ -139,10 +311,24 @@ public class OutputOptimizer {
     public static class Configuration {
         public final boolean MERGE_CLOSE_NODES;
         public final double MERGE_DISTANCE;
+        public final boolean MERGE_AT_PACK_TIME;
 
         public Configuration(boolean mergeCloseNodes, double mergeDistance) {
+            this(mergeCloseNodes, mergeDistance, false);
+        }
+
+        /**
+         * Constructor
+         *
+         * @param mergeCloseNodes true if close nodes should be merged after packing
+         * @param mergeDistance   distance between nodes so that the nodes can be merged
+         * @param mergeAtPackTime true if nodes of the same level within one grid cell of size mergeDistance
+         *                        should be shared while packing
+         */
+        public Configuration(boolean mergeCloseNodes, double mergeDistance, boolean mergeAtPackTime) {
             MERGE_CLOSE_NODES = mergeCloseNodes;
             MERGE_DISTANCE = mergeDistance;
+            MERGE_AT_PACK_TIME = mergeAtPackTime;
         }
     }
 }
@@ -3,41 +3,69 @@ package org.openstreetmap.josm.plugins.indoorhelper.io.parser;
 
 import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.ifc.*;
 import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.ifc.IfcRepresentationCatalog.*;
+import org.openstreetmap.josm.plugins.indoorhelper.io.cache.ImportResultCache;
 import org.openstreetmap.josm.plugins.indoorhelper.io.controller.ImportEventListener;
 import org.openstreetmap.josm.plugins.indoorhelper.io.model.BIMtoOSMCatalog;
 import org.openstreetmap.josm.plugins.indoorhelper.io.optimizer.InputOptimizer;
 import org.openstreetmap.josm.plugins.indoorhelper.io.optimizer.OutputOptimizer;
 import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.BIMDataCollection;
 import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.BIMObject3D;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.CoordinateBuffer;
 import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.*;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ImportProgress;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.LongHashMap;
 import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc.BIMtoOSMUtility;
 import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc.IfcGeometryExtractor;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc.IfcMappedGeometryCache;
 import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc.IfcObjectIdentifier;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc.IfcOpeningIndex;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc.IfcPlacementCache;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc.IfcSchemaCache;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc.IfcSpatialStructureIndex;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc.IfcStoreySection;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc.IfcTypeIndex;
+import org.openstreetmap.josm.plugins.indoorhelper.io.writer.OsmStreamWriter;
 import org.openstreetmap.josm.plugins.indoorhelper.model.TagCatalog;
 import nl.tue.buildingsmart.express.population.EntityInstance;
 import nl.tue.buildingsmart.express.population.ModelPopulation;
+import nl.tue.buildingsmart.schema.SchemaDefinition;
 import org.openstreetmap.josm.data.Preferences;
 import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
 import org.openstreetmap.josm.data.osm.Tag;
 import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.util.GuiHelper;
 import org.openstreetmap.josm.tools.Logging;
 import org.openstreetmap.josm.tools.Pair;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
 
 import static org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ParserUtility.prepareDoubleString;
 import static org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ParserUtility.stringVectorToVector3D;
@@ -54,12 +82,12 @@ public class BIMtoOSMParser {
     private static final String IFC2X3_TC1_SCHEMA = "IFC2X3_TC1.exp";
     private static final String IFC4_SCHEMA = "IFC4.exp";
     private final String resourcePathDir;
-    private String ifcSchemaFilePath;
 
     private final ImportEventListener importListener;
-    private FileInputStream inputFs = null;
+    private InputStream inputFs = null;
 
     private ModelPopulation ifcModel;
+    private IfcSpatialStructureIndex spatialStructureIndex;
     private final TagCatalog tagCatalog;
     private IfcUnitCatalog.LengthUnit lengthUnit;
 
@@ -71,6 +99,21 @@ public class BIMtoOSMParser {
     private InputOptimizer.Configuration optimizeInputConfig;
     private boolean optimizeOutput;
     private OutputOptimizer.Configuration optimizeOutputConfig;
+    private int extractionThreads = 1;
+    private boolean showErrorDialogs = true;
+    private boolean progressiveRefinement = false;
+    private double sectionCutHeight = DEFAULT_SECTION_CUT_HEIGHT;
+    private volatile ImportProgress progress;
+    private static final int REFINEMENT_BATCH_SIZE = 256;
+    private static final long DEFAULT_CACHE_SIZE = 256L * 1024 * 1024;
+    private static final double DEFAULT_SECTION_CUT_HEIGHT = 1.0;
+    private final String cachePathDir;
+    private ImportResultCache resultCache;
+
+    // loaded model is kept to re-parse it with different configurations
+    private String parsedFilepath;
+    private boolean loadedWithInputOptimization;
+    private long loadedModelMemory;
 
     /**
      * Constructor
@@ -83,17 +126,49 @@ public class BIMtoOSMParser {
             throw new IllegalArgumentException("invalid argument value of listener: null");
         }
         importListener = listener;
+        progress = new ImportProgress(importListener::onProgressChanged);
+        resourcePathDir = getResourcePathDir(pluginDirectory);
+        cachePathDir = getCachePathDir(pluginDirectory);
+        tagCatalog = new TagCatalog();
+        lengthUnit = IfcUnitCatalog.LengthUnit.M;
+        applyDefaultConfiguration();
+    }
+
+    /**
+     * Starts parsing the supported IFC schemas in background, so following imports do not have to wait for it
+     *
+     * @param pluginDirectory of indoorHelper plugin
+     */
+    public static void warmUpSchemaCache(String pluginDirectory) {
+        String resourcePathDir = getResourcePathDir(pluginDirectory);
+        IfcSchemaCache.warmUp(FLAG_IFC2X3_TC1, Paths.get(resourcePathDir + IFC2X3_TC1_SCHEMA));
+        IfcSchemaCache.warmUp(FLAG_IFC4, Paths.get(resourcePathDir + IFC4_SCHEMA));
+    }
 
+    /**
+     * Gets the directory of resource files used by BuildingSMARTLibrary
+     *
+     * @param pluginDirectory of indoorHelper plugin or null to use default plugin directory
+     * @return resource directory path
+     */
+    private static String getResourcePathDir(String pluginDirectory) {
         if (pluginDirectory == null) {
-            resourcePathDir = Preferences.main().getPluginsDirectory().toString() + "/indoorhelper/resources";
-        } else {
-            resourcePathDir = pluginDirectory + "/resources/";
+            return Preferences.main().getPluginsDirectory().toString() + "/indoorhelper/resources/";
         }
+        return pluginDirectory + "/resources/";
+    }
 
-        ifcSchemaFilePath = resourcePathDir + IFC2X3_TC1_SCHEMA;
-        tagCatalog = new TagCatalog();
-        lengthUnit = IfcUnitCatalog.LengthUnit.M;
-        applyDefaultConfiguration();
+    /**
+     * Gets the directory of cached import results
+     *
+     * @param pluginDirectory of indoorHelper plugin or null to use default plugin directory
+     * @return cache directory path
+     */
+    private static String getCachePathDir(String pluginDirectory) {
+        if (pluginDirectory == null) {
+            return Preferences.main().getPluginsDirectory().toString() + "/indoorhelper/cache/";
+        }
+        return pluginDirectory + "/cache/";
     }
 
     /**
@@ -102,8 +177,9 @@ public class BIMtoOSMParser {
     private void applyDefaultConfiguration() {
         configure(BIMtoOSMUtility.GeometrySolution.BOUNDING_BOX,
                 new InputOptimizer.Configuration(true),
-                // default: merge overlapping nodes only (distance < 0.01)
-                new OutputOptimizer.Configuration(true, 0.01));
+                // default: merge overlapping nodes only (distance < 0.01), share them while packing
+                new OutputOptimizer.Configuration(true, 0.01, true));
+        configureCache(DEFAULT_CACHE_SIZE);
     }
 
     /**
@@ -138,66 +214,438 @@ public class BIMtoOSMParser {
         Logging.info(String.format("%s-ConfigurationReport: solution set to %s",
                 BIMtoOSMParser.class.getName(), solutionType.name()));
 
-        optimizeInputFile = optimizeInputConfig.REMOVE_BLOCK_COMMENTS;
+        optimizeInputFile = optimizeInputConfig.REMOVE_BLOCK_COMMENTS || optimizeInputConfig.PRUNE_UNREACHABLE_ENTITIES;
         this.optimizeInputConfig = optimizeInputConfig;
-        Logging.info(String.format("%s-ConfigurationReport: optimizeInputFile %s; RemoveBlockCommands %s",
+        Logging.info(String.format("%s-ConfigurationReport: optimizeInputFile %s; RemoveBlockCommands %s; " +
+                        "PruneUnreachableEntities %s",
                 BIMtoOSMParser.class.getName(),
+                optimizeInputFile ? "enabled" : "disabled",
                 optimizeInputConfig.REMOVE_BLOCK_COMMENTS ? "enabled" : "disabled",
-                optimizeInputConfig.REMOVE_BLOCK_COMMENTS ? "enabled" : "disabled"));
+                optimizeInputConfig.PRUNE_UNREACHABLE_ENTITIES ? "enabled" : "disabled"));
 
         optimizeOutput = optimizeOutputConfig.MERGE_CLOSE_NODES;
         this.optimizeOutputConfig = optimizeOutputConfig;
         Logging.info(String.format("%s-ConfigurationReport: optimizeOutput %s; MergeCloseNodes %s; " +
-                        "MergeDistance set to %.2f m",
+                        "MergeDistance set to %.2f m; MergeAtPackTime %s",
                 BIMtoOSMParser.class.getName(),
                 optimizeOutputConfig.MERGE_CLOSE_NODES ? "enabled" : "disabled",
                 optimizeOutputConfig.MERGE_CLOSE_NODES ? "enabled" : "disabled",
-                optimizeOutputConfig.MERGE_CLOSE_NODES ? optimizeOutputConfig.MERGE_DISTANCE : -999));
+                optimizeOutputConfig.MERGE_CLOSE_NODES ? optimizeOutputConfig.MERGE_DISTANCE : -999,
+                optimizeOutputConfig.MERGE_AT_PACK_TIME ? "enabled" : "disabled"));
+
+        return true;
+    }
+
+    /**
+     * @return type of parsed data
+     */
+    public BIMtoOSMUtility.GeometrySolution getSolution() {
+        return solutionType;
+    }
+
+    /**
+     * @return configuration of IFC file pre-optimization
+     */
+    public InputOptimizer.Configuration getInputConfiguration() {
+        return optimizeInputConfig;
+    }
+
+    /**
+     * @return configuration of OSM output optimization
+     */
+    public OutputOptimizer.Configuration getOutputConfiguration() {
+        return optimizeOutputConfig;
+    }
+
+    /**
+     * Sets number of threads used to extract the geometry of BIM objects
+     *
+     * @param threads number of threads, 1 to extract geometry sequentially
+     * @return true if config set successfully, else false
+     */
+    public boolean configureExtraction(int threads) {
+        if (threads < 1) {
+            Logging.info(BIMtoOSMParser.class.getName()
+                    + ": Failed to set extraction configuration. Number of threads must be at least 1!");
+            return false;
+        }
 
+        extractionThreads = threads;
+        Logging.info(String.format("%s-ConfigurationReport: extraction threads set to %d",
+                BIMtoOSMParser.class.getName(), extractionThreads));
         return true;
     }
 
+    /**
+     * Sets maximum size of import result cache. Results of files imported before with the same configuration are
+     * loaded from cache instead of being parsed again.
+     *
+     * @param maxSize maximum size of cached results in bytes, 0 to disable cache
+     * @return true if config set successfully, else false
+     */
+    public boolean configureCache(long maxSize) {
+        if (maxSize < 0) {
+            Logging.info(BIMtoOSMParser.class.getName()
+                    + ": Failed to set cache configuration. Cache size must not be negative!");
+            return false;
+        }
+
+        resultCache = maxSize > 0 ? new ImportResultCache(Paths.get(cachePathDir), maxSize) : null;
+        Logging.info(String.format("%s-ConfigurationReport: result cache %s; CacheSize set to %d MB",
+                BIMtoOSMParser.class.getName(),
+                resultCache != null ? "enabled" : "disabled",
+                maxSize / (1024 * 1024)));
+        return true;
+    }
+
+    /**
+     * Sets whether BODY geometry is parsed progressively. If enabled, the cheap BOUNDING_BOX geometry is passed to
+     * the listener first, BODY geometry replaces it in batches afterwards.
+     *
+     * @param progressive true to parse BODY geometry progressively, else false
+     */
+    public void configureProgressiveRefinement(boolean progressive) {
+        progressiveRefinement = progressive;
+        Logging.info(String.format("%s-ConfigurationReport: progressive refinement %s",
+                BIMtoOSMParser.class.getName(), progressiveRefinement ? "enabled" : "disabled"));
+    }
+
+    /**
+     * Sets height above storey elevation at which faceted brep bodies are sliced if BODY geometry is parsed. Only the
+     * section of each body is imported instead of all of its faces.
+     *
+     * @param cutHeight height of section plane above storey elevation in m
+     * @return true if config set successfully, else false
+     */
+    public boolean configureSection(double cutHeight) {
+        if (!(cutHeight >= 0.0)) {
+            Logging.info(BIMtoOSMParser.class.getName()
+                    + ": Failed to set section configuration. Cut height must not be negative!");
+            return false;
+        }
+
+        sectionCutHeight = cutHeight;
+        Logging.info(String.format("%s-ConfigurationReport: section cut height set to %.2f m",
+                BIMtoOSMParser.class.getName(), sectionCutHeight));
+        return true;
+    }
+
+    /**
+     * @return height of section plane above storey elevation in m
+     */
+    public double getSectionCutHeight() {
+        return sectionCutHeight;
+    }
+
+    /**
+     * Sets whether errors are shown in dialogs. If disabled, errors are logged only, e.g. for batch conversions.
+     *
+     * @param showErrorDialogs true to show error dialogs, else false
+     */
+    public void setShowErrorDialogs(boolean showErrorDialogs) {
+        this.showErrorDialogs = showErrorDialogs;
+    }
+
     /**
      * Method parses data from ifc file into OSM data
      *
      * @param filepath of ifc file
      */
     public boolean parse(String filepath) {
-        if (!loadFile(filepath)) return false;
+        parsedFilepath = filepath;
+        return runCancellable(filepath, () -> {
+            // release previously loaded model before loading the next one, a cached result does not load it, so
+            // reparse() has to load the file instead of re-parsing the model of another file
+            releaseModel();
+            String cacheKey = getCacheKey(filepath);
+            if (loadFromCache(filepath, cacheKey)) return true;
+
+            if (!loadFile(filepath)) {
+                releaseModel();
+                return false;
+            }
+            return parseLoadedModel(filepath, cacheKey);
+        });
+    }
 
+    /**
+     * Method parses the model loaded by last {@link #parse(String)} call again with current configuration. Only
+     * extraction, packing and optimization are repeated, the file is loaded again only if it was not loaded before
+     * (e.g. result was loaded from cache) or the input optimization changed.
+     *
+     * @return true if parsed successfully, else false
+     */
+    public boolean reparse() {
+        if (parsedFilepath == null) {
+            Logging.info(BIMtoOSMParser.class.getName() + ": Failed to re-parse. No file parsed before!");
+            return false;
+        }
+        return runCancellable(parsedFilepath, () -> {
+            String cacheKey = getCacheKey(parsedFilepath);
+            if (loadFromCache(parsedFilepath, cacheKey)) return true;
+
+            long start = System.currentTimeMillis();
+            boolean reload = ifcModel == null || loadedWithInputOptimization != optimizeInputFile;
+            if (reload) {
+                releaseModel();
+                if (!loadFile(parsedFilepath)) {
+                    releaseModel();
+                    return false;
+                }
+            }
+            boolean parsed = parseLoadedModel(parsedFilepath, cacheKey);
+            Logging.info(String.format("%s-ReparseReport: %s model re-parsed in %d ms",
+                    BIMtoOSMParser.class.getName(), reload ? "reloaded" : "retained", System.currentTimeMillis() - start));
+            return parsed;
+        });
+    }
+
+    /**
+     * Cancels running or next parsing. Parsing stops within the next progress report and the loaded model is released.
+     */
+    public void cancel() {
+        progress.cancel();
+    }
+
+    /**
+     * Runs parsing reporting its progress to listener. If parsing is cancelled, the loaded model is released.
+     *
+     * @param filepath of ifc file
+     * @param parsing  to run
+     * @return result of parsing, false if cancelled
+     */
+    private boolean runCancellable(String filepath, BooleanSupplier parsing) {
+        try {
+            return parsing.getAsBoolean();
+        } catch (CancellationException e) {
+            releaseModel();
+            Logging.info(this.getClass().getName() + ": parsing of " + filepath + " cancelled");
+            return false;
+        } finally {
+            // progress is replaced after parsing, so cancelling before parsing started is not lost
+            progress = new ImportProgress(importListener::onProgressChanged);
+        }
+    }
+
+    /**
+     * @return true if a loaded model is kept to be re-parsed by {@link #reparse()}, else false
+     */
+    public boolean hasLoadedModel() {
+        return ifcModel != null;
+    }
+
+    /**
+     * @return approximate heap memory in bytes kept by the loaded model, 0 if no model is loaded. Measured as growth
+     * of process-wide heap usage while loading, so it includes memory of other threads loading at the same time.
+     */
+    public long getLoadedModelMemory() {
+        return loadedModelMemory;
+    }
+
+    /**
+     * Releases the loaded model together with its indexes and caches
+     */
+    public void releaseModel() {
+        if (ifcModel != null) {
+            IfcTypeIndex.release(ifcModel);
+            IfcOpeningIndex.release(ifcModel);
+            IfcPlacementCache.release(ifcModel);
+            IfcMappedGeometryCache.release(ifcModel);
+        }
+        ifcModel = null;
+        spatialStructureIndex = null;
+        loadedModelMemory = 0;
+    }
+
+    /**
+     * Loads stored result from cache and passes it to listener
+     *
+     * @param filepath of ifc file
+     * @param cacheKey of result, null if cache is not used
+     * @return true if result was loaded from cache, else false
+     */
+    private boolean loadFromCache(String filepath, String cacheKey) {
+        if (cacheKey == null) return false;
+        DataSet cachedOSMData = resultCache.load(cacheKey);
+        if (cachedOSMData == null) return false;
+
+        importListener.onDataParsed(cachedOSMData);
+        Logging.info(this.getClass().getName() + ": " + filepath + " loaded from cache");
+        return true;
+    }
+
+    /**
+     * Parses loaded model into OSM data, stores it in cache and passes it to listener
+     *
+     * @param filepath of ifc file
+     * @param cacheKey of result, null if cache is not used
+     * @return true if parsed successfully, else false
+     */
+    private boolean parseLoadedModel(String filepath, String cacheKey) {
+        // bounding boxes are shown first, body geometry replaces them after data was passed to listener
+        boolean progressive = progressiveRefinement && solutionType == BIMtoOSMUtility.GeometrySolution.BODY;
+        ArrayList<BIMObject3D> preparedData = prepareLoadedData(filepath,
+                progressive ? BIMtoOSMUtility.GeometrySolution.BOUNDING_BOX : solutionType);
+        if (preparedData == null) return false;
+
+        // pack parsed data into osm format, data set is built in one batch before any layer listens to it
+        // refined geometry is packed into the same grid later, so it shares nodes with the bounding boxes left
+        Map<Integer, Integer> storeyLevels = identifyStoreyLevels(extractAndIdentifyLevels());
+        Map<Integer, List<Way>> waysOfObjects = progressive ? new HashMap<>() : null;
+        PackingGrid packingGrid = createPackingGrid();
+        progress.beginStage(ImportProgress.Stage.PACK, preparedData.size());
+        DataSet packedOSMData = packAndOptimize(preparedData, storeyLevels, waysOfObjects, packingGrid, progress);
+
+        // progressively refined data is edited while refining, refined result is cached when refinement is done
+        if (cacheKey != null && !progressive) {
+            importListener.onProcessStatusChanged("caching data");
+            resultCache.store(cacheKey, packedOSMData);
+        }
+
+        // trigger rendering
+        importListener.onDataParsed(packedOSMData);
+
+        if (progressive) {
+            refineGeometry(packedOSMData, storeyLevels, waysOfObjects, packingGrid, cacheKey);
+        }
+
+        Logging.info(this.getClass().getName() + ": " + filepath + " parsed successfully");
+        return true;
+    }
+
+    /**
+     * Packs prepared data into a new data set and optimizes it if configured. The data set is built in one update.
+     *
+     * @param preparedBIMData to transform to OSM data
+     * @param storeyLevels    map of storey id and assigned level tag
+     * @param waysOfObjects   map to add packed ways per object id to or null
+     * @param packingGrid     grid of shared nodes or null if nodes are not merged at pack time
+     * @param progress        to report packed objects and optimization to
+     * @return packed data set
+     */
+    private DataSet packAndOptimize(List<BIMObject3D> preparedBIMData, Map<Integer, Integer> storeyLevels,
+                                    Map<Integer, List<Way>> waysOfObjects, PackingGrid packingGrid,
+                                    ImportProgress progress) {
+        DataSet packedOSMData = new DataSet();
+        packedOSMData.beginUpdate();
+        try {
+            packIntoOSMData(preparedBIMData, packedOSMData, storeyLevels, waysOfObjects, packingGrid, progress);
+            if (optimizeOutput) {
+                importListener.onProcessStatusChanged("optimizing data");
+                OutputOptimizer.optimize(optimizeOutputConfig, packedOSMData, progress);
+            }
+        } finally {
+            packedOSMData.endUpdate();
+        }
+        return packedOSMData;
+    }
+
+    /**
+     * Gets key of import result in cache. Key depends on file content and all configuration values affecting the
+     * result.
+     *
+     * @param filepath of ifc file
+     * @return cache key or null if cache is disabled or file could not be hashed
+     */
+    private String getCacheKey(String filepath) {
+        if (resultCache == null) return null;
+        String configuration = String.format(Locale.ROOT, "%s;%f;%b;%b;%b;%f;%b",
+                solutionType.name(),
+                sectionCutHeight,
+                optimizeInputConfig.REMOVE_BLOCK_COMMENTS,
+                optimizeInputConfig.PRUNE_UNREACHABLE_ENTITIES,
+                optimizeOutputConfig.MERGE_CLOSE_NODES,
+                optimizeOutputConfig.MERGE_DISTANCE,
+                optimizeOutputConfig.MERGE_AT_PACK_TIME);
+        try {
+            return resultCache.getKey(filepath, configuration);
+        } catch (IOException e) {
+            Logging.warn(String.format("%s: Could not hash %s, result cache not used: %s",
+                    BIMtoOSMParser.class.getName(), filepath, e));
+            return null;
+        }
+    }
+
+    /**
+     * Method parses data from ifc file and writes it as OSM file without building a {@link DataSet}.
+     * Output optimization is not applied, {@link ImportEventListener#onDataParsed} is not called.
+     *
+     * @param filepath of ifc file
+     * @param output   writer to write OSM data to
+     * @return true if parsed and written successfully, else false
+     */
+    public boolean parse(String filepath, OsmStreamWriter output) {
+        parsedFilepath = filepath;
+        return runCancellable(filepath, () -> {
+            // model of previously parsed file must not be re-parsed as this file, see parse(String)
+            releaseModel();
+            ArrayList<BIMObject3D> preparedData = prepareData(filepath);
+            if (preparedData == null) {
+                releaseModel();
+                return false;
+            }
+
+            Map<Integer, Integer> storeyLevels = identifyStoreyLevels(extractAndIdentifyLevels());
+            try {
+                output.write(preparedData, object -> getWayTags(object, getLevelTag(object, storeyLevels)),
+                        object -> getMemberTags(getLevelTag(object, storeyLevels)));
+            } catch (IOException e) {
+                Logging.error(e);
+                showErrorView(tr("Could not write OSM data."));
+                return false;
+            }
+
+            Logging.info(this.getClass().getName() + ": " + filepath + " parsed successfully");
+            return true;
+        });
+    }
+
+    /**
+     * Loads ifc file and prepares its osm relevant objects, geodetic coordinates of objects are set
+     *
+     * @param filepath of ifc file
+     * @return prepared objects or null if file could not be parsed
+     */
+    private ArrayList<BIMObject3D> prepareData(String filepath) {
+        if (!loadFile(filepath)) return null;
+        return prepareLoadedData(filepath, solutionType);
+    }
+
+    /**
+     * Prepares osm relevant objects of loaded model, geodetic coordinates of objects are set
+     *
+     * @param filepath of loaded ifc file
+     * @param solution type of extracted geometry
+     * @return prepared objects or null if model could not be parsed
+     */
+    private ArrayList<BIMObject3D> prepareLoadedData(String filepath, BIMtoOSMUtility.GeometrySolution solution) {
         // get osm relevant data
         BIMDataCollection rawFilteredData = BIMtoOSMUtility.extractMajorBIMData(ifcModel);
 
         if (!checkForIFCSITE(rawFilteredData)) {
             showParsingErrorView(filepath, "Could not import IFC file.\nIFC " +
                     "file does not contain IFCSITE element.", true);
-            return false;
+            return null;
         }
 
-        // transform osm relevant data into BIMObject3D
-        ArrayList<BIMObject3D> preparedData = (ArrayList<BIMObject3D>) transformToBIMData(rawFilteredData);
+        // units are needed for section plane of storeys
+        setUnits();
+
+        // transform osm relevant data into BIMObject3D, building rotation is applied together with object placement
+        AffineTransform3D buildingRotation = getBuildingRotation();
+        ArrayList<BIMObject3D> preparedData = (ArrayList<BIMObject3D>) transformToBIMData(rawFilteredData,
+                buildingRotation != null ? buildingRotation : new AffineTransform3D(), solution);
 
         // transform building coordinates to WCS
-        setUnits();
         LatLon llBuildingOrigin = getLatLonBuildingOrigin(rawFilteredData.getIfcSite());
-        transformToGeodetic(llBuildingOrigin, preparedData);
-
-        // pack parsed data into osm format
-        DataSet packedOSMData = packIntoOSMData(preparedData);
-        if (optimizeOutput) {
-            importListener.onProcessStatusChanged("optimizing data");
-            OutputOptimizer.optimize(optimizeOutputConfig, packedOSMData);
+        if (buildingRotation != null) {
+            transformToGeodetic(llBuildingOrigin, preparedData);
         }
 
         if (preparedData.size() != rawFilteredData.getSize()) {
             showParsingErrorView(filepath, "Caution!\nImported data might include errors!", false);
         }
-
-        // trigger rendering
-        importListener.onDataParsed(packedOSMData);
-
-        Logging.info(this.getClass().getName() + ": " + filepath + " parsed successfully");
-        return true;
+        return preparedData;
     }
 
     /**
@@ -208,36 +656,61 @@ public class BIMtoOSMParser {
      */
     private boolean loadFile(String filepath) {
         try {
-            // pre-optimize and load IFC file
-            File file;
-            if (optimizeInputFile) {
-                file = InputOptimizer.optimizeIfcFile(optimizeInputConfig, filepath);
-            } else {
-                file = new File(filepath);
-            }
-
-            inputFs = new FileInputStream(file);
-
             // find used IFC schema
-            String usedIfcSchema = chooseSchemaFile(file);
+            String usedIfcSchema = chooseSchemaFile(filepath);
             if (usedIfcSchema.isEmpty()) {
                 showLoadingErrorView(filepath, "Could not load IFC file.\nIFC schema is not supported.");
                 return false;
             }
-            if (usedIfcSchema.equals(FLAG_IFC4)) {
-                ifcSchemaFilePath = resourcePathDir + IFC4_SCHEMA;
-            }
-
-            // load IFC file data into model
+            // schema file is chosen on every load, parser may import files of different versions
+            String ifcSchemaFilePath = resourcePathDir + (usedIfcSchema.equals(FLAG_IFC4) ? IFC4_SCHEMA : IFC2X3_TC1_SCHEMA);
+
+            // load IFC file data into model, use cached schema if available
+            // IFC file is optimized while streaming into the model
+            long loadStart = System.currentTimeMillis();
+            long heapBeforeLoad = getHeapUsage();
+            resetPeakHeapUsage();
+            progress.beginStage(ImportProgress.Stage.LOAD,
+                    Files.size(Paths.get(filepath)) * (optimizeInputConfig.PRUNE_UNREACHABLE_ENTITIES && optimizeInputFile ? 2 : 1));
+            inputFs = openIfcFile(filepath);
             ifcModel = new ModelPopulation(inputFs);
-            ifcModel.setSchemaFile(Paths.get(ifcSchemaFilePath));
-            ifcModel.load();
+            SchemaDefinition schema = IfcSchemaCache.get(usedIfcSchema, Paths.get(ifcSchemaFilePath));
+            long schemaReady = System.currentTimeMillis();
+            if (schema != null) {
+                ifcModel.setSchema(schema);
+                // shared schema is not documented as thread-safe, models using it are loaded one after another
+                synchronized (schema) {
+                    ifcModel.load();
+                }
+            } else {
+                ifcModel.setSchemaFile(Paths.get(ifcSchemaFilePath));
+                ifcModel.load();
+            }
+            // loader may stop silently if reading is cancelled
+            progress.checkCancelled();
+            // without cached schema the schema is parsed by load(), so only the lookup is measured
+            Logging.info(String.format("%s-LoadReport: schema lookup %d ms (%s), model loaded in %d ms, " +
+                            "process-wide peak heap %d MB",
+                    BIMtoOSMParser.class.getName(), schemaReady - loadStart,
+                    schema != null ? "cached schema" : "schema parsed while loading",
+                    System.currentTimeMillis() - loadStart, getPeakHeapUsage() / (1024 * 1024)));
 
             // if loading throws ParseException check if ifcModel is empty to recognize something went wrong
             if (ifcModel.getInstances() == null) {
                 showLoadingErrorView(filepath, "Could not load IFC file.");
                 return false;
             }
+
+            // index entity types, spatial structure and openings once, used while extracting geometry
+            IfcTypeIndex.build(ifcModel);
+            spatialStructureIndex = IfcSpatialStructureIndex.build(ifcModel);
+            IfcOpeningIndex.build(ifcModel);
+
+            loadedWithInputOptimization = optimizeInputFile;
+            loadedModelMemory = Math.max(0, getHeapUsage() - heapBeforeLoad);
+            Logging.info(String.format("%s-LoadReport: loaded model kept for re-parsing, approx. %d MB heap " +
+                            "(process-wide growth while loading)",
+                    BIMtoOSMParser.class.getName(), loadedModelMemory / (1024 * 1024)));
         } catch (IOException e) {
             Logging.error(e.getMessage());
             return false;
@@ -254,16 +727,63 @@ public class BIMtoOSMParser {
         return true;
     }
 
+    /**
+     * Opens IFC file as stream, optimized if optimization is enabled
+     *
+     * @param filepath of IFC file
+     * @return stream of (if necessary) optimized IFC file
+     * @throws IOException if file could not be opened
+     */
+    private InputStream openIfcFile(String filepath) throws IOException {
+        if (optimizeInputFile) {
+            return InputOptimizer.optimizeIfcFile(optimizeInputConfig, filepath, progress::track);
+        }
+        return progress.track(new FileInputStream(filepath));
+    }
+
+    /**
+     * Gets current usage of heap memory of the whole process
+     *
+     * @return used heap in bytes
+     */
+    private long getHeapUsage() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Resets peak usage of heap memory pools of the whole process
+     */
+    private void resetPeakHeapUsage() {
+        ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    /**
+     * Gets peak usage of heap memory pools of the whole process since last reset
+     *
+     * @return peak heap usage in bytes
+     */
+    private long getPeakHeapUsage() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                .sum();
+    }
+
     /**
      * Read the FILE_SCHEMA flag from ifc file and return used schema
      *
-     * @param ifcFile (if necessary) optimized IFC file
+     * @param filepath of IFC file
      * @return Used ifc file schema as string
      */
-    private String chooseSchemaFile(File ifcFile) {
+    private String chooseSchemaFile(String filepath) {
         String schema = "";
-        try {
-            Scanner reader = new Scanner(ifcFile, StandardCharsets.UTF_8.name());
+        // header does not contain entities, only block comments need to be removed
+        try (InputStream header = optimizeInputFile
+                ? InputOptimizer.optimizeIfcFile(new InputOptimizer.Configuration(true), filepath)
+                : new FileInputStream(filepath)) {
+            Scanner reader = new Scanner(header, StandardCharsets.UTF_8.name());
             while (reader.hasNextLine()) {
                 String data = reader.nextLine();
                 data = data.replaceAll("\\s+", "");
@@ -282,7 +802,7 @@ public class BIMtoOSMParser {
                 }
             }
             reader.close();
-        } catch (FileNotFoundException e) {
+        } catch (IOException e) {
             Logging.error(e.getMessage());
         }
 
@@ -307,111 +827,354 @@ public class BIMtoOSMParser {
     /**
      * Extracts the BIM object geometry and transform data to {@link BIMObject3D}
      *
-     * @param rawBIMData to transform
+     * @param rawBIMData       to transform
+     * @param buildingRotation rotation of building applied after object placement
+     * @param solution         type of extracted geometry
      * @return transformed data for rendering
      */
-    private List<BIMObject3D> transformToBIMData(BIMDataCollection rawBIMData) {
+    private List<BIMObject3D> transformToBIMData(BIMDataCollection rawBIMData, AffineTransform3D buildingRotation,
+                                                 BIMtoOSMUtility.GeometrySolution solution) {
+        long start = System.currentTimeMillis();
+        ForkJoinPool pool = extractionThreads > 1 ? new ForkJoinPool(extractionThreads) : null;
+        IfcStoreySection storeySection = getStoreySection();
         List<BIMObject3D> transformedData = new ArrayList<>();
-        List<BIMObject3D> slabs = BIMtoOSMUtility.transformBIMObjects(ifcModel, solutionType, BIMtoOSMCatalog.BIMObject.IfcSlab, rawBIMData.getAreaObjects());
-        List<BIMObject3D> walls = BIMtoOSMUtility.transformBIMObjects(ifcModel, solutionType, BIMtoOSMCatalog.BIMObject.IfcWall, rawBIMData.getWallObjects());
-        List<BIMObject3D> columns = BIMtoOSMUtility.transformBIMObjects(ifcModel, solutionType, BIMtoOSMCatalog.BIMObject.IfcColumn, rawBIMData.getColumnObjects());
-//        List<BIMObject3D> doors = BIMtoOSMUtility.transformBIMObjects(ifcModel, solutionType, BIMtoOSMCatalog.BIMObject.IfcDoor, rawBIMData.getDoorObjects());
-//        List<BIMObject3D> windows = BIMtoOSMUtility.transformBIMObjects(ifcModel, solutionType, BIMtoOSMCatalog.BIMObject.IfcWindow, rawBIMData.getWindowObjects());
-        List<BIMObject3D> stairs = BIMtoOSMUtility.transformBIMObjects(ifcModel, solutionType, BIMtoOSMCatalog.BIMObject.IfcStair, rawBIMData.getStairObjects());
-        transformedData.addAll(slabs);
-        transformedData.addAll(walls);
-        transformedData.addAll(columns);
-//        transformedData.addAll(doors);
-//        transformedData.addAll(windows);
-        transformedData.addAll(stairs);
+        progress.beginStage(ImportProgress.Stage.EXTRACT, rawBIMData.getAreaObjects().size() + rawBIMData.getWallObjects().size()
+                + rawBIMData.getColumnObjects().size() + rawBIMData.getStairObjects().size());
+        try {
+            List<BIMObject3D> slabs = BIMtoOSMUtility.transformBIMObjects(ifcModel, solution, BIMtoOSMCatalog.BIMObject.IfcSlab, rawBIMData.getAreaObjects(), buildingRotation, pool, progress, storeySection);
+            List<BIMObject3D> walls = BIMtoOSMUtility.transformBIMObjects(ifcModel, solution, BIMtoOSMCatalog.BIMObject.IfcWall, rawBIMData.getWallObjects(), buildingRotation, pool, progress, storeySection);
+            List<BIMObject3D> columns = BIMtoOSMUtility.transformBIMObjects(ifcModel, solution, BIMtoOSMCatalog.BIMObject.IfcColumn, rawBIMData.getColumnObjects(), buildingRotation, pool, progress, storeySection);
+//            List<BIMObject3D> doors = BIMtoOSMUtility.transformBIMObjects(ifcModel, solution, BIMtoOSMCatalog.BIMObject.IfcDoor, rawBIMData.getDoorObjects(), buildingRotation, pool, progress);
+//            List<BIMObject3D> windows = BIMtoOSMUtility.transformBIMObjects(ifcModel, solution, BIMtoOSMCatalog.BIMObject.IfcWindow, rawBIMData.getWindowObjects(), buildingRotation, pool, progress);
+            List<BIMObject3D> stairs = BIMtoOSMUtility.transformBIMObjects(ifcModel, solution, BIMtoOSMCatalog.BIMObject.IfcStair, rawBIMData.getStairObjects(), buildingRotation, pool, progress, storeySection);
+            transformedData.addAll(slabs);
+            transformedData.addAll(walls);
+            transformedData.addAll(columns);
+//            transformedData.addAll(doors);
+//            transformedData.addAll(windows);
+            transformedData.addAll(stairs);
+        } finally {
+            if (pool != null) pool.shutdown();
+        }
+        IfcPlacementCache.of(ifcModel).logReport();
+        IfcMappedGeometryCache.of(ifcModel).logReport();
+        Logging.info(String.format("%s-ExtractionReport: %d objects extracted in %d ms using %d thread(s)",
+                BIMtoOSMParser.class.getName(), transformedData.size(), System.currentTimeMillis() - start, extractionThreads));
         return transformedData;
     }
 
     /**
-     * Method packs prepared BIM data into OSM ways and nodes
+     * @return grid of shared nodes if MERGE_AT_PACK_TIME is configured, else null
+     */
+    private PackingGrid createPackingGrid() {
+        boolean mergeAtPackTime = optimizeOutputConfig.MERGE_AT_PACK_TIME && optimizeOutputConfig.MERGE_DISTANCE > 0.0;
+        return mergeAtPackTime ? new PackingGrid(optimizeOutputConfig.MERGE_DISTANCE) : null;
+    }
+
+    /**
+     * Method packs prepared BIM data into OSM ways and nodes. Objects with inner rings are packed into multipolygon
+     * relations holding the object tags. If a packing grid is given, vertices of the same level are quantised to the
+     * grid and vertices within the same grid cell share one node. Nodes of the grid packed before are shared as long
+     * as they are part of the data set and were not modified.
      *
      * @param preparedBIMData to transform to OSM data
-     * @return packed data as {@link DataSet}
+     * @param ds              data set to add packed data to
+     * @param storeyLevels    map of storey id and assigned level tag
+     * @param waysOfObjects   map to add packed ways per object id to or null
+     * @param packingGrid     grid of shared nodes or null if nodes are not merged at pack time
+     * @param progress        to report packed objects to
      */
-    private DataSet packIntoOSMData(ArrayList<BIMObject3D> preparedBIMData) {
+    private void packIntoOSMData(List<BIMObject3D> preparedBIMData, DataSet ds, Map<Integer, Integer> storeyLevels,
+                                 Map<Integer, List<Way>> waysOfObjects, PackingGrid packingGrid,
+                                 ImportProgress progress) {
+        long start = System.currentTimeMillis();
         ArrayList<Way> ways = new ArrayList<>();
         ArrayList<Node> nodes = new ArrayList<>();
-        ArrayList<Pair<Double, Integer>> levelIdentifier = extractAndIdentifyLevels();
+        ArrayList<Relation> relations = new ArrayList<>();
+        Set<Node> createdNodes = new HashSet<>();
+        Set<Node> packedNodes = new HashSet<>();
+        int vertices = 0;
 
         for (BIMObject3D object : preparedBIMData) {
-            int level = getLevelTag(object, levelIdentifier);
-
-            ArrayList<Node> tmpNodes = new ArrayList<>();
-            for (LatLon point : object.getGeodeticGeometryCoordinates()) {
-                Node n = new Node(point);
-                tmpNodes.add(n);
-            }
+            int level = getLevelTag(object, storeyLevels);
+            LongHashMap<Node> nodeGrid = packingGrid != null ? packingGrid.getNodeGrid(level) : null;
+
+            // each ring of object geometry is packed into its own way, rings of objects with holes become members
+            // of a multipolygon
+            CoordinateBuffer geometry = object.getGeodeticGeometryCoordinates();
+            Relation multipolygon = geometry.hasInnerRings() ? new Relation() : null;
+            List<Tag> tags = multipolygon != null ? getMemberTags(level) : getWayTags(object, level);
+            for (int ring = 0; ring < geometry.getRingCount(); ring++) {
+                ArrayList<Node> tmpNodes = new ArrayList<>();
+                Set<Node> ringNodes = new HashSet<>();
+                int ringStart = geometry.getRingStart(ring);
+                int ringEnd = geometry.getRingEnd(ring);
+                for (int i = ringStart; i < ringEnd; i++) {
+                    vertices++;
+                    LatLon point = new LatLon(geometry.getX(i), geometry.getY(i));
+                    if (nodeGrid == null) {
+                        tmpNodes.add(new Node(point));
+                        continue;
+                    }
+                    if (i == ringEnd - 1 && i > ringStart && geometry.getX(i) == geometry.getX(ringStart)
+                            && geometry.getY(i) == geometry.getY(ringStart)) {
+                        // closed ring ends with its first node
+                        tmpNodes.add(tmpNodes.get(0));
+                        continue;
+                    }
 
-            if (tmpNodes.size() < 2) continue;
+                    long key = packingGrid.getCellKey(point);
+                    Node n = key != PackingGrid.OUT_OF_GRID ? nodeGrid.get(key) : null;
+                    // nodes packed before are replaced if they were removed or edited meanwhile
+                    if (key != PackingGrid.OUT_OF_GRID && (n == null
+                            || !(createdNodes.contains(n) || (n.getDataSet() == ds && !n.isModified())))) {
+                        n = new Node(point);
+                        nodeGrid.put(key, n);
+                        createdNodes.add(n);
+                    }
+                    // out of grid vertices and vertices sharing a cell with another vertex of the same way are kept
+                    // unshared, like the merge pass does not merge nodes of the same way
+                    if (n == null || !ringNodes.add(n)) n = new Node(point);
+                    tmpNodes.add(n);
+                }
 
-            if (tmpNodes.get(0).lat() == tmpNodes.get(tmpNodes.size() - 1).lat() && tmpNodes.get(0).lon() == tmpNodes.get(tmpNodes.size() - 1).lon()) {
-                tmpNodes.remove(tmpNodes.size() - 1);
-                nodes.addAll(tmpNodes);
-                tmpNodes.add(tmpNodes.get(0));
-            } else {
-                nodes.addAll(tmpNodes);
+                if (tmpNodes.size() < 2) continue;
+
+                if (nodeGrid != null) {
+                    // shared nodes are packed once, nodes of the grid packed before are already part of ds, closed
+                    // rings already end with their first node
+                    tmpNodes.stream().filter(n -> n.getDataSet() == null).filter(packedNodes::add).forEach(nodes::add);
+                } else if (tmpNodes.get(0).lat() == tmpNodes.get(tmpNodes.size() - 1).lat() && tmpNodes.get(0).lon() == tmpNodes.get(tmpNodes.size() - 1).lon()) {
+                    tmpNodes.remove(tmpNodes.size() - 1);
+                    nodes.addAll(tmpNodes);
+                    tmpNodes.add(tmpNodes.get(0));
+                } else {
+                    nodes.addAll(tmpNodes);
+                }
+                Way w = new Way();
+                w.setNodes(tmpNodes);
+                tags.forEach(w::put);
+                ways.add(w);
+                if (multipolygon != null) {
+                    multipolygon.addMember(new RelationMember(geometry.isInnerRing(ring) ? "inner" : "outer", w));
+                }
+                if (waysOfObjects != null) waysOfObjects.computeIfAbsent(object.getId(), k -> new ArrayList<>()).add(w);
             }
-            Way w = new Way();
-            w.setNodes(tmpNodes);
-            getObjectTags(object).forEach(w::put);
-            if (level != DEFAULT_LEVEL) w.put(new Tag("level", Integer.toString(level)));
-            ways.add(w);
+            if (multipolygon != null && multipolygon.getMembersCount() > 0) {
+                multipolygon.put("type", "multipolygon");
+                getWayTags(object, level).forEach(multipolygon::put);
+                relations.add(multipolygon);
+            }
+            progress.advance(1);
         }
 
-        DataSet ds = new DataSet();
         nodes.forEach(ds::addPrimitive);
         ways.forEach(ds::addPrimitive);
-        return ds;
+        relations.forEach(ds::addPrimitive);
+        Logging.info(String.format("%s-PackReport: %d vertices packed into %d nodes, %d ways and %d relations in %d ms",
+                BIMtoOSMParser.class.getName(), vertices, nodes.size(), ways.size(), relations.size(),
+                System.currentTimeMillis() - start));
     }
 
     /**
-     * Method gets level tag of PreparedBIMObject3D
+     * Replaces bounding box geometry of objects in data set by body geometry. Objects are extracted in batches on
+     * the extraction pool, ways of each batch are swapped in one update on the event dispatch thread, so the data
+     * set can be edited meanwhile. Objects whose ways or nodes were modified or deleted are not refined.
+     * <p>
+     * All batches are packed into the packing grid of the bounding boxes, the output optimization runs once after
+     * the last batch. Body geometry of all objects is packed and optimized into a separate data set to be cached,
+     * so the cached result does not depend on edits during refinement.
      *
-     * @param object              to get level tag for
-     * @param levelIdentifierList with identified levels
-     * @return level
+     * @param ds            data set holding bounding box geometry, already passed to listener
+     * @param storeyLevels  map of storey id and assigned level tag
+     * @param waysOfObjects packed ways per object id
+     * @param packingGrid   grid of shared nodes used to pack ds or null if nodes are not merged at pack time
+     * @param cacheKey      of result, null if cache is not used
      */
-    private int getLevelTag(BIMObject3D object, ArrayList<Pair<Double, Integer>> levelIdentifierList) {
-        int level = DEFAULT_LEVEL;
+    private void refineGeometry(DataSet ds, Map<Integer, Integer> storeyLevels, Map<Integer, List<Way>> waysOfObjects,
+                                PackingGrid packingGrid, String cacheKey) {
+        long start = System.currentTimeMillis();
+        BIMDataCollection rawFilteredData = BIMtoOSMUtility.extractMajorBIMData(ifcModel);
+        AffineTransform3D buildingRotation = getBuildingRotation();
+        LatLon llBuildingOrigin = getLatLonBuildingOrigin(rawFilteredData.getIfcSite());
+        // without building rotation no geodetic coordinates are set, see prepareLoadedData
+        if (buildingRotation == null || llBuildingOrigin == null) return;
+
+        List<Pair<BIMtoOSMCatalog.BIMObject, List<EntityInstance>>> objectsByType = new ArrayList<>();
+        objectsByType.add(new Pair<>(BIMtoOSMCatalog.BIMObject.IfcSlab, rawFilteredData.getAreaObjects()));
+        objectsByType.add(new Pair<>(BIMtoOSMCatalog.BIMObject.IfcWall, rawFilteredData.getWallObjects()));
+        objectsByType.add(new Pair<>(BIMtoOSMCatalog.BIMObject.IfcColumn, rawFilteredData.getColumnObjects()));
+        objectsByType.add(new Pair<>(BIMtoOSMCatalog.BIMObject.IfcStair, rawFilteredData.getStairObjects()));
+        int total = objectsByType.stream().mapToInt(p -> p.b.size()).sum();
+        progress.beginStage(ImportProgress.Stage.REFINE, total);
+
+        Vector3D cartesianOrigin = new Vector3D(0.0, 0.0, 0.0);
+        ForkJoinPool pool = extractionThreads > 1 ? new ForkJoinPool(extractionThreads) : null;
+        IfcStoreySection storeySection = getStoreySection();
+        int extracted = 0;
+        int[] refined = {0};
+        List<BIMObject3D> refinedBodies = new ArrayList<>();
+        try {
+            for (Pair<BIMtoOSMCatalog.BIMObject, List<EntityInstance>> objects : objectsByType) {
+                for (int from = 0; from < objects.b.size(); from += REFINEMENT_BATCH_SIZE) {
+                    List<EntityInstance> batch = objects.b.subList(from, Math.min(from + REFINEMENT_BATCH_SIZE, objects.b.size()));
+                    List<BIMObject3D> bodies = BIMtoOSMUtility.transformBIMObjects(ifcModel,
+                            BIMtoOSMUtility.GeometrySolution.BODY, objects.a, batch, buildingRotation, pool, progress,
+                            storeySection);
+                    for (BIMObject3D body : bodies) {
+                        body.setGeodeticGeometryCoordinates(ParserGeoMath.cartesianToGeodetic(
+                                body.getCartesianGeometryCoordinates(), cartesianOrigin, llBuildingOrigin, lengthUnit));
+                    }
+                    GuiHelper.runInEDTAndWait(() -> refined[0] += swapGeometry(ds, bodies, storeyLevels, waysOfObjects, packingGrid));
+                    if (cacheKey != null) refinedBodies.addAll(bodies);
 
-        // get all IfcRelContainedInSpatialStructure elements
-        List<EntityInstance> relContainedInSpatialStructureElements = ifcModel.getInstancesOfType("IfcRelContainedInSpatialStructure");
+                    extracted += batch.size();
+                    importListener.onProcessStatusChanged(String.format("refining geometry %d/%d", extracted, total));
+                }
+            }
+        } finally {
+            if (pool != null) pool.shutdown();
+        }
+        if (optimizeOutput) {
+            importListener.onProcessStatusChanged("optimizing data");
+            GuiHelper.runInEDTAndWait(() -> optimizeRefinedData(ds));
+        }
+        Logging.info(String.format("%s-RefinementReport: %d of %d objects refined in %d ms",
+                BIMtoOSMParser.class.getName(), refined[0], total, System.currentTimeMillis() - start));
+
+        if (cacheKey != null) {
+            DataSet refinedOSMData = packAndOptimize(refinedBodies, storeyLevels, null, createPackingGrid(),
+                    ImportProgress.silent());
+            importListener.onProcessStatusChanged("caching data");
+            resultCache.store(cacheKey, refinedOSMData);
+        }
+    }
 
-        for (EntityInstance entity : relContainedInSpatialStructureElements) {
-            // for each element get contained entities
-            ArrayList<EntityInstance> containedElements = entity.getAttributeValueBNasEntityInstanceList("RelatedElements");
-
-            // check if object is part of contained entities
-            for (EntityInstance element : containedElements) {
-
-                if (element.getId() == object.getId()) {
-                    // if part of contained elements get Elevation entity from object
-                    EntityInstance relatingStructure = entity.getAttributeValueBNasEntityInstance("RelatingStructure");
-
-                    String relatingStructureType = IfcObjectIdentifier.getSpatialStructureElementType(ifcModel, relatingStructure);
-                    // get type of relatingStructure
-                    if (!relatingStructureType.equals(IfcSpatialStructureElementTypes.IfcBuildingStorey.name()))
-                        return 0;
-                    // if of type IfcBuildingStorey
-                    double storeyElevation = prepareDoubleString((String) relatingStructure.getAttributeValueBN("Elevation"));
-
-                    // get assigned level tag to Elevation entity
-                    for (Pair<Double, Integer> identifier : levelIdentifierList) {
-                        if (identifier.a == storeyElevation) {
-                            level = identifier.b;
-                            break;
-                        }
+    /**
+     * Optimizes refined data set. Data edited during refinement is not optimized, merges would change the edits.
+     *
+     * @param ds data set holding refined geometry
+     */
+    private void optimizeRefinedData(DataSet ds) {
+        if (!isUnchanged(ds, new ArrayList<>(ds.getWays()))) {
+            Logging.info(String.format("%s-RefinementReport: data edited during refinement, output optimization skipped",
+                    BIMtoOSMParser.class.getName()));
+            return;
+        }
+        OutputOptimizer.optimize(optimizeOutputConfig, ds);
+    }
+
+    /**
+     * Replaces ways of objects by ways of their body geometry in one update. Nodes used by replaced ways only are
+     * removed.
+     *
+     * @param ds            data set holding current geometry of objects
+     * @param bodies        objects holding body geometry
+     * @param storeyLevels  map of storey id and assigned level tag
+     * @param waysOfObjects current ways per object id, updated with the new ways
+     * @param packingGrid   grid of shared nodes used to pack ds or null if nodes are not merged at pack time
+     * @return number of refined objects
+     */
+    private int swapGeometry(DataSet ds, List<BIMObject3D> bodies, Map<Integer, Integer> storeyLevels,
+                             Map<Integer, List<Way>> waysOfObjects, PackingGrid packingGrid) {
+        List<BIMObject3D> swapped = new ArrayList<>();
+        ds.beginUpdate();
+        try {
+            for (BIMObject3D body : bodies) {
+                List<Way> ways = waysOfObjects.getOrDefault(body.getId(), Collections.emptyList());
+                if (!isUnchanged(ds, ways)) continue;
+
+                Set<Node> nodes = new HashSet<>();
+                for (Way way : ways) {
+                    for (Relation relation : getRelations(way)) {
+                        relation.setMembers(Collections.emptyList());
+                        ds.removePrimitive(relation);
                     }
                 }
+                for (Way way : ways) {
+                    nodes.addAll(way.getNodes());
+                    ds.removePrimitive(way);
+                }
+                for (Node node : nodes) {
+                    if (node.getDataSet() == ds && node.getReferrers().isEmpty()) ds.removePrimitive(node);
+                }
+                waysOfObjects.remove(body.getId());
+                swapped.add(body);
+            }
+            packIntoOSMData(swapped, ds, storeyLevels, waysOfObjects, packingGrid, ImportProgress.silent());
+        } finally {
+            ds.endUpdate();
+        }
+        return swapped.size();
+    }
+
+    /**
+     * @param ds   data set holding ways
+     * @param ways of one object
+     * @return true if ways, their nodes and relations are still part of data set and were not modified, else false
+     */
+    private boolean isUnchanged(DataSet ds, List<Way> ways) {
+        for (Way way : ways) {
+            if (way.getDataSet() != ds || way.isModified()) return false;
+            for (Relation relation : getRelations(way)) {
+                if (relation.getDataSet() != ds || relation.isModified()) return false;
+            }
+            for (Node node : way.getNodes()) {
+                if (node.getDataSet() != ds || node.isModified()) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param way to get relations for
+     * @return relations referring to way
+     */
+    private static List<Relation> getRelations(Way way) {
+        List<Relation> relations = new ArrayList<>();
+        for (OsmPrimitive referrer : way.getReferrers()) {
+            if (referrer instanceof Relation) relations.add((Relation) referrer);
+        }
+        return relations;
+    }
+
+    /**
+     * Method gets level tag of PreparedBIMObject3D
+     *
+     * @param object       to get level tag for
+     * @param storeyLevels map of storey id and assigned level tag
+     * @return level
+     */
+    private int getLevelTag(BIMObject3D object, Map<Integer, Integer> storeyLevels) {
+        EntityInstance relatingStructure = spatialStructureIndex.getSpatialStructure(object.getId());
+        if (relatingStructure == null) return DEFAULT_LEVEL;
 
+        // get type of relatingStructure
+        String relatingStructureType = IfcObjectIdentifier.getSpatialStructureElementType(ifcModel, relatingStructure);
+        if (!IfcSpatialStructureElementTypes.IfcBuildingStorey.name().equals(relatingStructureType)) return 0;
+
+        // get assigned level tag of storey
+        return storeyLevels.getOrDefault(relatingStructure.getId(), DEFAULT_LEVEL);
+    }
+
+    /**
+     * Method assigns level tags to storeys using the storey Elevation entity
+     *
+     * @param levelIdentifierList with identified levels
+     * @return map of storey id and assigned level tag
+     */
+    private Map<Integer, Integer> identifyStoreyLevels(ArrayList<Pair<Double, Integer>> levelIdentifierList) {
+        Map<Integer, Integer> storeyLevels = new HashMap<>();
+        for (EntityInstance storey : spatialStructureIndex.getStoreys()) {
+            double storeyElevation = prepareDoubleString((String) storey.getAttributeValueBN("Elevation"));
+            for (Pair<Double, Integer> identifier : levelIdentifierList) {
+                if (identifier.a == storeyElevation) {
+                    storeyLevels.put(storey.getId(), identifier.b);
+                    break;
+                }
             }
         }
-        return level;
+        return storeyLevels;
     }
 
     /**
@@ -462,32 +1225,39 @@ public class BIMtoOSMParser {
      */
     private void transformToGeodetic(LatLon llBuildingOrigin, ArrayList<BIMObject3D> preparedBIMData) {
         if (llBuildingOrigin != null) {
-
-            // get building rotation matrix
-            Vector3D projectNorth = getProjectNorth();
-            Vector3D trueNorth = getTrueNorth();
-            Matrix3D rotationMatrix = null;
-            if (projectNorth != null && trueNorth != null) {
-                double rotationAngle = trueNorth.angleBetween(projectNorth);
-                rotationMatrix = ParserMath.getRotationMatrixZ(rotationAngle);
-            }
-
-            if (rotationMatrix == null) return;
-
+            Vector3D cartesianOrigin = new Vector3D(0.0, 0.0, 0.0);
+            long points = 0;
+            long rings = 0;
+            long bufferBytes = 0;
             for (BIMObject3D object : preparedBIMData) {
-                ArrayList<LatLon> transformedCoordinates = new ArrayList<>();
-                for (Vector3D point : object.getCartesianGeometryCoordinates()) {
-                    // rotate point
-                    rotationMatrix.transform(point);
-                    // transform point
-                    LatLon llPoint = ParserGeoMath.cartesianToGeodetic(point, new Vector3D(0.0, 0.0, 0.0), llBuildingOrigin, lengthUnit);
-                    transformedCoordinates.add(llPoint);
-                }
-                object.setGeodeticGeometryCoordinates(transformedCoordinates);
+                // transform points, points are already rotated to building orientation
+                CoordinateBuffer cartesianCoordinates = object.getCartesianGeometryCoordinates();
+                CoordinateBuffer geodeticCoordinates = ParserGeoMath.cartesianToGeodetic(cartesianCoordinates, cartesianOrigin, llBuildingOrigin, lengthUnit);
+                object.setGeodeticGeometryCoordinates(geodeticCoordinates);
+
+                points += cartesianCoordinates.size();
+                rings += cartesianCoordinates.getRingCount();
+                bufferBytes += cartesianCoordinates.getAllocatedBytes() + geodeticCoordinates.getAllocatedBytes();
             }
+            // object lists would hold one Vector3D (~40 bytes) and one LatLon (~32 bytes) plus two references per point
+            Logging.info(String.format("%s-GeometryReport: %d points in %d rings, coordinate buffers %d KB, object lists ~%d KB",
+                    BIMtoOSMParser.class.getName(), points, rings, bufferBytes / 1024, points * (40 + 32 + 2 * 8) / 1024));
         }
     }
 
+    /**
+     * Gets rotation of building from project north to true north
+     *
+     * @return building rotation or null if project north or true north is not defined
+     */
+    private AffineTransform3D getBuildingRotation() {
+        Vector3D projectNorth = getProjectNorth();
+        Vector3D trueNorth = getTrueNorth();
+        if (projectNorth == null || trueNorth == null) return null;
+        double rotationAngle = trueNorth.angleBetween(projectNorth);
+        return new AffineTransform3D(ParserMath.getRotationMatrixZ(rotationAngle));
+    }
+
     /**
      * Method calculates the latlon coordinates of building origin corner
      *
@@ -583,6 +1353,15 @@ public class BIMtoOSMParser {
         return stringVectorToVector3D(trueNorthDirectionRatios);
     }
 
+    /**
+     * @return section planes of storeys, cut height converted to length unit of file
+     */
+    private IfcStoreySection getStoreySection() {
+        double unitsPerMetre = lengthUnit == IfcUnitCatalog.LengthUnit.MM ? 1000.0
+                : lengthUnit == IfcUnitCatalog.LengthUnit.CM ? 100.0 : 1.0;
+        return new IfcStoreySection(ifcModel, spatialStructureIndex, sectionCutHeight * unitsPerMetre);
+    }
+
     /**
      * Method sets length unit of file
      */
@@ -614,11 +1393,36 @@ public class BIMtoOSMParser {
     }
 
     /**
-     * Method get OSM tags describing BIM object
+     * Method get OSM tags of ways describing BIM object, includes level tag
      *
      * @param object to get OSM tags for
+     * @param level  level of object
      * @return OSM Tags as array
      */
+    private List<Tag> getWayTags(BIMObject3D object, int level) {
+        List<Tag> tags = new ArrayList<>(getObjectTags(object));
+        if (level != DEFAULT_LEVEL) tags.add(new Tag("level", Integer.toString(level)));
+        return tags;
+    }
+
+    /**
+     * Method get OSM tags of member ways of multipolygon describing BIM object, the object tags are put on the
+     * relation
+     *
+     * @param level level of object
+     * @return level tag or no tags for default level
+     */
+    private List<Tag> getMemberTags(int level) {
+        if (level == DEFAULT_LEVEL) return Collections.emptyList();
+        return Collections.singletonList(new Tag("level", Integer.toString(level)));
+    }
+
+    /**
+     * Gets tags of BIM object type
+     *
+     * @param object to get tags for
+     * @return tags
+     */
     private ArrayList<Tag> getObjectTags(BIMObject3D object) {
         if (object.getType().name().contains("Slab")) {
             return (ArrayList<Tag>) tagCatalog.getTags(TagCatalog.IndoorObject.ROOM);
@@ -673,7 +1477,7 @@ public class BIMtoOSMParser {
      */
     private void showErrorView(String msg) {
         Logging.error(msg.replaceAll("\n", " "));
-        if (!GraphicsEnvironment.isHeadless()) {
+        if (showErrorDialogs && !GraphicsEnvironment.isHeadless()) {
             SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(MainApplication.getMainFrame(),
                     msg,
                     tr("Error"),
@@ -681,4 +1485,46 @@ public class BIMtoOSMParser {
         }
     }
 
+    /**
+     * Grid of shared nodes per level. Grid step in degree equals merge distance along meridian, longitude step is
+     * scaled to the latitude of grid origin like in OutputOptimizer. Points are quantised relative to the first point
+     * to keep grid indices small.
+     */
+    private static class PackingGrid {
+        static final long OUT_OF_GRID = Long.MIN_VALUE;
+
+        private final double gridStep;
+        private double gridStepLon;
+        private LatLon gridOrigin;
+        private final Map<Integer, LongHashMap<Node>> nodeGrids = new HashMap<>();
+
+        PackingGrid(double mergeDistance) {
+            gridStep = mergeDistance / ParserGeoMath.getDistance(0.0, 0.0, 1.0, 0.0);
+            gridStepLon = gridStep;
+        }
+
+        /**
+         * @param level of nodes
+         * @return grid of shared nodes of level
+         */
+        LongHashMap<Node> getNodeGrid(int level) {
+            return nodeGrids.computeIfAbsent(level, k -> new LongHashMap<>());
+        }
+
+        /**
+         * @param point to quantise
+         * @return key of grid cell of point or {@link #OUT_OF_GRID} if point is out of grid
+         */
+        long getCellKey(LatLon point) {
+            if (gridOrigin == null) {
+                gridOrigin = point;
+                gridStepLon = gridStep / Math.max(Math.cos(Math.toRadians(gridOrigin.lat())), 1e-6);
+            }
+            long cellLat = Math.round((point.lat() - gridOrigin.lat()) / gridStep);
+            long cellLon = Math.round((point.lon() - gridOrigin.lon()) / gridStepLon);
+            // Integer.MIN_VALUE is excluded, so no cell key equals OUT_OF_GRID
+            if (Math.abs(cellLat) >= Integer.MAX_VALUE || Math.abs(cellLon) >= Integer.MAX_VALUE) return OUT_OF_GRID;
+            return (cellLat << 32) | (cellLon & 0xffffffffL);
+        }
+    }
 }
@@ -7,8 +7,6 @@ import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.Vector3D;
 import nl.tue.buildingsmart.express.population.EntityInstance;
 import org.openstreetmap.josm.data.coor.LatLon;
 
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Class holding OSM relevant data of 3D BIM object
@@ -22,9 +20,9 @@ public class BIMObject3D {
     private EntityInstance placementEntity;
     private EntityInstance representationEntity;
 
-    // object representation data
-    private List<Vector3D> cartesianGeometryCoordinates;
-    private List<LatLon> geodeticGeometryCoordinates;
+    // object representation data, geodetic coordinates stored as lat, lon, 0
+    private CoordinateBuffer cartesianGeometryCoordinates;
+    private CoordinateBuffer geodeticGeometryCoordinates;
 
     // transformation matrices
     private Vector3D translation;
@@ -32,8 +30,8 @@ public class BIMObject3D {
 
     public BIMObject3D(int id) {
         this.id = id;
-        cartesianGeometryCoordinates = new ArrayList<>();
-        geodeticGeometryCoordinates = new ArrayList<>();
+        cartesianGeometryCoordinates = new CoordinateBuffer();
+        geodeticGeometryCoordinates = new CoordinateBuffer();
         translation = new Vector3D();
         rotation = new Matrix3D();
         rotation.setIdentity();
@@ -43,11 +41,11 @@ public class BIMObject3D {
             int id,
             BIMtoOSMCatalog.BIMObject type,
             Vector3D cartesianOrigin,
-            List<Vector3D> shapeCoordinates) {
+            CoordinateBuffer shapeCoordinates) {
         this.id = id;
         this.type = type;
         cartesianGeometryCoordinates = shapeCoordinates;
-        geodeticGeometryCoordinates = new ArrayList<>();
+        geodeticGeometryCoordinates = new CoordinateBuffer();
         translation = cartesianOrigin;
         rotation = new Matrix3D();
         rotation.setIdentity();
@@ -98,11 +96,11 @@ public class BIMObject3D {
         throw new UnsupportedOperationException();
     }
 
-    public List<Vector3D> getCartesianGeometryCoordinates() {
+    public CoordinateBuffer getCartesianGeometryCoordinates() {
         return cartesianGeometryCoordinates;
     }
 
-    public void setCartesianGeometryCoordinates(List<Vector3D> cartesianGeometryCoordinates) {
+    public void setCartesianGeometryCoordinates(CoordinateBuffer cartesianGeometryCoordinates) {
         this.cartesianGeometryCoordinates = cartesianGeometryCoordinates;
     }
 
@@ -111,11 +109,11 @@ public class BIMObject3D {
         throw new UnsupportedOperationException();
     }
 
-    public List<LatLon> getGeodeticGeometryCoordinates() {
+    public CoordinateBuffer getGeodeticGeometryCoordinates() {
         return geodeticGeometryCoordinates;
     }
 
-    public void setGeodeticGeometryCoordinates(List<LatLon> geodeticGeometryCoordinates) {
+    public void setGeodeticGeometryCoordinates(CoordinateBuffer geodeticGeometryCoordinates) {
         this.geodeticGeometryCoordinates = geodeticGeometryCoordinates;
     }
 
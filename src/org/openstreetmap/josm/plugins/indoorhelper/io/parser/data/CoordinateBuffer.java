@@ -0,0 +1,262 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.parser.data;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.AffineTransform3D;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.Vector3D;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Class holding coordinates of object shape packed into primitive arrays. Points are stored as x, y, z triples,
+ * shapes consisting of multiple rings (e.g. faces of a Brep) are separated by ring offsets. Rings marked as inner rings
+ * are holes of the preceding outer ring.
+ */
+public class CoordinateBuffer {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // x, y, z of each point
+    private double[] coordinates;
+    private int size;
+    // index of first point of each ring
+    private int[] ringOffsets;
+    private int ringCount;
+    // true if next point will be added to last ring
+    private boolean ringOpen;
+    // indices of rings which are holes of preceding outer ring
+    private final BitSet innerRings = new BitSet();
+
+    public CoordinateBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param capacity initial number of points
+     */
+    public CoordinateBuffer(int capacity) {
+        coordinates = new double[Math.max(capacity, 1) * 3];
+        ringOffsets = new int[4];
+    }
+
+    public CoordinateBuffer(CoordinateBuffer buffer) {
+        coordinates = Arrays.copyOf(buffer.coordinates, Math.max(buffer.size, 1) * 3);
+        size = buffer.size;
+        ringOffsets = Arrays.copyOf(buffer.ringOffsets, Math.max(buffer.ringCount, 1));
+        ringCount = buffer.ringCount;
+        ringOpen = buffer.ringOpen;
+        innerRings.or(buffer.innerRings);
+    }
+
+    /**
+     * Adds point to current ring. Starts a new ring if the last ring was closed.
+     *
+     * @param x coordinate
+     * @param y coordinate
+     * @param z coordinate
+     */
+    public void add(double x, double y, double z) {
+        if (!ringOpen) {
+            if (ringCount == ringOffsets.length) ringOffsets = Arrays.copyOf(ringOffsets, ringCount * 2);
+            ringOffsets[ringCount++] = size;
+            ringOpen = true;
+        }
+        if (size * 3 == coordinates.length) coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+        coordinates[size * 3] = x;
+        coordinates[size * 3 + 1] = y;
+        coordinates[size * 3 + 2] = z;
+        size++;
+    }
+
+    /**
+     * Adds point to current ring. Starts a new ring if the last ring was closed.
+     *
+     * @param point to add
+     */
+    public void add(Vector3D point) {
+        add(point.getX(), point.getY(), point.getZ());
+    }
+
+    /**
+     * Adds all points of param buffer to current ring, ignoring ring boundaries of param buffer
+     *
+     * @param buffer to get points from
+     */
+    public void addPoints(CoordinateBuffer buffer) {
+        for (int i = 0; i < buffer.size; i++) {
+            add(buffer.getX(i), buffer.getY(i), buffer.getZ(i));
+        }
+    }
+
+    /**
+     * Adds all rings of param buffer as new rings
+     *
+     * @param buffer to get rings from
+     */
+    public void addRings(CoordinateBuffer buffer) {
+        for (int ring = 0; ring < buffer.ringCount; ring++) {
+            closeRing();
+            for (int i = buffer.getRingStart(ring); i < buffer.getRingEnd(ring); i++) {
+                add(buffer.getX(i), buffer.getY(i), buffer.getZ(i));
+            }
+            if (buffer.isInnerRing(ring)) markInnerRing();
+        }
+        closeRing();
+    }
+
+    /**
+     * Closes current ring, the next added point starts a new ring
+     */
+    public void closeRing() {
+        ringOpen = false;
+    }
+
+    /**
+     * Marks last ring as inner ring, a hole of the preceding outer ring
+     */
+    public void markInnerRing() {
+        if (ringCount > 0) innerRings.set(ringCount - 1);
+    }
+
+    /**
+     * Checks if ring is an inner ring
+     *
+     * @param ring index of ring
+     * @return true if ring is a hole of the preceding outer ring, else false
+     */
+    public boolean isInnerRing(int ring) {
+        return innerRings.get(ring);
+    }
+
+    /**
+     * @return true if any ring is marked as inner ring, else false
+     */
+    public boolean hasInnerRings() {
+        return !innerRings.isEmpty();
+    }
+
+    /**
+     * Sets coordinates of point
+     *
+     * @param index of point
+     * @param x     coordinate
+     * @param y     coordinate
+     * @param z     coordinate
+     */
+    public void set(int index, double x, double y, double z) {
+        coordinates[index * 3] = x;
+        coordinates[index * 3 + 1] = y;
+        coordinates[index * 3 + 2] = z;
+    }
+
+    /**
+     * Transforms all points using the given transformation
+     *
+     * @param transform affine transformation
+     */
+    public void transform(AffineTransform3D transform) {
+        Vector3D point = new Vector3D();
+        for (int i = 0; i < size; i++) {
+            point.setX(coordinates[i * 3]);
+            point.setY(coordinates[i * 3 + 1]);
+            point.setZ(coordinates[i * 3 + 2]);
+            transform.transform(point);
+            set(i, point.getX(), point.getY(), point.getZ());
+        }
+    }
+
+    /**
+     * Checks if buffer contains point
+     *
+     * @param x coordinate
+     * @param y coordinate
+     * @param z coordinate
+     * @return true if buffer contains point, else false
+     */
+    public boolean contains(double x, double y, double z) {
+        for (int i = 0; i < size; i++) {
+            if (Math.abs(coordinates[i * 3] - x) <= .0000001 &&
+                    Math.abs(coordinates[i * 3 + 1] - y) <= .0000001 &&
+                    Math.abs(coordinates[i * 3 + 2] - z) <= .0000001) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public double getX(int index) {
+        return coordinates[index * 3];
+    }
+
+    public double getY(int index) {
+        return coordinates[index * 3 + 1];
+    }
+
+    public double getZ(int index) {
+        return coordinates[index * 3 + 2];
+    }
+
+    /**
+     * Gets point as new {@link Vector3D}
+     *
+     * @param index of point
+     * @return point
+     */
+    public Vector3D get(int index) {
+        return new Vector3D(getX(index), getY(index), getZ(index));
+    }
+
+    /**
+     * Gets number of points
+     *
+     * @return number of points
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets number of rings
+     *
+     * @return number of rings
+     */
+    public int getRingCount() {
+        return ringCount;
+    }
+
+    /**
+     * Gets index of first point of ring
+     *
+     * @param ring index of ring
+     * @return index of first point
+     */
+    public int getRingStart(int ring) {
+        return ringOffsets[ring];
+    }
+
+    /**
+     * Gets index after last point of ring
+     *
+     * @param ring index of ring
+     * @return index after last point
+     */
+    public int getRingEnd(int ring) {
+        return ring + 1 < ringCount ? ringOffsets[ring + 1] : size;
+    }
+
+    /**
+     * Gets number of bytes allocated by this buffer
+     *
+     * @return allocated bytes
+     */
+    public long getAllocatedBytes() {
+        return (long) coordinates.length * Double.BYTES + (long) ringOffsets.length * Integer.BYTES
+                + innerRings.size() / Byte.SIZE;
+    }
+}
@@ -73,10 +73,11 @@ public class IfcRepresentationCatalog {
     }
 
     /**
-     * Permitted IfcShapeRepresentation.Items types for IfcShapeRepresentation.RepresentationTypes Tesselation
+     * Permitted IfcShapeRepresentation.Items types for IfcShapeRepresentation.RepresentationTypes Tesselation.
+     * Includes supertypes
      */
     public enum TessellationRepresentationTypeItems {
-        IfcTessellatedFaceSet
+        IfcTessellatedFaceSet, IfcTriangulatedFaceSet, IfcPolygonalFaceSet
     }
 
     /**
@@ -118,6 +119,20 @@ public class IfcRepresentationCatalog {
         IfcShapeProfileDef, IfcArbitraryClosedProfileDef
     }
 
+    /**
+     * Faces of IfcPolygonalFaceSet. Includes supertypes
+     */
+    public enum IndexedPolygonalFaceTypeItems {
+        IfcIndexedPolygonalFace, IfcIndexedPolygonalFaceWithVoids
+    }
+
+    /**
+     * Types of IfcMappedItem.MappingTarget. Includes supertypes
+     */
+    public enum CartesianTransformationOperatorTypeItems {
+        IfcCartesianTransformationOperator3D, IfcCartesianTransformationOperator3DnonUniform
+    }
+
     public enum Axis2PlacementRepresentationTypeItems {
         IfcAxis2Placement2D, IfcAxis2Placement3D
     }
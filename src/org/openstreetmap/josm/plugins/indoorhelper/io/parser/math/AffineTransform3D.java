@@ -0,0 +1,186 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.parser.math;
+
+/**
+ * Class provides 3D affine transformation, a 4x4 matrix with implicit last row (0, 0, 0, 1).
+ * Combines rotation and translation, so points are transformed by a single operation.
+ */
+public class AffineTransform3D {
+
+    private double m00;
+    private double m01;
+    private double m02;
+    private double m03;
+    private double m10;
+    private double m11;
+    private double m12;
+    private double m13;
+    private double m20;
+    private double m21;
+    private double m22;
+    private double m23;
+
+    /**
+     * Creates identity transformation
+     */
+    public AffineTransform3D() {
+        setIdentity();
+    }
+
+    /**
+     * Creates transformation rotating points
+     *
+     * @param rotation matrix
+     */
+    public AffineTransform3D(Matrix3D rotation) {
+        this(rotation, new Vector3D());
+    }
+
+    /**
+     * Creates transformation rotating points first, translating them afterwards
+     *
+     * @param rotation    matrix
+     * @param translation vector
+     */
+    public AffineTransform3D(Matrix3D rotation, Vector3D translation) {
+        this.m00 = rotation.getM00();
+        this.m01 = rotation.getM01();
+        this.m02 = rotation.getM02();
+        this.m03 = translation.getX();
+        this.m10 = rotation.getM10();
+        this.m11 = rotation.getM11();
+        this.m12 = rotation.getM12();
+        this.m13 = translation.getY();
+        this.m20 = rotation.getM20();
+        this.m21 = rotation.getM21();
+        this.m22 = rotation.getM22();
+        this.m23 = translation.getZ();
+    }
+
+    public AffineTransform3D(AffineTransform3D transform) {
+        set(transform);
+    }
+
+    /**
+     * Sets this transformation to identity
+     */
+    public void setIdentity() {
+        this.m00 = 1.0;
+        this.m01 = 0.0;
+        this.m02 = 0.0;
+        this.m03 = 0.0;
+
+        this.m10 = 0.0;
+        this.m11 = 1.0;
+        this.m12 = 0.0;
+        this.m13 = 0.0;
+
+        this.m20 = 0.0;
+        this.m21 = 0.0;
+        this.m22 = 1.0;
+        this.m23 = 0.0;
+    }
+
+    /**
+     * Sets values of this transformation to values from param transformation
+     *
+     * @param transform to get values from
+     */
+    public void set(AffineTransform3D transform) {
+        this.m00 = transform.m00;
+        this.m01 = transform.m01;
+        this.m02 = transform.m02;
+        this.m03 = transform.m03;
+        this.m10 = transform.m10;
+        this.m11 = transform.m11;
+        this.m12 = transform.m12;
+        this.m13 = transform.m13;
+        this.m20 = transform.m20;
+        this.m21 = transform.m21;
+        this.m22 = transform.m22;
+        this.m23 = transform.m23;
+    }
+
+    /**
+     * Sets the values of this transformation to multiply result of this transformation with param transformation.
+     * The resulting transformation applies param transformation first, this transformation afterwards.
+     *
+     * @param transform to multiply
+     */
+    public void multiply(AffineTransform3D transform) {
+        double n00 = this.m00 * transform.m00 + this.m01 * transform.m10 + this.m02 * transform.m20;
+        double n01 = this.m00 * transform.m01 + this.m01 * transform.m11 + this.m02 * transform.m21;
+        double n02 = this.m00 * transform.m02 + this.m01 * transform.m12 + this.m02 * transform.m22;
+        double n03 = this.m00 * transform.m03 + this.m01 * transform.m13 + this.m02 * transform.m23 + this.m03;
+
+        double n10 = this.m10 * transform.m00 + this.m11 * transform.m10 + this.m12 * transform.m20;
+        double n11 = this.m10 * transform.m01 + this.m11 * transform.m11 + this.m12 * transform.m21;
+        double n12 = this.m10 * transform.m02 + this.m11 * transform.m12 + this.m12 * transform.m22;
+        double n13 = this.m10 * transform.m03 + this.m11 * transform.m13 + this.m12 * transform.m23 + this.m13;
+
+        double n20 = this.m20 * transform.m00 + this.m21 * transform.m10 + this.m22 * transform.m20;
+        double n21 = this.m20 * transform.m01 + this.m21 * transform.m11 + this.m22 * transform.m21;
+        double n22 = this.m20 * transform.m02 + this.m21 * transform.m12 + this.m22 * transform.m22;
+        this.m23 = this.m20 * transform.m03 + this.m21 * transform.m13 + this.m22 * transform.m23 + this.m23;
+
+        this.m00 = n00;
+        this.m01 = n01;
+        this.m02 = n02;
+        this.m03 = n03;
+
+        this.m10 = n10;
+        this.m11 = n11;
+        this.m12 = n12;
+        this.m13 = n13;
+
+        this.m20 = n20;
+        this.m21 = n21;
+        this.m22 = n22;
+    }
+
+    /**
+     * Sets this transformation to its inverse, rotation part must be invertible
+     */
+    public void invert() {
+        Matrix3D rotation = getRotation();
+        rotation.invert();
+        Vector3D translation = getTranslation();
+        rotation.transform(translation);
+        translation.scale(-1.0);
+        set(new AffineTransform3D(rotation, translation));
+    }
+
+    /**
+     * Transforms param point using this transformation
+     *
+     * @param point to transform
+     */
+    public void transform(Vector3D point) {
+        double x = this.m00 * point.getX() + this.m01 * point.getY() + this.m02 * point.getZ() + this.m03;
+        double y = this.m10 * point.getX() + this.m11 * point.getY() + this.m12 * point.getZ() + this.m13;
+        point.setZ(this.m20 * point.getX() + this.m21 * point.getY() + this.m22 * point.getZ() + this.m23);
+        point.setX(x);
+        point.setY(y);
+    }
+
+    /**
+     * Gets rotation part of this transformation
+     *
+     * @return rotation matrix
+     */
+    public Matrix3D getRotation() {
+        return new Matrix3D(
+                m00, m01, m02,
+                m10, m11, m12,
+                m20, m21, m22);
+    }
+
+    /**
+     * Gets translation part of this transformation
+     *
+     * @return translation vector
+     */
+    public Vector3D getTranslation() {
+        return new Vector3D(m03, m13, m23);
+    }
+}
@@ -0,0 +1,236 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.parser.math;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.CoordinateBuffer;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.LongHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Outline of an indexed face mesh projected to the xy-plane, computed in linear time of the number of edges.
+ * <p>
+ * Only faces which are counter-clockwise seen from above are added, for a closed mesh these are the faces covering
+ * the footprint from above (or from below if the mesh is oriented inwards). Edges shared by two added faces cancel
+ * out, the remaining edges are joined into rings: outer rings counter-clockwise, inner rings clockwise. Inner rings
+ * follow the smallest outer ring containing them and are marked as inner rings. Surfaces at different heights
+ * overlapping in projection result in overlapping rings.
+ * <p>
+ * Vertices with equal xy coordinates in float precision are merged, so meshes with duplicated vertices per face
+ * share their edges anyway.
+ */
+public class MeshOutline {
+
+    private final double[] coordinates;
+    // index of first vertex with equal projected position for every vertex
+    private final int[] mergedVertices;
+
+    // directed edges of added faces, edge counts by key (from << 32 | to)
+    private final LongHashMap<int[]> edgeCounts;
+    private long[] edgeKeys = new long[64];
+    private int edgeCount;
+    private boolean lastFaceAdded;
+
+    /**
+     * Constructor
+     *
+     * @param coordinates x, y and z coordinate of each vertex
+     * @param vertexCount number of vertices
+     */
+    public MeshOutline(double[] coordinates, int vertexCount) {
+        this.coordinates = coordinates;
+        mergedVertices = new int[vertexCount];
+        // open addressing table of projected positions, slot holds vertex index + 1 or 0 if empty
+        int capacity = Integer.highestOneBit(Math.max(vertexCount, 2) * 2 - 1) << 1;
+        long[] positions = new long[capacity];
+        int[] slots = new int[capacity];
+        for (int i = 0; i < vertexCount; i++) {
+            long key = ((long) Float.floatToIntBits((float) coordinates[i * 3] + 0.0f) << 32)
+                    | (Float.floatToIntBits((float) coordinates[i * 3 + 1] + 0.0f) & 0xffffffffL);
+            long h = key * 0x9E3779B97F4A7C15L;
+            int index = (int) (h ^ (h >>> 32)) & (capacity - 1);
+            while (slots[index] != 0 && positions[index] != key) {
+                index = (index + 1) & (capacity - 1);
+            }
+            if (slots[index] == 0) {
+                positions[index] = key;
+                slots[index] = i + 1;
+            }
+            mergedVertices[i] = slots[index] - 1;
+        }
+        edgeCounts = new LongHashMap<>(vertexCount * 2);
+    }
+
+    /**
+     * Adds face if it is counter-clockwise seen from above
+     *
+     * @param indices array holding vertex indices of outer bound of face
+     * @param start   index of first vertex index of face
+     * @param count   number of vertices of face
+     * @return true if face was added, else false
+     */
+    public boolean addFace(int[] indices, int start, int count) {
+        double area = 0.0;
+        for (int i = 0; i < count; i++) {
+            int a = indices[start + i] * 3;
+            int b = indices[start + (i + 1) % count] * 3;
+            area += coordinates[a] * coordinates[b + 1] - coordinates[b] * coordinates[a + 1];
+        }
+        lastFaceAdded = area > 0.0;
+        if (lastFaceAdded) addLoop(indices, start, count);
+        return lastFaceAdded;
+    }
+
+    /**
+     * Adds inner bound of last face, ignored if last face was not added
+     *
+     * @param indices array holding vertex indices of inner bound
+     * @param start   index of first vertex index of inner bound
+     * @param count   number of vertices of inner bound
+     */
+    public void addInnerLoop(int[] indices, int start, int count) {
+        if (lastFaceAdded) addLoop(indices, start, count);
+    }
+
+    private void addLoop(int[] indices, int start, int count) {
+        for (int i = 0; i < count; i++) {
+            int from = mergedVertices[indices[start + i]];
+            int to = mergedVertices[indices[start + (i + 1) % count]];
+            if (from == to) continue;
+
+            // edge of neighbouring face in opposite direction cancels out
+            int[] reverse = edgeCounts.get(getEdgeKey(to, from));
+            if (reverse != null && reverse[0] > 0) {
+                reverse[0]--;
+                continue;
+            }
+            long key = getEdgeKey(from, to);
+            int[] edge = edgeCounts.get(key);
+            if (edge == null) {
+                edge = new int[1];
+                edgeCounts.put(key, edge);
+                if (edgeCount == edgeKeys.length) edgeKeys = Arrays.copyOf(edgeKeys, edgeCount * 2);
+                edgeKeys[edgeCount++] = key;
+            }
+            edge[0]++;
+        }
+    }
+
+    /**
+     * Joins remaining edges into rings
+     *
+     * @return closed rings of outline, each outer ring followed by its inner rings
+     */
+    public CoordinateBuffer getOutline() {
+        // outgoing edges of every vertex as linked lists
+        int[] from = new int[edgeCount];
+        int[] to = new int[edgeCount];
+        int[] nextOutgoing = new int[edgeCount];
+        int[] firstOutgoing = new int[mergedVertices.length];
+        Arrays.fill(firstOutgoing, -1);
+        int remaining = 0;
+        for (int i = 0; i < edgeCount; i++) {
+            int count = edgeCounts.get(edgeKeys[i])[0];
+            for (int j = 0; j < count; j++) {
+                if (remaining == from.length) {
+                    from = Arrays.copyOf(from, remaining * 2);
+                    to = Arrays.copyOf(to, remaining * 2);
+                    nextOutgoing = Arrays.copyOf(nextOutgoing, remaining * 2);
+                }
+                from[remaining] = (int) (edgeKeys[i] >>> 32);
+                to[remaining] = (int) edgeKeys[i];
+                nextOutgoing[remaining] = firstOutgoing[from[remaining]];
+                firstOutgoing[from[remaining]] = remaining;
+                remaining++;
+            }
+        }
+
+        List<CoordinateBuffer> rings = new ArrayList<>();
+        boolean[] used = new boolean[remaining];
+        for (int edge = 0; edge < remaining; edge++) {
+            if (used[edge]) continue;
+            int start = from[edge];
+            CoordinateBuffer ring = new CoordinateBuffer();
+            int current = edge;
+            while (current >= 0) {
+                used[current] = true;
+                addVertex(ring, from[current]);
+                if (to[current] == start) break;
+                current = takeOutgoing(to[current], firstOutgoing, nextOutgoing, used);
+            }
+
+            if (ring.size() < 3) continue;
+            addVertex(ring, start);
+            rings.add(ring);
+        }
+        return assignInnerRings(rings, remaining + 16);
+    }
+
+    /**
+     * Writes counter-clockwise rings each followed by the clockwise rings it contains. Clockwise rings not contained
+     * by any counter-clockwise ring are kept as outer rings.
+     */
+    private static CoordinateBuffer assignInnerRings(List<CoordinateBuffer> rings, int capacity) {
+        double[] areas = new double[rings.size()];
+        for (int i = 0; i < rings.size(); i++) {
+            areas[i] = PolygonClipper.getSignedArea(rings.get(i), 0);
+        }
+
+        // inner ring belongs to smallest outer ring containing it
+        int[] parents = new int[rings.size()];
+        Arrays.fill(parents, -1);
+        for (int inner = 0; inner < rings.size(); inner++) {
+            if (areas[inner] >= 0.0) continue;
+            // midpoint of first edge is inside of outer ring unless rings touch along that edge
+            CoordinateBuffer ring = rings.get(inner);
+            double px = (ring.getX(0) + ring.getX(1)) / 2.0;
+            double py = (ring.getY(0) + ring.getY(1)) / 2.0;
+            for (int outer = 0; outer < rings.size(); outer++) {
+                if (areas[outer] > 0.0 && (parents[inner] == -1 || areas[outer] < areas[parents[inner]])
+                        && contains(rings.get(outer), px, py)) {
+                    parents[inner] = outer;
+                }
+            }
+        }
+
+        CoordinateBuffer outline = new CoordinateBuffer(capacity);
+        for (int outer = 0; outer < rings.size(); outer++) {
+            if (parents[outer] != -1) continue;
+            outline.addRings(rings.get(outer));
+            for (int inner = 0; inner < rings.size(); inner++) {
+                if (parents[inner] != outer) continue;
+                outline.addRings(rings.get(inner));
+                outline.markInnerRing();
+            }
+        }
+        return outline;
+    }
+
+    private static boolean contains(CoordinateBuffer ring, double px, double py) {
+        boolean inside = false;
+        for (int i = 0, j = ring.size() - 1; i < ring.size(); j = i++) {
+            double xi = ring.getX(i);
+            double yi = ring.getY(i);
+            if ((yi > py) != (ring.getY(j) > py) && px < (ring.getX(j) - xi) * (py - yi) / (ring.getY(j) - yi) + xi) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    private static int takeOutgoing(int vertex, int[] firstOutgoing, int[] nextOutgoing, boolean[] used) {
+        int edge = firstOutgoing[vertex];
+        while (edge >= 0 && used[edge]) edge = nextOutgoing[edge];
+        firstOutgoing[vertex] = edge >= 0 ? nextOutgoing[edge] : -1;
+        return edge;
+    }
+
+    private void addVertex(CoordinateBuffer ring, int vertex) {
+        ring.add(coordinates[vertex * 3], coordinates[vertex * 3 + 1], coordinates[vertex * 3 + 2]);
+    }
+
+    private static long getEdgeKey(int from, int to) {
+        return ((long) from << 32) | (to & 0xffffffffL);
+    }
+}
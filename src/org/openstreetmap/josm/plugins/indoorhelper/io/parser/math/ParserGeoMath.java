@@ -1,6 +1,7 @@
 // License: AGPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.indoorhelper.io.parser.math;
 
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.CoordinateBuffer;
 import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.ifc.IfcUnitCatalog;
 import org.openstreetmap.gui.jmapviewer.OsmMercator;
 import org.openstreetmap.josm.data.coor.LatLon;
@@ -21,14 +22,55 @@ public class ParserGeoMath {
      * @return latlon of cartesian point
      */
     public static LatLon cartesianToGeodetic(Vector3D cartesianPoint, Vector3D cartesianOrigin, LatLon latLonOfCartesianOrigin, IfcUnitCatalog.LengthUnit cartesianUnit) {
-        // TODO improve the way of transformation - clean up this method
-        double originCartX = cartesianOrigin.getX();
-        double originCartY = cartesianOrigin.getY();
+        double[] latLon = new double[2];
+        cartesianToGeodetic(cartesianPoint.getX(), cartesianPoint.getY(), cartesianOrigin.getX(), cartesianOrigin.getY(),
+                Math.toRadians(latLonOfCartesianOrigin.lat()), Math.toRadians(latLonOfCartesianOrigin.lon()), cartesianUnit, latLon);
+        return new LatLon(latLon[0], latLon[1]);
+    }
+
+    /**
+     * Method transforms all cartesian points of buffer to latlon points with given latlon origin coordinate
+     * (latlon for cartesian 0.0/0.0) and cartesian unit like m or cm. Rings of cartesian buffer and their inner ring
+     * marks are kept.
+     *
+     * @param cartesianPoints         to translate to latlon
+     * @param cartesianOrigin         cartesian representation of latLonOfCartesianOrigin
+     * @param latLonOfCartesianOrigin latlon of cartesian origin (0.0/0.0)
+     * @param cartesianUnit           m or cm
+     * @return buffer holding lat, lon, 0.0 of each cartesian point
+     */
+    public static CoordinateBuffer cartesianToGeodetic(CoordinateBuffer cartesianPoints, Vector3D cartesianOrigin, LatLon latLonOfCartesianOrigin, IfcUnitCatalog.LengthUnit cartesianUnit) {
+        CoordinateBuffer geodeticPoints = new CoordinateBuffer(cartesianPoints.size());
         double originLat = Math.toRadians(latLonOfCartesianOrigin.lat());
         double originLon = Math.toRadians(latLonOfCartesianOrigin.lon());
-        double pointX = cartesianPoint.getX();
-        double pointY = cartesianPoint.getY();
+        double[] latLon = new double[2];
+        for (int ring = 0; ring < cartesianPoints.getRingCount(); ring++) {
+            for (int i = cartesianPoints.getRingStart(ring); i < cartesianPoints.getRingEnd(ring); i++) {
+                cartesianToGeodetic(cartesianPoints.getX(i), cartesianPoints.getY(i), cartesianOrigin.getX(), cartesianOrigin.getY(),
+                        originLat, originLon, cartesianUnit, latLon);
+                geodeticPoints.add(latLon[0], latLon[1], 0.0);
+            }
+            geodeticPoints.closeRing();
+            if (cartesianPoints.isInnerRing(ring)) geodeticPoints.markInnerRing();
+        }
+        return geodeticPoints;
+    }
 
+    /**
+     * Method transforms cartesian point to latlon point
+     *
+     * @param pointX        x of cartesian point
+     * @param pointY        y of cartesian point
+     * @param originCartX   x of cartesian origin
+     * @param originCartY   y of cartesian origin
+     * @param originLat     latitude of cartesian origin in radians
+     * @param originLon     longitude of cartesian origin in radians
+     * @param cartesianUnit m or cm
+     * @param latLon        array to store latitude and longitude of point in degrees
+     */
+    private static void cartesianToGeodetic(double pointX, double pointY, double originCartX, double originCartY,
+                                            double originLat, double originLon, IfcUnitCatalog.LengthUnit cartesianUnit, double[] latLon) {
+        // TODO improve the way of transformation - clean up this method
         // get bearing
         double bearing = Math.atan2(pointY - originCartY, pointX - originCartX);
         bearing = Math.toRadians(90.0) - bearing;
@@ -51,7 +93,8 @@ public class ParserGeoMath {
                         Math.sin(bearing) * Math.sin(d / OsmMercator.EARTH_RADIUS) * Math.cos(originLat),
                         Math.cos(d / OsmMercator.EARTH_RADIUS) - Math.sin(originLat) * Math.sin(pointLat));
 
-        return new LatLon(Math.toDegrees(pointLat), Math.toDegrees(pointLon));
+        latLon[0] = Math.toDegrees(pointLat);
+        latLon[1] = Math.toDegrees(pointLon);
     }
 
     public static double degreeMinutesSecondsToLatLon(double degrees, double minutes, double seconds) {
@@ -0,0 +1,301 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.parser.math;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.CoordinateBuffer;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.LongHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Section of a closed faceted shell with a plane. Each face crossing the plane contributes its segments on the plane,
+ * segments of all faces are joined at their common end points into closed rings.
+ * <p>
+ * Vertices lying exactly on the plane are treated as above the plane, so faces only touching the plane do not
+ * contribute segments. Crossing points of an edge are computed the same way for both faces sharing the edge, which
+ * makes end points of adjacent segments equal and allows joining them by hash.
+ */
+public class PlaneSection {
+
+    private final Vector3D normal;
+    private final double offset;
+
+    /**
+     * Creates plane of all points p with normal·p = offset
+     *
+     * @param normal of plane, not necessarily normalized
+     * @param offset of plane along normal
+     */
+    public PlaneSection(Vector3D normal, double offset) {
+        this.normal = new Vector3D(normal);
+        this.offset = offset;
+    }
+
+    public Vector3D getNormal() {
+        return new Vector3D(normal);
+    }
+
+    public double getOffset() {
+        return offset;
+    }
+
+    /**
+     * Gets a parallel plane intersecting faces. If this plane lies between lowest and highest vertex of faces,
+     * this plane is returned, else the plane halfway between them.
+     *
+     * @param faces to intersect
+     * @return plane intersecting faces or this plane if faces are empty
+     */
+    public PlaneSection within(List<CoordinateBuffer> faces) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (CoordinateBuffer face : faces) {
+            for (int i = 0; i < face.size(); i++) {
+                double value = getValue(face, i);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        if (min > max || (offset > min && offset <= max)) return this;
+        return new PlaneSection(normal, (min + max) / 2.0);
+    }
+
+    /**
+     * Computes section of faces with this plane
+     *
+     * @param faces of closed shell, bounds of each face as rings
+     * @return closed rings of section, holes follow the ring enclosing them and are marked as inner rings
+     */
+    public CoordinateBuffer intersect(List<CoordinateBuffer> faces) {
+        // segments of section, 6 coordinates each
+        double[] segments = new double[64];
+        int segmentCount = 0;
+        double[] crossings = new double[24];
+        for (CoordinateBuffer face : faces) {
+            int crossingCount = 0;
+            for (int ring = 0; ring < face.getRingCount(); ring++) {
+                int ringStart = face.getRingStart(ring);
+                int ringEnd = face.getRingEnd(ring);
+                for (int i = ringStart; i < ringEnd; i++) {
+                    int next = i + 1 < ringEnd ? i + 1 : ringStart;
+                    double value = getValue(face, i) - offset;
+                    double nextValue = getValue(face, next) - offset;
+                    if ((value >= 0.0) == (nextValue >= 0.0)) continue;
+
+                    if (crossingCount * 3 == crossings.length) crossings = Arrays.copyOf(crossings, crossings.length * 2);
+                    // interpolate from vertex below to vertex above, equal for both faces of edge
+                    if (value < 0.0) {
+                        setCrossing(face, i, value, next, nextValue, crossings, crossingCount++);
+                    } else {
+                        setCrossing(face, next, nextValue, i, value, crossings, crossingCount++);
+                    }
+                }
+            }
+            if (crossingCount < 2) continue;
+
+            // crossings of a planar face lie on one line, consecutive crossings along line enclose the face
+            int[] order = sortAlongLine(crossings, crossingCount);
+            for (int i = 0; i + 1 < crossingCount; i += 2) {
+                int a = order[i] * 3;
+                int b = order[i + 1] * 3;
+                if (crossings[a] == crossings[b] && crossings[a + 1] == crossings[b + 1] && crossings[a + 2] == crossings[b + 2]) {
+                    continue;
+                }
+                if ((segmentCount + 1) * 6 > segments.length) segments = Arrays.copyOf(segments, segments.length * 2);
+                System.arraycopy(crossings, a, segments, segmentCount * 6, 3);
+                System.arraycopy(crossings, b, segments, segmentCount * 6 + 3, 3);
+                segmentCount++;
+            }
+        }
+        return markInnerRings(joinSegments(segments, segmentCount));
+    }
+
+    private double getValue(CoordinateBuffer buffer, int index) {
+        return normal.getX() * buffer.getX(index) + normal.getY() * buffer.getY(index) + normal.getZ() * buffer.getZ(index);
+    }
+
+    private static void setCrossing(CoordinateBuffer face, int below, double belowValue, int above, double aboveValue,
+                                    double[] crossings, int crossing) {
+        double x = face.getX(above);
+        double y = face.getY(above);
+        double z = face.getZ(above);
+        if (aboveValue != 0.0) {
+            double t = belowValue / (belowValue - aboveValue);
+            x = face.getX(below) + t * (x - face.getX(below));
+            y = face.getY(below) + t * (y - face.getY(below));
+            z = face.getZ(below) + t * (z - face.getZ(below));
+        }
+        // + 0.0 turns -0.0 into 0.0, so equal points have equal bits
+        crossings[crossing * 3] = x + 0.0;
+        crossings[crossing * 3 + 1] = y + 0.0;
+        crossings[crossing * 3 + 2] = z + 0.0;
+    }
+
+    /**
+     * Sorts crossings along the line through first crossing and crossing farthest from it
+     */
+    private static int[] sortAlongLine(double[] crossings, int crossingCount) {
+        double dx = 0.0;
+        double dy = 0.0;
+        double dz = 0.0;
+        double maxDistance = -1.0;
+        for (int i = 1; i < crossingCount; i++) {
+            double ex = crossings[i * 3] - crossings[0];
+            double ey = crossings[i * 3 + 1] - crossings[1];
+            double ez = crossings[i * 3 + 2] - crossings[2];
+            double distance = ex * ex + ey * ey + ez * ez;
+            if (distance > maxDistance) {
+                maxDistance = distance;
+                dx = ex;
+                dy = ey;
+                dz = ez;
+            }
+        }
+        double[] position = new double[crossingCount];
+        Integer[] order = new Integer[crossingCount];
+        for (int i = 0; i < crossingCount; i++) {
+            position[i] = dx * (crossings[i * 3] - crossings[0]) + dy * (crossings[i * 3 + 1] - crossings[1])
+                    + dz * (crossings[i * 3 + 2] - crossings[2]);
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> position[i]));
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Joins segments at equal end points into rings. Chains which can not be closed, e.g. of shells with gaps,
+     * are closed by connecting their ends.
+     */
+    private static CoordinateBuffer joinSegments(double[] segments, int segmentCount) {
+        // end point hash -> ends of segments, segment end i belongs to segment i / 2
+        LongHashMap<List<Integer>> endsByPoint = new LongHashMap<>(segmentCount * 2);
+        for (int end = 0; end < segmentCount * 2; end++) {
+            long key = getPointKey(segments, end * 3);
+            List<Integer> ends = endsByPoint.get(key);
+            if (ends == null) {
+                ends = new ArrayList<>(2);
+                endsByPoint.put(key, ends);
+            }
+            ends.add(end);
+        }
+
+        CoordinateBuffer rings = new CoordinateBuffer(segmentCount + 16);
+        boolean[] used = new boolean[segmentCount];
+        for (int segment = 0; segment < segmentCount; segment++) {
+            if (used[segment]) continue;
+            used[segment] = true;
+            int start = segment * 2;
+            CoordinateBuffer ring = new CoordinateBuffer();
+            ring.add(segments[start * 3], segments[start * 3 + 1], segments[start * 3 + 2]);
+
+            int current = start + 1;
+            while (!isEqualPoint(segments, current, start)) {
+                ring.add(segments[current * 3], segments[current * 3 + 1], segments[current * 3 + 2]);
+                int next = findUnusedEnd(segments, endsByPoint.get(getPointKey(segments, current * 3)), current, used);
+                if (next < 0) break;
+                used[next / 2] = true;
+                // continue at other end of next segment
+                current = next ^ 1;
+            }
+
+            if (ring.size() < 3) continue;
+            ring.add(segments[start * 3], segments[start * 3 + 1], segments[start * 3 + 2]);
+            rings.addRings(ring);
+        }
+        return rings;
+    }
+
+    /**
+     * Nests rings by even-odd rule: a ring enclosed by an odd number of rings is a hole of the innermost ring
+     * enclosing it. Containment is tested in the coordinate plane onto which the section plane projects best.
+     */
+    private CoordinateBuffer markInnerRings(CoordinateBuffer rings) {
+        int ringCount = rings.getRingCount();
+        if (ringCount < 2) return rings;
+        // drop coordinate of largest normal component
+        double nx = Math.abs(normal.getX());
+        double ny = Math.abs(normal.getY());
+        double nz = Math.abs(normal.getZ());
+        int dropped = nz >= nx && nz >= ny ? 2 : ny >= nx ? 1 : 0;
+        int u = dropped == 0 ? 1 : 0;
+        int v = dropped == 2 ? 1 : 2;
+
+        boolean[][] encloses = new boolean[ringCount][ringCount];
+        int[] depth = new int[ringCount];
+        for (int ring = 0; ring < ringCount; ring++) {
+            // midpoint of first edge, less likely to touch other rings than a vertex
+            int start = rings.getRingStart(ring);
+            double pu = (getCoordinate(rings, start, u) + getCoordinate(rings, start + 1, u)) / 2.0;
+            double pv = (getCoordinate(rings, start, v) + getCoordinate(rings, start + 1, v)) / 2.0;
+            for (int other = 0; other < ringCount; other++) {
+                if (other != ring && contains(rings, other, u, v, pu, pv)) {
+                    encloses[other][ring] = true;
+                    depth[ring]++;
+                }
+            }
+        }
+
+        CoordinateBuffer nested = new CoordinateBuffer(rings.size());
+        for (int ring = 0; ring < ringCount; ring++) {
+            if (depth[ring] % 2 != 0) continue;
+            addRing(nested, rings, ring);
+            for (int hole = 0; hole < ringCount; hole++) {
+                if (depth[hole] == depth[ring] + 1 && encloses[ring][hole]) {
+                    addRing(nested, rings, hole);
+                    nested.markInnerRing();
+                }
+            }
+        }
+        return nested;
+    }
+
+    private static double getCoordinate(CoordinateBuffer buffer, int index, int axis) {
+        return axis == 0 ? buffer.getX(index) : axis == 1 ? buffer.getY(index) : buffer.getZ(index);
+    }
+
+    /**
+     * Checks if projected point lies inside ring by counting crossings of a ray in u direction
+     */
+    private static boolean contains(CoordinateBuffer rings, int ring, int u, int v, double pu, double pv) {
+        boolean inside = false;
+        int ringStart = rings.getRingStart(ring);
+        int ringEnd = rings.getRingEnd(ring);
+        for (int i = ringStart, j = ringEnd - 1; i < ringEnd; j = i++) {
+            double iu = getCoordinate(rings, i, u);
+            double iv = getCoordinate(rings, i, v);
+            double ju = getCoordinate(rings, j, u);
+            double jv = getCoordinate(rings, j, v);
+            if ((iv > pv) != (jv > pv) && pu < iu + (pv - iv) * (ju - iu) / (jv - iv)) inside = !inside;
+        }
+        return inside;
+    }
+
+    private static void addRing(CoordinateBuffer target, CoordinateBuffer rings, int ring) {
+        target.closeRing();
+        for (int i = rings.getRingStart(ring); i < rings.getRingEnd(ring); i++) {
+            target.add(rings.getX(i), rings.getY(i), rings.getZ(i));
+        }
+        target.closeRing();
+    }
+
+    private static int findUnusedEnd(double[] segments, List<Integer> ends, int end, boolean[] used) {
+        for (int candidate : ends) {
+            if (!used[candidate / 2] && isEqualPoint(segments, candidate, end)) return candidate;
+        }
+        return -1;
+    }
+
+    private static boolean isEqualPoint(double[] segments, int end, int otherEnd) {
+        return segments[end * 3] == segments[otherEnd * 3] && segments[end * 3 + 1] == segments[otherEnd * 3 + 1]
+                && segments[end * 3 + 2] == segments[otherEnd * 3 + 2];
+    }
+
+    private static long getPointKey(double[] coordinates, int index) {
+        long hash = Double.doubleToLongBits(coordinates[index]);
+        hash = hash * 0x9E3779B97F4A7C15L + Double.doubleToLongBits(coordinates[index + 1]);
+        hash = hash * 0x9E3779B97F4A7C15L + Double.doubleToLongBits(coordinates[index + 2]);
+        return hash ^ (hash >>> 29);
+    }
+}
@@ -0,0 +1,800 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.parser.math;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.CoordinateBuffer;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Class providing boolean operations on footprint polygons based on the sweep line algorithm of Martinez-Rueda et al.
+ * ("A simple algorithm for Boolean operations on polygons", 2013). Runs in O((n+k) log n) for n edges and k
+ * intersections.
+ * <p>
+ * Polygons are given as {@link CoordinateBuffer} projected to the x/y plane, all rings of a polygon are combined by
+ * the even-odd rule. Results hold closed rings, outer rings in counter-clockwise order each followed by its inner rings
+ * in clockwise order. The z coordinate of all result points is the lowest z coordinate of the subject polygon.
+ * <p>
+ * To stay robust with floating point coordinates, input points are snapped to a fine grid relative to the magnitude
+ * of the coordinates and intersections close to edge endpoints are snapped to the endpoints.
+ */
+public class PolygonClipper {
+
+    /**
+     * Boolean operations on polygons
+     */
+    public enum Operation {
+        DIFFERENCE,
+        INTERSECTION,
+        UNION
+    }
+
+    // rings with smaller area relative to their bounding box are degenerated, e.g. projected vertical faces
+    private static final double DEGENERATE_AREA_RATIO = 1e-9;
+    // input coordinates are snapped to grid of 2^-GRID_BITS of their magnitude
+    private static final int GRID_BITS = 36;
+    // tolerance of position along edge to snap intersections to edge endpoints
+    private static final double PARAMETER_EPSILON = 1e-9;
+
+    private enum EdgeType {
+        NORMAL,
+        NON_CONTRIBUTING,
+        SAME_TRANSITION,
+        DIFFERENT_TRANSITION
+    }
+
+    private static final class SweepEvent {
+        private final double x;
+        private final double y;
+        private boolean left;
+        private SweepEvent otherEvent;
+        private final boolean subject;
+        private final int contourId;
+        private final int id;
+        private EdgeType type = EdgeType.NORMAL;
+        // true if edge is an inside-outside transition of its own polygon for a vertical ray from below
+        private boolean inOut;
+        // inOut of closest edge of the other polygon below this edge
+        private boolean otherInOut;
+        private boolean inResult;
+        // true if result is inside above this edge
+        private boolean resultAbove;
+        // true if left event has been put back into queue to process it after events ending at its point
+        private boolean requeued;
+
+        SweepEvent(double x, double y, boolean left, SweepEvent otherEvent, boolean subject, int contourId, int id) {
+            this.x = x;
+            this.y = y;
+            this.left = left;
+            this.otherEvent = otherEvent;
+            this.subject = subject;
+            this.contourId = contourId;
+            this.id = id;
+        }
+
+        boolean isBelow(double px, double py) {
+            return left
+                    ? signedArea(x, y, otherEvent.x, otherEvent.y, px, py) > 0
+                    : signedArea(otherEvent.x, otherEvent.y, x, y, px, py) > 0;
+        }
+
+        boolean isAbove(double px, double py) {
+            return !isBelow(px, py);
+        }
+
+        boolean isVertical() {
+            return x == otherEvent.x;
+        }
+
+        boolean samePoint(double px, double py) {
+            return x == px && y == py;
+        }
+    }
+
+    private final Operation operation;
+    private final double gridSize;
+    // events are ordered by their edges, so events of divided edges are reinserted into queue and sweep line
+    private final TreeSet<SweepEvent> queue = new TreeSet<>(PolygonClipper::compareEvents);
+    private final TreeSet<SweepEvent> sweepLine = new TreeSet<>(PolygonClipper::compareSegments);
+    private final List<SweepEvent> processedEvents = new ArrayList<>();
+    private int eventIds;
+
+    private PolygonClipper(Operation operation, double gridSize) {
+        this.operation = operation;
+        this.gridSize = gridSize;
+    }
+
+    /**
+     * Computes boolean operation of two polygons
+     *
+     * @param subject   polygon, rings combined by even-odd rule
+     * @param clipping  polygon, rings combined by even-odd rule
+     * @param operation to compute
+     * @return result polygon, outer rings counter-clockwise each followed by its inner rings clockwise
+     */
+    public static CoordinateBuffer compute(CoordinateBuffer subject, CoordinateBuffer clipping, Operation operation) {
+        double[] subjectBox = getBoundingBox(subject);
+        double[] clippingBox = getBoundingBox(clipping);
+        double z = subjectBox[4];
+        if (operation == Operation.INTERSECTION && !overlaps(subjectBox, clippingBox)) return new CoordinateBuffer();
+
+        // snap to grid relative to magnitude of coordinates, merging points which differ by rounding only
+        double magnitude = 0.0;
+        for (double value : new double[] {subjectBox[0], subjectBox[1], subjectBox[2], subjectBox[3],
+                clippingBox[0], clippingBox[1], clippingBox[2], clippingBox[3]}) {
+            if (!Double.isInfinite(value)) magnitude = Math.max(magnitude, Math.abs(value));
+        }
+        PolygonClipper clipper = new PolygonClipper(operation, magnitude > 0.0 ? Math.scalb(1.0, Math.getExponent(magnitude) - GRID_BITS) : 0.0);
+        clipper.addPolygon(subject, true);
+        clipper.addPolygon(clipping, false);
+        double rightBound = operation == Operation.INTERSECTION
+                ? Math.min(subjectBox[2], clippingBox[2])
+                : operation == Operation.DIFFERENCE ? subjectBox[2] : Double.POSITIVE_INFINITY;
+        clipper.sweep(rightBound);
+        return clipper.connectEdges(Double.isInfinite(z) ? 0.0 : z);
+    }
+
+    /**
+     * Computes footprint of arbitrary rings, e.g. faces of a Brep, as union of all faces projected to the x/y plane.
+     * Each outer ring forms a face together with the inner rings following it, so holes of a face stay open.
+     * Degenerated rings like projected vertical faces are ignored.
+     *
+     * @param rings to get footprint of
+     * @return footprint polygon, outer rings counter-clockwise each followed by its inner rings clockwise
+     */
+    public static CoordinateBuffer footprint(CoordinateBuffer rings) {
+        List<CoordinateBuffer> polygons = new ArrayList<>();
+        CoordinateBuffer polygon = null;
+        for (int ring = 0; ring < rings.getRingCount(); ring++) {
+            boolean degenerated = isDegenerated(rings, ring);
+            if (!rings.isInnerRing(ring)) {
+                // inner rings of a degenerated face are ignored as well
+                polygon = degenerated ? null : new CoordinateBuffer(rings.getRingEnd(ring) - rings.getRingStart(ring));
+                if (polygon != null) polygons.add(polygon);
+            }
+            if (polygon == null || degenerated) continue;
+            for (int i = rings.getRingStart(ring); i < rings.getRingEnd(ring); i++) {
+                polygon.add(rings.getX(i), rings.getY(i), rings.getZ(i));
+            }
+            polygon.closeRing();
+        }
+        if (polygons.isEmpty()) return new CoordinateBuffer();
+        if (polygons.size() == 1) return compute(polygons.get(0), new CoordinateBuffer(), Operation.UNION);
+
+        // unite pairwise to keep each sweep small
+        while (polygons.size() > 1) {
+            List<CoordinateBuffer> united = new ArrayList<>((polygons.size() + 1) / 2);
+            for (int i = 0; i < polygons.size(); i += 2) {
+                united.add(i + 1 < polygons.size()
+                        ? compute(polygons.get(i), polygons.get(i + 1), Operation.UNION)
+                        : polygons.get(i));
+            }
+            polygons = united;
+        }
+        return polygons.get(0);
+    }
+
+    /**
+     * Computes signed area of ring projected to the x/y plane
+     *
+     * @param buffer holding ring
+     * @param ring   index of ring
+     * @return area, positive if ring is counter-clockwise
+     */
+    public static double getSignedArea(CoordinateBuffer buffer, int ring) {
+        int start = buffer.getRingStart(ring);
+        int end = buffer.getRingEnd(ring);
+        double area = 0.0;
+        for (int i = start; i < end; i++) {
+            int next = i + 1 < end ? i + 1 : start;
+            area += buffer.getX(i) * buffer.getY(next) - buffer.getX(next) * buffer.getY(i);
+        }
+        return area / 2.0;
+    }
+
+    private static boolean isDegenerated(CoordinateBuffer buffer, int ring) {
+        if (buffer.getRingEnd(ring) - buffer.getRingStart(ring) < 3) return true;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = buffer.getRingStart(ring); i < buffer.getRingEnd(ring); i++) {
+            minX = Math.min(minX, buffer.getX(i));
+            minY = Math.min(minY, buffer.getY(i));
+            maxX = Math.max(maxX, buffer.getX(i));
+            maxY = Math.max(maxY, buffer.getY(i));
+        }
+        double boxArea = (maxX - minX) * (maxY - minY);
+        return boxArea <= 0.0 || Math.abs(getSignedArea(buffer, ring)) <= boxArea * DEGENERATE_AREA_RATIO;
+    }
+
+    /**
+     * @return minX, minY, maxX, maxY, minZ of buffer
+     */
+    private static double[] getBoundingBox(CoordinateBuffer buffer) {
+        double[] box = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+        for (int i = 0; i < buffer.size(); i++) {
+            box[0] = Math.min(box[0], buffer.getX(i));
+            box[1] = Math.min(box[1], buffer.getY(i));
+            box[2] = Math.max(box[2], buffer.getX(i));
+            box[3] = Math.max(box[3], buffer.getY(i));
+            box[4] = Math.min(box[4], buffer.getZ(i));
+        }
+        return box;
+    }
+
+    private static boolean overlaps(double[] box1, double[] box2) {
+        return box1[0] <= box2[2] && box2[0] <= box1[2] && box1[1] <= box2[3] && box2[1] <= box1[3];
+    }
+
+    private void addPolygon(CoordinateBuffer polygon, boolean subject) {
+        for (int ring = 0; ring < polygon.getRingCount(); ring++) {
+            int start = polygon.getRingStart(ring);
+            int end = polygon.getRingEnd(ring);
+            if (end - start < 3) continue;
+            for (int i = start; i < end; i++) {
+                int next = i + 1 < end ? i + 1 : start;
+                addEdge(snap(polygon.getX(i)), snap(polygon.getY(i)), snap(polygon.getX(next)), snap(polygon.getY(next)), subject, ring);
+            }
+        }
+    }
+
+    private double snap(double value) {
+        return gridSize > 0.0 ? Math.rint(value / gridSize) * gridSize : value;
+    }
+
+    private void addEdge(double x1, double y1, double x2, double y2, boolean subject, int contourId) {
+        // zero length edges, e.g. closing edge of closed rings, are skipped
+        if (x1 == x2 && y1 == y2) return;
+        SweepEvent e1 = new SweepEvent(x1, y1, false, null, subject, contourId, eventIds++);
+        SweepEvent e2 = new SweepEvent(x2, y2, false, e1, subject, contourId, eventIds++);
+        e1.otherEvent = e2;
+        if (compareEvents(e1, e2) > 0) {
+            e2.left = true;
+        } else {
+            e1.left = true;
+        }
+        queue.add(e1);
+        queue.add(e2);
+    }
+
+    /**
+     * Sweeps from left to right, subdivides edges at intersections and marks edges belonging to result
+     *
+     * @param rightBound x coordinate behind which no result edge can start
+     */
+    private void sweep(double rightBound) {
+        while (!queue.isEmpty()) {
+            SweepEvent event = queue.pollFirst();
+            if (event.x > rightBound) break;
+
+            if (event.left) {
+                sweepLine.add(event);
+                if (!event.requeued && divideEdgesThroughPoint(event)) {
+                    // event starts on other edges, their parts ending at event have to leave sweep line first
+                    sweepLine.remove(event);
+                    event.requeued = true;
+                    queue.add(event);
+                    continue;
+                }
+                SweepEvent prev = sweepLine.lower(event);
+                SweepEvent next = sweepLine.higher(event);
+                computeFields(event, prev);
+                if (next != null && possibleIntersection(event, next) == 2) {
+                    computeFields(event, prev);
+                    computeFields(next, event);
+                }
+                if (prev != null && possibleIntersection(prev, event) == 2) {
+                    computeFields(prev, sweepLine.lower(prev));
+                    computeFields(event, prev);
+                }
+                if (!event.requeued && (prev != null && prev.otherEvent.samePoint(event.x, event.y)
+                        || next != null && next.otherEvent.samePoint(event.x, event.y))) {
+                    // neighbour has been divided at event, its part ending at event has to leave sweep line first
+                    sweepLine.remove(event);
+                    event.requeued = true;
+                    queue.add(event);
+                    continue;
+                }
+                processedEvents.add(event);
+            } else {
+                SweepEvent leftEvent = event.otherEvent;
+                SweepEvent prev = sweepLine.lower(leftEvent);
+                SweepEvent next = sweepLine.higher(leftEvent);
+                if (sweepLine.remove(leftEvent) && prev != null && next != null) possibleIntersection(prev, next);
+            }
+        }
+    }
+
+    /**
+     * Divides edges of sweep line which pass through start point of event without ending there
+     *
+     * @param event left event in sweep line
+     * @return true if an edge has been divided
+     */
+    private boolean divideEdgesThroughPoint(SweepEvent event) {
+        boolean divided = false;
+        for (SweepEvent e = sweepLine.lower(event); e != null && passesThrough(e, event.x, event.y); e = sweepLine.lower(e)) {
+            divided |= divideSegment(e, event.x, event.y);
+        }
+        for (SweepEvent e = sweepLine.higher(event); e != null && passesThrough(e, event.x, event.y); e = sweepLine.higher(e)) {
+            divided |= divideSegment(e, event.x, event.y);
+        }
+        return divided;
+    }
+
+    private static boolean passesThrough(SweepEvent e, double px, double py) {
+        SweepEvent other = e.otherEvent;
+        return signedArea(e.x, e.y, other.x, other.y, px, py) == 0
+                && px >= Math.min(e.x, other.x) && px <= Math.max(e.x, other.x)
+                && py >= Math.min(e.y, other.y) && py <= Math.max(e.y, other.y);
+    }
+
+    private void computeFields(SweepEvent event, SweepEvent prev) {
+        if (prev == null) {
+            event.inOut = false;
+            event.otherInOut = true;
+        } else if (event.subject == prev.subject) {
+            event.inOut = !prev.inOut;
+            event.otherInOut = prev.otherInOut;
+        } else {
+            event.inOut = !prev.otherInOut;
+            event.otherInOut = prev.isVertical() ? !prev.inOut : prev.inOut;
+        }
+
+        if (event.type == EdgeType.NON_CONTRIBUTING) {
+            event.inResult = false;
+            return;
+        }
+        // inside state of both polygons above and below edge
+        boolean ownAbove = !event.inOut;
+        boolean otherAbove;
+        boolean otherBelow;
+        if (event.type == EdgeType.SAME_TRANSITION) {
+            otherAbove = ownAbove;
+            otherBelow = !ownAbove;
+        } else if (event.type == EdgeType.DIFFERENT_TRANSITION) {
+            otherAbove = !ownAbove;
+            otherBelow = ownAbove;
+        } else {
+            otherAbove = !event.otherInOut;
+            otherBelow = otherAbove;
+        }
+        boolean resultAbove = event.subject ? apply(ownAbove, otherAbove) : apply(otherAbove, ownAbove);
+        boolean resultBelow = event.subject ? apply(!ownAbove, otherBelow) : apply(otherBelow, !ownAbove);
+        event.inResult = resultAbove != resultBelow;
+        event.resultAbove = resultAbove;
+    }
+
+    private boolean apply(boolean insideSubject, boolean insideClipping) {
+        switch (operation) {
+            case DIFFERENCE:
+                return insideSubject && !insideClipping;
+            case INTERSECTION:
+                return insideSubject && insideClipping;
+            default:
+                return insideSubject || insideClipping;
+        }
+    }
+
+    /**
+     * Subdivides both edges at their intersection or overlapping part. Overlapping edges of the same polygon are
+     * divided as well, so edges crossing only one of them divide both.
+     *
+     * @return 0 if no subdivision, 1 if edges intersect, 2 if edges overlap starting at same point, 3 if other overlap
+     */
+    private int possibleIntersection(SweepEvent se1, SweepEvent se2) {
+        double[] inter = intersection(se1.x, se1.y, se1.otherEvent.x, se1.otherEvent.y,
+                se2.x, se2.y, se2.otherEvent.x, se2.otherEvent.y);
+        if (inter == null) return 0;
+        int intersections = inter.length / 2;
+
+        // edges intersect at endpoint of both
+        if (intersections == 1 && (se1.samePoint(se2.x, se2.y)
+                || se1.otherEvent.samePoint(se2.otherEvent.x, se2.otherEvent.y))) return 0;
+
+        if (intersections == 1) {
+            // edges ending at intersection are not divided
+            divideSegment(se1, inter[0], inter[1]);
+            divideSegment(se2, inter[0], inter[1]);
+            return 1;
+        }
+
+        // edges overlap
+        List<SweepEvent> events = new ArrayList<>(4);
+        boolean leftCoincide = false;
+        boolean rightCoincide = false;
+        if (se1.samePoint(se2.x, se2.y)) {
+            leftCoincide = true;
+        } else if (compareEvents(se1, se2) > 0) {
+            events.add(se2);
+            events.add(se1);
+        } else {
+            events.add(se1);
+            events.add(se2);
+        }
+        if (se1.otherEvent.samePoint(se2.otherEvent.x, se2.otherEvent.y)) {
+            rightCoincide = true;
+        } else if (compareEvents(se1.otherEvent, se2.otherEvent) > 0) {
+            events.add(se2.otherEvent);
+            events.add(se1.otherEvent);
+        } else {
+            events.add(se1.otherEvent);
+            events.add(se2.otherEvent);
+        }
+
+        if (leftCoincide) {
+            // both edges are equal or share left endpoint, equal edges of the same polygon cancel each other by the
+            // even-odd rule and keep contributing
+            if (!rightCoincide) {
+                divideSegment(events.get(1).otherEvent, events.get(0).x, events.get(0).y);
+            }
+            if (se1.subject == se2.subject) return rightCoincide ? 0 : 3;
+            se2.type = EdgeType.NON_CONTRIBUTING;
+            se1.type = se2.inOut == se1.inOut ? EdgeType.SAME_TRANSITION : EdgeType.DIFFERENT_TRANSITION;
+            return 2;
+        }
+        if (rightCoincide) {
+            // edges share right endpoint
+            divideSegment(events.get(0), events.get(1).x, events.get(1).y);
+            return 3;
+        }
+        if (events.get(0) != events.get(3).otherEvent) {
+            // no edge includes the other one totally
+            divideSegment(events.get(0), events.get(1).x, events.get(1).y);
+            divideSegment(events.get(1), events.get(2).x, events.get(2).y);
+            return 3;
+        }
+        // one edge includes the other one
+        divideSegment(events.get(0), events.get(1).x, events.get(1).y);
+        divideSegment(events.get(3).otherEvent, events.get(2).x, events.get(2).y);
+        return 3;
+    }
+
+    /**
+     * Divides edge at point
+     *
+     * @param se left event of edge
+     * @param x  coordinate of point
+     * @param y  coordinate of point
+     * @return true if edge has been divided, false if point is not inside of edge
+     */
+    private boolean divideSegment(SweepEvent se, double x, double y) {
+        // point snapped to an endpoint of the other edge may lie outside of this edge
+        if (comparePoints(x, y, se.x, se.y) <= 0 || comparePoints(x, y, se.otherEvent.x, se.otherEvent.y) >= 0) return false;
+        // order of edge in sweep line and of its right event in queue depends on the other endpoint, both are
+        // reinserted after the edge has been shortened
+        SweepEvent right = se.otherEvent;
+        boolean inSweepLine = sweepLine.remove(se);
+        boolean inQueue = queue.remove(right);
+        SweepEvent r = new SweepEvent(x, y, false, se, se.subject, se.contourId, eventIds++);
+        SweepEvent l = new SweepEvent(x, y, true, right, se.subject, se.contourId, eventIds++);
+        // avoid rounding error, left event would be processed after right event
+        if (compareEvents(l, right) > 0) {
+            right.left = true;
+            l.left = false;
+        }
+        right.otherEvent = l;
+        se.otherEvent = r;
+        if (inSweepLine) sweepLine.add(se);
+        if (inQueue) queue.add(right);
+        queue.add(l);
+        queue.add(r);
+        return true;
+    }
+
+    /**
+     * Connects result edges into rings. Edges are directed with result inside on their left, so outer rings are
+     * counter-clockwise and inner rings clockwise. At shared vertices the next edge is chosen to close the smallest
+     * ring, keeping rings touching at a vertex separate.
+     *
+     * @param z coordinate of result points
+     * @return result polygon
+     */
+    private CoordinateBuffer connectEdges(double z) {
+        // directed result edges per start point
+        Map<Point2D, List<double[]>> outgoing = new HashMap<>();
+        Map<double[], Boolean> used = new IdentityHashMap<>();
+        List<double[]> edges = new ArrayList<>();
+        for (SweepEvent event : processedEvents) {
+            if (!event.left || !event.inResult) continue;
+            SweepEvent other = event.otherEvent;
+            if (event.samePoint(other.x, other.y)) continue;
+            double[] edge = event.resultAbove
+                    ? new double[] {event.x, event.y, other.x, other.y}
+                    : new double[] {other.x, other.y, event.x, event.y};
+            edges.add(edge);
+            outgoing.computeIfAbsent(pointKey(edge[0], edge[1]), k -> new ArrayList<>()).add(edge);
+        }
+
+        List<double[]> rings = new ArrayList<>();
+        for (double[] first : edges) {
+            if (used.containsKey(first)) continue;
+            used.put(first, Boolean.TRUE);
+            List<Double> ring = new ArrayList<>();
+            ring.add(first[0]);
+            ring.add(first[1]);
+            double[] edge = first;
+            boolean closed = false;
+            while (true) {
+                if (edge[2] == first[0] && edge[3] == first[1]) {
+                    closed = true;
+                    break;
+                }
+                double[] next = nextEdge(edge, outgoing.get(pointKey(edge[2], edge[3])), used);
+                if (next == null) break;
+                used.put(next, Boolean.TRUE);
+                ring.add(next[0]);
+                ring.add(next[1]);
+                edge = next;
+            }
+            if (closed) splitAtRepeatedPoints(ring, rings);
+        }
+        return assignInnerRings(rings, z);
+    }
+
+    /**
+     * Splits closed walk visiting a point more than once, e.g. an inner ring touching its outer ring, into simple rings
+     *
+     * @param walk  coordinates x, y of closed walk, not closed
+     * @param rings list to add simple rings to
+     */
+    private static void splitAtRepeatedPoints(List<Double> walk, List<double[]> rings) {
+        List<Double> stack = new ArrayList<>(walk.size());
+        Map<Point2D, Integer> positions = new HashMap<>();
+        for (int i = 0; i < walk.size(); i += 2) {
+            Point2D point = pointKey(walk.get(i), walk.get(i + 1));
+            Integer position = positions.get(point);
+            if (position != null) {
+                // cut loop since last visit of point
+                addRing(rings, stack.subList(position, stack.size()));
+                for (int j = position + 2; j < stack.size(); j += 2) {
+                    positions.remove(pointKey(stack.get(j), stack.get(j + 1)));
+                }
+                stack.subList(position + 2, stack.size()).clear();
+                continue;
+            }
+            positions.put(point, stack.size());
+            stack.add(walk.get(i));
+            stack.add(walk.get(i + 1));
+        }
+        addRing(rings, stack);
+    }
+
+    private static void addRing(List<double[]> rings, List<Double> ring) {
+        if (ring.size() < 6) return;
+        double[] coordinates = new double[ring.size()];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = ring.get(i);
+        }
+        rings.add(coordinates);
+    }
+
+    private static double[] nextEdge(double[] edge, List<double[]> candidates, Map<double[], Boolean> used) {
+        if (candidates == null) return null;
+        // direction back to start of incoming edge
+        double backX = edge[0] - edge[2];
+        double backY = edge[1] - edge[3];
+        double[] best = null;
+        double bestAngle = Double.POSITIVE_INFINITY;
+        for (double[] candidate : candidates) {
+            if (used.containsKey(candidate)) continue;
+            double dirX = candidate[2] - candidate[0];
+            double dirY = candidate[3] - candidate[1];
+            // clockwise angle from back direction to candidate
+            double angle = Math.atan2(dirX * backY - dirY * backX, backX * dirX + backY * dirY);
+            if (angle <= 0.0) angle += 2 * Math.PI;
+            if (angle < bestAngle) {
+                bestAngle = angle;
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Writes outer rings each followed by the inner rings it contains
+     *
+     * @param rings coordinates x, y of each ring, not closed
+     * @param z     coordinate of result points
+     * @return result polygon
+     */
+    private static CoordinateBuffer assignInnerRings(List<double[]> rings, double z) {
+        List<double[]> outerRings = new ArrayList<>();
+        List<Double> outerAreas = new ArrayList<>();
+        List<double[]> innerRings = new ArrayList<>();
+        for (double[] ring : rings) {
+            double area = getSignedArea(ring);
+            if (area > 0.0) {
+                outerRings.add(ring);
+                outerAreas.add(area);
+            } else if (area < 0.0) {
+                innerRings.add(ring);
+            }
+        }
+
+        // inner ring belongs to smallest outer ring containing it
+        List<List<double[]>> innerRingsOfOuter = new ArrayList<>();
+        outerRings.forEach(ring -> innerRingsOfOuter.add(new ArrayList<>()));
+        for (double[] inner : innerRings) {
+            // midpoint of first edge is inside of outer ring unless rings touch along that edge
+            double px = (inner[0] + inner[2]) / 2.0;
+            double py = (inner[1] + inner[3]) / 2.0;
+            int parent = -1;
+            for (int i = 0; i < outerRings.size(); i++) {
+                if ((parent == -1 || outerAreas.get(i) < outerAreas.get(parent)) && contains(outerRings.get(i), px, py)) {
+                    parent = i;
+                }
+            }
+            if (parent != -1) innerRingsOfOuter.get(parent).add(inner);
+        }
+
+        CoordinateBuffer result = new CoordinateBuffer();
+        for (int i = 0; i < outerRings.size(); i++) {
+            addRing(result, outerRings.get(i), z);
+            for (double[] inner : innerRingsOfOuter.get(i)) {
+                addRing(result, inner, z);
+                result.markInnerRing();
+            }
+        }
+        return result;
+    }
+
+    private static void addRing(CoordinateBuffer buffer, double[] ring, double z) {
+        for (int i = 0; i < ring.length; i += 2) {
+            buffer.add(ring[i], ring[i + 1], z);
+        }
+        buffer.add(ring[0], ring[1], z);
+        buffer.closeRing();
+    }
+
+    private static double getSignedArea(double[] ring) {
+        double area = 0.0;
+        for (int i = 0; i < ring.length; i += 2) {
+            int next = (i + 2) % ring.length;
+            area += ring[i] * ring[next + 1] - ring[next] * ring[i + 1];
+        }
+        return area / 2.0;
+    }
+
+    private static boolean contains(double[] ring, double px, double py) {
+        boolean inside = false;
+        for (int i = 0, j = ring.length - 2; i < ring.length; j = i, i += 2) {
+            if ((ring[i + 1] > py) != (ring[j + 1] > py)
+                    && px < (ring[j] - ring[i]) * (py - ring[i + 1]) / (ring[j + 1] - ring[i + 1]) + ring[i]) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    private static Point2D pointKey(double x, double y) {
+        // avoid -0.0 being a different key than 0.0
+        return new Point2D.Double(x + 0.0, y + 0.0);
+    }
+
+    private static int comparePoints(double x1, double y1, double x2, double y2) {
+        if (x1 != x2) return x1 > x2 ? 1 : -1;
+        if (y1 != y2) return y1 > y2 ? 1 : -1;
+        return 0;
+    }
+
+    private static int compareEvents(SweepEvent e1, SweepEvent e2) {
+        int pointOrder = comparePoints(e1.x, e1.y, e2.x, e2.y);
+        if (pointOrder != 0) return pointOrder;
+        // same point, right events first
+        if (e1.left != e2.left) return e1.left ? 1 : -1;
+        // same point, both left or both right events, lower edge first
+        if (signedArea(e1.x, e1.y, e1.otherEvent.x, e1.otherEvent.y, e2.otherEvent.x, e2.otherEvent.y) != 0) {
+            return !e1.isBelow(e2.otherEvent.x, e2.otherEvent.y) ? 1 : -1;
+        }
+        if (e1.subject != e2.subject) return !e1.subject ? 1 : -1;
+        return Integer.compare(e1.id, e2.id);
+    }
+
+    private static int compareSegments(SweepEvent le1, SweepEvent le2) {
+        if (le1 == le2) return 0;
+        // rounded points of divided edges may be collinear seen from one edge only, comparing in a fixed order keeps
+        // the result antisymmetric
+        if (le1.id > le2.id) return -compareSegments(le2, le1);
+
+        if (signedArea(le1.x, le1.y, le1.otherEvent.x, le1.otherEvent.y, le2.x, le2.y) != 0
+                || signedArea(le1.x, le1.y, le1.otherEvent.x, le1.otherEvent.y, le2.otherEvent.x, le2.otherEvent.y) != 0) {
+            // edges not collinear
+            if (le1.samePoint(le2.x, le2.y)) return le1.isBelow(le2.otherEvent.x, le2.otherEvent.y) ? -1 : 1;
+            if (le1.x == le2.x) return le1.y < le2.y ? -1 : 1;
+            // edge of le1 has been inserted into sweep line after edge of le2, if it starts on edge of le2 its right
+            // endpoint decides
+            if (compareEvents(le1, le2) > 0) {
+                if (signedArea(le2.x, le2.y, le2.otherEvent.x, le2.otherEvent.y, le1.x, le1.y) == 0) {
+                    return le2.isBelow(le1.otherEvent.x, le1.otherEvent.y) ? 1 : -1;
+                }
+                return le2.isAbove(le1.x, le1.y) ? -1 : 1;
+            }
+            // edge of le2 has been inserted into sweep line after edge of le1
+            if (signedArea(le1.x, le1.y, le1.otherEvent.x, le1.otherEvent.y, le2.x, le2.y) == 0) {
+                return le1.isBelow(le2.otherEvent.x, le2.otherEvent.y) ? -1 : 1;
+            }
+            return le1.isBelow(le2.x, le2.y) ? -1 : 1;
+        }
+
+        if (le1.subject != le2.subject) {
+            // collinear edges of different polygons
+            return le1.subject ? -1 : 1;
+        }
+        // collinear edges of same polygon
+        if (le1.samePoint(le2.x, le2.y)) {
+            if (le1.otherEvent.samePoint(le2.otherEvent.x, le2.otherEvent.y)) return Integer.compare(le1.id, le2.id);
+            return le1.contourId != le2.contourId ? Integer.compare(le1.contourId, le2.contourId) : Integer.compare(le1.id, le2.id);
+        }
+        return compareEvents(le1, le2) > 0 ? 1 : -1;
+    }
+
+    private static double signedArea(double x0, double y0, double x1, double y1, double x2, double y2) {
+        return (x0 - x2) * (y1 - y2) - (x1 - x2) * (y0 - y2);
+    }
+
+    /**
+     * Intersects two segments
+     *
+     * @return null if segments do not intersect, else x, y of intersection point or x, y of both ends of overlap
+     */
+    private static double[] intersection(double a1x, double a1y, double a2x, double a2y,
+                                         double b1x, double b1y, double b2x, double b2y) {
+        double vax = a2x - a1x;
+        double vay = a2y - a1y;
+        double vbx = b2x - b1x;
+        double vby = b2y - b1y;
+        double ex = b1x - a1x;
+        double ey = b1y - a1y;
+        double kross = vax * vby - vay * vbx;
+        double sqrLenA = vax * vax + vay * vay;
+
+        if (kross != 0.0) {
+            // segments not parallel
+            double s = (ex * vby - ey * vbx) / kross;
+            if (s < -PARAMETER_EPSILON || s > 1 + PARAMETER_EPSILON) return null;
+            double t = (ex * vay - ey * vax) / kross;
+            if (t < -PARAMETER_EPSILON || t > 1 + PARAMETER_EPSILON) return null;
+            // intersections close to endpoints are snapped to them
+            if (s <= PARAMETER_EPSILON) return new double[] {a1x, a1y};
+            if (s >= 1 - PARAMETER_EPSILON) return new double[] {a2x, a2y};
+            if (t <= PARAMETER_EPSILON) return new double[] {b1x, b1y};
+            if (t >= 1 - PARAMETER_EPSILON) return new double[] {b2x, b2y};
+            return new double[] {a1x + s * vax, a1y + s * vay};
+        }
+
+        // segments parallel, check if collinear
+        if (ex * vay - ey * vax != 0.0) return null;
+        double sa = (vax * ex + vay * ey) / sqrLenA;
+        double sb = sa + (vax * vbx + vay * vby) / sqrLenA;
+        double smin = Math.min(sa, sb);
+        double smax = Math.max(sa, sb);
+        if (smin > 1 || smax < 0) return null;
+        if (smin == 1) return new double[] {a2x, a2y};
+        if (smax == 0) return new double[] {a1x, a1y};
+        // ends of overlap are ends of either segment
+        double[] overlap = new double[4];
+        if (smin <= 0) {
+            overlap[0] = a1x;
+            overlap[1] = a1y;
+        } else {
+            overlap[0] = smin == sa ? b1x : b2x;
+            overlap[1] = smin == sa ? b1y : b2y;
+        }
+        if (smax >= 1) {
+            overlap[2] = a2x;
+            overlap[3] = a2y;
+        } else {
+            overlap[2] = smax == sa ? b1x : b2x;
+            overlap[3] = smax == sa ? b1y : b2y;
+        }
+        return overlap;
+    }
+}
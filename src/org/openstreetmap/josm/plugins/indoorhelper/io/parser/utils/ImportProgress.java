@@ -0,0 +1,146 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Progress of one import. Progress of each {@link Stage} is mapped to its share of the overall progress, the overall
+ * percentage is passed to listener whenever it changes. Stages report progress from any thread and are cancelled
+ * cooperatively: reporting progress throws a {@link CancellationException} after {@link #cancel()} was called.
+ */
+public class ImportProgress {
+
+    /**
+     * Stages of import and their range of overall progress in percent
+     */
+    public enum Stage {
+        LOAD(0, 40),
+        EXTRACT(40, 80),
+        PACK(80, 90),
+        OPTIMIZE(90, 100),
+        // refinement of already shown data is reported separately
+        REFINE(0, 100);
+
+        private final int start;
+        private final int end;
+
+        Stage(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private final IntConsumer listener;
+    private volatile boolean cancelled;
+    private volatile Stage stage = Stage.LOAD;
+    private volatile long total = 1;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicInteger lastPercent = new AtomicInteger(-1);
+
+    /**
+     * Constructor
+     *
+     * @param listener to pass overall progress in percent to
+     */
+    public ImportProgress(IntConsumer listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return progress which is not reported to anyone
+     */
+    public static ImportProgress silent() {
+        return new ImportProgress(percent -> {
+        });
+    }
+
+    /**
+     * Requests cancellation of import, stages stop when reporting progress next time
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @throws CancellationException if import was cancelled
+     */
+    public void checkCancelled() {
+        if (cancelled) throw new CancellationException("import cancelled");
+    }
+
+    /**
+     * Begins next stage of import
+     *
+     * @param stage to begin
+     * @param total amount of work of stage, e.g. number of bytes or elements
+     * @throws CancellationException if import was cancelled
+     */
+    public void beginStage(Stage stage, long total) {
+        checkCancelled();
+        this.stage = stage;
+        this.total = Math.max(1, total);
+        processed.set(0);
+        report(0);
+    }
+
+    /**
+     * Adds processed work to current stage
+     *
+     * @param count amount of processed work
+     * @throws CancellationException if import was cancelled
+     */
+    public void advance(long count) {
+        checkCancelled();
+        report(processed.addAndGet(count));
+    }
+
+    /**
+     * Wraps stream so that bytes read are added to current stage
+     *
+     * @param input stream to track
+     * @return tracked stream, reading throws {@link CancellationException} if import was cancelled
+     */
+    public InputStream track(InputStream input) {
+        return new FilterInputStream(input) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1) advance(1);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) advance(n);
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(n);
+                advance(skipped);
+                return skipped;
+            }
+        };
+    }
+
+    private void report(long done) {
+        Stage current = stage;
+        int percent = current.start + (int) ((current.end - current.start) * Math.min(done, total) / total);
+        int last = lastPercent.get();
+        if (percent != last && lastPercent.compareAndSet(last, percent)) {
+            listener.accept(percent);
+        }
+    }
+}
@@ -7,12 +7,18 @@ import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.ifc.IfcReprese
 import org.openstreetmap.josm.plugins.indoorhelper.io.model.BIMtoOSMCatalog;
 import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.BIMDataCollection;
 import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.BIMObject3D;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.CoordinateBuffer;
 import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.*;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ImportProgress;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc.IfcPlacementCache.PlacementRotation;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc.IfcPlacementCache.PlacementTransform;
 import nl.tue.buildingsmart.express.population.EntityInstance;
 import nl.tue.buildingsmart.express.population.ModelPopulation;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ParserUtility.stringVectorToVector3D;
 
@@ -95,28 +101,51 @@ public class BIMtoOSMUtility {
      */
     public static List<BIMObject3D> transformBIMObjects(ModelPopulation ifcModel, GeometrySolution solution,
                                                         BIMtoOSMCatalog.BIMObject objectType, List<EntityInstance> bimObjects) {
-        ArrayList<BIMObject3D> transformedObjects = new ArrayList<>();
-
-        for (EntityInstance objectEntity : bimObjects) {
-
-            BIMObject3D object = transformBIMObject(ifcModel, solution, objectType, objectEntity);
-            if (object == null) {
-                continue;
-            }
+        return transformBIMObjects(ifcModel, solution, objectType, bimObjects, new AffineTransform3D(), null,
+                ImportProgress.silent(), null);
+    }
 
-            // check for loops in data set
-            List<Vector3D> objectGeometry = object.getCartesianGeometryCoordinates();
-            if (!objectGeometry.contains(IfcGeometryExtractor.defaultPoint)) {
-                List<List<Vector3D>> loops = splitClosedLoops(objectGeometry);
-                loops.forEach(l -> {
-                    object.setCartesianGeometryCoordinates(l);
-                    transformedObjects.add(object);
-                });
-            } else {
-                transformedObjects.add(object);
+    /**
+     * Transforms BIM objects for further operations. Extracts OSM relevant information and puts it into {@link BIMObject3D}.
+     * If a pool is given, objects are transformed in parallel. The order of transformed objects equals the order of
+     * bimObjects in both cases. If a storey section is given, faceted brep bodies of objects contained in a storey are
+     * sliced at the section plane of their storey.
+     * <p>
+     * Extraction of an object only reads the loaded ifcModel and the {@link IfcTypeIndex} and {@link IfcOpeningIndex}
+     * built while loading. Shared placement chains and mapped geometry are stored in the concurrent
+     * {@link IfcPlacementCache} and {@link IfcMappedGeometryCache}, all other data is created per object.
+     *
+     * @param ifcModel       ifcModel
+     * @param solution       geometry solution type
+     * @param objectType     relating BIMtoOSMCatalog.BIMObject
+     * @param bimObjects     All BIM objects of objectType
+     * @param worldTransform transformation applied to all objects after object placement, e.g. project north rotation
+     * @param pool           to transform objects in or null to transform objects sequentially
+     * @param progress       to report transformed objects to
+     * @param storeySection  section planes of storeys or null to keep all faces of faceted brep bodies
+     * @return Transformed BIM objects
+     * @throws java.util.concurrent.CancellationException if import was cancelled
+     */
+    public static List<BIMObject3D> transformBIMObjects(ModelPopulation ifcModel, GeometrySolution solution,
+                                                        BIMtoOSMCatalog.BIMObject objectType, List<EntityInstance> bimObjects,
+                                                        AffineTransform3D worldTransform, ForkJoinPool pool,
+                                                        ImportProgress progress, IfcStoreySection storeySection) {
+        BIMObject3D[] results = new BIMObject3D[bimObjects.size()];
+        if (pool == null || pool.getParallelism() == 1) {
+            for (int i = 0; i < results.length; i++) {
+                results[i] = transformBIMObject(ifcModel, solution, objectType, bimObjects.get(i), worldTransform, storeySection);
+                progress.advance(1);
             }
+        } else {
+            pool.invoke(new TransformTask(ifcModel, solution, objectType, bimObjects, worldTransform, storeySection,
+                    progress, results, 0, results.length));
         }
 
+        ArrayList<BIMObject3D> transformedObjects = new ArrayList<>();
+        for (BIMObject3D object : results) {
+            // loops of object geometry are kept as rings of coordinate buffer
+            if (object != null) transformedObjects.add(object);
+        }
         return transformedObjects;
     }
 
@@ -131,19 +160,48 @@ public class BIMtoOSMUtility {
      */
     public static BIMObject3D transformBIMObject(ModelPopulation ifcModel, GeometrySolution solution,
                                                  BIMtoOSMCatalog.BIMObject objectType, EntityInstance objectEntity) {
+        return transformBIMObject(ifcModel, solution, objectType, objectEntity, new AffineTransform3D(), null);
+    }
 
+    /**
+     * Transform BIM object for further operations. Extracts OSM relevant information and puts it into {@link BIMObject3D}
+     *
+     * @param ifcModel       ifcModel
+     * @param solution       geometry solution type
+     * @param objectType     relating BIMtoOSMCatalog.BIMObject
+     * @param objectEntity   BIM object of objectType
+     * @param worldTransform transformation applied after object placement, e.g. project north rotation
+     * @param storeySection  section planes of storeys or null to keep all faces of faceted brep bodies
+     * @return Transformed BIM object
+     */
+    public static BIMObject3D transformBIMObject(ModelPopulation ifcModel, GeometrySolution solution,
+                                                 BIMtoOSMCatalog.BIMObject objectType, EntityInstance objectEntity,
+                                                 AffineTransform3D worldTransform, IfcStoreySection storeySection) {
+
+        IfcPlacementCache placementCache = IfcPlacementCache.of(ifcModel);
         EntityInstance objectIFCLP = objectEntity.getAttributeValueBNasEntityInstance("ObjectPlacement");
-        BIMObject3D object = resolveObjectPlacement(objectIFCLP, new BIMObject3D(objectEntity.getId()));
+        PlacementTransform placement = resolvePlacementTransform(placementCache, objectIFCLP);
+        PlacementRotation placementRotation = resolvePlacementRotation(placementCache, objectIFCLP);
+        placementCache.countElement(placement.depth, placementRotation.depth);
+
+        BIMObject3D object = resolveObjectPlacement(placement, new BIMObject3D(objectEntity.getId()));
         object.setType(objectType);
         Vector3D cartesianOrigin = object.getTranslation();
-        Matrix3D rotMatrix = getObjectRotationMatrix(objectEntity);
+        Matrix3D rotMatrix = getObjectRotationMatrix(placementRotation);
+        if (cartesianOrigin == null || rotMatrix == null) return null;
+
+        // placement and world transformation are applied in one step
+        AffineTransform3D objectTransform = new AffineTransform3D(worldTransform);
+        objectTransform.multiply(new AffineTransform3D(rotMatrix, cartesianOrigin));
 
         // get object geometry
-        ArrayList<Vector3D> shapeDataOfObject = (ArrayList<Vector3D>) getShapeData(ifcModel, objectEntity, solution);
+        PlaneSection brepSection = solution.equals(GeometrySolution.BODY) && storeySection != null
+                ? getBrepSection(placementCache, storeySection, objectEntity, worldTransform, objectTransform) : null;
+        CoordinateBuffer shapeDataOfObject = getShapeData(ifcModel, objectEntity, solution, brepSection);
 
         // transform and prepare
-        if (cartesianOrigin != null && rotMatrix != null && (shapeDataOfObject != null && !shapeDataOfObject.isEmpty())) {
-            transformPoints(shapeDataOfObject, rotMatrix, cartesianOrigin);
+        if (shapeDataOfObject != null && !shapeDataOfObject.isEmpty()) {
+            shapeDataOfObject.transform(objectTransform);
             object.setCartesianGeometryCoordinates(shapeDataOfObject);
         } else {
             return null;
@@ -152,41 +210,126 @@ public class BIMtoOSMUtility {
         return object;
     }
 
+    /**
+     * Gets section plane of storey containing object in object coordinates. The storey elevation is taken from the
+     * resolved placement of the storey, so it is given in the same coordinate system as the object geometry.
+     *
+     * @param placementCache  cache of resolved placements
+     * @param storeySection   section planes of storeys
+     * @param objectEntity    BIM object to get section plane for
+     * @param worldTransform  transformation applied after object placement
+     * @param objectTransform transformation from object to world coordinates
+     * @return section plane in object coordinates or null if object is not contained in a storey
+     */
+    private static PlaneSection getBrepSection(IfcPlacementCache placementCache, IfcStoreySection storeySection,
+                                               EntityInstance objectEntity, AffineTransform3D worldTransform,
+                                               AffineTransform3D objectTransform) {
+        EntityInstance storey = storeySection.getStorey(objectEntity);
+        if (storey == null) return null;
+        PlacementTransform storeyPlacement = resolvePlacementTransform(placementCache,
+                storey.getAttributeValueBNasEntityInstance("ObjectPlacement"));
+        Vector3D storeyOrigin = storeyPlacement.transform.getTranslation();
+        worldTransform.transform(storeyOrigin);
+        double elevation = storeyOrigin.getZ() + storeySection.getCutHeight();
+
+        // plane z = elevation in world coordinates, z of object point p in world coordinates is row 2 of transform · p
+        Matrix3D rotation = objectTransform.getRotation();
+        Vector3D normal = new Vector3D(rotation.getM20(), rotation.getM21(), rotation.getM22());
+        return new PlaneSection(normal, elevation - objectTransform.getTranslation().getZ());
+    }
+
+    /**
+     * Gets transformation from object coordinates of element into object coordinates of relating element, e.g. from
+     * an opening into the element voided by it. Placements of both elements are resolved like in
+     * {@link #transformBIMObject}.
+     *
+     * @param ifcModel        ifcModel
+     * @param element         to transform coordinates of
+     * @param relatingElement to transform coordinates into
+     * @return transformation or null if a placement could not be resolved
+     */
+    static AffineTransform3D getRelativeTransform(ModelPopulation ifcModel, EntityInstance element,
+                                                  EntityInstance relatingElement) {
+        IfcPlacementCache placementCache = IfcPlacementCache.of(ifcModel);
+        AffineTransform3D relatingTransform = getPlacementTransform(placementCache, relatingElement);
+        AffineTransform3D elementTransform = getPlacementTransform(placementCache, element);
+        if (relatingTransform == null || elementTransform == null) return null;
+        relatingTransform.invert();
+        relatingTransform.multiply(elementTransform);
+        return relatingTransform;
+    }
+
+    /**
+     * Gets transformation from object coordinates of element into coordinates of its placement chain root
+     *
+     * @param placementCache cache of resolved placements
+     * @param objectEntity   BIM object to get transformation of
+     * @return transformation or null if rotation could not be resolved
+     */
+    private static AffineTransform3D getPlacementTransform(IfcPlacementCache placementCache, EntityInstance objectEntity) {
+        EntityInstance objectIFCLP = objectEntity.getAttributeValueBNasEntityInstance("ObjectPlacement");
+        Vector3D origin = resolvePlacementTransform(placementCache, objectIFCLP).transform.getTranslation();
+        Matrix3D rotMatrix = getObjectRotationMatrix(resolvePlacementRotation(placementCache, objectIFCLP));
+        if (rotMatrix == null) return null;
+        return new AffineTransform3D(rotMatrix, origin);
+    }
+
     /**
      * Method resolves placement of Ifc object and keeps the result in {@link BIMObject3D}
      *
-     * @param objectPlacementEntity of {@link BIMObject3D}
-     * @param object                to resolve placement of
+     * @param placement resolved placement chain of {@link BIMObject3D}
+     * @param object    to resolve placement of
      * @return {@link BIMObject3D} with resolved placement
      */
-    private static BIMObject3D resolveObjectPlacement(EntityInstance objectPlacementEntity, BIMObject3D object) {
+    private static BIMObject3D resolveObjectPlacement(PlacementTransform placement, BIMObject3D object) {
         if (object == null) return null;
-        if (objectPlacementEntity == null) return object;
+        // copy cached values, object values may be changed later on
+        object.setRotation(placement.transform.getRotation());
+        object.setTranslation(placement.transform.getTranslation());
+        return object;
+    }
+
+    /**
+     * Method resolves rotation and translation of placement chain from placement to root. Each placement
+     * of the chain is resolved once and cached.
+     *
+     * @param placementCache cache of resolved placements
+     * @param placement      IfcLocalPlacement entity
+     * @return resolved rotation and translation of placement
+     */
+    private static PlacementTransform resolvePlacementTransform(IfcPlacementCache placementCache, EntityInstance placement) {
+        if (placement == null) return new PlacementTransform(new AffineTransform3D(), 0);
+        PlacementTransform cached = placementCache.getTransform(placement.getId());
+        if (cached != null) return cached;
 
         // get objects IfcRelativePlacement entity
-        EntityInstance relativePlacement = objectPlacementEntity.getAttributeValueBNasEntityInstance("RelativePlacement");
+        EntityInstance relativePlacement = placement.getAttributeValueBNasEntityInstance("RelativePlacement");
 
-        // get rotation of this entity
+        // get rotation and translation of this entity
         Matrix3D rotation = getRotationFromRelativePlacement(relativePlacement);
-        if (rotation == null) return object;
-
-        // get translation of this entity
-        Vector3D translation = getTranslationFromRelativePlacement(relativePlacement);
-        if (translation == null) return object;
+        Vector3D translation = rotation != null ? getTranslationFromRelativePlacement(relativePlacement) : null;
 
         // check if this entity has placement parent (PlacementRelTo)
-        if (objectPlacementEntity.getAttributeValueBNasEntityInstance("PlacementRelTo") != null) {
-            EntityInstance placementRelTo = objectPlacementEntity.getAttributeValueBNasEntityInstance("PlacementRelTo");
-            resolveObjectPlacement(placementRelTo, object);
+        EntityInstance placementRelTo = placement.getAttributeValueBNasEntityInstance("PlacementRelTo");
+        PlacementTransform transform;
+        if (rotation != null && translation != null && placementRelTo != null) {
+            PlacementTransform parent = resolvePlacementTransform(placementCache, placementRelTo);
             // set new rotation
-            object.getRotation().multiply(rotation);
+            Matrix3D composedRotation = parent.transform.getRotation();
+            composedRotation.multiply(rotation);
             // set new translation
+            Vector3D composedTranslation = parent.transform.getTranslation();
             Matrix3D inverse = new Matrix3D(rotation);
             inverse.invert();
-            inverse.transform(object.getTranslation());
-            object.getTranslation().add(translation);
+            inverse.transform(composedTranslation);
+            composedTranslation.add(translation);
+            transform = new PlacementTransform(new AffineTransform3D(composedRotation, composedTranslation), parent.depth + 1);
+        } else {
+            transform = new PlacementTransform(new AffineTransform3D(), 1);
         }
-        return object;
+
+        placementCache.putTransform(placement.getId(), transform);
+        return transform;
     }
 
     /**
@@ -250,9 +393,23 @@ public class BIMtoOSMUtility {
      *
      * @param ifcModel ifcModel
      * @param object   BIM object
-     * @return Array including points of shape representation
+     * @return points of shape representation
+     */
+    public static CoordinateBuffer getShapeData(ModelPopulation ifcModel, EntityInstance object, GeometrySolution solution) {
+        return getShapeData(ifcModel, object, solution, null);
+    }
+
+    /**
+     * Method gets local shape representation of ifc object
+     *
+     * @param ifcModel    ifcModel
+     * @param object      BIM object
+     * @param solution    geometry solution type
+     * @param brepSection plane in object coordinates to slice faceted brep bodies with or null to keep all faces
+     * @return points of shape representation
      */
-    public static List<Vector3D> getShapeData(ModelPopulation ifcModel, EntityInstance object, GeometrySolution solution) {
+    public static CoordinateBuffer getShapeData(ModelPopulation ifcModel, EntityInstance object, GeometrySolution solution,
+                                                PlaneSection brepSection) {
 
         List<IfcRepresentation> repObjectIdentities = getIfcRepresentations(object);
         if (repObjectIdentities == null) return null;
@@ -260,7 +417,7 @@ public class BIMtoOSMUtility {
         if (solution.equals(GeometrySolution.BODY)) {
             IfcRepresentation bodyRepresentation = getIfcRepresentation(repObjectIdentities, RepresentationIdentifier.Body);
             if (bodyRepresentation != null) {
-                return IfcGeometryExtractor.getDataFromBodyRepresentation(ifcModel, bodyRepresentation);
+                return IfcGeometryExtractor.getDataFromBodyRepresentation(ifcModel, bodyRepresentation, brepSection);
             }
         } else if (solution.equals(GeometrySolution.BOUNDING_BOX)) {
             IfcRepresentation boxRepresentation = getIfcRepresentation(repObjectIdentities, RepresentationIdentifier.Box);
@@ -289,92 +446,69 @@ public class BIMtoOSMUtility {
     /**
      * Gets rotation matrix for ifc object
      *
-     * @param object to get rotation matrix for
-     * @return rotation matrix
+     * @param placementRotation resolved rotation of objects placement chain
+     * @return rotation matrix or null if rotation could not be resolved
      */
-    @SuppressWarnings("unchecked")
-    private static Matrix3D getObjectRotationMatrix(EntityInstance object) {
-        // get objects IfcLocalPlacement entity
-        EntityInstance objectIFCLP = object.getAttributeValueBNasEntityInstance("ObjectPlacement");
-
-        // get all RelativePlacements to root
-        ArrayList<EntityInstance> objectRP = getRelativePlacementsToRoot(objectIFCLP, new ArrayList<>());
-
-        double rotAngleX = 0.0;    // in rad
-        double rotAngleZ = 0.0;    // in rad
-        Vector3D parentXVector = null;
-        Vector3D parentZVector = null;
+    private static Matrix3D getObjectRotationMatrix(PlacementRotation placementRotation) {
+        if (!placementRotation.valid) return null;
 
         // TODO use one rotation matrix instead of each for each axis
-        for (EntityInstance relativeObject : objectRP) {
-            // get RefDirection (x axis vector)
-            List<String> xDirectionRatios;
-            List<String> zDirectionRatios;
-            try {
-                EntityInstance xAxisEntity = relativeObject.getAttributeValueBNasEntityInstance("RefDirection");
-                EntityInstance zAxisEntity = relativeObject.getAttributeValueBNasEntityInstance("Axis");
-                xDirectionRatios = (List<String>) xAxisEntity.getAttributeValueBN("DirectionRatios");
-                zDirectionRatios = (List<String>) zAxisEntity.getAttributeValueBN("DirectionRatios");
-            } catch (NullPointerException e) {
-                return null;
-            }
-
-            Vector3D xAxis = stringVectorToVector3D(xDirectionRatios);
-            if (xAxis == null) return null;
-            Vector3D zAxis = stringVectorToVector3D(zDirectionRatios);
-            if (zAxis == null) return null;
-            xAxis = retrieveXAxis(zAxis, xAxis);
-
-            // get x-axis rotation angle
-            if (parentXVector != null) {
-                rotAngleX += parentXVector.angleBetween(xAxis);
-            } else {
-                parentXVector = new Vector3D();
-            }
-            // update parent vector
-            parentXVector.setX(xAxis.getX());
-            parentXVector.setY(xAxis.getY());
-            parentXVector.setZ(xAxis.getZ());
-
-            // get z-axis rotation angle
-            if (parentZVector != null) {
-                rotAngleZ += parentZVector.angleBetween(zAxis);
-            } else {
-                parentZVector = new Vector3D();
-            }
-            // update parent vector
-            parentZVector.setX(zAxis.getX());
-            parentZVector.setY(zAxis.getY());
-            parentZVector.setZ(zAxis.getZ());
-        }
-
-        Matrix3D xMatrix = ParserMath.getRotationMatrixZ(rotAngleX);
-        Matrix3D zMatrix = ParserMath.getRotationMatrixX(rotAngleZ);
+        Matrix3D xMatrix = ParserMath.getRotationMatrixZ(placementRotation.angleX);
+        Matrix3D zMatrix = ParserMath.getRotationMatrixX(placementRotation.angleZ);
         xMatrix.multiply(zMatrix);
 
         return xMatrix;
     }
 
     /**
-     * Method runs recursively through ifc file and collects RelativePlacement EntityInstances from
-     * start to root entity
+     * Method resolves the accumulated x- and z-axis rotation angles of placement chain from placement to root.
+     * Each placement of the chain is resolved once and cached.
      *
-     * @param entity                   you want to collect the RelativePlacement for
-     * @param relativePlacementsToRoot empty list at beginning, needed for recursive iteration
-     * @return List with EntityInstances of RelativePlacement
+     * @param placementCache cache of resolved placements
+     * @param placement      IfcLocalPlacement entity
+     * @return resolved rotation angles of placement
      */
-    private static ArrayList<EntityInstance> getRelativePlacementsToRoot(EntityInstance entity, ArrayList<EntityInstance> relativePlacementsToRoot) {
-        if (entity == null) return relativePlacementsToRoot;
-
-        // get objects IfcRelativePlacement entity
-        EntityInstance relativePlacement = entity.getAttributeValueBNasEntityInstance("RelativePlacement");
-        relativePlacementsToRoot.add(relativePlacement);
+    @SuppressWarnings("unchecked")
+    private static PlacementRotation resolvePlacementRotation(IfcPlacementCache placementCache, EntityInstance placement) {
+        if (placement == null) return new PlacementRotation(true, 0.0, 0.0, null, null, 0);
+        PlacementRotation cached = placementCache.getRotation(placement.getId());
+        if (cached != null) return cached;
+
+        PlacementRotation rotation;
+        // get RefDirection (x axis vector)
+        List<String> xDirectionRatios;
+        List<String> zDirectionRatios;
+        try {
+            EntityInstance relativeObject = placement.getAttributeValueBNasEntityInstance("RelativePlacement");
+            EntityInstance xAxisEntity = relativeObject.getAttributeValueBNasEntityInstance("RefDirection");
+            EntityInstance zAxisEntity = relativeObject.getAttributeValueBNasEntityInstance("Axis");
+            xDirectionRatios = (List<String>) xAxisEntity.getAttributeValueBN("DirectionRatios");
+            zDirectionRatios = (List<String>) zAxisEntity.getAttributeValueBN("DirectionRatios");
+        } catch (NullPointerException e) {
+            xDirectionRatios = null;
+            zDirectionRatios = null;
+        }
+        Vector3D xAxis = xDirectionRatios != null ? stringVectorToVector3D(xDirectionRatios) : null;
+        Vector3D zAxis = zDirectionRatios != null ? stringVectorToVector3D(zDirectionRatios) : null;
 
-        // get id of placement relative to this (PlacementRelTo)
-        EntityInstance placementRelTo = entity.getAttributeValueBNasEntityInstance("PlacementRelTo");
-        getRelativePlacementsToRoot(placementRelTo, relativePlacementsToRoot);
+        if (xAxis == null || zAxis == null) {
+            rotation = new PlacementRotation(false, 0.0, 0.0, null, null, 1);
+        } else {
+            xAxis = retrieveXAxis(zAxis, xAxis);
+            PlacementRotation parent = resolvePlacementRotation(placementCache,
+                    placement.getAttributeValueBNasEntityInstance("PlacementRelTo"));
+            if (!parent.valid) {
+                rotation = new PlacementRotation(false, 0.0, 0.0, null, null, parent.depth + 1);
+            } else {
+                // get x-axis and z-axis rotation angle relative to parent
+                double angleX = parent.angleX + (parent.xAxis != null ? xAxis.angleBetween(parent.xAxis) : 0.0);
+                double angleZ = parent.angleZ + (parent.zAxis != null ? zAxis.angleBetween(parent.zAxis) : 0.0);
+                rotation = new PlacementRotation(true, angleX, angleZ, xAxis, zAxis, parent.depth + 1);
+            }
+        }
 
-        return relativePlacementsToRoot;
+        placementCache.putRotation(placement.getId(), rotation);
+        return rotation;
     }
 
     /**
@@ -404,20 +538,6 @@ public class BIMtoOSMUtility {
         return repObjectIdentities;
     }
 
-    /**
-     * Transforms the list of points using the given rotation matrix and translation vector
-     *
-     * @param points      to transform
-     * @param rotation    matrix
-     * @param translation vector
-     */
-    private static void transformPoints(ArrayList<Vector3D> points, Matrix3D rotation, Vector3D translation) {
-        points.forEach(p -> {
-            rotation.transform(p);
-            p.add(translation);
-        });
-    }
-
     /**
      * Gets the actual x-axis vector from reference system
      *
@@ -435,26 +555,53 @@ public class BIMtoOSMUtility {
     }
 
     /**
-     * Method finds and slips loops in data set
-     *
-     * @param data to check for loops
-     * @return list with data for each loop
+     * Task transforming a range of BIM objects, splits range until it is small enough to be transformed in one task.
+     * Each transformed object is stored at index of its entity, so results keep the order of input.
      */
-    private static List<List<Vector3D>> splitClosedLoops(List<Vector3D> data) {
-        List<List<Vector3D>> loops = new ArrayList<>();
-        ArrayList<Vector3D> loop = new ArrayList<>();
-        for (Vector3D point : data) {
-            if (point.equalsVector(IfcGeometryExtractor.defaultPoint) && !loop.isEmpty()) {
-                loops.add(loop);
-                loop = new ArrayList<>();
-            } else if (!point.equalsVector(IfcGeometryExtractor.defaultPoint)) {
-                loop.add(point);
-            }
-            if (data.indexOf(point) == data.size() - 1 && !loop.isEmpty()) {
-                loops.add(loop);
+    private static class TransformTask extends RecursiveAction {
+        // objects transformed by one task, single objects are too small to be worth a task
+        private static final int THRESHOLD = 8;
+
+        private final ModelPopulation ifcModel;
+        private final GeometrySolution solution;
+        private final BIMtoOSMCatalog.BIMObject objectType;
+        private final List<EntityInstance> bimObjects;
+        private final AffineTransform3D worldTransform;
+        private final IfcStoreySection storeySection;
+        private final ImportProgress progress;
+        private final BIMObject3D[] results;
+        private final int start;
+        private final int end;
+
+        TransformTask(ModelPopulation ifcModel, GeometrySolution solution, BIMtoOSMCatalog.BIMObject objectType,
+                      List<EntityInstance> bimObjects, AffineTransform3D worldTransform, IfcStoreySection storeySection,
+                      ImportProgress progress, BIMObject3D[] results, int start, int end) {
+            this.ifcModel = ifcModel;
+            this.solution = solution;
+            this.objectType = objectType;
+            this.bimObjects = bimObjects;
+            this.worldTransform = worldTransform;
+            this.storeySection = storeySection;
+            this.progress = progress;
+            this.results = results;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= THRESHOLD) {
+                for (int i = start; i < end; i++) {
+                    results[i] = transformBIMObject(ifcModel, solution, objectType, bimObjects.get(i), worldTransform, storeySection);
+                    progress.advance(1);
+                }
+                return;
             }
+            int middle = (start + end) >>> 1;
+            invokeAll(new TransformTask(ifcModel, solution, objectType, bimObjects, worldTransform, storeySection, progress,
+                            results, start, middle),
+                    new TransformTask(ifcModel, solution, objectType, bimObjects, worldTransform, storeySection, progress,
+                            results, middle, end));
         }
-        return loops;
     }
-
 }
@@ -1,8 +1,14 @@
 // License: AGPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc;
 
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.CoordinateBuffer;
 import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.ifc.IfcRepresentation;
 import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.ifc.IfcRepresentationCatalog.*;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.AffineTransform3D;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.Matrix3D;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.MeshOutline;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.PlaneSection;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.PolygonClipper;
 import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.Vector3D;
 import nl.tue.buildingsmart.express.population.EntityInstance;
 import nl.tue.buildingsmart.express.population.ModelPopulation;
@@ -12,14 +18,13 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ParserUtility.prepareDoubleString;
+import static org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ParserUtility.stringVectorToVector3D;
 
 /**
  * Class providing methods to extract OSM data from BIM data
  */
 public class IfcGeometryExtractor {
 
-    public static final Vector3D defaultPoint = new Vector3D(-99.0, -99.0, -99.0);
-
     /**
      * Three boolean operators used in definition of CSG solids.
      */
@@ -34,10 +39,25 @@ public class IfcGeometryExtractor {
      *
      * @param ifcModel           ifc Model
      * @param bodyRepresentation representation of body
-     * @return List of points representing object shape or null if object type not supported
+     * @return points representing object shape, one ring per loop, or null if object type not supported
      */
-    public static List<Vector3D> getDataFromBodyRepresentation(ModelPopulation ifcModel, IfcRepresentation bodyRepresentation) {
-        ArrayList<Vector3D> shapeRep = new ArrayList<>();
+    public static CoordinateBuffer getDataFromBodyRepresentation(ModelPopulation ifcModel, IfcRepresentation bodyRepresentation) {
+        return getDataFromBodyRepresentation(ifcModel, bodyRepresentation, null);
+    }
+
+    /**
+     * Extract representation data from IfcRepresentationItem body. IfcFacetedBrep items are sliced with section plane,
+     * only the rings of the section are kept instead of all face loops.
+     *
+     * @param ifcModel           ifc Model
+     * @param bodyRepresentation representation of body
+     * @param brepSection        plane in coordinates of representation to slice IfcFacetedBrep items with or null
+     *                           to keep all face loops
+     * @return points representing object shape, one ring per loop, or null if object type not supported
+     */
+    public static CoordinateBuffer getDataFromBodyRepresentation(ModelPopulation ifcModel, IfcRepresentation bodyRepresentation,
+                                                                 PlaneSection brepSection) {
+        CoordinateBuffer shapeRep = new CoordinateBuffer();
 
         // get IfcObject and RepresentationIdentifier
         EntityInstance repObject = bodyRepresentation.getEntity();
@@ -62,17 +82,20 @@ public class IfcGeometryExtractor {
                 // TODO extract data
                 logUnsupportedRepresentationInfo(repItemType);
             } else if (repItemType.equals(BrepRepresentationTypeItems.IfcFacetedBrep.name())) {
-                ArrayList<Vector3D> shapeData = getIfcFacetedBrepGeometry(ifcModel, item);
+                CoordinateBuffer shapeData = brepSection != null
+                        ? getIfcFacetedBrepSection(ifcModel, item, brepSection)
+                        : getIfcFacetedBrepGeometry(ifcModel, item);
                 // check if entity includes(floor-)openings and handle them
                 // shapeDataWithOpeningHandling will be null, if no openings exists or type of opening not supported
-                ArrayList<Vector3D> shapeDataWithOpeningHandling = handleOpenings(ifcModel, shapeData, bodyRepresentation.getRootEntity());
-                if (shapeDataWithOpeningHandling != null) shapeRep.addAll(shapeDataWithOpeningHandling);
-                else if (shapeData != null) shapeRep.addAll(shapeData);
+                CoordinateBuffer shapeDataWithOpeningHandling = handleOpenings(ifcModel, shapeData, brepSection != null,
+                        bodyRepresentation.getRootEntity());
+                if (shapeDataWithOpeningHandling != null) shapeRep.addRings(shapeDataWithOpeningHandling);
+                else if (shapeData != null) shapeRep.addRings(shapeData);
             } else if (repItemType.equals(CSGRepresentationTypeItems.IfcBooleanResult.name())) {
                 Object operatorObject = item.getAttributeValueBN("Operator");
                 if (operatorObject == null) return null;
                 String operator = operatorObject.toString();
-                ArrayList<Vector3D> shapeData = null;
+                CoordinateBuffer shapeData = null;
                 if (operator.equals("." + IfcBooleanOperator.DIFFERENCE + ".")) {
                     shapeData = getIfcBooleanResultGeometry(ifcModel, item, IfcBooleanOperator.DIFFERENCE);
                 } else if (operator.equals("." + IfcBooleanOperator.INTERSECTION + ".")) {
@@ -82,9 +105,9 @@ public class IfcGeometryExtractor {
                 }
                 // check if entity includes(floor-)openings and handle them
                 // shapeDataWithOpeningHandling will be null, if no openings exists or type of opening not supported
-                ArrayList<Vector3D> shapeDataWithOpeningHandling = handleOpenings(ifcModel, shapeData, bodyRepresentation.getRootEntity());
-                if (shapeDataWithOpeningHandling != null) shapeRep.addAll(shapeDataWithOpeningHandling);
-                else if (shapeData != null) shapeRep.addAll(shapeData);
+                CoordinateBuffer shapeDataWithOpeningHandling = handleOpenings(ifcModel, shapeData, true, bodyRepresentation.getRootEntity());
+                if (shapeDataWithOpeningHandling != null) shapeRep.addRings(shapeDataWithOpeningHandling);
+                else if (shapeData != null) shapeRep.addRings(shapeData);
             } else if (repItemType.equals(CSGRepresentationTypeItems.IfcCsgSolid.name())) {
                 // TODO extract data
                 logUnsupportedRepresentationInfo(repItemType);
@@ -92,18 +115,26 @@ public class IfcGeometryExtractor {
                 // TODO extract data
                 logUnsupportedRepresentationInfo(repItemType);
             } else if (repItemType.equals(TessellationRepresentationTypeItems.IfcTessellatedFaceSet.name())) {
-                // TODO extract data
-                logUnsupportedRepresentationInfo(repItemType);
+                CoordinateBuffer shapeData = getIfcTessellatedFaceSetGeometry(ifcModel, item);
+                // check if entity includes(floor-)openings and handle them
+                // shapeDataWithOpeningHandling will be null, if no openings exists or type of opening not supported
+                CoordinateBuffer shapeDataWithOpeningHandling = handleOpenings(ifcModel, shapeData, true, bodyRepresentation.getRootEntity());
+                if (shapeDataWithOpeningHandling != null) shapeRep.addRings(shapeDataWithOpeningHandling);
+                else if (shapeData != null) shapeRep.addRings(shapeData);
             } else if (repItemType.equals(ClippingRepresentationTypeItems.IfcBooleanClippingResult.name())) {
-                ArrayList<Vector3D> shapeData = getIfcBooleanResultGeometry(ifcModel, item, IfcBooleanOperator.DIFFERENCE);
+                CoordinateBuffer shapeData = getIfcBooleanResultGeometry(ifcModel, item, IfcBooleanOperator.DIFFERENCE);
                 // check if entity includes(floor-)openings and handle them
                 // shapeDataWithOpeningHandling will be null, if no openings exists or type of opening not supported
-                ArrayList<Vector3D> shapeDataWithOpeningHandling = handleOpenings(ifcModel, shapeData, bodyRepresentation.getRootEntity());
-                if (shapeDataWithOpeningHandling != null) shapeRep.addAll(shapeDataWithOpeningHandling);
-                else if (shapeData != null) shapeRep.addAll(shapeData);
+                CoordinateBuffer shapeDataWithOpeningHandling = handleOpenings(ifcModel, shapeData, true, bodyRepresentation.getRootEntity());
+                if (shapeDataWithOpeningHandling != null) shapeRep.addRings(shapeDataWithOpeningHandling);
+                else if (shapeData != null) shapeRep.addRings(shapeData);
             } else if (repItemType.equals(SurfaceModelRepresentationTypeItems.IfcTessellatedItem.name())) {
-                // TODO extract data
-                logUnsupportedRepresentationInfo(repItemType);
+                CoordinateBuffer shapeData = getIfcTessellatedFaceSetGeometry(ifcModel, item);
+                // check if entity includes(floor-)openings and handle them
+                // shapeDataWithOpeningHandling will be null, if no openings exists or type of opening not supported
+                CoordinateBuffer shapeDataWithOpeningHandling = handleOpenings(ifcModel, shapeData, true, bodyRepresentation.getRootEntity());
+                if (shapeDataWithOpeningHandling != null) shapeRep.addRings(shapeDataWithOpeningHandling);
+                else if (shapeData != null) shapeRep.addRings(shapeData);
             } else if (repItemType.equals(SurfaceModelRepresentationTypeItems.IfcShellBasedSurfaceModel.name())) {
                 // TODO extract data
                 logUnsupportedRepresentationInfo(repItemType);
@@ -111,18 +142,22 @@ public class IfcGeometryExtractor {
                 // TODO extract data
                 logUnsupportedRepresentationInfo(repItemType);
             } else if (repItemType.equals(SweptSolidRepresentationTypeItems.IfcExtrudedAreaSolid.name())) {
-                ArrayList<Vector3D> shapeData = getIfcExtrudedAreaSolidGeometry(ifcModel, item);
+                CoordinateBuffer shapeData = getIfcExtrudedAreaSolidGeometry(ifcModel, item);
                 // check if entity includes(floor-)openings and handle them
                 // shapeDataWithOpeningHandling will be null, if no openings exists or type of opening not supported
-                ArrayList<Vector3D> shapeDataWithOpeningHandling = handleOpenings(ifcModel, shapeData, bodyRepresentation.getRootEntity());
-                if (shapeDataWithOpeningHandling != null) shapeRep.addAll(shapeDataWithOpeningHandling);
-                else if (shapeData != null) shapeRep.addAll(shapeData);
+                CoordinateBuffer shapeDataWithOpeningHandling = handleOpenings(ifcModel, shapeData, false, bodyRepresentation.getRootEntity());
+                if (shapeDataWithOpeningHandling != null) shapeRep.addRings(shapeDataWithOpeningHandling);
+                else if (shapeData != null) shapeRep.addRings(shapeData);
             } else if (repItemType.equals(SweptSolidRepresentationTypeItems.IfcRevolvedAreaSolid.name())) {
                 // TODO extract data
                 logUnsupportedRepresentationInfo(repItemType);
             } else if (repItemType.equals(MappedRepresentationTypeItems.IfcMappedItem.name())) {
-                // TODO extract data
-                logUnsupportedRepresentationInfo(repItemType);
+                CoordinateBuffer shapeData = getIfcMappedItemGeometry(ifcModel, item);
+                // check if entity includes(floor-)openings and handle them
+                // shapeDataWithOpeningHandling will be null, if no openings exists or type of opening not supported
+                CoordinateBuffer shapeDataWithOpeningHandling = handleOpenings(ifcModel, shapeData, true, bodyRepresentation.getRootEntity());
+                if (shapeDataWithOpeningHandling != null) shapeRep.addRings(shapeDataWithOpeningHandling);
+                else if (shapeData != null) shapeRep.addRings(shapeData);
             } else {
                 logUnsupportedRepresentationInfo(repItemType);
             }
@@ -136,10 +171,10 @@ public class IfcGeometryExtractor {
      *
      * @param ifcModel          ifc Model
      * @param boxRepresentation representation of box
-     * @return List of points representing object shape or null if object type not supported
+     * @return points representing object shape, one ring per box, or null if object type not supported
      */
-    public static List<Vector3D> getDataFromBoxRepresentation(ModelPopulation ifcModel, IfcRepresentation boxRepresentation) {
-        ArrayList<Vector3D> shapeRep = new ArrayList<>();
+    public static CoordinateBuffer getDataFromBoxRepresentation(ModelPopulation ifcModel, IfcRepresentation boxRepresentation) {
+        CoordinateBuffer shapeRep = new CoordinateBuffer();
 
         // get IfcObject and RepresentationIdentifier
         EntityInstance repObject = boxRepresentation.getEntity();
@@ -161,13 +196,12 @@ public class IfcGeometryExtractor {
                 double xDim = prepareDoubleString((String) item.getAttributeValueBN("XDim"));
                 double yDim = prepareDoubleString((String) item.getAttributeValueBN("YDim"));
                 // get points of shape
-                ArrayList<Vector3D> cartesianPointsOfBB = new ArrayList<>();
-                cartesianPointsOfBB.add(new Vector3D(cPointAsVector3D.getX(), cPointAsVector3D.getY(), cPointAsVector3D.getZ()));
-                cartesianPointsOfBB.add(new Vector3D(cPointAsVector3D.getX() + xDim, cPointAsVector3D.getY(), cPointAsVector3D.getZ()));
-                cartesianPointsOfBB.add(new Vector3D(cPointAsVector3D.getX() + xDim, cPointAsVector3D.getY() + yDim, cPointAsVector3D.getZ()));
-                cartesianPointsOfBB.add(new Vector3D(cPointAsVector3D.getX(), cPointAsVector3D.getY() + yDim, cPointAsVector3D.getZ()));
-                cartesianPointsOfBB.add(new Vector3D(cPointAsVector3D.getX(), cPointAsVector3D.getY(), cPointAsVector3D.getZ()));
-                shapeRep.addAll(cartesianPointsOfBB);
+                shapeRep.add(cPointAsVector3D.getX(), cPointAsVector3D.getY(), cPointAsVector3D.getZ());
+                shapeRep.add(cPointAsVector3D.getX() + xDim, cPointAsVector3D.getY(), cPointAsVector3D.getZ());
+                shapeRep.add(cPointAsVector3D.getX() + xDim, cPointAsVector3D.getY() + yDim, cPointAsVector3D.getZ());
+                shapeRep.add(cPointAsVector3D.getX(), cPointAsVector3D.getY() + yDim, cPointAsVector3D.getZ());
+                shapeRep.add(cPointAsVector3D.getX(), cPointAsVector3D.getY(), cPointAsVector3D.getZ());
+                shapeRep.closeRing();
             } else {
                 logUnsupportedRepresentationInfo(repItemType);
             }
@@ -183,43 +217,341 @@ public class IfcGeometryExtractor {
      * @param faceBrepItem to get shape representation coordinates for
      * @return points representing shape of IfcFacetedBrep
      */
-    private static ArrayList<Vector3D> getIfcFacetedBrepGeometry(ModelPopulation ifcModel, EntityInstance faceBrepItem) {
+    private static CoordinateBuffer getIfcFacetedBrepGeometry(ModelPopulation ifcModel, EntityInstance faceBrepItem) {
         // get IfcClosedShell stored in IfcFacetedBrep.Outer
         EntityInstance closedShell = faceBrepItem.getAttributeValueBNasEntityInstance("Outer");
         return getIfcClosedShellGeometry(ifcModel, closedShell);
     }
 
+    /**
+     * Method slices IfcFacetedBrep object with plane. If plane does not intersect the brep, e.g. slabs below the
+     * plane, the brep is sliced halfway between its lowest and highest vertex.
+     *
+     * @param ifcModel     ifc model
+     * @param faceBrepItem to slice
+     * @param section      plane to slice brep with
+     * @return closed rings of section, holes marked as inner rings
+     */
+    private static CoordinateBuffer getIfcFacetedBrepSection(ModelPopulation ifcModel, EntityInstance faceBrepItem,
+                                                             PlaneSection section) {
+        EntityInstance closedShell = faceBrepItem.getAttributeValueBNasEntityInstance("Outer");
+        List<CoordinateBuffer> faces = getIfcClosedShellFaces(ifcModel, closedShell);
+        if (faces == null) return null;
+        return section.within(faces).intersect(faces);
+    }
+
     /**
      * Method extracts shape representation coordinates from IfcClosedShell object
      *
      * @param ifcModel  ifc model
      * @param shellItem to get shape representation coordinates for
-     * @return points representing shape of IfcClosedShell
+     * @return points representing shape of IfcClosedShell, one ring per loop
      */
-    private static ArrayList<Vector3D> getIfcClosedShellGeometry(ModelPopulation ifcModel, EntityInstance shellItem) {
+    private static CoordinateBuffer getIfcClosedShellGeometry(ModelPopulation ifcModel, EntityInstance shellItem) {
+        List<CoordinateBuffer> faces = getIfcClosedShellFaces(ifcModel, shellItem);
+        if (faces == null) return null;
+
+        // each loop is kept as separate ring
+        CoordinateBuffer shapePoints = new CoordinateBuffer();
+        faces.forEach(shapePoints::addRings);
+        return shapePoints;
+    }
+
+    /**
+     * Method extracts faces of IfcClosedShell object. The loop with the largest projected area is taken as outer loop
+     * of a face, bounds are not required to be marked as IfcFaceOuterBound.
+     *
+     * @param ifcModel  ifc model
+     * @param shellItem to get faces of
+     * @return points of each IfcFace, outer loop first and its other loops marked as inner rings
+     */
+    private static List<CoordinateBuffer> getIfcClosedShellFaces(ModelPopulation ifcModel, EntityInstance shellItem) {
         // get IfcFaces of IfcClosedShell
         ArrayList<EntityInstance> facesOfClosedShell = shellItem.getAttributeValueBNasEntityInstanceList("CfsFaces");
 
-        // get IfcFaceBounds of every IfcFace
-        ArrayList<EntityInstance> faceBoundsOfClosedShell = new ArrayList<>();
-        facesOfClosedShell.forEach(face -> faceBoundsOfClosedShell.addAll(face.getAttributeValueBNasEntityInstanceList("Bounds")));
-
-        // get IfcLoop of every IfcFaceBounds
-        ArrayList<EntityInstance> loopsOfClosedShell = new ArrayList<>();
-        faceBoundsOfClosedShell.forEach(bound -> loopsOfClosedShell.addAll(bound.getAttributeValueBNasEntityInstanceList("Bound")));
-
-        // collect points of IfcLoops
-        ArrayList<Vector3D> shapePoints = new ArrayList<>();
-        for (EntityInstance loop : loopsOfClosedShell) {
-            ArrayList<Vector3D> pointsOfLoop = getIfcLoopGeometry(ifcModel, loop);
-            if (pointsOfLoop == null) return null;
-            // workaround: Add points of each loop to shapePoints. Also add a default point after each loop as separator
-            // (needed later on for rendering)
-            shapePoints.addAll(pointsOfLoop);
-            shapePoints.add(defaultPoint);
+        List<CoordinateBuffer> faces = new ArrayList<>(facesOfClosedShell.size());
+        for (EntityInstance face : facesOfClosedShell) {
+            // collect points of IfcLoop of every IfcFaceBound
+            List<CoordinateBuffer> loops = new ArrayList<>();
+            int outerLoop = 0;
+            double outerArea = -1.0;
+            for (EntityInstance bound : face.getAttributeValueBNasEntityInstanceList("Bounds")) {
+                for (EntityInstance loop : bound.getAttributeValueBNasEntityInstanceList("Bound")) {
+                    CoordinateBuffer pointsOfLoop = getIfcLoopGeometry(ifcModel, loop);
+                    if (pointsOfLoop == null) return null;
+                    double area = pointsOfLoop.getRingCount() > 0 ? Math.abs(PolygonClipper.getSignedArea(pointsOfLoop, 0)) : 0.0;
+                    if (area > outerArea) {
+                        outerLoop = loops.size();
+                        outerArea = area;
+                    }
+                    loops.add(pointsOfLoop);
+                }
+            }
+            CoordinateBuffer pointsOfFace = new CoordinateBuffer();
+            if (!loops.isEmpty()) pointsOfFace.addRings(loops.get(outerLoop));
+            for (int i = 0; i < loops.size(); i++) {
+                if (i == outerLoop) continue;
+                pointsOfFace.addRings(loops.get(i));
+                pointsOfFace.markInnerRing();
+            }
+            faces.add(pointsOfFace);
         }
+        return faces;
+    }
 
-        return shapePoints;
+    /**
+     * Method extracts footprint of IfcTriangulatedFaceSet or IfcPolygonalFaceSet object. The point list is read once
+     * into a primitive array and faces are passed as index arrays to {@link MeshOutline}.
+     *
+     * @param ifcModel ifc model
+     * @param faceSet  to get footprint of
+     * @return rings of footprint or null if face set is not supported
+     */
+    private static CoordinateBuffer getIfcTessellatedFaceSetGeometry(ModelPopulation ifcModel, EntityInstance faceSet) {
+        IfcTypeIndex typeIndex = IfcTypeIndex.of(ifcModel);
+        boolean triangulated = typeIndex.isOfType(faceSet, TessellationRepresentationTypeItems.IfcTriangulatedFaceSet.name());
+        if (!triangulated && !typeIndex.isOfType(faceSet, TessellationRepresentationTypeItems.IfcPolygonalFaceSet.name())) {
+            logUnsupportedRepresentationInfo(String.valueOf(faceSet.getEntityDefinition()));
+            return null;
+        }
+
+        // get all points of IfcCartesianPointList3D
+        EntityInstance pointList = faceSet.getAttributeValueBNasEntityInstance("Coordinates");
+        if (pointList == null || !(pointList.getAttributeValueBN("CoordList") instanceof List)) return null;
+        List<?> coordList = (List<?>) pointList.getAttributeValueBN("CoordList");
+        double[] coordinates = new double[coordList.size() * 3];
+        for (int i = 0; i < coordList.size(); i++) {
+            if (!(coordList.get(i) instanceof List)) return null;
+            List<?> point = (List<?>) coordList.get(i);
+            for (int j = 0; j < 3; j++) {
+                coordinates[i * 3 + j] = j < point.size() ? prepareDoubleString(String.valueOf(point.get(j))) : 0.0;
+                if (Double.isNaN(coordinates[i * 3 + j])) return null;
+            }
+        }
+
+        // optional PnIndex maps CoordIndex to points of point list
+        int[] pnIndex = null;
+        if (faceSet.getAttributeValueBN("PnIndex") instanceof List) {
+            pnIndex = getVertexIndices(faceSet.getAttributeValueBN("PnIndex"), null, coordList.size());
+            if (pnIndex == null) return null;
+        }
+
+        MeshOutline outline = new MeshOutline(coordinates, coordList.size());
+        if (triangulated) {
+            if (!(faceSet.getAttributeValueBN("CoordIndex") instanceof List)) return null;
+            List<?> triangles = (List<?>) faceSet.getAttributeValueBN("CoordIndex");
+            // vertex indices of all triangles in one array
+            int[] indices = new int[triangles.size() * 3];
+            for (int i = 0; i < triangles.size(); i++) {
+                if (!(triangles.get(i) instanceof List) || ((List<?>) triangles.get(i)).size() != 3) return null;
+                if (!getVertexIndices(triangles.get(i), pnIndex, coordList.size(), indices, i * 3)) return null;
+            }
+            for (int i = 0; i < triangles.size(); i++) {
+                outline.addFace(indices, i * 3, 3);
+            }
+        } else {
+            for (EntityInstance face : faceSet.getAttributeValueBNasEntityInstanceList("Faces")) {
+                int[] indices = getVertexIndices(face.getAttributeValueBN("CoordIndex"), pnIndex, coordList.size());
+                if (indices == null) return null;
+                if (!outline.addFace(indices, 0, indices.length)) continue;
+
+                // inner bounds of IfcIndexedPolygonalFaceWithVoids
+                if (!typeIndex.isOfType(face, IndexedPolygonalFaceTypeItems.IfcIndexedPolygonalFaceWithVoids.name())) continue;
+                Object innerCoordIndices = face.getAttributeValueBN("InnerCoordIndices");
+                if (!(innerCoordIndices instanceof List)) continue;
+                for (Object innerLoop : (List<?>) innerCoordIndices) {
+                    int[] innerIndices = getVertexIndices(innerLoop, pnIndex, coordList.size());
+                    if (innerIndices == null) return null;
+                    outline.addInnerLoop(innerIndices, 0, innerIndices.length);
+                }
+            }
+        }
+        return outline.getOutline();
+    }
+
+    /**
+     * Parses list of one-based indices into zero-based vertex indices
+     *
+     * @param indexList   list of indices
+     * @param pnIndex     zero-based vertex indices the parsed indices refer to or null if they refer to vertices directly
+     * @param vertexCount number of vertices
+     * @return zero-based vertex indices or null if list or any index is invalid
+     */
+    private static int[] getVertexIndices(Object indexList, int[] pnIndex, int vertexCount) {
+        if (!(indexList instanceof List)) return null;
+        int[] indices = new int[((List<?>) indexList).size()];
+        return getVertexIndices(indexList, pnIndex, vertexCount, indices, 0) ? indices : null;
+    }
+
+    /**
+     * Parses list of one-based indices into zero-based vertex indices
+     *
+     * @param indexList   list of indices
+     * @param pnIndex     zero-based vertex indices the parsed indices refer to or null if they refer to vertices directly
+     * @param vertexCount number of vertices
+     * @param indices     array to write parsed indices to
+     * @param start       index of indices to write first parsed index to
+     * @return true if all indices are valid, else false
+     */
+    private static boolean getVertexIndices(Object indexList, int[] pnIndex, int vertexCount, int[] indices, int start) {
+        if (!(indexList instanceof List)) return false;
+        List<?> values = (List<?>) indexList;
+        try {
+            for (int i = 0; i < values.size(); i++) {
+                int index = Integer.parseInt(String.valueOf(values.get(i)).trim()) - 1;
+                if (pnIndex != null) index = index >= 0 && index < pnIndex.length ? pnIndex[index] : -1;
+                if (index < 0 || index >= vertexCount) return false;
+                indices[start + i] = index;
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Method extracts shape representation coordinates from IfcMappedItem object. The footprint of the mapped
+     * IfcRepresentationMap is extracted once per model and cached, each instance only applies its MappingTarget.
+     *
+     * @param ifcModel   ifc model
+     * @param mappedItem to get shape representation coordinates for
+     * @return footprint of IfcMappedItem in coordinates of representation
+     */
+    private static CoordinateBuffer getIfcMappedItemGeometry(ModelPopulation ifcModel, EntityInstance mappedItem) {
+        EntityInstance mappingSource = mappedItem.getAttributeValueBNasEntityInstance("MappingSource");
+        EntityInstance mappingTarget = mappedItem.getAttributeValueBNasEntityInstance("MappingTarget");
+        if (mappingSource == null || mappingTarget == null) return null;
+
+        CoordinateBuffer sourceFootprint = IfcMappedGeometryCache.of(ifcModel).getGeometry(mappingSource,
+                source -> getIfcRepresentationMapFootprint(ifcModel, source));
+        AffineTransform3D targetTransform = getIfcCartesianTransformationOperatorTransform(ifcModel, mappingTarget);
+        if (sourceFootprint == null || targetTransform == null) return null;
+
+        // cached footprint is shared by all instances
+        CoordinateBuffer footprint = new CoordinateBuffer(sourceFootprint);
+        footprint.transform(targetTransform);
+        return footprint;
+    }
+
+    /**
+     * Method extracts footprint of IfcRepresentationMap object. Openings are not handled, they belong to the elements
+     * using the representation map.
+     *
+     * @param ifcModel          ifc model
+     * @param representationMap to get footprint of
+     * @return footprint in coordinates of MappingOrigin parent or null if representation is not supported
+     */
+    private static CoordinateBuffer getIfcRepresentationMapFootprint(ModelPopulation ifcModel, EntityInstance representationMap) {
+        EntityInstance mappedRepresentation = representationMap.getAttributeValueBNasEntityInstance("MappedRepresentation");
+        if (mappedRepresentation == null) return null;
+        IfcRepresentation representation = IfcObjectIdentifier.identifyShapeRepresentation(mappedRepresentation);
+        if (!representation.isFilled()) return null;
+
+        CoordinateBuffer shapeData = getDataFromBodyRepresentation(ifcModel, representation);
+        AffineTransform3D originTransform = getIfcAxis2PlacementTransform(
+                representationMap.getAttributeValueBNasEntityInstance("MappingOrigin"));
+        if (shapeData == null || shapeData.isEmpty() || originTransform == null) return null;
+        shapeData.transform(originTransform);
+        return getFootprint(shapeData);
+    }
+
+    /**
+     * Method gets transformation of IfcCartesianTransformationOperator3D object, including non uniform scale
+     *
+     * @param ifcModel ifc model
+     * @param operator to get transformation of
+     * @return transformation or null if operator could not be parsed
+     */
+    private static AffineTransform3D getIfcCartesianTransformationOperatorTransform(ModelPopulation ifcModel, EntityInstance operator) {
+        Vector3D localOrigin = ifcCoordinatesToVector3D(operator.getAttributeValueBNasEntityInstance("LocalOrigin"));
+        if (localOrigin == null) return null;
+        double scale = getOptionalDouble(operator, "Scale", 1.0);
+        double scale2 = scale;
+        double scale3 = scale;
+        if (IfcTypeIndex.of(ifcModel).isOfType(operator,
+                CartesianTransformationOperatorTypeItems.IfcCartesianTransformationOperator3DnonUniform.name())) {
+            scale2 = getOptionalDouble(operator, "Scale2", scale);
+            scale3 = getOptionalDouble(operator, "Scale3", scale);
+        }
+        return getAxesTransform(localOrigin, getOptionalDirection(operator, "Axis1"), getOptionalDirection(operator, "Axis2"),
+                getOptionalDirection(operator, "Axis3"), scale, scale2, scale3);
+    }
+
+    /**
+     * Method gets transformation of IfcAxis2Placement3D or IfcAxis2Placement2D object
+     *
+     * @param placement to get transformation of
+     * @return transformation from placement coordinates into parent coordinates or null if placement could not be parsed
+     */
+    private static AffineTransform3D getIfcAxis2PlacementTransform(EntityInstance placement) {
+        if (placement == null) return null;
+        Vector3D location = ifcCoordinatesToVector3D(placement.getAttributeValueBNasEntityInstance("Location"));
+        if (location == null) return null;
+        return getAxesTransform(location, getOptionalDirection(placement, "RefDirection"), null,
+                getOptionalDirection(placement, "Axis"), 1.0, 1.0, 1.0);
+    }
+
+    /**
+     * Method builds transformation from axes like IfcBaseAxis, missing axes default to the axes of parent
+     *
+     * @param origin of axes
+     * @param axis1  x-axis or null
+     * @param axis2  y-axis or null
+     * @param axis3  z-axis or null
+     * @param scale1 scale of x-axis
+     * @param scale2 scale of y-axis
+     * @param scale3 scale of z-axis
+     * @return transformation from axes coordinates into parent coordinates
+     */
+    private static AffineTransform3D getAxesTransform(Vector3D origin, Vector3D axis1, Vector3D axis2, Vector3D axis3,
+                                                      double scale1, double scale2, double scale3) {
+        Vector3D z = axis3 != null ? new Vector3D(axis3) : new Vector3D(0.0, 0.0, 1.0);
+        z.normalize();
+
+        // x-axis projected into plane orthogonal to z-axis
+        Vector3D x = axis1 != null ? new Vector3D(axis1)
+                : Math.abs(z.getX()) < 0.9 ? new Vector3D(1.0, 0.0, 0.0) : new Vector3D(0.0, 1.0, 0.0);
+        Vector3D zPart = new Vector3D(z);
+        zPart.scale(x.dot(z));
+        x.sub(zPart);
+        x.normalize();
+
+        // y-axis projected into plane orthogonal to x- and z-axis
+        Vector3D y;
+        if (axis2 != null) {
+            y = new Vector3D(axis2);
+            zPart = new Vector3D(z);
+            zPart.scale(axis2.dot(z));
+            Vector3D xPart = new Vector3D(x);
+            xPart.scale(axis2.dot(x));
+            y.sub(zPart);
+            y.sub(xPart);
+        } else {
+            y = new Vector3D();
+            y.cross(z, x);
+        }
+        y.normalize();
+
+        return new AffineTransform3D(new Matrix3D(
+                x.getX() * scale1, y.getX() * scale2, z.getX() * scale3,
+                x.getY() * scale1, y.getY() * scale2, z.getY() * scale3,
+                x.getZ() * scale1, y.getZ() * scale2, z.getZ() * scale3), origin);
+    }
+
+    private static Vector3D getOptionalDirection(EntityInstance entity, String attribute) {
+        EntityInstance direction = entity.getAttributeValueBNasEntityInstance(attribute);
+        if (direction == null) return null;
+        @SuppressWarnings("unchecked")
+        List<String> directionRatios = (List<String>) direction.getAttributeValueBN("DirectionRatios");
+        Vector3D vector = directionRatios != null ? stringVectorToVector3D(directionRatios) : null;
+        return vector != null && vector.lengthSquared() > 0.0 ? vector : null;
+    }
+
+    private static double getOptionalDouble(EntityInstance entity, String attribute, double defaultValue) {
+        Object value = entity.getAttributeValueBN(attribute);
+        if (!(value instanceof String) || value.equals("$")) return defaultValue;
+        double parsed = prepareDoubleString((String) value);
+        return Double.isNaN(parsed) ? defaultValue : parsed;
     }
 
     /**
@@ -229,15 +561,16 @@ public class IfcGeometryExtractor {
      * @param loop     to get shape representation coordinates for
      * @return points representing shape of IfcLoop
      */
-    private static ArrayList<Vector3D> getIfcLoopGeometry(ModelPopulation ifcModel, EntityInstance loop) {
+    private static CoordinateBuffer getIfcLoopGeometry(ModelPopulation ifcModel, EntityInstance loop) {
         // get loop type
         String loopType = IfcObjectIdentifier.getIFCLoopType(ifcModel, loop);
         if (loopType == null) return null;
 
         if (loopType.equals(LoopSubRepresentationTypeItems.IfcPolyLoop.name())) {
             // get all IfcCartesianPoints
-            ArrayList<Vector3D> cartesianPointsOfClosedShell = new ArrayList<>();
-            for (EntityInstance cPoint : loop.getAttributeValueBNasEntityInstanceList("Polygon")) {
+            ArrayList<EntityInstance> polygon = loop.getAttributeValueBNasEntityInstanceList("Polygon");
+            CoordinateBuffer cartesianPointsOfClosedShell = new CoordinateBuffer(polygon.size());
+            for (EntityInstance cPoint : polygon) {
                 Vector3D cPointAsVector3D = ifcCoordinatesToVector3D(cPoint);
                 if (cPointAsVector3D == null) return null;
                 cartesianPointsOfClosedShell.add(cPointAsVector3D);
@@ -257,7 +590,7 @@ public class IfcGeometryExtractor {
      * @param curve    to get shape representation coordinates for
      * @return points representing shape of IfcCurve
      */
-    private static ArrayList<Vector3D> getIfcCurveGeometry(ModelPopulation ifcModel, EntityInstance curve) {
+    private static CoordinateBuffer getIfcCurveGeometry(ModelPopulation ifcModel, EntityInstance curve) {
         if (IfcObjectIdentifier.isIfcPolyline(ifcModel, curve)) {
             return getIfcPolylineGeometry(curve);
         } else if (IfcObjectIdentifier.isIfcCompositeCurve(ifcModel, curve)) {
@@ -270,7 +603,7 @@ public class IfcGeometryExtractor {
         } else if (IfcObjectIdentifier.isIfcCircle(ifcModel, curve)) {
             // TODO implement
             logUnsupportedRepresentationInfo(IfcObjectIdentifier.getIfcCurveType(ifcModel, curve));
-            return new ArrayList<>();
+            return new CoordinateBuffer();
         } else {
             logUnsupportedRepresentationInfo(IfcObjectIdentifier.getIfcCurveType(ifcModel, curve));
         }
@@ -283,13 +616,13 @@ public class IfcGeometryExtractor {
      * @param polyline o get coordinates from
      * @return coordinates of polyline (local)
      */
-    private static ArrayList<Vector3D> getIfcPolylineGeometry(EntityInstance polyline) {
+    private static CoordinateBuffer getIfcPolylineGeometry(EntityInstance polyline) {
         ArrayList<EntityInstance> points = polyline.getAttributeValueBNasEntityInstanceList("Points");
-        ArrayList<Vector3D> cartesianPointsOfSArea = new ArrayList<>();
+        CoordinateBuffer cartesianPointsOfSArea = new CoordinateBuffer(points.size());
         points.forEach(point -> {
             Vector3D pointAsVector3D = ifcCoordinatesToVector3D(point);
             assert pointAsVector3D != null;
-            cartesianPointsOfSArea.add(new Vector3D(pointAsVector3D.getX(), pointAsVector3D.getY(), 0.0));
+            cartesianPointsOfSArea.add(pointAsVector3D.getX(), pointAsVector3D.getY(), 0.0);
         });
         return cartesianPointsOfSArea;
     }
@@ -301,15 +634,15 @@ public class IfcGeometryExtractor {
      * @param curveSegment to get coordinates from
      * @return Extracts coordinate data from IfcCompositeCurve
      */
-    private static ArrayList<Vector3D> getIfcCompositeCurveGeometry(ModelPopulation ifcModel, EntityInstance curveSegment) {
-        ArrayList<Vector3D> shapeData = new ArrayList<>();
+    private static CoordinateBuffer getIfcCompositeCurveGeometry(ModelPopulation ifcModel, EntityInstance curveSegment) {
+        CoordinateBuffer shapeData = new CoordinateBuffer();
         ArrayList<EntityInstance> curveSegments = curveSegment.getAttributeValueBNasEntityInstanceList("Segments");
         for (EntityInstance segment : curveSegments) {
             EntityInstance parentCurve = segment.getAttributeValueBNasEntityInstance("ParentCurve");
-            ArrayList<Vector3D> parentCurveShape = getIfcCurveGeometry(ifcModel, parentCurve);
+            CoordinateBuffer parentCurveShape = getIfcCurveGeometry(ifcModel, parentCurve);
             if (parentCurveShape == null)
                 return null;   // if one element null, return null to void wrong mapped elements
-            shapeData.addAll(parentCurveShape);
+            shapeData.addPoints(parentCurveShape);
         }
         if (shapeData.isEmpty()) return null;
         return shapeData;
@@ -317,43 +650,33 @@ public class IfcGeometryExtractor {
 
     /**
      * Extracts coordinate data from IfcBooleanResult. If IfcBooleanResult holds operands of type IfcBooleanResult it will
-     * recursive run thru every operation.
+     * recursive run thru every operation. Operation is applied to footprints of operands using {@link PolygonClipper}.
      *
      * @param ifcModel     ifc model
      * @param resultEntity to get coordinates from
      * @param operator     IfcBooleanOperator
-     * @return Extracts coordinate data from IfcBooleanResult
+     * @return footprint of IfcBooleanResult, outer rings each followed by its inner rings
      */
-    private static ArrayList<Vector3D> getIfcBooleanResultGeometry(ModelPopulation ifcModel, EntityInstance resultEntity, IfcBooleanOperator operator) {
+    private static CoordinateBuffer getIfcBooleanResultGeometry(ModelPopulation ifcModel, EntityInstance resultEntity, IfcBooleanOperator operator) {
         // get and identify both operands
         EntityInstance operand1 = resultEntity.getAttributeValueBNasEntityInstance("FirstOperand");
         EntityInstance operand2 = resultEntity.getAttributeValueBNasEntityInstance("SecondOperand");
 
         // extract shape data from operands
-        ArrayList<Vector3D> pointsOfOperand1 = getBooleanOperandGeometry(ifcModel, operand1);
-        ArrayList<Vector3D> pointsOfOperand2 = getBooleanOperandGeometry(ifcModel, operand2);
+        CoordinateBuffer pointsOfOperand1 = getBooleanOperandGeometry(ifcModel, operand1);
+        CoordinateBuffer pointsOfOperand2 = getBooleanOperandGeometry(ifcModel, operand2);
 
         if (pointsOfOperand1 == null || pointsOfOperand2 == null) return pointsOfOperand1;
 
-        // do operation
+        // do operation on footprints of operands
         if (operator.equals(IfcBooleanOperator.DIFFERENCE)) {
-            ArrayList<Vector3D> pointsOfOperand1Copy = new ArrayList<>(pointsOfOperand1);
-            for (Vector3D point1 : pointsOfOperand1) {
-                for (Vector3D point2 : pointsOfOperand2) {
-                    if (point1.equalsVector(point2)) {
-                        pointsOfOperand1Copy.remove(point1);
-                    }
-                }
-            }
-            return pointsOfOperand1Copy;
+            return PolygonClipper.compute(pointsOfOperand1, pointsOfOperand2, PolygonClipper.Operation.DIFFERENCE);
         }
         if (operator.equals(IfcBooleanOperator.INTERSECTION)) {
-            // TODO implement
-            logUnsupportedRepresentationInfo(operator.name());
+            return PolygonClipper.compute(pointsOfOperand1, pointsOfOperand2, PolygonClipper.Operation.INTERSECTION);
         }
         if (operator.equals(IfcBooleanOperator.UNION)) {
-            // TODO implement
-            logUnsupportedRepresentationInfo(operator.name());
+            return PolygonClipper.compute(pointsOfOperand1, pointsOfOperand2, PolygonClipper.Operation.UNION);
         }
 
         logUnsupportedRepresentationInfo(operator.name());
@@ -368,7 +691,7 @@ public class IfcGeometryExtractor {
      * @param operand  to get shape data from
      * @return points representing shape of operand
      */
-    private static ArrayList<Vector3D> getBooleanOperandGeometry(ModelPopulation ifcModel, EntityInstance operand) {
+    private static CoordinateBuffer getBooleanOperandGeometry(ModelPopulation ifcModel, EntityInstance operand) {
         String operandType = IfcObjectIdentifier.getIfcBooleanOperandType(ifcModel, operand);
 
         if (operandType == null) return null;
@@ -382,7 +705,7 @@ public class IfcGeometryExtractor {
             logUnsupportedRepresentationInfo(operandType);
         }
         if (operandType.equals(IfcBooleanOperandType.IfcPolygonalBoundedHalfSpace.name())) {
-            return getIfcPolygonalBoundedHalfSpaceGeometry(ifcModel, operand);
+            return getFootprint(getIfcPolygonalBoundedHalfSpaceGeometry(ifcModel, operand));
         }
         if (operandType.equals(IfcBooleanOperandType.IfcBooleanResult.name()) || operandType.equals(IfcBooleanOperandType.IfcBooleanClippingResult.name())) {
             String operand1Operator = (String) operand.getAttributeValueBN("Operator");
@@ -401,10 +724,10 @@ public class IfcGeometryExtractor {
             logUnsupportedRepresentationInfo(operandType);
         }
         if (operandType.equals(SweptSolidRepresentationTypeItems.IfcExtrudedAreaSolid.name())) {
-            return getIfcExtrudedAreaSolidGeometry(ifcModel, operand);
+            return getFootprint(getIfcExtrudedAreaSolidGeometry(ifcModel, operand));
         }
         if (operandType.equals(IfcBooleanOperandType.IfcFacetedBrep.name())) {
-            return getIfcFacetedBrepGeometry(ifcModel, operand);
+            return getFootprint(getIfcFacetedBrepGeometry(ifcModel, operand));
         }
 
         // other types are not supported right now
@@ -413,32 +736,26 @@ public class IfcGeometryExtractor {
     }
 
     /**
-     * Method gets result shape data from IfcFeatureElementSubtraction operation
+     * Method gets result shape data from IfcFeatureElementSubtraction operation. Openings inside of master element
+     * become inner rings.
      *
-     * @param masterElement    of operation (RelatingBuildingElement)
-     * @param dependentElement of operation (RelatedOpeningElement)
+     * @param masterElement    footprint of operation (RelatingBuildingElement)
+     * @param dependentElement footprint of operation (RelatedOpeningElement)
      * @return result of IfcFeatureElementSubtraction
      */
-    private static ArrayList<Vector3D> getIfcFeatureElementSubtractionGeometry(ArrayList<Vector3D> masterElement, ArrayList<Vector3D> dependentElement) {
-        ArrayList<Vector3D> masterElementsCopy = new ArrayList<>(masterElement);
-        // remove all points from master which are in both lists
-        for (Vector3D masterPoint : masterElementsCopy) {
-            dependentElement.forEach(dependentPoint -> {
-                if (masterPoint.equalsVector(dependentPoint)) {
-                    masterElement.remove(masterPoint);
-                }
-            });
-        }
-        // add all points from dependent to master which are not already in master
-        // for workaround add default point
-        masterElement.add(defaultPoint);
-        dependentElement.forEach(dependentPoint -> {
-            if (!masterElement.contains(dependentPoint)) {
-                masterElement.add(dependentPoint);
-            }
-        });
+    private static CoordinateBuffer getIfcFeatureElementSubtractionGeometry(CoordinateBuffer masterElement, CoordinateBuffer dependentElement) {
+        return PolygonClipper.compute(masterElement, dependentElement, PolygonClipper.Operation.DIFFERENCE);
+    }
 
-        return masterElement;
+    /**
+     * Method gets footprint of shape data, e.g. of faces of a Brep
+     *
+     * @param shapeData to get footprint of
+     * @return footprint or null if shape data is null
+     */
+    private static CoordinateBuffer getFootprint(CoordinateBuffer shapeData) {
+        if (shapeData == null) return null;
+        return PolygonClipper.footprint(shapeData);
     }
 
     /**
@@ -448,7 +765,7 @@ public class IfcGeometryExtractor {
      * @param polygon  object to get shape coordinates from
      * @return points representing shape of IfcPolygonalBoundedHalfSpace
      */
-    private static ArrayList<Vector3D> getIfcPolygonalBoundedHalfSpaceGeometry(ModelPopulation ifcModel, EntityInstance polygon) {
+    private static CoordinateBuffer getIfcPolygonalBoundedHalfSpaceGeometry(ModelPopulation ifcModel, EntityInstance polygon) {
         // TODO rotation to parent system necessary?
 
         // get local origin position
@@ -462,9 +779,9 @@ public class IfcGeometryExtractor {
 
         // get coordinates of boundary
         if (localPolygonBoundary == null) return null;
-        ArrayList<Vector3D> pointsOfPolygonBoundary = getIfcCurveGeometry(ifcModel, localPolygonBoundary);
+        CoordinateBuffer pointsOfPolygonBoundary = getIfcCurveGeometry(ifcModel, localPolygonBoundary);
         if (pointsOfPolygonBoundary != null) {
-            pointsOfPolygonBoundary.forEach(point -> point = new Vector3D(locationVector3D.getX() + point.getX(), locationVector3D.getY() + point.getY(), 0.0));
+            applyLocation(pointsOfPolygonBoundary, locationVector3D);
             return pointsOfPolygonBoundary;
         }
 
@@ -473,6 +790,18 @@ public class IfcGeometryExtractor {
         return null;
     }
 
+    /**
+     * Moves points of profile by local origin position, profiles lie in the xy-plane of their position
+     *
+     * @param points   of profile
+     * @param location local origin position
+     */
+    private static void applyLocation(CoordinateBuffer points, Vector3D location) {
+        for (int i = 0; i < points.size(); i++) {
+            points.set(i, location.getX() + points.getX(i), location.getY() + points.getY(i), 0.0);
+        }
+    }
+
     /**
      * Method extracts shape representation coordinates from IfcExtrudedAreaSolid object
      *
@@ -480,7 +809,7 @@ public class IfcGeometryExtractor {
      * @param extrudedArea to get shape representation for
      * @return points representing shape of IfcExtrudedAreaSolid
      */
-    private static ArrayList<Vector3D> getIfcExtrudedAreaSolidGeometry(ModelPopulation ifcModel, EntityInstance extrudedArea) {
+    private static CoordinateBuffer getIfcExtrudedAreaSolidGeometry(ModelPopulation ifcModel, EntityInstance extrudedArea) {
         // get POSITION attribute and extract local object origin coordinates
         EntityInstance axisPlacement = extrudedArea.getAttributeValueBNasEntityInstance("Position");
         EntityInstance locationPoint = axisPlacement.getAttributeValueBNasEntityInstance("Location");
@@ -502,12 +831,12 @@ public class IfcGeometryExtractor {
             double halfyDim = yDim / 2.0;
 
             // get points of shape
-            ArrayList<Vector3D> cartesianPointsOfSArea = new ArrayList<>();
-            cartesianPointsOfSArea.add(new Vector3D(locationVector3D.getX() - halfxDim, locationVector3D.getY() - halfyDim, 0.0));
-            cartesianPointsOfSArea.add(new Vector3D(locationVector3D.getX() + halfxDim, locationVector3D.getY() - halfyDim, 0.0));
-            cartesianPointsOfSArea.add(new Vector3D(locationVector3D.getX() + halfxDim, locationVector3D.getY() + halfyDim, 0.0));
-            cartesianPointsOfSArea.add(new Vector3D(locationVector3D.getX() - halfxDim, locationVector3D.getY() + halfyDim, 0.0));
-            cartesianPointsOfSArea.add(new Vector3D(locationVector3D.getX() - halfxDim, locationVector3D.getY() - halfyDim, 0.0));
+            CoordinateBuffer cartesianPointsOfSArea = new CoordinateBuffer(5);
+            cartesianPointsOfSArea.add(locationVector3D.getX() - halfxDim, locationVector3D.getY() - halfyDim, 0.0);
+            cartesianPointsOfSArea.add(locationVector3D.getX() + halfxDim, locationVector3D.getY() - halfyDim, 0.0);
+            cartesianPointsOfSArea.add(locationVector3D.getX() + halfxDim, locationVector3D.getY() + halfyDim, 0.0);
+            cartesianPointsOfSArea.add(locationVector3D.getX() - halfxDim, locationVector3D.getY() + halfyDim, 0.0);
+            cartesianPointsOfSArea.add(locationVector3D.getX() - halfxDim, locationVector3D.getY() - halfyDim, 0.0);
             return cartesianPointsOfSArea;
         }
         if (sweptAreaType.equals(ProfileDefRepresentationTypeItems.IfcArbitraryClosedProfileDef.name())) {
@@ -515,9 +844,9 @@ public class IfcGeometryExtractor {
 
             if (profileType.equals(".AREA.")) {
                 EntityInstance outerCurve = profileDef.getAttributeValueBNasEntityInstance("OuterCurve");
-                ArrayList<Vector3D> curvePoints = getIfcCurveGeometry(ifcModel, outerCurve);
+                CoordinateBuffer curvePoints = getIfcCurveGeometry(ifcModel, outerCurve);
                 if (curvePoints == null) return null;
-                curvePoints.forEach(point -> point = new Vector3D(locationVector3D.getX() + point.getX(), locationVector3D.getY() + point.getY(), 0.0));
+                applyLocation(curvePoints, locationVector3D);
                 return curvePoints;
             }
             if (profileType.equals(".CURVE.")) {
@@ -533,36 +862,47 @@ public class IfcGeometryExtractor {
 
     /**
      * Helper method to handle (floor-)openings in entities.
-     * Adds opening coordinates to entity shape data. If no opening, returns null
+     * Subtracts openings from footprint of entity shape data. If no opening, returns null
      *
      * @param ifcModel                    ifc model
      * @param shapeDataOfEntity           shape data of entity without opening handling
+     * @param isFootprint                 true if shape data already is a footprint, e.g. result of a boolean operation
      * @param rootEntityOfShapeDataEntity root entity of shape representation entity
      * @return shape data of entity with opening handling or null if no handling or no opening
      */
-    private static ArrayList<Vector3D> handleOpenings(ModelPopulation ifcModel, ArrayList<Vector3D> shapeDataOfEntity, EntityInstance rootEntityOfShapeDataEntity) {
-        if (shapeDataOfEntity == null) return null;
+    private static CoordinateBuffer handleOpenings(ModelPopulation ifcModel, CoordinateBuffer shapeDataOfEntity, boolean isFootprint,
+                                                   EntityInstance rootEntityOfShapeDataEntity) {
+        // geometry of representation maps belongs to no element
+        if (shapeDataOfEntity == null || rootEntityOfShapeDataEntity == null) return null;
         // for now opening handling supported for IFCSLAB only
         if (!IfcObjectIdentifier.isIfcSlab(ifcModel, rootEntityOfShapeDataEntity)) return null;
 
-        // get relVoidsElement which describes the opening
-        EntityInstance relVoidsElement = IfcObjectIdentifier.getRelVoidsElementOfEntity(ifcModel, rootEntityOfShapeDataEntity);
-        if (relVoidsElement == null) return null;
-
-        // get element which describes the opening
-        EntityInstance openingElement = relVoidsElement.getAttributeValueBNasEntityInstance("RelatedOpeningElement");
-
-        if (IfcObjectIdentifier.isIfcOpeningElement(ifcModel, openingElement)) {
+        // get all elements which describe openings of entity
+        List<EntityInstance> openingElements = IfcObjectIdentifier.getOpeningElementsOfEntity(ifcModel, rootEntityOfShapeDataEntity);
+        if (openingElements.isEmpty()) return null;
+
+        // collect shapes of all openings, overlapping openings are united as part of subtraction
+        CoordinateBuffer shapeDataOfOpenings = new CoordinateBuffer();
+        for (EntityInstance openingElement : openingElements) {
+            if (!IfcObjectIdentifier.isIfcOpeningElement(ifcModel, openingElement)) {
+                // IfcVoidingFeature as opening element is not supported right now
+                Logging.info(IfcGeometryExtractor.class.getName() + ": IfcVoidingFeature is not supported right now");
+                continue;
+            }
             // get shape data of RelatedOpeningElement and RelatingBuildingObject
             BIMtoOSMUtility.GeometrySolution activeSolution = BIMtoOSMUtility.GeometrySolution.BOUNDING_BOX; // set for now
-            List<Vector3D> shapeDataOfRelatedOpeningElement = BIMtoOSMUtility.getShapeData(ifcModel, openingElement, activeSolution);
-            // subtract points of shapeDataOfRelatinBuildingElement from shapeDataOfRelatinBuildingElement
-            return getIfcFeatureElementSubtractionGeometry(shapeDataOfEntity, (ArrayList<Vector3D>) shapeDataOfRelatedOpeningElement);
+            CoordinateBuffer shapeDataOfRelatedOpeningElement = BIMtoOSMUtility.getShapeData(ifcModel, openingElement, activeSolution);
+            if (shapeDataOfRelatedOpeningElement == null) continue;
+            // shape of opening is given in its own placement, entity shape in placement of entity
+            AffineTransform3D openingTransform = BIMtoOSMUtility.getRelativeTransform(ifcModel, openingElement,
+                    rootEntityOfShapeDataEntity);
+            if (openingTransform == null) continue;
+            shapeDataOfRelatedOpeningElement.transform(openingTransform);
+            shapeDataOfOpenings.addRings(shapeDataOfRelatedOpeningElement);
         }
-
-        // IfcVoidingFeature as opening element is not supported right now
-        Logging.info(IfcGeometryExtractor.class.getName() + ": IfcVoidingFeature is not supported right now");
-        return null;
+        if (shapeDataOfOpenings.isEmpty()) return null;
+        return getIfcFeatureElementSubtractionGeometry(isFootprint ? shapeDataOfEntity : getFootprint(shapeDataOfEntity),
+                getFootprint(shapeDataOfOpenings));
     }
 
     /**
@@ -0,0 +1,86 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.CoordinateBuffer;
+import nl.tue.buildingsmart.express.population.EntityInstance;
+import nl.tue.buildingsmart.express.population.ModelPopulation;
+import org.openstreetmap.josm.tools.Logging;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Cache holding the extracted geometry of IfcRepresentationMap sources of a loaded ifc model, keyed by
+ * IfcRepresentationMap id. Models use IfcMappedItem for repeated elements like columns or furniture, so the geometry
+ * of each source is extracted once and every instance only applies its MappingTarget transformation.
+ */
+public class IfcMappedGeometryCache {
+
+    /**
+     * Caches of loaded models. Weak keys to release cache together with model.
+     */
+    private static final Map<ModelPopulation, IfcMappedGeometryCache> caches = Collections.synchronizedMap(new WeakHashMap<>());
+
+    // empty buffer marks sources which could not be extracted
+    private static final CoordinateBuffer UNSUPPORTED = new CoordinateBuffer(0);
+
+    private final Map<Integer, CoordinateBuffer> geometries = new ConcurrentHashMap<>();
+
+    // report data
+    private final AtomicLong instances = new AtomicLong();
+    private final AtomicLong extractions = new AtomicLong();
+
+    /**
+     * Returns the mapped geometry cache of ifc model. If no cache exists for model yet, it will be created now.
+     *
+     * @param ifcModel loaded ifc model
+     * @return mapped geometry cache of model
+     */
+    public static IfcMappedGeometryCache of(ModelPopulation ifcModel) {
+        return caches.computeIfAbsent(ifcModel, model -> new IfcMappedGeometryCache());
+    }
+
+    /**
+     * Removes the mapped geometry cache of ifc model
+     *
+     * @param ifcModel to release cache of
+     */
+    public static void release(ModelPopulation ifcModel) {
+        caches.remove(ifcModel);
+    }
+
+    /**
+     * Logs number of mapped item instances compared to the number of extracted sources
+     */
+    public void logReport() {
+        if (instances.get() == 0) return;
+        Logging.info(String.format("%s-MappedItemReport: %d mapped items placed, %d representation maps extracted",
+                IfcMappedGeometryCache.class.getName(), instances.get(), extractions.get()));
+    }
+
+    /**
+     * Gets geometry of representation map. The geometry is extracted on first request, concurrent first requests of
+     * the same source may extract it more than once.
+     *
+     * @param representationMap IfcRepresentationMap to get geometry of
+     * @param extractor         to extract geometry of representation map with, returns null if not supported
+     * @return geometry in coordinates of representation map or null if not supported, must not be changed
+     */
+    public CoordinateBuffer getGeometry(EntityInstance representationMap, Function<EntityInstance, CoordinateBuffer> extractor) {
+        instances.incrementAndGet();
+        // nested mapped items request other sources while extracting, so extraction is not done inside the map
+        CoordinateBuffer geometry = geometries.get(representationMap.getId());
+        if (geometry == null) {
+            extractions.incrementAndGet();
+            geometry = extractor.apply(representationMap);
+            if (geometry == null || geometry.isEmpty()) geometry = UNSUPPORTED;
+            CoordinateBuffer previous = geometries.putIfAbsent(representationMap.getId(), geometry);
+            if (previous != null) geometry = previous;
+        }
+        return geometry != UNSUPPORTED ? geometry : null;
+    }
+}
@@ -8,7 +8,7 @@ import nl.tue.buildingsmart.express.population.EntityInstance;
 import nl.tue.buildingsmart.express.population.ModelPopulation;
 import org.openstreetmap.josm.tools.Logging;
 
-import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Class to identify the type on an IfcShapeRepresentation object
@@ -57,25 +57,22 @@ public class IfcObjectIdentifier {
      * @return String with IfcShapeRepresentation.ITEM type definition or null if not allowed in standard
      */
     public static String getRepresentationItemType(ModelPopulation ifcModel, IfcRepresentation ident, EntityInstance item) {
+        IfcTypeIndex typeIndex = IfcTypeIndex.of(ifcModel);
 
         if (ident.getType().equals(RepresentationType.AdvancedBrep)) {
-            ArrayList<EntityInstance> ifcAdvancedBrep = new ArrayList<>(ifcModel.getInstancesOfType(AdvancedBrepRepresentationTypeItems.IfcAdvancedBrep.name()));
-            if (ifcAdvancedBrep.contains(item)) return AdvancedBrepRepresentationTypeItems.IfcAdvancedBrep.name();
+            if (typeIndex.isOfType(item, AdvancedBrepRepresentationTypeItems.IfcAdvancedBrep.name())) return AdvancedBrepRepresentationTypeItems.IfcAdvancedBrep.name();
 
-            ArrayList<EntityInstance> ifcFacetedBrep = new ArrayList<>(ifcModel.getInstancesOfType(AdvancedBrepRepresentationTypeItems.IfcFacetedBrep.name()));
-            if (ifcFacetedBrep.contains(item)) return AdvancedBrepRepresentationTypeItems.IfcFacetedBrep.name();
+            if (typeIndex.isOfType(item, AdvancedBrepRepresentationTypeItems.IfcFacetedBrep.name())) return AdvancedBrepRepresentationTypeItems.IfcFacetedBrep.name();
 
             Logging.info(IfcObjectIdentifier.class.getName() + ": " + item.getEntityDefinition() + " is not supported");
             return null;
         }
 
         if (ident.getType().equals(RepresentationType.AdvancedSweptSolid)) {
-            ArrayList<EntityInstance> ifcSweptDiskSolids = new ArrayList<>(ifcModel.getInstancesOfType(AdvancedSweptSolidRepresentationTypeItems.IfcSweptDiskSolid.name()));
-            if (ifcSweptDiskSolids.contains(item))
+            if (typeIndex.isOfType(item, AdvancedSweptSolidRepresentationTypeItems.IfcSweptDiskSolid.name()))
                 return AdvancedSweptSolidRepresentationTypeItems.IfcSweptDiskSolid.name();
 
-            ArrayList<EntityInstance> ifcSweptDiskSolidPolygonals = new ArrayList<>(ifcModel.getInstancesOfType(AdvancedSweptSolidRepresentationTypeItems.IfcSweptDiskSolidPolygonal.name()));
-            if (ifcSweptDiskSolidPolygonals.contains(item))
+            if (typeIndex.isOfType(item, AdvancedSweptSolidRepresentationTypeItems.IfcSweptDiskSolidPolygonal.name()))
                 return AdvancedSweptSolidRepresentationTypeItems.IfcSweptDiskSolidPolygonal.name();
 
             Logging.info(IfcObjectIdentifier.class.getName() + ": " + item.getEntityDefinition() + " is not supported");
@@ -83,7 +80,7 @@ public class IfcObjectIdentifier {
         }
 
         if (ident.getType().equals(RepresentationType.Brep)) {
-            if (ifcModel.getInstancesOfType(BrepRepresentationTypeItems.IfcFacetedBrep.name()).contains(item)) {
+            if (typeIndex.isOfType(item, BrepRepresentationTypeItems.IfcFacetedBrep.name())) {
                 return BrepRepresentationTypeItems.IfcFacetedBrep.name();
             }
             Logging.info(IfcObjectIdentifier.class.getName() + ": " + item.getEntityDefinition() + " is not supported");
@@ -91,21 +88,18 @@ public class IfcObjectIdentifier {
         }
 
         if (ident.getType().equals(RepresentationType.CSG)) {
-            ArrayList<EntityInstance> ifcBooleanResults = new ArrayList<>(ifcModel.getInstancesOfType(CSGRepresentationTypeItems.IfcBooleanResult.name()));
-            if (ifcBooleanResults.contains(item)) return CSGRepresentationTypeItems.IfcBooleanResult.name();
+            if (typeIndex.isOfType(item, CSGRepresentationTypeItems.IfcBooleanResult.name())) return CSGRepresentationTypeItems.IfcBooleanResult.name();
 
-            ArrayList<EntityInstance> ifcCSGSolids = new ArrayList<>(ifcModel.getInstancesOfType(CSGRepresentationTypeItems.IfcCsgSolid.name()));
-            if (ifcCSGSolids.contains(item)) return CSGRepresentationTypeItems.IfcCsgSolid.name();
+            if (typeIndex.isOfType(item, CSGRepresentationTypeItems.IfcCsgSolid.name())) return CSGRepresentationTypeItems.IfcCsgSolid.name();
 
-            ArrayList<EntityInstance> ifcPrimitive3Ds = new ArrayList<>(ifcModel.getInstancesOfType(CSGRepresentationTypeItems.IfcPrimitive3D.name()));
-            if (ifcPrimitive3Ds.contains(item)) return CSGRepresentationTypeItems.IfcPrimitive3D.name();
+            if (typeIndex.isOfType(item, CSGRepresentationTypeItems.IfcPrimitive3D.name())) return CSGRepresentationTypeItems.IfcPrimitive3D.name();
 
             Logging.info(IfcObjectIdentifier.class.getName() + ": " + item.getEntityDefinition() + " is not supported");
             return null;
         }
 
         if (ident.getType().equals(RepresentationType.Tessellation)) {
-            if (ifcModel.getInstancesOfType(TessellationRepresentationTypeItems.IfcTessellatedFaceSet.name()).contains(item)) {
+            if (typeIndex.isOfType(item, TessellationRepresentationTypeItems.IfcTessellatedFaceSet.name())) {
                 return TessellationRepresentationTypeItems.IfcTessellatedFaceSet.name();
             }
             Logging.info(IfcObjectIdentifier.class.getName() + ": " + item.getEntityDefinition() + " is not supported");
@@ -113,7 +107,7 @@ public class IfcObjectIdentifier {
         }
 
         if (ident.getType().equals(RepresentationType.Clipping)) {
-            if (ifcModel.getInstancesOfType(ClippingRepresentationTypeItems.IfcBooleanClippingResult.name()).contains(item)) {
+            if (typeIndex.isOfType(item, ClippingRepresentationTypeItems.IfcBooleanClippingResult.name())) {
                 return ClippingRepresentationTypeItems.IfcBooleanClippingResult.name();
             }
             Logging.info(IfcObjectIdentifier.class.getName() + ": " + item.getEntityDefinition() + " is not supported");
@@ -121,43 +115,36 @@ public class IfcObjectIdentifier {
         }
 
         if (ident.getType().equals(RepresentationType.Curve2D) || ident.getType().equals(RepresentationType.Curve3D)) {
-            ArrayList<EntityInstance> ifcBoundedCurves = new ArrayList<>(ifcModel.getInstancesOfType(CurveRepresentationTypeItems.IfcBoundedCurve.name()));
-            if (ifcBoundedCurves.contains(item)) return CurveRepresentationTypeItems.IfcBoundedCurve.name();
+            // check subtype before supertype
+            if (typeIndex.isOfType(item, CurveRepresentationTypeItems.IfcPolyline.name())) return CurveRepresentationTypeItems.IfcPolyline.name();
 
-            ArrayList<EntityInstance> ifcPolylines = new ArrayList<>(ifcModel.getInstancesOfType(CurveRepresentationTypeItems.IfcPolyline.name()));
-            if (ifcPolylines.contains(item)) return CurveRepresentationTypeItems.IfcPolyline.name();
+            if (typeIndex.isOfType(item, CurveRepresentationTypeItems.IfcBoundedCurve.name())) return CurveRepresentationTypeItems.IfcBoundedCurve.name();
 
             Logging.info(IfcObjectIdentifier.class.getName() + ": " + item.getEntityDefinition() + " is not supported");
             return null;
         }
 
         if (ident.getType().equals(RepresentationType.SurfaceModel)) {
-            ArrayList<EntityInstance> ifcTessellatedItems = new ArrayList<>(ifcModel.getInstancesOfType(SurfaceModelRepresentationTypeItems.IfcTessellatedItem.name()));
-            if (ifcTessellatedItems.contains(item))
+            if (typeIndex.isOfType(item, SurfaceModelRepresentationTypeItems.IfcTessellatedItem.name()))
                 return SurfaceModelRepresentationTypeItems.IfcTessellatedItem.name();
 
-            ArrayList<EntityInstance> ifcShellBasedSurfaceModels = new ArrayList<>(ifcModel.getInstancesOfType(SurfaceModelRepresentationTypeItems.IfcShellBasedSurfaceModel.name()));
-            if (ifcShellBasedSurfaceModels.contains(item))
+            if (typeIndex.isOfType(item, SurfaceModelRepresentationTypeItems.IfcShellBasedSurfaceModel.name()))
                 return SurfaceModelRepresentationTypeItems.IfcShellBasedSurfaceModel.name();
 
-            ArrayList<EntityInstance> ifcFaceBasedSurfaceModels = new ArrayList<>(ifcModel.getInstancesOfType(SurfaceModelRepresentationTypeItems.IfcFaceBasedSurfaceModel.name()));
-            if (ifcFaceBasedSurfaceModels.contains(item))
+            if (typeIndex.isOfType(item, SurfaceModelRepresentationTypeItems.IfcFaceBasedSurfaceModel.name()))
                 return SurfaceModelRepresentationTypeItems.IfcFaceBasedSurfaceModel.name();
 
-            ArrayList<EntityInstance> ifcFacetedBreps = new ArrayList<>(ifcModel.getInstancesOfType(SurfaceModelRepresentationTypeItems.IfcFacetedBrep.name()));
-            if (ifcFacetedBreps.contains(item)) return SurfaceModelRepresentationTypeItems.IfcFacetedBrep.name();
+            if (typeIndex.isOfType(item, SurfaceModelRepresentationTypeItems.IfcFacetedBrep.name())) return SurfaceModelRepresentationTypeItems.IfcFacetedBrep.name();
 
             Logging.info(IfcObjectIdentifier.class.getName() + ": " + item.getEntityDefinition() + " is not supported");
             return null;
         }
 
         if (ident.getType().equals(RepresentationType.SweptSolid)) {
-            ArrayList<EntityInstance> ifcExtrudedAreaSolid = new ArrayList<>(ifcModel.getInstancesOfType(SweptSolidRepresentationTypeItems.IfcExtrudedAreaSolid.name()));
-            if (ifcExtrudedAreaSolid.contains(item))
+            if (typeIndex.isOfType(item, SweptSolidRepresentationTypeItems.IfcExtrudedAreaSolid.name()))
                 return SweptSolidRepresentationTypeItems.IfcExtrudedAreaSolid.name();
 
-            ArrayList<EntityInstance> ifcRevolvedAreaSolid = new ArrayList<>(ifcModel.getInstancesOfType(SweptSolidRepresentationTypeItems.IfcRevolvedAreaSolid.name()));
-            if (ifcRevolvedAreaSolid.contains(item))
+            if (typeIndex.isOfType(item, SweptSolidRepresentationTypeItems.IfcRevolvedAreaSolid.name()))
                 return SweptSolidRepresentationTypeItems.IfcRevolvedAreaSolid.name();
 
             Logging.info(IfcObjectIdentifier.class.getName() + ": " + item.getEntityDefinition() + " is not supported");
@@ -165,7 +152,7 @@ public class IfcObjectIdentifier {
         }
 
         if (ident.getType().equals(RepresentationType.BoundingBox)) {
-            if (ifcModel.getInstancesOfType(BoundingBoxRepresentationTypeItems.IfcBoundingBox.name()).contains(item)) {
+            if (typeIndex.isOfType(item, BoundingBoxRepresentationTypeItems.IfcBoundingBox.name())) {
                 return BoundingBoxRepresentationTypeItems.IfcBoundingBox.name();
             }
             Logging.info(IfcObjectIdentifier.class.getName() + ": " + item.getEntityDefinition() + " is not supported");
@@ -173,7 +160,7 @@ public class IfcObjectIdentifier {
         }
 
         if (ident.getType().equals(RepresentationType.MappedRepresentation)) {
-            if (ifcModel.getInstancesOfType(MappedRepresentationTypeItems.IfcMappedItem.name()).contains(item)) {
+            if (typeIndex.isOfType(item, MappedRepresentationTypeItems.IfcMappedItem.name())) {
                 return MappedRepresentationTypeItems.IfcMappedItem.name();
             }
             Logging.info(IfcObjectIdentifier.class.getName() + ": " + item.getEntityDefinition() + " is not supported");
@@ -193,14 +180,13 @@ public class IfcObjectIdentifier {
      * @return type as string
      */
     public static String getIFCLoopType(ModelPopulation ifcModel, EntityInstance loop) {
-        ArrayList<EntityInstance> edgeLoops = new ArrayList<>(ifcModel.getInstancesOfType(LoopSubRepresentationTypeItems.IfcEdgeLoop.name()));
-        if (edgeLoops.contains(loop)) return LoopSubRepresentationTypeItems.IfcEdgeLoop.name();
+        IfcTypeIndex typeIndex = IfcTypeIndex.of(ifcModel);
 
-        ArrayList<EntityInstance> polyLoops = new ArrayList<>(ifcModel.getInstancesOfType(LoopSubRepresentationTypeItems.IfcPolyLoop.name()));
-        if (polyLoops.contains(loop)) return LoopSubRepresentationTypeItems.IfcPolyLoop.name();
+        if (typeIndex.isOfType(loop, LoopSubRepresentationTypeItems.IfcEdgeLoop.name())) return LoopSubRepresentationTypeItems.IfcEdgeLoop.name();
 
-        ArrayList<EntityInstance> vertexLoops = new ArrayList<>(ifcModel.getInstancesOfType(LoopSubRepresentationTypeItems.IfcVertexLoop.name()));
-        if (vertexLoops.contains(loop)) return LoopSubRepresentationTypeItems.IfcVertexLoop.name();
+        if (typeIndex.isOfType(loop, LoopSubRepresentationTypeItems.IfcPolyLoop.name())) return LoopSubRepresentationTypeItems.IfcPolyLoop.name();
+
+        if (typeIndex.isOfType(loop, LoopSubRepresentationTypeItems.IfcVertexLoop.name())) return LoopSubRepresentationTypeItems.IfcVertexLoop.name();
 
         Logging.info(IfcObjectIdentifier.class.getName() + ": " + loop.getEntityDefinition() + " LoopRepresentationType is not supported");
         return null;
@@ -214,24 +200,19 @@ public class IfcObjectIdentifier {
      * @return type as string
      */
     public static String getIFCProfileDefType(ModelPopulation ifcModel, EntityInstance profileDef) {
-        ArrayList<EntityInstance> rectanglePD = new ArrayList<>(ifcModel.getInstancesOfType(ProfileDefRepresentationTypeItems.IfcRectangleProfileDef.name()));
+        IfcTypeIndex typeIndex = IfcTypeIndex.of(ifcModel);
 
-        if (rectanglePD.contains(profileDef)) return ProfileDefRepresentationTypeItems.IfcRectangleProfileDef.name();
+        if (typeIndex.isOfType(profileDef, ProfileDefRepresentationTypeItems.IfcRectangleProfileDef.name())) return ProfileDefRepresentationTypeItems.IfcRectangleProfileDef.name();
 
-        ArrayList<EntityInstance> trapeziumPD = new ArrayList<>(ifcModel.getInstancesOfType(ProfileDefRepresentationTypeItems.IfcTrapeziumProfileDef.name()));
-        if (trapeziumPD.contains(profileDef)) return ProfileDefRepresentationTypeItems.IfcTrapeziumProfileDef.name();
+        if (typeIndex.isOfType(profileDef, ProfileDefRepresentationTypeItems.IfcTrapeziumProfileDef.name())) return ProfileDefRepresentationTypeItems.IfcTrapeziumProfileDef.name();
 
-        ArrayList<EntityInstance> circlePD = new ArrayList<>(ifcModel.getInstancesOfType(ProfileDefRepresentationTypeItems.IfcCircleProfileDef.name()));
-        if (circlePD.contains(profileDef)) return ProfileDefRepresentationTypeItems.IfcCircleProfileDef.name();
+        if (typeIndex.isOfType(profileDef, ProfileDefRepresentationTypeItems.IfcCircleProfileDef.name())) return ProfileDefRepresentationTypeItems.IfcCircleProfileDef.name();
 
-        ArrayList<EntityInstance> ellipsePD = new ArrayList<>(ifcModel.getInstancesOfType(ProfileDefRepresentationTypeItems.IfcEllipseProfileDef.name()));
-        if (ellipsePD.contains(profileDef)) return ProfileDefRepresentationTypeItems.IfcEllipseProfileDef.name();
+        if (typeIndex.isOfType(profileDef, ProfileDefRepresentationTypeItems.IfcEllipseProfileDef.name())) return ProfileDefRepresentationTypeItems.IfcEllipseProfileDef.name();
 
-        ArrayList<EntityInstance> shapePD = new ArrayList<>(ifcModel.getInstancesOfType(ProfileDefRepresentationTypeItems.IfcShapeProfileDef.name()));
-        if (shapePD.contains(profileDef)) return ProfileDefRepresentationTypeItems.IfcShapeProfileDef.name();
+        if (typeIndex.isOfType(profileDef, ProfileDefRepresentationTypeItems.IfcShapeProfileDef.name())) return ProfileDefRepresentationTypeItems.IfcShapeProfileDef.name();
 
-        ArrayList<EntityInstance> arbitraryPD = new ArrayList<>(ifcModel.getInstancesOfType(ProfileDefRepresentationTypeItems.IfcArbitraryClosedProfileDef.name()));
-        if (arbitraryPD.contains(profileDef))
+        if (typeIndex.isOfType(profileDef, ProfileDefRepresentationTypeItems.IfcArbitraryClosedProfileDef.name()))
             return ProfileDefRepresentationTypeItems.IfcArbitraryClosedProfileDef.name();
 
         Logging.info(IfcObjectIdentifier.class.getName() + ": " + profileDef.getEntityDefinition() + " ProfileDefRepresentationType is not supported");
@@ -246,59 +227,43 @@ public class IfcObjectIdentifier {
      * @return type of IfcBooleanOperand
      */
     public static String getIfcBooleanOperandType(ModelPopulation ifcModel, EntityInstance entity) {
-        ArrayList<EntityInstance> extrudedAreas = new ArrayList<>(ifcModel.getInstancesOfType(IfcBooleanOperandType.IfcExtrudedAreaSolid.name()));
-        if (extrudedAreas.contains(entity)) return IfcBooleanOperandType.IfcExtrudedAreaSolid.name();
+        IfcTypeIndex typeIndex = IfcTypeIndex.of(ifcModel);
+
+        if (typeIndex.isOfType(entity, IfcBooleanOperandType.IfcExtrudedAreaSolid.name())) return IfcBooleanOperandType.IfcExtrudedAreaSolid.name();
 
-        ArrayList<EntityInstance> facetedBreps = new ArrayList<>(ifcModel.getInstancesOfType(IfcBooleanOperandType.IfcFacetedBrep.name()));
-        if (facetedBreps.contains(entity)) return IfcBooleanOperandType.IfcFacetedBrep.name();
+        if (typeIndex.isOfType(entity, IfcBooleanOperandType.IfcFacetedBrep.name())) return IfcBooleanOperandType.IfcFacetedBrep.name();
 
-        ArrayList<EntityInstance> solidModels = new ArrayList<>(ifcModel.getInstancesOfType(IfcBooleanOperandType.IfcSolidModel.name()));
-        if (solidModels.contains(entity)) return IfcBooleanOperandType.IfcSolidModel.name();
+        if (typeIndex.isOfType(entity, IfcBooleanOperandType.IfcSolidModel.name())) return IfcBooleanOperandType.IfcSolidModel.name();
 
-        ArrayList<EntityInstance> csgSolid = new ArrayList<>(ifcModel.getInstancesOfType(IfcBooleanOperandType.IfcCsgSolid.name()));
-        if (csgSolid.contains(entity)) return IfcBooleanOperandType.IfcCsgSolid.name();
+        if (typeIndex.isOfType(entity, IfcBooleanOperandType.IfcCsgSolid.name())) return IfcBooleanOperandType.IfcCsgSolid.name();
 
-        ArrayList<EntityInstance> manifoldSolid = new ArrayList<>(ifcModel.getInstancesOfType(IfcBooleanOperandType.IfcManifoldSolidBrep.name()));
-        if (manifoldSolid.contains(entity)) return IfcBooleanOperandType.IfcManifoldSolidBrep.name();
+        if (typeIndex.isOfType(entity, IfcBooleanOperandType.IfcManifoldSolidBrep.name())) return IfcBooleanOperandType.IfcManifoldSolidBrep.name();
 
-        ArrayList<EntityInstance> sweptAreaSolid = new ArrayList<>(ifcModel.getInstancesOfType(IfcBooleanOperandType.IfcSweptAreaSolid.name()));
-        if (sweptAreaSolid.contains(entity)) return IfcBooleanOperandType.IfcSweptAreaSolid.name();
+        if (typeIndex.isOfType(entity, IfcBooleanOperandType.IfcSweptAreaSolid.name())) return IfcBooleanOperandType.IfcSweptAreaSolid.name();
 
-        ArrayList<EntityInstance> sweptDiskSolid = new ArrayList<>(ifcModel.getInstancesOfType(IfcBooleanOperandType.IfcSweptDiskSolid.name()));
-        if (sweptDiskSolid.contains(entity)) return IfcBooleanOperandType.IfcSweptDiskSolid.name();
+        if (typeIndex.isOfType(entity, IfcBooleanOperandType.IfcSweptDiskSolid.name())) return IfcBooleanOperandType.IfcSweptDiskSolid.name();
 
-        ArrayList<EntityInstance> halfSpaceSolids = new ArrayList<>(ifcModel.getInstancesOfType(IfcBooleanOperandType.IfcHalfSpaceSolid.name()));
-        if (halfSpaceSolids.contains(entity)) return IfcBooleanOperandType.IfcHalfSpaceSolid.name();
+        if (typeIndex.isOfType(entity, IfcBooleanOperandType.IfcHalfSpaceSolid.name())) return IfcBooleanOperandType.IfcHalfSpaceSolid.name();
 
-        ArrayList<EntityInstance> boxedHalfSpaceSolids = new ArrayList<>(ifcModel.getInstancesOfType(IfcBooleanOperandType.IfcBoxedHalfSpace.name()));
-        if (boxedHalfSpaceSolids.contains(entity)) return IfcBooleanOperandType.IfcBoxedHalfSpace.name();
+        if (typeIndex.isOfType(entity, IfcBooleanOperandType.IfcBoxedHalfSpace.name())) return IfcBooleanOperandType.IfcBoxedHalfSpace.name();
 
-        ArrayList<EntityInstance> polygonBoundedHalfSpaces = new ArrayList<>(ifcModel.getInstancesOfType(IfcBooleanOperandType.IfcPolygonalBoundedHalfSpace.name()));
-        if (polygonBoundedHalfSpaces.contains(entity)) return IfcBooleanOperandType.IfcPolygonalBoundedHalfSpace.name();
+        if (typeIndex.isOfType(entity, IfcBooleanOperandType.IfcPolygonalBoundedHalfSpace.name())) return IfcBooleanOperandType.IfcPolygonalBoundedHalfSpace.name();
 
-        ArrayList<EntityInstance> booleanResults = new ArrayList<>(ifcModel.getInstancesOfType(IfcBooleanOperandType.IfcBooleanResult.name()));
-        if (booleanResults.contains(entity)) return IfcBooleanOperandType.IfcBooleanResult.name();
+        if (typeIndex.isOfType(entity, IfcBooleanOperandType.IfcBooleanResult.name())) return IfcBooleanOperandType.IfcBooleanResult.name();
 
-        ArrayList<EntityInstance> clippingResult = new ArrayList<>(ifcModel.getInstancesOfType(IfcBooleanOperandType.IfcBooleanClippingResult.name()));
-        if (clippingResult.contains(entity)) return IfcBooleanOperandType.IfcBooleanClippingResult.name();
+        if (typeIndex.isOfType(entity, IfcBooleanOperandType.IfcBooleanClippingResult.name())) return IfcBooleanOperandType.IfcBooleanClippingResult.name();
 
-        ArrayList<EntityInstance> csgPrimitive3Ds = new ArrayList<>(ifcModel.getInstancesOfType(IfcBooleanOperandType.IfcCsgPrimitive3D.name()));
-        if (csgPrimitive3Ds.contains(entity)) return IfcBooleanOperandType.IfcCsgPrimitive3D.name();
+        if (typeIndex.isOfType(entity, IfcBooleanOperandType.IfcCsgPrimitive3D.name())) return IfcBooleanOperandType.IfcCsgPrimitive3D.name();
 
-        ArrayList<EntityInstance> blocks = new ArrayList<>(ifcModel.getInstancesOfType(IfcBooleanOperandType.IfcBlock.name()));
-        if (blocks.contains(entity)) return IfcBooleanOperandType.IfcBlock.name();
+        if (typeIndex.isOfType(entity, IfcBooleanOperandType.IfcBlock.name())) return IfcBooleanOperandType.IfcBlock.name();
 
-        ArrayList<EntityInstance> rectPyramids = new ArrayList<>(ifcModel.getInstancesOfType(IfcBooleanOperandType.IfcRectangularPyramid.name()));
-        if (rectPyramids.contains(entity)) return IfcBooleanOperandType.IfcRectangularPyramid.name();
+        if (typeIndex.isOfType(entity, IfcBooleanOperandType.IfcRectangularPyramid.name())) return IfcBooleanOperandType.IfcRectangularPyramid.name();
 
-        ArrayList<EntityInstance> rightCircularCones = new ArrayList<>(ifcModel.getInstancesOfType(IfcBooleanOperandType.IfcRightCircularCone.name()));
-        if (rightCircularCones.contains(entity)) return IfcBooleanOperandType.IfcRightCircularCone.name();
+        if (typeIndex.isOfType(entity, IfcBooleanOperandType.IfcRightCircularCone.name())) return IfcBooleanOperandType.IfcRightCircularCone.name();
 
-        ArrayList<EntityInstance> rightCircularCylinders = new ArrayList<>(ifcModel.getInstancesOfType(IfcBooleanOperandType.IfcRightCircularCylinder.name()));
-        if (rightCircularCylinders.contains(entity)) return IfcBooleanOperandType.IfcRightCircularCylinder.name();
+        if (typeIndex.isOfType(entity, IfcBooleanOperandType.IfcRightCircularCylinder.name())) return IfcBooleanOperandType.IfcRightCircularCylinder.name();
 
-        ArrayList<EntityInstance> spheres = new ArrayList<>(ifcModel.getInstancesOfType(IfcBooleanOperandType.IfcSphere.name()));
-        if (spheres.contains(entity)) return IfcBooleanOperandType.IfcSphere.name();
+        if (typeIndex.isOfType(entity, IfcBooleanOperandType.IfcSphere.name())) return IfcBooleanOperandType.IfcSphere.name();
 
         Logging.info(IfcObjectIdentifier.class.getName() + ": " + entity.getEntityDefinition() + " is not supported as IfcBooleanOperand");
         return null;
@@ -312,38 +277,30 @@ public class IfcObjectIdentifier {
      * @return type of IfcBoundedCurve
      */
     public static String getIfcCurveType(ModelPopulation ifcModel, EntityInstance entity) {
-        ArrayList<EntityInstance> compositeCurves = new ArrayList<>(ifcModel.getInstancesOfType(CurveRepresentationTypeItems.IfcCompositeCurve.name()));
-        if (compositeCurves.contains(entity)) return CurveRepresentationTypeItems.IfcCompositeCurve.name();
+        IfcTypeIndex typeIndex = IfcTypeIndex.of(ifcModel);
+
+        if (typeIndex.isOfType(entity, CurveRepresentationTypeItems.IfcCompositeCurve.name())) return CurveRepresentationTypeItems.IfcCompositeCurve.name();
 
-        ArrayList<EntityInstance> polylines = new ArrayList<>(ifcModel.getInstancesOfType(CurveRepresentationTypeItems.IfcPolyline.name()));
-        if (polylines.contains(entity)) return CurveRepresentationTypeItems.IfcPolyline.name();
+        if (typeIndex.isOfType(entity, CurveRepresentationTypeItems.IfcPolyline.name())) return CurveRepresentationTypeItems.IfcPolyline.name();
 
-        ArrayList<EntityInstance> trimmedCurves = new ArrayList<>(ifcModel.getInstancesOfType(CurveRepresentationTypeItems.IfcTrimmedCurve.name()));
-        if (trimmedCurves.contains(entity)) return CurveRepresentationTypeItems.IfcTrimmedCurve.name();
+        if (typeIndex.isOfType(entity, CurveRepresentationTypeItems.IfcTrimmedCurve.name())) return CurveRepresentationTypeItems.IfcTrimmedCurve.name();
 
-        ArrayList<EntityInstance> bSplineCurves = new ArrayList<>(ifcModel.getInstancesOfType(CurveRepresentationTypeItems.IfcBSplineCurve.name()));
-        if (bSplineCurves.contains(entity)) return CurveRepresentationTypeItems.IfcBSplineCurve.name();
+        if (typeIndex.isOfType(entity, CurveRepresentationTypeItems.IfcBSplineCurve.name())) return CurveRepresentationTypeItems.IfcBSplineCurve.name();
 
-        ArrayList<EntityInstance> conicCurves = new ArrayList<>(ifcModel.getInstancesOfType(CurveRepresentationTypeItems.IfcConic.name()));
-        if (conicCurves.contains(entity)) return CurveRepresentationTypeItems.IfcConic.name();
+        if (typeIndex.isOfType(entity, CurveRepresentationTypeItems.IfcCircle.name())) return CurveRepresentationTypeItems.IfcCircle.name();
 
-        ArrayList<EntityInstance> circleCurves = new ArrayList<>(ifcModel.getInstancesOfType(CurveRepresentationTypeItems.IfcCircle.name()));
-        if (circleCurves.contains(entity)) return CurveRepresentationTypeItems.IfcCircle.name();
+        if (typeIndex.isOfType(entity, CurveRepresentationTypeItems.IfcEllipse.name())) return CurveRepresentationTypeItems.IfcEllipse.name();
 
-        ArrayList<EntityInstance> ellCurves = new ArrayList<>(ifcModel.getInstancesOfType(CurveRepresentationTypeItems.IfcEllipse.name()));
-        if (ellCurves.contains(entity)) return CurveRepresentationTypeItems.IfcEllipse.name();
+        // check subtypes before supertype
+        if (typeIndex.isOfType(entity, CurveRepresentationTypeItems.IfcConic.name())) return CurveRepresentationTypeItems.IfcConic.name();
 
-        ArrayList<EntityInstance> lineCurves = new ArrayList<>(ifcModel.getInstancesOfType(CurveRepresentationTypeItems.IfcLine.name()));
-        if (lineCurves.contains(entity)) return CurveRepresentationTypeItems.IfcLine.name();
+        if (typeIndex.isOfType(entity, CurveRepresentationTypeItems.IfcLine.name())) return CurveRepresentationTypeItems.IfcLine.name();
 
-        ArrayList<EntityInstance> offsetCurves = new ArrayList<>(ifcModel.getInstancesOfType(CurveRepresentationTypeItems.IfcOffsetCurve2D.name()));
-        if (offsetCurves.contains(entity)) return CurveRepresentationTypeItems.IfcOffsetCurve2D.name();
+        if (typeIndex.isOfType(entity, CurveRepresentationTypeItems.IfcOffsetCurve2D.name())) return CurveRepresentationTypeItems.IfcOffsetCurve2D.name();
 
-        ArrayList<EntityInstance> offsetCurves3D = new ArrayList<>(ifcModel.getInstancesOfType(CurveRepresentationTypeItems.IfcOffsetCurve3D.name()));
-        if (offsetCurves3D.contains(entity)) return CurveRepresentationTypeItems.IfcOffsetCurve3D.name();
+        if (typeIndex.isOfType(entity, CurveRepresentationTypeItems.IfcOffsetCurve3D.name())) return CurveRepresentationTypeItems.IfcOffsetCurve3D.name();
 
-        ArrayList<EntityInstance> indexesCurves = new ArrayList<>(ifcModel.getInstancesOfType(CurveRepresentationTypeItems.IfcIndexedPolyCurve.name()));
-        if (indexesCurves.contains(entity)) return CurveRepresentationTypeItems.IfcIndexedPolyCurve.name();
+        if (typeIndex.isOfType(entity, CurveRepresentationTypeItems.IfcIndexedPolyCurve.name())) return CurveRepresentationTypeItems.IfcIndexedPolyCurve.name();
 
         Logging.info(IfcObjectIdentifier.class.getName() + ": " + entity.getEntityDefinition() + " is not supported as IfcBoundedCurveType");
         return null;
@@ -357,36 +314,29 @@ public class IfcObjectIdentifier {
      * @return type of IfcSpatialStructureElement
      */
     public static String getSpatialStructureElementType(ModelPopulation ifcModel, EntityInstance entity) {
-        ArrayList<EntityInstance> buildings = new ArrayList<>(ifcModel.getInstancesOfType(IfcSpatialStructureElementTypes.IfcBuilding.name()));
-        if (buildings.contains(entity)) return IfcSpatialStructureElementTypes.IfcBuilding.name();
+        IfcTypeIndex typeIndex = IfcTypeIndex.of(ifcModel);
 
-        ArrayList<EntityInstance> storeys = new ArrayList<>(ifcModel.getInstancesOfType(IfcSpatialStructureElementTypes.IfcBuildingStorey.name()));
-        if (storeys.contains(entity)) return IfcSpatialStructureElementTypes.IfcBuildingStorey.name();
+        if (typeIndex.isOfType(entity, IfcSpatialStructureElementTypes.IfcBuilding.name())) return IfcSpatialStructureElementTypes.IfcBuilding.name();
 
-        ArrayList<EntityInstance> spaces = new ArrayList<>(ifcModel.getInstancesOfType(IfcSpatialStructureElementTypes.IfcSpace.name()));
-        if (spaces.contains(entity)) return IfcSpatialStructureElementTypes.IfcSpace.name();
+        if (typeIndex.isOfType(entity, IfcSpatialStructureElementTypes.IfcBuildingStorey.name())) return IfcSpatialStructureElementTypes.IfcBuildingStorey.name();
 
-        ArrayList<EntityInstance> sites = new ArrayList<>(ifcModel.getInstancesOfType(IfcSpatialStructureElementTypes.IfcSite.name()));
-        if (sites.contains(entity)) return IfcSpatialStructureElementTypes.IfcSite.name();
+        if (typeIndex.isOfType(entity, IfcSpatialStructureElementTypes.IfcSpace.name())) return IfcSpatialStructureElementTypes.IfcSpace.name();
+
+        if (typeIndex.isOfType(entity, IfcSpatialStructureElementTypes.IfcSite.name())) return IfcSpatialStructureElementTypes.IfcSite.name();
 
         Logging.info(IfcObjectIdentifier.class.getName() + ": " + entity.getEntityDefinition() + " is not supported as IfcSpatialStructureElement");
         return null;
     }
 
     /**
-     * Checks if entity is part of IfcRelVoidsElement, if yes than returns IfcRelVoidsElement, else null
+     * Gets all opening elements voiding entity, looked up in {@link IfcOpeningIndex}
      *
      * @param ifcModel ifc model
-     * @param entity   to get IfcRelVoidsElement for
-     * @return if entity part of an IfcRelVoidsElement the EntityInstance if IfcRelVoidsElement, else null
+     * @param entity   building element to get opening elements for, e.g. slab, wall or door
+     * @return opening elements of entity, empty if entity has no openings
      */
-    public static EntityInstance getRelVoidsElementOfEntity(ModelPopulation ifcModel, EntityInstance entity) {
-        ArrayList<EntityInstance> relVoidsElements = new ArrayList<>(ifcModel.getInstancesOfType(BIMObject.IfcRelVoidsElement.name()));
-        for (EntityInstance relVoidsElement : relVoidsElements) {
-            int relatingBuildingElementId = relVoidsElement.getAttributeValueBNasEntityInstance("RelatingBuildingElement").getId();
-            if (relatingBuildingElementId == entity.getId()) return relVoidsElement;
-        }
-        return null;
+    public static List<EntityInstance> getOpeningElementsOfEntity(ModelPopulation ifcModel, EntityInstance entity) {
+        return IfcOpeningIndex.of(ifcModel).getOpenings(entity);
     }
 
     /**
@@ -397,8 +347,7 @@ public class IfcObjectIdentifier {
      * @return true if IfcPolyline, else false
      */
     public static boolean isIfcPolyline(ModelPopulation ifcModel, EntityInstance entity) {
-        ArrayList<EntityInstance> polylines = new ArrayList<>(ifcModel.getInstancesOfType(CurveRepresentationTypeItems.IfcPolyline.name()));
-        return polylines.contains(entity);
+        return IfcTypeIndex.of(ifcModel).isOfType(entity, CurveRepresentationTypeItems.IfcPolyline.name());
     }
 
     /**
@@ -409,8 +358,7 @@ public class IfcObjectIdentifier {
      * @return true if IfcCompositeCurve, else false
      */
     public static boolean isIfcCompositeCurve(ModelPopulation ifcModel, EntityInstance entity) {
-        ArrayList<EntityInstance> cCurves = new ArrayList<>(ifcModel.getInstancesOfType(CurveRepresentationTypeItems.IfcCompositeCurve.name()));
-        return cCurves.contains(entity);
+        return IfcTypeIndex.of(ifcModel).isOfType(entity, CurveRepresentationTypeItems.IfcCompositeCurve.name());
     }
 
     /**
@@ -421,8 +369,7 @@ public class IfcObjectIdentifier {
      * @return true if IfcTrimmedCurve, else false
      */
     public static boolean isIfcTrimmedCurve(ModelPopulation ifcModel, EntityInstance entity) {
-        ArrayList<EntityInstance> tCurves = new ArrayList<>(ifcModel.getInstancesOfType(CurveRepresentationTypeItems.IfcTrimmedCurve.name()));
-        return tCurves.contains(entity);
+        return IfcTypeIndex.of(ifcModel).isOfType(entity, CurveRepresentationTypeItems.IfcTrimmedCurve.name());
     }
 
     /**
@@ -433,8 +380,7 @@ public class IfcObjectIdentifier {
      * @return true if IfcCircle, else false
      */
     public static boolean isIfcCircle(ModelPopulation ifcModel, EntityInstance entity) {
-        ArrayList<EntityInstance> cCurves = new ArrayList<>(ifcModel.getInstancesOfType(CurveRepresentationTypeItems.IfcCircle.name()));
-        return cCurves.contains(entity);
+        return IfcTypeIndex.of(ifcModel).isOfType(entity, CurveRepresentationTypeItems.IfcCircle.name());
     }
 
     /**
@@ -445,8 +391,7 @@ public class IfcObjectIdentifier {
      * @return true if IfcAxis2Placement3D, else false
      */
     public static boolean isIfcAxis2Placement3D(ModelPopulation ifcModel, EntityInstance entity) {
-        ArrayList<EntityInstance> axis2placement3Ds = new ArrayList<>(ifcModel.getInstancesOfType(Axis2PlacementRepresentationTypeItems.IfcAxis2Placement3D.name()));
-        return axis2placement3Ds.contains(entity);
+        return IfcTypeIndex.of(ifcModel).isOfType(entity, Axis2PlacementRepresentationTypeItems.IfcAxis2Placement3D.name());
     }
 
     /**
@@ -457,8 +402,7 @@ public class IfcObjectIdentifier {
      * @return true if IfcOpeningElement, else false
      */
     public static boolean isIfcOpeningElement(ModelPopulation ifcModel, EntityInstance entity) {
-        ArrayList<EntityInstance> openingElement = new ArrayList<>(ifcModel.getInstancesOfType(IfcRelVoidsElementTypes.IfcOpeningElement.name()));
-        return openingElement.contains(entity);
+        return IfcTypeIndex.of(ifcModel).isOfType(entity, IfcRelVoidsElementTypes.IfcOpeningElement.name());
     }
 
     /**
@@ -469,8 +413,7 @@ public class IfcObjectIdentifier {
      * @return true if IfcSlab, else false
      */
     public static boolean isIfcSlab(ModelPopulation ifcModel, EntityInstance entity) {
-        ArrayList<EntityInstance> slabElements = new ArrayList<>(ifcModel.getInstancesOfType(BIMObject.IfcSlab.name()));
-        return slabElements.contains(entity);
+        return IfcTypeIndex.of(ifcModel).isOfType(entity, BIMObject.IfcSlab.name());
     }
 
     /**
@@ -481,8 +424,7 @@ public class IfcObjectIdentifier {
      * @return true if IfcDoor, else false
      */
     public static boolean isIfcDoor(ModelPopulation ifcModel, EntityInstance entity) {
-        ArrayList<EntityInstance> doorElements = new ArrayList<>(ifcModel.getInstancesOfType(BIMObject.IfcDoor.name()));
-        return doorElements.contains(entity);
+        return IfcTypeIndex.of(ifcModel).isOfType(entity, BIMObject.IfcDoor.name());
     }
 
     /**
@@ -493,8 +435,7 @@ public class IfcObjectIdentifier {
      * @return true if IfcWindow, else false
      */
     public static boolean isIfcWindow(ModelPopulation ifcModel, EntityInstance entity) {
-        ArrayList<EntityInstance> windowElements = new ArrayList<>(ifcModel.getInstancesOfType(BIMObject.IfcWindow.name()));
-        return windowElements.contains(entity);
+        return IfcTypeIndex.of(ifcModel).isOfType(entity, BIMObject.IfcWindow.name());
     }
 
     public static boolean isIfcWindowOrIfcDoor(ModelPopulation ifcModel, EntityInstance entity) {
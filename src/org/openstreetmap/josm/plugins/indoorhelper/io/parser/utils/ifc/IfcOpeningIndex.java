@@ -0,0 +1,97 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.model.BIMtoOSMCatalog.BIMObject;
+import nl.tue.buildingsmart.express.population.EntityInstance;
+import nl.tue.buildingsmart.express.population.ModelPopulation;
+import org.openstreetmap.josm.tools.Logging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Index mapping building elements of a loaded ifc model to their opening elements. The index will be built once
+ * from IfcRelVoidsElement elements after loading the model, so openings of an element are found without scanning
+ * all IfcRelVoidsElement elements.
+ */
+public class IfcOpeningIndex {
+
+    /**
+     * Indexes of loaded models. Weak keys to release index together with model.
+     */
+    private static final Map<ModelPopulation, IfcOpeningIndex> indexes = Collections.synchronizedMap(new WeakHashMap<>());
+
+    // building element id -> opening elements (IfcRelVoidsElement)
+    private final Map<Integer, List<EntityInstance>> openingsByElementId;
+
+    private IfcOpeningIndex() {
+        openingsByElementId = new HashMap<>();
+    }
+
+    /**
+     * Builds the opening index of ifc model and registers it for later requests
+     *
+     * @param ifcModel loaded ifc model
+     * @return opening index of model
+     */
+    public static IfcOpeningIndex build(ModelPopulation ifcModel) {
+        long start = System.currentTimeMillis();
+        IfcOpeningIndex index = new IfcOpeningIndex();
+        int openings = 0;
+        List<EntityInstance> relVoidsElements = ifcModel.getInstancesOfType(BIMObject.IfcRelVoidsElement.name());
+        if (relVoidsElements != null) {
+            for (EntityInstance rel : relVoidsElements) {
+                EntityInstance relatingBuildingElement = rel.getAttributeValueBNasEntityInstance("RelatingBuildingElement");
+                EntityInstance relatedOpeningElement = rel.getAttributeValueBNasEntityInstance("RelatedOpeningElement");
+                if (relatingBuildingElement == null || relatedOpeningElement == null) continue;
+                index.openingsByElementId.computeIfAbsent(relatingBuildingElement.getId(), k -> new ArrayList<>())
+                        .add(relatedOpeningElement);
+                openings++;
+            }
+        }
+        indexes.put(ifcModel, index);
+
+        Logging.info(String.format("%s-IndexReport: %d openings of %d elements indexed in %d ms",
+                IfcOpeningIndex.class.getName(), openings, index.openingsByElementId.size(),
+                System.currentTimeMillis() - start));
+        return index;
+    }
+
+    /**
+     * Returns the opening index of ifc model. If no index was built for model yet, it will be built now.
+     *
+     * @param ifcModel loaded ifc model
+     * @return opening index of model
+     */
+    public static IfcOpeningIndex of(ModelPopulation ifcModel) {
+        IfcOpeningIndex index = indexes.get(ifcModel);
+        if (index == null) {
+            index = build(ifcModel);
+        }
+        return index;
+    }
+
+    /**
+     * Removes the opening index of ifc model
+     *
+     * @param ifcModel to release index of
+     */
+    public static void release(ModelPopulation ifcModel) {
+        indexes.remove(ifcModel);
+    }
+
+    /**
+     * Gets all opening elements voiding building element, e.g. openings of slabs, walls or doors
+     *
+     * @param element building element
+     * @return opening elements (IfcOpeningElement or IfcVoidingFeature), empty if element has no openings
+     */
+    public List<EntityInstance> getOpenings(EntityInstance element) {
+        if (element == null) return Collections.emptyList();
+        return Collections.unmodifiableList(openingsByElementId.getOrDefault(element.getId(), Collections.emptyList()));
+    }
+}
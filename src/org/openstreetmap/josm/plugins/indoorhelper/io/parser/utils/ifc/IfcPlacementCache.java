@@ -0,0 +1,128 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.AffineTransform3D;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.Vector3D;
+import nl.tue.buildingsmart.express.population.ModelPopulation;
+import org.openstreetmap.josm.tools.Logging;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache holding the resolved placement chains of a loaded ifc model, keyed by IfcLocalPlacement id.
+ * Elements of a building share a few storey placements, so each placement of the chain will be resolved once
+ * and reused by all elements placed relative to it.
+ */
+public class IfcPlacementCache {
+
+    /**
+     * Caches of loaded models. Weak keys to release cache together with model.
+     */
+    private static final Map<ModelPopulation, IfcPlacementCache> caches = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Map<Integer, PlacementTransform> transforms = new ConcurrentHashMap<>();
+    private final Map<Integer, PlacementRotation> rotations = new ConcurrentHashMap<>();
+
+    // report data
+    private final AtomicLong elements = new AtomicLong();
+    private final AtomicLong placementsResolved = new AtomicLong();
+    private final AtomicLong uncachedWalks = new AtomicLong();
+
+    /**
+     * Returns the placement cache of ifc model. If no cache exists for model yet, it will be created now.
+     *
+     * @param ifcModel loaded ifc model
+     * @return placement cache of model
+     */
+    public static IfcPlacementCache of(ModelPopulation ifcModel) {
+        return caches.computeIfAbsent(ifcModel, model -> new IfcPlacementCache());
+    }
+
+    /**
+     * Removes the placement cache of ifc model
+     *
+     * @param ifcModel to release cache of
+     */
+    public static void release(ModelPopulation ifcModel) {
+        caches.remove(ifcModel);
+    }
+
+    /**
+     * Logs number of resolved placements compared to the placement walks needed without cache
+     */
+    public void logReport() {
+        long elementCount = elements.get();
+        Logging.info(String.format("%s-PlacementReport: %d elements placed, %d placements resolved " +
+                        "(%.2f per element), %d placements would be walked without cache (%.2f per element)",
+                IfcPlacementCache.class.getName(), elementCount, placementsResolved.get(),
+                elementCount > 0 ? (double) placementsResolved.get() / elementCount : 0.0,
+                uncachedWalks.get(), elementCount > 0 ? (double) uncachedWalks.get() / elementCount : 0.0));
+    }
+
+    PlacementTransform getTransform(int placementId) {
+        return transforms.get(placementId);
+    }
+
+    void putTransform(int placementId, PlacementTransform transform) {
+        placementsResolved.incrementAndGet();
+        transforms.put(placementId, transform);
+    }
+
+    PlacementRotation getRotation(int placementId) {
+        return rotations.get(placementId);
+    }
+
+    void putRotation(int placementId, PlacementRotation rotation) {
+        placementsResolved.incrementAndGet();
+        rotations.put(placementId, rotation);
+    }
+
+    /**
+     * Counts placed element
+     *
+     * @param transformDepth length of placement chain resolved for translation
+     * @param rotationDepth  length of placement chain resolved for rotation
+     */
+    void countElement(int transformDepth, int rotationDepth) {
+        elements.incrementAndGet();
+        uncachedWalks.addAndGet(transformDepth + rotationDepth);
+    }
+
+    /**
+     * Composed rotation and translation of placement chain. Values must not be changed.
+     */
+    static class PlacementTransform {
+        final AffineTransform3D transform;
+        final int depth;
+
+        PlacementTransform(AffineTransform3D transform, int depth) {
+            this.transform = transform;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Accumulated x- and z-axis rotation angles of placement chain. Values must not be changed.
+     */
+    static class PlacementRotation {
+        final boolean valid;
+        final double angleX;
+        final double angleZ;
+        final Vector3D xAxis;
+        final Vector3D zAxis;
+        final int depth;
+
+        PlacementRotation(boolean valid, double angleX, double angleZ, Vector3D xAxis, Vector3D zAxis, int depth) {
+            this.valid = valid;
+            this.angleX = angleX;
+            this.angleZ = angleZ;
+            this.xAxis = xAxis;
+            this.zAxis = zAxis;
+            this.depth = depth;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc;
+
+import nl.tue.buildingsmart.express.population.ModelPopulation;
+import nl.tue.buildingsmart.schema.SchemaDefinition;
+import org.openstreetmap.josm.tools.Logging;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Process-wide cache of parsed EXPRESS schemas. Parsing a schema file takes a considerable amount of time,
+ * so every schema will be parsed once and shared by all following imports.
+ * <p>
+ * The IFC library does not document {@link SchemaDefinition} as thread-safe. Callers loading models concurrently
+ * must not use a shared schema at the same time, BIMtoOSMParser synchronizes loading on the schema instance.
+ */
+public class IfcSchemaCache {
+
+    /**
+     * Minimal STEP file used to let {@link ModelPopulation} parse the schema without loading entities
+     */
+    private static final String EMPTY_STEP_FILE = "ISO-10303-21;\nHEADER;\nENDSEC;\nDATA;\nENDSEC;\nEND-ISO-10303-21;\n";
+
+    // schema flag -> parsed schema
+    private static final Map<String, CompletableFuture<SchemaDefinition>> schemas = new ConcurrentHashMap<>();
+
+    /**
+     * Starts parsing the schema in background if not cached yet
+     *
+     * @param schemaFlag FILE_SCHEMA flag the schema is used for
+     * @param schemaFile EXPRESS schema file
+     */
+    public static void warmUp(String schemaFlag, Path schemaFile) {
+        if (!Files.isRegularFile(schemaFile)) return;
+        schemas.computeIfAbsent(schemaFlag, flag -> CompletableFuture.supplyAsync(() -> parseSchema(schemaFile)));
+    }
+
+    /**
+     * Gets the parsed schema. Waits if schema is parsed in background right now and parses
+     * the schema if not cached yet.
+     *
+     * @param schemaFlag FILE_SCHEMA flag the schema is used for
+     * @param schemaFile EXPRESS schema file
+     * @return parsed schema or null if schema could not be parsed
+     */
+    public static SchemaDefinition get(String schemaFlag, Path schemaFile) {
+        CompletableFuture<SchemaDefinition> schema = schemas.computeIfAbsent(schemaFlag,
+                flag -> CompletableFuture.completedFuture(parseSchema(schemaFile)));
+        try {
+            SchemaDefinition result = schema.get();
+            if (result == null) schemas.remove(schemaFlag, schema);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Logging.error(e.getMessage());
+            schemas.remove(schemaFlag, schema);
+            return null;
+        }
+    }
+
+    /**
+     * Parses the schema file
+     *
+     * @param schemaFile EXPRESS schema file
+     * @return parsed schema or null if parsing failed
+     */
+    private static SchemaDefinition parseSchema(Path schemaFile) {
+        long start = System.currentTimeMillis();
+        ModelPopulation emptyModel = new ModelPopulation(
+                new ByteArrayInputStream(EMPTY_STEP_FILE.getBytes(StandardCharsets.UTF_8)));
+        emptyModel.setSchemaFile(schemaFile);
+        emptyModel.load();
+        SchemaDefinition schema = emptyModel.getSchema();
+
+        Logging.info(String.format("%s-CacheReport: schema %s parsed in %d ms",
+                IfcSchemaCache.class.getName(), schemaFile.getFileName(), System.currentTimeMillis() - start));
+        return schema;
+    }
+}
@@ -0,0 +1,117 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.ifc.IfcRepresentationCatalog.IfcSpatialStructureElementTypes;
+import nl.tue.buildingsmart.express.population.EntityInstance;
+import nl.tue.buildingsmart.express.population.ModelPopulation;
+import org.openstreetmap.josm.tools.Logging;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index mapping elements of a loaded ifc model to the spatial structure element containing them.
+ * Built once per parse from IfcRelContainedInSpatialStructure and IfcRelAggregates elements.
+ */
+public class IfcSpatialStructureIndex {
+
+    private static final String REL_CONTAINED_IN_SPATIAL_STRUCTURE = "IfcRelContainedInSpatialStructure";
+    private static final String REL_AGGREGATES = "IfcRelAggregates";
+
+    private final ModelPopulation ifcModel;
+    // element id -> spatial structure element (IfcRelContainedInSpatialStructure)
+    private final Map<Integer, EntityInstance> structureByElementId;
+    // part id -> whole (IfcRelAggregates)
+    private final Map<Integer, EntityInstance> parentById;
+    // all storeys referenced by IfcRelContainedInSpatialStructure elements
+    private final List<EntityInstance> storeys;
+
+    private IfcSpatialStructureIndex(ModelPopulation ifcModel) {
+        this.ifcModel = ifcModel;
+        structureByElementId = new HashMap<>();
+        parentById = new HashMap<>();
+        storeys = new ArrayList<>();
+    }
+
+    /**
+     * Builds the spatial structure index of ifc model
+     *
+     * @param ifcModel loaded ifc model
+     * @return spatial structure index of model
+     */
+    public static IfcSpatialStructureIndex build(ModelPopulation ifcModel) {
+        long start = System.currentTimeMillis();
+        IfcSpatialStructureIndex index = new IfcSpatialStructureIndex(ifcModel);
+        Set<Integer> storeyIds = new HashSet<>();
+
+        for (EntityInstance rel : ifcModel.getInstancesOfType(REL_CONTAINED_IN_SPATIAL_STRUCTURE)) {
+            EntityInstance relatingStructure = rel.getAttributeValueBNasEntityInstance("RelatingStructure");
+            ArrayList<EntityInstance> relatedElements = rel.getAttributeValueBNasEntityInstanceList("RelatedElements");
+            if (relatingStructure == null || relatedElements == null) continue;
+            relatedElements.forEach(element -> index.structureByElementId.put(element.getId(), relatingStructure));
+
+            if (index.isIfcBuildingStorey(relatingStructure) && storeyIds.add(relatingStructure.getId())) {
+                index.storeys.add(relatingStructure);
+            }
+        }
+
+        for (EntityInstance rel : ifcModel.getInstancesOfType(REL_AGGREGATES)) {
+            EntityInstance relatingObject = rel.getAttributeValueBNasEntityInstance("RelatingObject");
+            ArrayList<EntityInstance> relatedObjects = rel.getAttributeValueBNasEntityInstanceList("RelatedObjects");
+            if (relatingObject == null || relatedObjects == null) continue;
+            relatedObjects.forEach(object -> index.parentById.put(object.getId(), relatingObject));
+        }
+
+        Logging.info(String.format("%s-IndexReport: %d contained elements, %d aggregated elements indexed in %d ms",
+                IfcSpatialStructureIndex.class.getName(), index.structureByElementId.size(), index.parentById.size(),
+                System.currentTimeMillis() - start));
+        return index;
+    }
+
+    /**
+     * Gets the spatial structure element of element. If the element is not contained directly, the
+     * containment of the aggregating elements is used. If the containing structure is not a storey,
+     * but aggregated by a storey (e.g. IfcSpace), the storey will be returned.
+     *
+     * @param elementId id of element
+     * @return spatial structure element or null if element is not part of spatial structure
+     */
+    public EntityInstance getSpatialStructure(int elementId) {
+        // find containment of element or of its aggregating elements
+        EntityInstance structure = structureByElementId.get(elementId);
+        Set<Integer> visited = new HashSet<>();
+        int currentId = elementId;
+        while (structure == null && visited.add(currentId)) {
+            EntityInstance parent = parentById.get(currentId);
+            if (parent == null) return null;
+            currentId = parent.getId();
+            structure = structureByElementId.get(currentId);
+        }
+        if (structure == null || isIfcBuildingStorey(structure)) return structure;
+
+        // find storey aggregating structure
+        EntityInstance parent = parentById.get(structure.getId());
+        while (parent != null && visited.add(parent.getId())) {
+            if (isIfcBuildingStorey(parent)) return parent;
+            parent = parentById.get(parent.getId());
+        }
+        return structure;
+    }
+
+    /**
+     * Gets all storeys which contain elements
+     *
+     * @return list of IfcBuildingStorey elements
+     */
+    public List<EntityInstance> getStoreys() {
+        return storeys;
+    }
+
+    private boolean isIfcBuildingStorey(EntityInstance entity) {
+        return IfcTypeIndex.of(ifcModel).isOfType(entity, IfcSpatialStructureElementTypes.IfcBuildingStorey.name());
+    }
+}
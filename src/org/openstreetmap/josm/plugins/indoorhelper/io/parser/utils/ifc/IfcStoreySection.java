@@ -0,0 +1,50 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.ifc.IfcRepresentationCatalog.IfcSpatialStructureElementTypes;
+import nl.tue.buildingsmart.express.population.EntityInstance;
+import nl.tue.buildingsmart.express.population.ModelPopulation;
+
+/**
+ * Horizontal section planes of storeys. Faceted brep bodies of elements contained in a storey are sliced at storey
+ * elevation plus cut height, so only the footprint of each element is imported instead of all of its faces.
+ */
+public class IfcStoreySection {
+
+    private final ModelPopulation ifcModel;
+    private final IfcSpatialStructureIndex spatialStructureIndex;
+    private final double cutHeight;
+
+    /**
+     * Constructor
+     *
+     * @param ifcModel              loaded ifc model
+     * @param spatialStructureIndex of loaded ifc model
+     * @param cutHeight             height of section plane above storey elevation in length unit of model
+     */
+    public IfcStoreySection(ModelPopulation ifcModel, IfcSpatialStructureIndex spatialStructureIndex, double cutHeight) {
+        this.ifcModel = ifcModel;
+        this.spatialStructureIndex = spatialStructureIndex;
+        this.cutHeight = cutHeight;
+    }
+
+    /**
+     * @return height of section plane above storey elevation in length unit of model
+     */
+    public double getCutHeight() {
+        return cutHeight;
+    }
+
+    /**
+     * Gets storey containing element
+     *
+     * @param element to get storey of
+     * @return IfcBuildingStorey or null if element is not contained in a storey
+     */
+    public EntityInstance getStorey(EntityInstance element) {
+        EntityInstance structure = spatialStructureIndex.getSpatialStructure(element.getId());
+        if (structure == null) return null;
+        return IfcTypeIndex.of(ifcModel).isOfType(structure, IfcSpatialStructureElementTypes.IfcBuildingStorey.name())
+                ? structure : null;
+    }
+}
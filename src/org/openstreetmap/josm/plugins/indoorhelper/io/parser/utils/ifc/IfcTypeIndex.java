@@ -0,0 +1,175 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.model.BIMtoOSMCatalog.BIMObject;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.ifc.IfcRepresentationCatalog.*;
+import nl.tue.buildingsmart.express.population.EntityInstance;
+import nl.tue.buildingsmart.express.population.ModelPopulation;
+import org.openstreetmap.josm.tools.Logging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Index mapping entity ids of a loaded ifc model to their resolved IFC type. The index will be built once after
+ * loading the model and answers type requests of {@link IfcObjectIdentifier} in constant time.
+ */
+public class IfcTypeIndex {
+
+    /**
+     * Indexes of loaded models. Weak keys to release index together with model.
+     */
+    private static final Map<ModelPopulation, IfcTypeIndex> indexes = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Supertypes of indexed types which are used as type identifier in IfcRepresentationCatalog
+     */
+    private static final Map<String, String> supertypes = new HashMap<>();
+
+    static {
+        supertypes.put(CurveRepresentationTypeItems.IfcPolyline.name(), CurveRepresentationTypeItems.IfcBoundedCurve.name());
+        supertypes.put(CurveRepresentationTypeItems.IfcCompositeCurve.name(), CurveRepresentationTypeItems.IfcBoundedCurve.name());
+        supertypes.put(CurveRepresentationTypeItems.IfcTrimmedCurve.name(), CurveRepresentationTypeItems.IfcBoundedCurve.name());
+        supertypes.put(CurveRepresentationTypeItems.IfcBSplineCurve.name(), CurveRepresentationTypeItems.IfcBoundedCurve.name());
+        supertypes.put(CurveRepresentationTypeItems.IfcIndexedPolyCurve.name(), CurveRepresentationTypeItems.IfcBoundedCurve.name());
+        supertypes.put(CurveRepresentationTypeItems.IfcCircle.name(), CurveRepresentationTypeItems.IfcConic.name());
+        supertypes.put(CurveRepresentationTypeItems.IfcEllipse.name(), CurveRepresentationTypeItems.IfcConic.name());
+        supertypes.put(TessellationRepresentationTypeItems.IfcTriangulatedFaceSet.name(), TessellationRepresentationTypeItems.IfcTessellatedFaceSet.name());
+        supertypes.put(TessellationRepresentationTypeItems.IfcPolygonalFaceSet.name(), TessellationRepresentationTypeItems.IfcTessellatedFaceSet.name());
+        supertypes.put(TessellationRepresentationTypeItems.IfcTessellatedFaceSet.name(), SurfaceModelRepresentationTypeItems.IfcTessellatedItem.name());
+        supertypes.put(IndexedPolygonalFaceTypeItems.IfcIndexedPolygonalFaceWithVoids.name(), IndexedPolygonalFaceTypeItems.IfcIndexedPolygonalFace.name());
+        supertypes.put(CartesianTransformationOperatorTypeItems.IfcCartesianTransformationOperator3DnonUniform.name(),
+                CartesianTransformationOperatorTypeItems.IfcCartesianTransformationOperator3D.name());
+    }
+
+    private final Map<Integer, String> typeById;
+    private final Map<String, Set<Integer>> idsByType;
+
+    private IfcTypeIndex() {
+        typeById = new HashMap<>();
+        idsByType = new HashMap<>();
+    }
+
+    /**
+     * Builds the type index of ifc model and registers it for later requests
+     *
+     * @param ifcModel loaded ifc model
+     * @return type index of model
+     */
+    public static IfcTypeIndex build(ModelPopulation ifcModel) {
+        long start = System.currentTimeMillis();
+        IfcTypeIndex index = new IfcTypeIndex();
+        for (String typeName : getIndexedTypeNames()) {
+            List<EntityInstance> instances = ifcModel.getInstancesOfType(typeName);
+            if (instances == null || instances.isEmpty()) continue;
+            Set<Integer> ids = index.idsByType.computeIfAbsent(typeName, k -> new HashSet<>());
+            for (EntityInstance instance : instances) {
+                ids.add(instance.getId());
+                index.typeById.putIfAbsent(instance.getId(), typeName);
+            }
+        }
+        indexes.put(ifcModel, index);
+
+        Logging.info(String.format("%s-IndexReport: %d entities of %d types indexed in %d ms",
+                IfcTypeIndex.class.getName(), index.typeById.size(), index.idsByType.size(),
+                System.currentTimeMillis() - start));
+        return index;
+    }
+
+    /**
+     * Returns the type index of ifc model. If no index was built for model yet, it will be built now.
+     *
+     * @param ifcModel loaded ifc model
+     * @return type index of model
+     */
+    public static IfcTypeIndex of(ModelPopulation ifcModel) {
+        IfcTypeIndex index = indexes.get(ifcModel);
+        if (index == null) {
+            index = build(ifcModel);
+        }
+        return index;
+    }
+
+    /**
+     * Removes the type index of ifc model
+     *
+     * @param ifcModel to release index of
+     */
+    public static void release(ModelPopulation ifcModel) {
+        indexes.remove(ifcModel);
+    }
+
+    /**
+     * Gets resolved type of entity
+     *
+     * @param entity to get type of
+     * @return type as string or null if type is not indexed
+     */
+    public String getType(EntityInstance entity) {
+        if (entity == null) return null;
+        return typeById.get(entity.getId());
+    }
+
+    /**
+     * Checks if entity is of type. Considers supertypes of resolved entity type.
+     *
+     * @param entity   to check type of
+     * @param typeName to check
+     * @return true if entity is of type typeName, else false
+     */
+    public boolean isOfType(EntityInstance entity, String typeName) {
+        if (entity == null) return false;
+        Set<Integer> ids = idsByType.get(typeName);
+        if (ids != null && ids.contains(entity.getId())) return true;
+
+        String type = typeById.get(entity.getId());
+        while (type != null) {
+            if (type.equals(typeName)) return true;
+            type = supertypes.get(type);
+        }
+        return false;
+    }
+
+    /**
+     * Collects all type names which are requested by {@link IfcObjectIdentifier}
+     *
+     * @return type names to index
+     */
+    private static Set<String> getIndexedTypeNames() {
+        List<Enum<?>[]> catalogs = new ArrayList<>();
+        catalogs.add(AdvancedBrepRepresentationTypeItems.values());
+        catalogs.add(AdvancedSweptSolidRepresentationTypeItems.values());
+        catalogs.add(BrepRepresentationTypeItems.values());
+        catalogs.add(CSGRepresentationTypeItems.values());
+        catalogs.add(ClippingRepresentationTypeItems.values());
+        catalogs.add(CurveRepresentationTypeItems.values());
+        catalogs.add(MappedRepresentationTypeItems.values());
+        catalogs.add(TessellationRepresentationTypeItems.values());
+        catalogs.add(SurfaceModelRepresentationTypeItems.values());
+        catalogs.add(SweptSolidRepresentationTypeItems.values());
+        catalogs.add(BoundingBoxRepresentationTypeItems.values());
+        catalogs.add(LoopSubRepresentationTypeItems.values());
+        catalogs.add(ProfileDefRepresentationTypeItems.values());
+        catalogs.add(IndexedPolygonalFaceTypeItems.values());
+        catalogs.add(CartesianTransformationOperatorTypeItems.values());
+        catalogs.add(Axis2PlacementRepresentationTypeItems.values());
+        catalogs.add(IfcBooleanOperandType.values());
+        catalogs.add(IfcRelVoidsElementTypes.values());
+        catalogs.add(IfcSpatialStructureElementTypes.values());
+        catalogs.add(BIMObject.values());
+
+        Set<String> typeNames = new HashSet<>();
+        catalogs.forEach(catalog -> {
+            for (Enum<?> type : catalog) {
+                typeNames.add(type.name());
+            }
+        });
+        return typeNames;
+    }
+}
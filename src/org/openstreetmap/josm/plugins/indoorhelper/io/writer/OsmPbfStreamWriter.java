@@ -0,0 +1,390 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.writer;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.BIMObject3D;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.CoordinateBuffer;
+import org.openstreetmap.josm.data.osm.Tag;
+import org.openstreetmap.josm.tools.Logging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+
+import static org.openstreetmap.josm.plugins.indoorhelper.io.writer.OsmXmlStreamWriter.getRingNodeCount;
+import static org.openstreetmap.josm.plugins.indoorhelper.io.writer.OsmXmlStreamWriter.getRole;
+import static org.openstreetmap.josm.plugins.indoorhelper.io.writer.OsmXmlStreamWriter.isClosedRing;
+
+/**
+ * Class writes parsed BIM objects as OSM PBF file without building a {@link org.openstreetmap.josm.data.osm.DataSet}.
+ * Nodes are written as delta coded dense nodes, ways with delta coded node references, multipolygons of objects with
+ * inner rings as relations with delta coded member ids. Each block holds a string table
+ * of the tags used in block, so tags of {@link org.openstreetmap.josm.plugins.indoorhelper.model.TagCatalog} and level
+ * values are stored once per block. Ids are negative and derived from the order of objects like in
+ * {@link OsmXmlStreamWriter}.
+ */
+public class OsmPbfStreamWriter implements OsmStreamWriter {
+
+    // entities per block as recommended by PBF format description
+    private static final int BLOCK_SIZE = 8000;
+    // nanodegrees per coordinate unit, default of PBF format
+    private static final int GRANULARITY = 100;
+
+    // field numbers of PBF messages
+    private static final int BLOB_HEADER_TYPE = 1;
+    private static final int BLOB_HEADER_DATASIZE = 3;
+    private static final int BLOB_RAW_SIZE = 2;
+    private static final int BLOB_ZLIB_DATA = 3;
+    private static final int HEADER_REQUIRED_FEATURES = 4;
+    private static final int HEADER_WRITING_PROGRAM = 16;
+    private static final int BLOCK_STRING_TABLE = 1;
+    private static final int BLOCK_PRIMITIVE_GROUP = 2;
+    private static final int STRING_TABLE_S = 1;
+    private static final int GROUP_DENSE = 2;
+    private static final int GROUP_WAYS = 3;
+    private static final int GROUP_RELATIONS = 4;
+    private static final int DENSE_ID = 1;
+    private static final int DENSE_LAT = 8;
+    private static final int DENSE_LON = 9;
+    private static final int WAY_ID = 1;
+    private static final int WAY_KEYS = 2;
+    private static final int WAY_VALS = 3;
+    private static final int WAY_REFS = 8;
+    private static final int RELATION_ID = 1;
+    private static final int RELATION_KEYS = 2;
+    private static final int RELATION_VALS = 3;
+    private static final int RELATION_ROLES = 8;
+    private static final int RELATION_MEMBER_IDS = 9;
+    private static final int RELATION_MEMBER_TYPES = 10;
+    private static final int MEMBER_TYPE_WAY = 1;
+    private static final Tag MULTIPOLYGON = new Tag("type", "multipolygon");
+
+    private final WritableByteChannel channel;
+    private final Deflater deflater = new Deflater();
+    private byte[] compressed = new byte[1 << 16];
+
+    // block data
+    private final ProtobufBuffer ids = new ProtobufBuffer();
+    private final ProtobufBuffer lats = new ProtobufBuffer();
+    private final ProtobufBuffer lons = new ProtobufBuffer();
+    private final ProtobufBuffer group = new ProtobufBuffer();
+    private final ProtobufBuffer message = new ProtobufBuffer();
+    private final ProtobufBuffer block = new ProtobufBuffer();
+    private final Map<String, Integer> stringTable = new HashMap<>();
+    private String[] strings = new String[16];
+    private int entitiesInBlock;
+    private long lastId;
+    private long lastLat;
+    private long lastLon;
+
+    private long nodeCount;
+    private long wayCount;
+    private long relationCount;
+    private long bytesWritten;
+
+    /**
+     * Constructor
+     *
+     * @param channel to write PBF data to
+     */
+    public OsmPbfStreamWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void write(List<BIMObject3D> objects, Function<BIMObject3D, List<Tag>> tagsOfObject,
+                      Function<BIMObject3D, List<Tag>> tagsOfMembers) throws IOException {
+        long start = System.currentTimeMillis();
+        writeHeader();
+
+        // nodes
+        long nodeId = 0;
+        resetBlock();
+        for (BIMObject3D object : objects) {
+            CoordinateBuffer geometry = object.getGeodeticGeometryCoordinates();
+            for (int ring = 0; ring < geometry.getRingCount(); ring++) {
+                int count = getRingNodeCount(geometry, ring);
+                for (int i = geometry.getRingStart(ring); i < geometry.getRingStart(ring) + count; i++) {
+                    addNode(--nodeId, geometry.getX(i), geometry.getY(i));
+                }
+            }
+        }
+        flushNodes();
+        nodeCount = -nodeId;
+
+        // ways, node ids are assigned in same order as above
+        nodeId = 0;
+        long wayId = 0;
+        for (BIMObject3D object : objects) {
+            CoordinateBuffer geometry = object.getGeodeticGeometryCoordinates();
+            List<Tag> tags = null;
+            for (int ring = 0; ring < geometry.getRingCount(); ring++) {
+                int count = getRingNodeCount(geometry, ring);
+                if (count == 0) continue;
+                if (tags == null) tags = geometry.hasInnerRings() ? tagsOfMembers.apply(object) : tagsOfObject.apply(object);
+
+                long firstNodeId = nodeId - 1;
+                nodeId -= count;
+                addWay(--wayId, firstNodeId, count, isClosedRing(geometry, ring), tags);
+            }
+        }
+        flushGroup();
+        wayCount = -wayId;
+
+        // multipolygons of objects with inner rings, way ids are assigned in same order as above
+        wayId = 0;
+        long relationId = 0;
+        List<Long> memberIds = new ArrayList<>();
+        List<String> roles = new ArrayList<>();
+        for (BIMObject3D object : objects) {
+            CoordinateBuffer geometry = object.getGeodeticGeometryCoordinates();
+            boolean multipolygon = geometry.hasInnerRings();
+            memberIds.clear();
+            roles.clear();
+            for (int ring = 0; ring < geometry.getRingCount(); ring++) {
+                if (getRingNodeCount(geometry, ring) == 0) continue;
+                --wayId;
+                if (!multipolygon) continue;
+
+                memberIds.add(wayId);
+                roles.add(getRole(geometry, ring));
+            }
+            if (memberIds.isEmpty()) continue;
+
+            List<Tag> tags = new ArrayList<>(Collections.singletonList(MULTIPOLYGON));
+            tags.addAll(tagsOfObject.apply(object));
+            addRelation(--relationId, memberIds, roles, tags);
+        }
+        flushGroup();
+        relationCount = -relationId;
+
+        Logging.info(String.format("%s-WriteReport: %d nodes, %d ways and %d relations written in %d ms, %d KB",
+                OsmPbfStreamWriter.class.getName(), nodeCount, wayCount, relationCount, System.currentTimeMillis() - start,
+                bytesWritten / 1024));
+    }
+
+    @Override
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public long getWayCount() {
+        return wayCount;
+    }
+
+    @Override
+    public long getRelationCount() {
+        return relationCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        channel.close();
+    }
+
+    private void writeHeader() throws IOException {
+        block.reset();
+        block.writeString(HEADER_REQUIRED_FEATURES, "OsmSchema-V0.6");
+        block.writeString(HEADER_REQUIRED_FEATURES, "DenseNodes");
+        block.writeString(HEADER_WRITING_PROGRAM, "JOSM indoorhelper");
+        writeBlob("OSMHeader", block);
+    }
+
+    private void addNode(long id, double lat, double lon) throws IOException {
+        long latUnits = Math.round(lat * 1e9 / GRANULARITY);
+        long lonUnits = Math.round(lon * 1e9 / GRANULARITY);
+        ids.writeRawSignedVarint(id - lastId);
+        lats.writeRawSignedVarint(latUnits - lastLat);
+        lons.writeRawSignedVarint(lonUnits - lastLon);
+        lastId = id;
+        lastLat = latUnits;
+        lastLon = lonUnits;
+        if (++entitiesInBlock == BLOCK_SIZE) flushNodes();
+    }
+
+    private void flushNodes() throws IOException {
+        if (entitiesInBlock == 0) return;
+        message.reset();
+        message.writeMessage(DENSE_ID, ids);
+        message.writeMessage(DENSE_LAT, lats);
+        message.writeMessage(DENSE_LON, lons);
+        group.reset();
+        group.writeMessage(GROUP_DENSE, message);
+        writeBlock();
+    }
+
+    /**
+     * Adds way to current block
+     *
+     * @param id          of way
+     * @param firstNodeId id of first node, ids of following nodes are decreasing
+     * @param count       number of nodes
+     * @param closed      true if way ends with first node
+     * @param tags        of way
+     * @throws IOException if writing block fails
+     */
+    private void addWay(long id, long firstNodeId, int count, boolean closed, List<Tag> tags) throws IOException {
+        message.reset();
+        message.writeVarint(WAY_ID, id);
+        writeTags(WAY_KEYS, WAY_VALS, tags);
+
+        // delta coded references, consecutive nodes differ by -1
+        ids.reset();
+        ids.writeRawSignedVarint(firstNodeId);
+        for (int i = 1; i < count; i++) {
+            ids.writeRawSignedVarint(-1);
+        }
+        if (closed) ids.writeRawSignedVarint(count - 1);
+        message.writeMessage(WAY_REFS, ids);
+
+        group.writeMessage(GROUP_WAYS, message);
+        if (++entitiesInBlock == BLOCK_SIZE) flushGroup();
+    }
+
+    /**
+     * Adds multipolygon relation of way members to current block
+     *
+     * @param id        of relation
+     * @param memberIds ids of member ways
+     * @param roles     of member ways
+     * @param tags      of relation
+     * @throws IOException if writing block fails
+     */
+    private void addRelation(long id, List<Long> memberIds, List<String> roles, List<Tag> tags) throws IOException {
+        message.reset();
+        message.writeVarint(RELATION_ID, id);
+        writeTags(RELATION_KEYS, RELATION_VALS, tags);
+
+        ids.reset();
+        for (String role : roles) {
+            ids.writeRawVarint(getStringIndex(role));
+        }
+        message.writeMessage(RELATION_ROLES, ids);
+        ids.reset();
+        long lastMemberId = 0;
+        for (long memberId : memberIds) {
+            ids.writeRawSignedVarint(memberId - lastMemberId);
+            lastMemberId = memberId;
+        }
+        message.writeMessage(RELATION_MEMBER_IDS, ids);
+        ids.reset();
+        for (int i = 0; i < memberIds.size(); i++) {
+            ids.writeRawVarint(MEMBER_TYPE_WAY);
+        }
+        message.writeMessage(RELATION_MEMBER_TYPES, ids);
+
+        group.writeMessage(GROUP_RELATIONS, message);
+        if (++entitiesInBlock == BLOCK_SIZE) flushGroup();
+    }
+
+    /**
+     * Writes keys and values of tags as packed string indices into current message
+     *
+     * @param keysField   field number of keys
+     * @param valuesField field number of values
+     * @param tags        to write
+     */
+    private void writeTags(int keysField, int valuesField, List<Tag> tags) {
+        ids.reset();
+        for (Tag tag : tags) {
+            ids.writeRawVarint(getStringIndex(tag.getKey()));
+        }
+        message.writeMessage(keysField, ids);
+        ids.reset();
+        for (Tag tag : tags) {
+            ids.writeRawVarint(getStringIndex(tag.getValue()));
+        }
+        message.writeMessage(valuesField, ids);
+    }
+
+    private void flushGroup() throws IOException {
+        if (entitiesInBlock == 0) return;
+        writeBlock();
+    }
+
+    private int getStringIndex(String value) {
+        Integer index = stringTable.get(value);
+        if (index == null) {
+            index = stringTable.size() + 1;
+            stringTable.put(value, index);
+            if (index == strings.length) strings = Arrays.copyOf(strings, strings.length * 2);
+            strings[index] = value;
+        }
+        return index;
+    }
+
+    /**
+     * Writes primitive block holding current group and string table, resets block data afterwards
+     *
+     * @throws IOException if writing fails
+     */
+    private void writeBlock() throws IOException {
+        // string table starts with empty string, index 0 is used as delimiter
+        message.reset();
+        message.writeString(STRING_TABLE_S, "");
+        for (int i = 1; i <= stringTable.size(); i++) {
+            message.writeString(STRING_TABLE_S, strings[i]);
+        }
+        block.reset();
+        block.writeMessage(BLOCK_STRING_TABLE, message);
+        block.writeMessage(BLOCK_PRIMITIVE_GROUP, group);
+        writeBlob("OSMData", block);
+        resetBlock();
+    }
+
+    private void resetBlock() {
+        ids.reset();
+        lats.reset();
+        lons.reset();
+        group.reset();
+        stringTable.clear();
+        entitiesInBlock = 0;
+        lastId = 0;
+        lastLat = 0;
+        lastLon = 0;
+    }
+
+    /**
+     * Writes zlib compressed blob preceded by its header
+     *
+     * @param type    of blob
+     * @param content of blob
+     * @throws IOException if writing fails
+     */
+    private void writeBlob(String type, ProtobufBuffer content) throws IOException {
+        deflater.reset();
+        deflater.setInput(content.array(), 0, content.size());
+        deflater.finish();
+        int compressedSize = 0;
+        while (!deflater.finished()) {
+            if (compressedSize == compressed.length) compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            compressedSize += deflater.deflate(compressed, compressedSize, compressed.length - compressedSize);
+        }
+
+        ProtobufBuffer blob = new ProtobufBuffer(compressedSize + 16);
+        blob.writeVarint(BLOB_RAW_SIZE, content.size());
+        blob.writeBytes(BLOB_ZLIB_DATA, compressed, 0, compressedSize);
+
+        ProtobufBuffer header = new ProtobufBuffer(32);
+        header.writeString(BLOB_HEADER_TYPE, type);
+        header.writeVarint(BLOB_HEADER_DATASIZE, blob.size());
+
+        ByteBuffer buffer = ByteBuffer.allocate(4 + header.size() + blob.size());
+        buffer.putInt(header.size());
+        buffer.put(header.array(), 0, header.size());
+        buffer.put(blob.array(), 0, blob.size());
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.writer;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.BIMObject3D;
+import org.openstreetmap.josm.data.osm.Tag;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Writer streaming parsed BIM objects into an OSM file format without building a
+ * {@link org.openstreetmap.josm.data.osm.DataSet}. Each ring of object geometry is written as way, vertices are
+ * written as nodes. Rings with less than two vertices are skipped, last vertex of closed rings is replaced by first node.
+ * Ways of objects with inner rings are written as members of a multipolygon relation holding the object tags.
+ */
+public interface OsmStreamWriter extends Closeable {
+
+    /**
+     * Writes objects as OSM document
+     *
+     * @param objects       to write, geodetic coordinates must be set
+     * @param tagsOfObject  provides tags of ways or multipolygon for each object
+     * @param tagsOfMembers provides tags of multipolygon member ways for each object with inner rings
+     * @throws IOException if writing fails
+     */
+    void write(List<BIMObject3D> objects, Function<BIMObject3D, List<Tag>> tagsOfObject,
+               Function<BIMObject3D, List<Tag>> tagsOfMembers) throws IOException;
+
+    /**
+     * Gets number of written nodes
+     *
+     * @return number of nodes
+     */
+    long getNodeCount();
+
+    /**
+     * Gets number of written ways
+     *
+     * @return number of ways
+     */
+    long getWayCount();
+
+    /**
+     * Gets number of written relations
+     *
+     * @return number of relations
+     */
+    long getRelationCount();
+}
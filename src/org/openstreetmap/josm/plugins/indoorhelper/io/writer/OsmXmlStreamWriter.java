@@ -0,0 +1,229 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.writer;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.BIMObject3D;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.CoordinateBuffer;
+import org.openstreetmap.josm.data.osm.Tag;
+import org.openstreetmap.josm.tools.Logging;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Class writes parsed BIM objects as OSM XML without building a {@link org.openstreetmap.josm.data.osm.DataSet}.
+ * Each ring of object geometry is written as way, vertices are written as nodes. Nodes are written first, ways and
+ * multipolygon relations afterwards, all with negative ids. Ids of ring vertices are derived from the order of objects, so writing
+ * needs constant memory besides the objects themselves.
+ */
+public class OsmXmlStreamWriter implements OsmStreamWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Writer out;
+    private long nodeCount;
+    private long wayCount;
+    private long relationCount;
+
+    /**
+     * Constructor
+     *
+     * @param channel to write OSM XML to
+     */
+    public OsmXmlStreamWriter(WritableByteChannel channel) {
+        out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE), BUFFER_SIZE);
+    }
+
+    @Override
+    public void write(List<BIMObject3D> objects, Function<BIMObject3D, List<Tag>> tagsOfObject,
+                      Function<BIMObject3D, List<Tag>> tagsOfMembers) throws IOException {
+        long start = System.currentTimeMillis();
+        out.write("<?xml version='1.0' encoding='UTF-8'?>\n");
+        out.write("<osm version='0.6' generator='JOSM indoorhelper'>\n");
+
+        // nodes
+        long nodeId = 0;
+        for (BIMObject3D object : objects) {
+            CoordinateBuffer geometry = object.getGeodeticGeometryCoordinates();
+            for (int ring = 0; ring < geometry.getRingCount(); ring++) {
+                int count = getRingNodeCount(geometry, ring);
+                for (int i = geometry.getRingStart(ring); i < geometry.getRingStart(ring) + count; i++) {
+                    out.write("  <node id='");
+                    out.write(Long.toString(--nodeId));
+                    out.write("' visible='true' lat='");
+                    out.write(Double.toString(geometry.getX(i)));
+                    out.write("' lon='");
+                    out.write(Double.toString(geometry.getY(i)));
+                    out.write("' />\n");
+                }
+            }
+        }
+        nodeCount = -nodeId;
+
+        // ways, node ids are assigned in same order as above
+        nodeId = 0;
+        long wayId = 0;
+        for (BIMObject3D object : objects) {
+            CoordinateBuffer geometry = object.getGeodeticGeometryCoordinates();
+            List<Tag> tags = null;
+            for (int ring = 0; ring < geometry.getRingCount(); ring++) {
+                int count = getRingNodeCount(geometry, ring);
+                if (count == 0) continue;
+                if (tags == null) tags = geometry.hasInnerRings() ? tagsOfMembers.apply(object) : tagsOfObject.apply(object);
+
+                out.write("  <way id='");
+                out.write(Long.toString(--wayId));
+                out.write("' visible='true'>\n");
+                long firstNodeId = nodeId - 1;
+                for (int i = 0; i < count; i++) {
+                    writeNodeReference(--nodeId);
+                }
+                if (isClosedRing(geometry, ring)) {
+                    writeNodeReference(firstNodeId);
+                }
+                for (Tag tag : tags) {
+                    writeTag(tag.getKey(), tag.getValue());
+                }
+                out.write("  </way>\n");
+            }
+        }
+        wayCount = -wayId;
+
+        // multipolygons of objects with inner rings, way ids are assigned in same order as above
+        wayId = 0;
+        long relationId = 0;
+        for (BIMObject3D object : objects) {
+            CoordinateBuffer geometry = object.getGeodeticGeometryCoordinates();
+            boolean multipolygon = geometry.hasInnerRings();
+            boolean hasMembers = false;
+            for (int ring = 0; ring < geometry.getRingCount(); ring++) {
+                if (getRingNodeCount(geometry, ring) == 0) continue;
+                --wayId;
+                if (!multipolygon) continue;
+
+                if (!hasMembers) {
+                    out.write("  <relation id='");
+                    out.write(Long.toString(--relationId));
+                    out.write("' visible='true'>\n");
+                    hasMembers = true;
+                }
+                out.write("    <member type='way' ref='");
+                out.write(Long.toString(wayId));
+                out.write("' role='");
+                out.write(getRole(geometry, ring));
+                out.write("' />\n");
+            }
+            if (!hasMembers) continue;
+
+            writeTag("type", "multipolygon");
+            for (Tag tag : tagsOfObject.apply(object)) {
+                writeTag(tag.getKey(), tag.getValue());
+            }
+            out.write("  </relation>\n");
+        }
+        relationCount = -relationId;
+
+        out.write("</osm>\n");
+        out.flush();
+        Logging.info(String.format("%s-WriteReport: %d nodes, %d ways and %d relations written in %d ms",
+                OsmXmlStreamWriter.class.getName(), nodeCount, wayCount, relationCount, System.currentTimeMillis() - start));
+    }
+
+    @Override
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public long getWayCount() {
+        return wayCount;
+    }
+
+    @Override
+    public long getRelationCount() {
+        return relationCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Gets number of nodes written for ring. Rings with less than two vertices are skipped, last vertex of closed
+     * rings is replaced by first node.
+     *
+     * @param geometry holding ring
+     * @param ring     index of ring
+     * @return number of nodes
+     */
+    static int getRingNodeCount(CoordinateBuffer geometry, int ring) {
+        int count = geometry.getRingEnd(ring) - geometry.getRingStart(ring);
+        if (count < 2) return 0;
+        return isClosedRing(geometry, ring) ? count - 1 : count;
+    }
+
+    static boolean isClosedRing(CoordinateBuffer geometry, int ring) {
+        int first = geometry.getRingStart(ring);
+        int last = geometry.getRingEnd(ring) - 1;
+        return last - first >= 1 && geometry.getX(first) == geometry.getX(last) && geometry.getY(first) == geometry.getY(last);
+    }
+
+    /**
+     * Gets multipolygon role of ring
+     *
+     * @param geometry holding ring
+     * @param ring     index of ring
+     * @return inner or outer
+     */
+    static String getRole(CoordinateBuffer geometry, int ring) {
+        return geometry.isInnerRing(ring) ? "inner" : "outer";
+    }
+
+    private void writeTag(String key, String value) throws IOException {
+        out.write("    <tag k='");
+        writeEscaped(key);
+        out.write("' v='");
+        writeEscaped(value);
+        out.write("' />\n");
+    }
+
+    private void writeNodeReference(long nodeId) throws IOException {
+        out.write("    <nd ref='");
+        out.write(Long.toString(nodeId));
+        out.write("' />\n");
+    }
+
+    private void writeEscaped(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    out.write("&amp;");
+                    break;
+                case '<':
+                    out.write("&lt;");
+                    break;
+                case '>':
+                    out.write("&gt;");
+                    break;
+                case '\'':
+                    out.write("&apos;");
+                    break;
+                case '"':
+                    out.write("&quot;");
+                    break;
+                case '\n':
+                    out.write("&#xA;");
+                    break;
+                default:
+                    out.write(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+// License: AGPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.indoorhelper.io.writer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer encoding protocol buffer messages. Supports the wire types used by OSM PBF files only.
+ */
+class ProtobufBuffer {
+
+    static final int WIRE_TYPE_VARINT = 0;
+    static final int WIRE_TYPE_LENGTH_DELIMITED = 2;
+
+    private byte[] data;
+    private int size;
+
+    ProtobufBuffer() {
+        this(256);
+    }
+
+    ProtobufBuffer(int capacity) {
+        data = new byte[capacity];
+    }
+
+    /**
+     * Writes varint field
+     *
+     * @param field number of field
+     * @param value to write
+     */
+    void writeVarint(int field, long value) {
+        writeTag(field, WIRE_TYPE_VARINT);
+        writeRawVarint(value);
+    }
+
+    /**
+     * Writes string field
+     *
+     * @param field number of field
+     * @param value to write
+     */
+    void writeString(int field, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeBytes(field, bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes bytes field
+     *
+     * @param field  number of field
+     * @param value  array holding bytes
+     * @param offset of first byte
+     * @param length number of bytes
+     */
+    void writeBytes(int field, byte[] value, int offset, int length) {
+        writeTag(field, WIRE_TYPE_LENGTH_DELIMITED);
+        writeRawVarint(length);
+        writeRawBytes(value, offset, length);
+    }
+
+    /**
+     * Writes embedded message or packed repeated field
+     *
+     * @param field   number of field
+     * @param message encoded content of field
+     */
+    void writeMessage(int field, ProtobufBuffer message) {
+        writeBytes(field, message.data, 0, message.size);
+    }
+
+    void writeTag(int field, int wireType) {
+        writeRawVarint(((long) field << 3) | wireType);
+    }
+
+    /**
+     * Writes value without tag as varint, e.g. for packed repeated fields
+     *
+     * @param value to write
+     */
+    void writeRawVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            data[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[size++] = (byte) value;
+    }
+
+    /**
+     * Writes value without tag as zigzag encoded varint (sint64), e.g. for packed repeated fields
+     *
+     * @param value to write
+     */
+    void writeRawSignedVarint(long value) {
+        writeRawVarint((value << 1) ^ (value >> 63));
+    }
+
+    void writeRawBytes(byte[] value, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(value, offset, data, size, length);
+        size += length;
+    }
+
+    void reset() {
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    byte[] array() {
+        return data;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (size + additional > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, size + additional));
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package io.cache;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.cache.ImportResultCache;
+import org.junit.After;
+import org.junit.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Unit tests of {@link ImportResultCache} class.
+ */
+public class ImportResultCacheTest {
+
+    private final List<Path> directories = new ArrayList<>();
+
+    @After
+    public void deleteDirectories() throws IOException {
+        for (Path directory : directories) {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGetKey() throws IOException {
+        Path directory = createDirectory();
+        Path file = directory.resolve("test.ifc");
+        Files.write(file, "ISO-10303-21;".getBytes(StandardCharsets.UTF_8));
+        ImportResultCache cache = new ImportResultCache(directory, 1024);
+
+        String key = cache.getKey(file.toString(), "BOUNDING_BOX");
+        assertEquals(64, key.length());
+        assertEquals(key, cache.getKey(file.toString(), "BOUNDING_BOX"));
+        assertNotEquals(key, cache.getKey(file.toString(), "BODY"));
+
+        Files.write(file, "ISO-10303-21;\n".getBytes(StandardCharsets.UTF_8));
+        assertNotEquals(key, cache.getKey(file.toString(), "BOUNDING_BOX"));
+    }
+
+    @Test
+    public void testStoreAndLoad() throws IOException {
+        ImportResultCache cache = new ImportResultCache(createDirectory(), 1 << 20);
+        assertNull(cache.load("missing"));
+
+        cache.store("key", createDataSet());
+        DataSet ds = cache.load("key");
+
+        assertNotNull(ds);
+        assertEquals(3, ds.getNodes().size());
+        assertEquals(1, ds.getWays().size());
+        Way way = ds.getWays().iterator().next();
+        assertEquals(4, way.getNodesCount());
+        assertEquals(way.getNode(0), way.getNode(3));
+        assertEquals(50.8140088, way.getNode(0).lat(), 0.005);
+        assertEquals(12.9240191, way.getNode(0).lon(), 0.005);
+        assertEquals("room", way.get("indoor"));
+        assertEquals("1", way.get("level"));
+    }
+
+    @Test
+    public void testStoreAndLoadMultipolygon() throws IOException {
+        ImportResultCache cache = new ImportResultCache(createDirectory(), 1 << 20);
+        DataSet ds = createDataSet();
+        Way outer = ds.getWays().iterator().next();
+        Way inner = new Way();
+        List<Node> innerNodes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            innerNodes.add(new Node(new LatLon(50.81395 + i * 1e-5, 12.92445 + (i % 2) * 1e-5)));
+        }
+        innerNodes.forEach(ds::addPrimitive);
+        innerNodes.add(innerNodes.get(0));
+        inner.setNodes(innerNodes);
+        ds.addPrimitive(inner);
+        Relation multipolygon = new Relation();
+        multipolygon.addMember(new RelationMember("outer", outer));
+        multipolygon.addMember(new RelationMember("inner", inner));
+        multipolygon.put("type", "multipolygon");
+        ds.addPrimitive(multipolygon);
+
+        cache.store("key", ds);
+        DataSet loaded = cache.load("key");
+
+        assertNotNull(loaded);
+        assertEquals(2, loaded.getWays().size());
+        assertEquals(1, loaded.getRelations().size());
+        Relation relation = loaded.getRelations().iterator().next();
+        assertEquals("multipolygon", relation.get("type"));
+        assertEquals(2, relation.getMembersCount());
+        assertEquals("outer", relation.getMember(0).getRole());
+        assertEquals("room", relation.getMember(0).getWay().get("indoor"));
+        assertEquals("inner", relation.getMember(1).getRole());
+        assertEquals(4, relation.getMember(1).getWay().getNodesCount());
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        Path directory = createDirectory();
+        ImportResultCache cache = new ImportResultCache(directory, 1);
+
+        cache.store("key", createDataSet());
+
+        // a single result exceeds maximum size and is evicted immediately
+        assertNull(cache.load("key"));
+    }
+
+    @Test
+    public void testStoreLongTagValue() throws IOException {
+        ImportResultCache cache = new ImportResultCache(createDirectory(), 1 << 20);
+        DataSet ds = createDataSet();
+        // exceeds 64 KB limit of modified UTF-8 strings
+        char[] description = new char[70000];
+        Arrays.fill(description, '\u00e4');
+        ds.getWays().iterator().next().put("description", new String(description));
+
+        cache.store("key", ds);
+        DataSet loaded = cache.load("key");
+
+        assertNotNull(loaded);
+        assertEquals(new String(description), loaded.getWays().iterator().next().get("description"));
+    }
+
+    @Test
+    public void testFailedStoreLeavesNoFiles() throws IOException {
+        Path directory = createDirectory();
+        ImportResultCache cache = new ImportResultCache(directory, 1 << 20);
+        // writing fails after temporary file was created
+        DataSet ds = new DataSet() {
+            @Override
+            public Collection<Way> getWays() {
+                throw new IllegalStateException("failing data set");
+            }
+        };
+        ds.addPrimitive(new Node(new LatLon(50.8140088, 12.9240191)));
+
+        cache.store("key", ds);
+
+        assertNull(cache.load("key"));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private Path createDirectory() throws IOException {
+        Path directory = Files.createTempDirectory("indoorhelper-cache");
+        directories.add(directory);
+        return directory;
+    }
+
+    private DataSet createDataSet() {
+        DataSet ds = new DataSet();
+        Node n1 = new Node(new LatLon(50.8140088, 12.9240191));
+        Node n2 = new Node(new LatLon(50.8141047, 12.9247989));
+        Node n3 = new Node(new LatLon(50.8138598, 12.9248744));
+        Way way = new Way();
+        way.setNodes(Arrays.asList(n1, n2, n3, n1));
+        way.put("indoor", "room");
+        way.put("level", "1");
+        for (Node node : Arrays.asList(n1, n2, n3)) ds.addPrimitive(node);
+        ds.addPrimitive(way);
+        return ds;
+    }
+}
@@ -1,13 +1,27 @@
 // License: AGPL. For details, see LICENSE file.
 package io.parser;
 
+import org.openstreetmap.josm.plugins.indoorhelper.io.controller.ImportEventListener;
 import org.openstreetmap.josm.plugins.indoorhelper.io.parser.BIMtoOSMParser;
+import org.junit.After;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.jupiter.api.Disabled;
 import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -25,6 +39,15 @@ public class BIMtoOSMParserTest {
 
     String pluginDir = System.getProperty("user.dir");
     String resourcePathDir = TestUtils.getTestDataRoot();
+    Path tempDir;
+
+    @After
+    public void tearDown() throws IOException {
+        if (tempDir == null) return;
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
 
     /**
      * Test case for {@link BIMtoOSMParser#parse} method.
@@ -52,6 +75,61 @@ public class BIMtoOSMParserTest {
         assertParseFalse("test1_IFC4X3.ifc");
     }
 
+    /**
+     * Test case for {@link BIMtoOSMParser#reparse} method after result of {@link BIMtoOSMParser#parse} was loaded
+     * from cache.
+     */
+    @Test
+    public void testReparseAfterCacheHit() throws IOException {
+        // plugin directory with own cache, second file is first one moved to other latitude
+        tempDir = Files.createTempDirectory("indoorhelper");
+        Files.createDirectories(tempDir.resolve("resources"));
+        Files.copy(Paths.get(pluginDir, "resources", "IFC2X3_TC1.exp"), tempDir.resolve("resources/IFC2X3_TC1.exp"));
+        String firstFile = resourcePathDir + "test2_IFC2X3_TC1.ifc";
+        Path secondFile = tempDir.resolve("moved_IFC2X3_TC1.ifc");
+        String content = new String(Files.readAllBytes(Paths.get(firstFile)), StandardCharsets.UTF_8);
+        Files.write(secondFile, content.replace("(51,26,59,999999)", "(41,26,59,999999)").getBytes(StandardCharsets.UTF_8));
+
+        DataSet[] parsed = new DataSet[1];
+        BIMtoOSMParser parser = new BIMtoOSMParser(new ImportEventListener() {
+            @Override
+            public void onBIMImport(String filepath) {
+            }
+
+            @Override
+            public void onDataParsed(DataSet ds) {
+                parsed[0] = ds;
+            }
+
+            @Override
+            public void onProcessStatusChanged(String statusMsg) {
+            }
+
+            @Override
+            public void onProgressChanged(int percent) {
+            }
+        }, tempDir.toString());
+        parser.setShowErrorDialogs(false);
+
+        // second file is cached, first one is loaded
+        assertTrue(parser.parse(secondFile.toString()));
+        assertTrue(parser.parse(firstFile));
+        assertTrue(parser.hasLoadedModel());
+
+        // cache hit must not keep model of first file
+        assertTrue(parser.parse(secondFile.toString()));
+        assertFalse(parser.hasLoadedModel());
+
+        parser.configureCache(0);
+        parsed[0] = null;
+        assertTrue(parser.reparse());
+        assertNotNull(parsed[0]);
+        assertFalse(parsed[0].getNodes().isEmpty());
+        for (Node node : parsed[0].getNodes()) {
+            assertEquals(41.4, node.lat(), 0.5);
+        }
+    }
+
     private void assertParseFalse(String filename) {
         String ifcTestFile = resourcePathDir + filename;
         assertFalse(new BIMtoOSMParser(null, pluginDir).parse(ifcTestFile), ifcTestFile);
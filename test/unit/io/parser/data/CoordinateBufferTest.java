@@ -0,0 +1,87 @@
+package io.parser.data;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.CoordinateBuffer;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.AffineTransform3D;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.Matrix3D;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.ParserMath;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.Vector3D;
+import org.junit.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests of {@link CoordinateBuffer} class.
+ */
+public class CoordinateBufferTest {
+
+    @Test
+    public void testAdd() {
+        CoordinateBuffer buffer = new CoordinateBuffer(1);
+        for (int i = 0; i < 10; i++) {
+            buffer.add(i, i * 2.0, i * 3.0);
+        }
+        assertEquals(10, buffer.size());
+        assertEquals(1, buffer.getRingCount());
+        assertEquals(7.0, buffer.getX(7), 0.005);
+        assertEquals(14.0, buffer.getY(7), 0.005);
+        assertEquals(21.0, buffer.getZ(7), 0.005);
+    }
+
+    @Test
+    public void testRings() {
+        CoordinateBuffer buffer = new CoordinateBuffer();
+        buffer.add(0.0, 0.0, 0.0);
+        buffer.add(1.0, 0.0, 0.0);
+        buffer.closeRing();
+        buffer.add(2.0, 0.0, 0.0);
+
+        CoordinateBuffer copy = new CoordinateBuffer();
+        copy.add(5.0, 0.0, 0.0);
+        copy.addRings(buffer);
+        copy.addPoints(buffer);
+        assertEquals(4, copy.getRingCount());
+        assertEquals(0, copy.getRingStart(0));
+        assertEquals(1, copy.getRingEnd(0));
+        assertEquals(1, copy.getRingStart(1));
+        assertEquals(3, copy.getRingEnd(1));
+        assertEquals(3, copy.getRingStart(2));
+        assertEquals(4, copy.getRingEnd(2));
+        assertEquals(4, copy.getRingStart(3));
+        assertEquals(7, copy.getRingEnd(3));
+    }
+
+    @Test
+    public void testInnerRings() {
+        CoordinateBuffer buffer = new CoordinateBuffer();
+        buffer.add(0.0, 0.0, 0.0);
+        buffer.closeRing();
+        buffer.add(1.0, 0.0, 0.0);
+        buffer.closeRing();
+        buffer.markInnerRing();
+
+        CoordinateBuffer copy = new CoordinateBuffer();
+        copy.add(5.0, 0.0, 0.0);
+        copy.addRings(buffer);
+        assertFalse(copy.isInnerRing(0));
+        assertFalse(copy.isInnerRing(1));
+        assertTrue(copy.isInnerRing(2));
+        assertTrue(new CoordinateBuffer(copy).isInnerRing(2));
+    }
+
+    @Test
+    public void testTransform() {
+        Vector3D point = new Vector3D(2.1, 3.1, 9.4);
+        Matrix3D rotation = ParserMath.getRotationMatrixZ(0.35);
+        AffineTransform3D transform = new AffineTransform3D(rotation, new Vector3D(10.5, -3.2, 0.7));
+
+        CoordinateBuffer buffer = new CoordinateBuffer();
+        buffer.add(point);
+        buffer.transform(transform);
+        transform.transform(point);
+        assertEquals(point.getX(), buffer.getX(0), 0.005);
+        assertEquals(point.getY(), buffer.getY(0), 0.005);
+        assertEquals(point.getZ(), buffer.getZ(0), 0.005);
+    }
+}
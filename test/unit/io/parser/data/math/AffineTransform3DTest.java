@@ -0,0 +1,102 @@
+package io.parser.data.math;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.AffineTransform3D;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.Matrix3D;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.ParserMath;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.Vector3D;
+import org.junit.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests of {@link AffineTransform3D} class.
+ */
+public class AffineTransform3DTest {
+    /**
+     * Setup test
+     */
+    Vector3D vector1 = new Vector3D(2.1, 3.1, 9.4);
+
+    Vector3D translation1 = new Vector3D(10.5, -3.2, 0.7);
+
+    Matrix3D matrix1 = new Matrix3D(
+            1.2, 5.4, 7.1,
+            3.0, 4.2, 9.2,
+            10.1, 6.23, 9.0);
+
+    Matrix3D rotation1 = ParserMath.getRotationMatrixZ(0.35);
+
+    @Test
+    public void testIdentity() {
+        Vector3D v = new Vector3D(vector1);
+        new AffineTransform3D().transform(v);
+        assertEquals(v.getX(), vector1.getX(), 0.005);
+        assertEquals(v.getY(), vector1.getY(), 0.005);
+        assertEquals(v.getZ(), vector1.getZ(), 0.005);
+    }
+
+    @Test
+    public void testTransform() {
+        // rotation and translation of previous chain
+        Vector3D expected = new Vector3D(vector1);
+        matrix1.transform(expected);
+        expected.add(translation1);
+
+        Vector3D v = new Vector3D(vector1);
+        new AffineTransform3D(matrix1, translation1).transform(v);
+        assertEquals(v.getX(), expected.getX(), 0.005);
+        assertEquals(v.getY(), expected.getY(), 0.005);
+        assertEquals(v.getZ(), expected.getZ(), 0.005);
+    }
+
+    @Test
+    public void testMultiply() {
+        // object rotation, object translation and building rotation of previous chain
+        Vector3D expected = new Vector3D(vector1);
+        matrix1.transform(expected);
+        expected.add(translation1);
+        rotation1.transform(expected);
+
+        AffineTransform3D t = new AffineTransform3D(rotation1);
+        t.multiply(new AffineTransform3D(matrix1, translation1));
+        Vector3D v = new Vector3D(vector1);
+        t.transform(v);
+        assertEquals(v.getX(), expected.getX(), 0.005);
+        assertEquals(v.getY(), expected.getY(), 0.005);
+        assertEquals(v.getZ(), expected.getZ(), 0.005);
+    }
+
+    @Test
+    public void testInvert() {
+        AffineTransform3D t = new AffineTransform3D(matrix1, translation1);
+        Vector3D v = new Vector3D(vector1);
+        t.transform(v);
+        t.invert();
+        t.transform(v);
+        assertEquals(v.getX(), vector1.getX(), 0.005);
+        assertEquals(v.getY(), vector1.getY(), 0.005);
+        assertEquals(v.getZ(), vector1.getZ(), 0.005);
+    }
+
+    @Test
+    public void testGetRotationAndTranslation() {
+        AffineTransform3D t = new AffineTransform3D(matrix1, translation1);
+        Matrix3D m = t.getRotation();
+        assertEquals(m.getM00(), matrix1.getM00(), 0.005);
+        assertEquals(m.getM01(), matrix1.getM01(), 0.005);
+        assertEquals(m.getM02(), matrix1.getM02(), 0.005);
+
+        assertEquals(m.getM10(), matrix1.getM10(), 0.005);
+        assertEquals(m.getM11(), matrix1.getM11(), 0.005);
+        assertEquals(m.getM12(), matrix1.getM12(), 0.005);
+
+        assertEquals(m.getM20(), matrix1.getM20(), 0.005);
+        assertEquals(m.getM21(), matrix1.getM21(), 0.005);
+        assertEquals(m.getM22(), matrix1.getM22(), 0.005);
+
+        Vector3D v = t.getTranslation();
+        assertEquals(v.getX(), translation1.getX(), 0.005);
+        assertEquals(v.getY(), translation1.getY(), 0.005);
+        assertEquals(v.getZ(), translation1.getZ(), 0.005);
+    }
+}
@@ -0,0 +1,89 @@
+package io.parser.data.math;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.CoordinateBuffer;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.MeshOutline;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.PolygonClipper;
+import org.junit.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests of {@link MeshOutline} class.
+ */
+public class MeshOutlineTest {
+
+    private static final double DELTA = 1e-9;
+
+    // box 4 x 3 x 2, corners 0-3 at bottom, 4-7 at top
+    private static final double[] BOX_COORDINATES = {
+            0, 0, 0, 4, 0, 0, 4, 3, 0, 0, 3, 0,
+            0, 0, 2, 4, 0, 2, 4, 3, 2, 0, 3, 2};
+
+    // triangles oriented outwards
+    private static final int[] BOX_TRIANGLES = {
+            4, 5, 6, 4, 6, 7,
+            0, 2, 1, 0, 3, 2,
+            0, 1, 5, 0, 5, 4,
+            1, 2, 6, 1, 6, 5,
+            2, 3, 7, 2, 7, 6,
+            3, 0, 4, 3, 4, 7};
+
+    @Test
+    public void testTriangulatedBox() {
+        MeshOutline outline = new MeshOutline(BOX_COORDINATES, 8);
+        for (int i = 0; i < BOX_TRIANGLES.length; i += 3) {
+            outline.addFace(BOX_TRIANGLES, i, 3);
+        }
+
+        CoordinateBuffer rings = outline.getOutline();
+
+        assertEquals(1, rings.getRingCount());
+        // closed ring of 4 corners, diagonal of top face cancels out
+        assertEquals(5, rings.size());
+        assertEquals(12.0, PolygonClipper.getSignedArea(rings, 0), DELTA);
+    }
+
+    @Test
+    public void testDuplicatedVertices() {
+        // every triangle has its own vertices
+        double[] coordinates = new double[BOX_TRIANGLES.length * 3];
+        int[] triangles = new int[BOX_TRIANGLES.length];
+        for (int i = 0; i < BOX_TRIANGLES.length; i++) {
+            System.arraycopy(BOX_COORDINATES, BOX_TRIANGLES[i] * 3, coordinates, i * 3, 3);
+            triangles[i] = i;
+        }
+        MeshOutline outline = new MeshOutline(coordinates, triangles.length);
+        for (int i = 0; i < triangles.length; i += 3) {
+            outline.addFace(triangles, i, 3);
+        }
+
+        CoordinateBuffer rings = outline.getOutline();
+
+        assertEquals(1, rings.getRingCount());
+        assertEquals(12.0, PolygonClipper.getSignedArea(rings, 0), DELTA);
+    }
+
+    @Test
+    public void testFaceWithInnerLoop() {
+        double[] coordinates = {
+                0, 0, 1, 4, 0, 1, 4, 4, 1, 0, 4, 1,
+                1, 1, 1, 3, 1, 1, 3, 3, 1, 1, 3, 1};
+        MeshOutline outline = new MeshOutline(coordinates, 8);
+
+        // face seen from below is not added, its inner loop neither
+        assertFalse(outline.addFace(new int[] {0, 3, 2, 1}, 0, 4));
+        outline.addInnerLoop(new int[] {4, 5, 6, 7}, 0, 4);
+        assertTrue(outline.addFace(new int[] {0, 1, 2, 3}, 0, 4));
+        outline.addInnerLoop(new int[] {4, 7, 6, 5}, 0, 4);
+
+        CoordinateBuffer rings = outline.getOutline();
+
+        assertEquals(2, rings.getRingCount());
+        assertFalse(rings.isInnerRing(0));
+        assertTrue(rings.isInnerRing(1));
+        assertEquals(16.0, PolygonClipper.getSignedArea(rings, 0), DELTA);
+        assertEquals(-4.0, PolygonClipper.getSignedArea(rings, 1), DELTA);
+    }
+}
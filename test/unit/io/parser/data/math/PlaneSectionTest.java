@@ -0,0 +1,108 @@
+package io.parser.data.math;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.CoordinateBuffer;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.PlaneSection;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.PolygonClipper;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.Vector3D;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests of {@link PlaneSection} class.
+ */
+public class PlaneSectionTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static final PlaneSection HORIZONTAL = new PlaneSection(new Vector3D(0.0, 0.0, 1.0), 1.0);
+
+    private static CoordinateBuffer face(double... coordinates) {
+        CoordinateBuffer face = new CoordinateBuffer();
+        for (int i = 0; i < coordinates.length; i += 3) {
+            face.add(coordinates[i], coordinates[i + 1], coordinates[i + 2]);
+        }
+        face.closeRing();
+        return face;
+    }
+
+    /**
+     * Side faces of a prism with rectangular base, each face one rectangle
+     */
+    private static List<CoordinateBuffer> sides(double minX, double minY, double maxX, double maxY, double height) {
+        List<CoordinateBuffer> faces = new ArrayList<>();
+        double[][] corners = {{minX, minY}, {maxX, minY}, {maxX, maxY}, {minX, maxY}};
+        for (int i = 0; i < 4; i++) {
+            double[] a = corners[i];
+            double[] b = corners[(i + 1) % 4];
+            faces.add(face(a[0], a[1], 0.0, b[0], b[1], 0.0, b[0], b[1], height, a[0], a[1], height));
+        }
+        return faces;
+    }
+
+    private static List<CoordinateBuffer> box(double minX, double minY, double maxX, double maxY, double height) {
+        List<CoordinateBuffer> faces = sides(minX, minY, maxX, maxY, height);
+        faces.add(face(minX, minY, 0.0, minX, maxY, 0.0, maxX, maxY, 0.0, maxX, minY, 0.0));
+        faces.add(face(minX, minY, height, maxX, minY, height, maxX, maxY, height, minX, maxY, height));
+        return faces;
+    }
+
+    @Test
+    public void testBox() {
+        CoordinateBuffer section = HORIZONTAL.intersect(box(0, 0, 4, 3, 2));
+
+        assertEquals(1, section.getRingCount());
+        // closed ring of 4 corners
+        assertEquals(5, section.size());
+        assertEquals(12.0, Math.abs(PolygonClipper.getSignedArea(section, 0)), DELTA);
+        for (int i = 0; i < section.size(); i++) {
+            assertEquals(1.0, section.getZ(i), DELTA);
+        }
+    }
+
+    @Test
+    public void testHollowPrism() {
+        List<CoordinateBuffer> faces = sides(0, 0, 4, 4, 2);
+        faces.addAll(sides(1, 1, 3, 3, 2));
+        // top and bottom faces with inner bound
+        for (double z : new double[] {0.0, 2.0}) {
+            CoordinateBuffer face = face(0, 0, z, 4, 0, z, 4, 4, z, 0, 4, z);
+            face.addRings(face(1, 1, z, 1, 3, z, 3, 3, z, 3, 1, z));
+            faces.add(face);
+        }
+
+        assertHollowSection(HORIZONTAL.intersect(faces));
+        // hole follows enclosing ring regardless of face order
+        Collections.reverse(faces);
+        assertHollowSection(HORIZONTAL.intersect(faces));
+    }
+
+    private static void assertHollowSection(CoordinateBuffer section) {
+        assertEquals(2, section.getRingCount());
+        assertFalse(section.isInnerRing(0));
+        assertTrue(section.isInnerRing(1));
+        assertEquals(16.0, Math.abs(PolygonClipper.getSignedArea(section, 0)), DELTA);
+        assertEquals(4.0, Math.abs(PolygonClipper.getSignedArea(section, 1)), DELTA);
+    }
+
+    @Test
+    public void testPlaneOutsideShell() {
+        List<CoordinateBuffer> slab = box(0, 0, 4, 3, 0.25);
+        assertTrue(HORIZONTAL.intersect(slab).isEmpty());
+
+        // plane moved into shell
+        PlaneSection within = HORIZONTAL.within(slab);
+        assertEquals(0.125, within.getOffset(), DELTA);
+        assertEquals(1, within.intersect(slab).getRingCount());
+
+        // vertices on plane count as above, touching faces do not contribute
+        assertTrue(new PlaneSection(new Vector3D(0.0, 0.0, 1.0), 0.0).intersect(slab).isEmpty());
+        assertEquals(HORIZONTAL, HORIZONTAL.within(box(0, 0, 4, 3, 2)));
+    }
+}
@@ -0,0 +1,155 @@
+package io.parser.data.math;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.CoordinateBuffer;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.PolygonClipper;
+import org.junit.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests of {@link PolygonClipper} class.
+ */
+public class PolygonClipperTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static CoordinateBuffer rectangle(double minX, double minY, double maxX, double maxY) {
+        CoordinateBuffer buffer = new CoordinateBuffer(5);
+        buffer.add(minX, minY, 0.0);
+        buffer.add(maxX, minY, 0.0);
+        buffer.add(maxX, maxY, 0.0);
+        buffer.add(minX, maxY, 0.0);
+        buffer.add(minX, minY, 0.0);
+        buffer.closeRing();
+        return buffer;
+    }
+
+    private static double getArea(CoordinateBuffer buffer) {
+        double area = 0.0;
+        for (int ring = 0; ring < buffer.getRingCount(); ring++) {
+            area += PolygonClipper.getSignedArea(buffer, ring);
+        }
+        return area;
+    }
+
+    @Test
+    public void testDifferenceWithInnerOpening() {
+        CoordinateBuffer result = PolygonClipper.compute(rectangle(0, 0, 10, 10), rectangle(2, 2, 4, 5),
+                PolygonClipper.Operation.DIFFERENCE);
+
+        assertEquals(2, result.getRingCount());
+        assertTrue(PolygonClipper.getSignedArea(result, 0) > 0.0);
+        assertEquals(-6.0, PolygonClipper.getSignedArea(result, 1), DELTA);
+        assertEquals(94.0, getArea(result), DELTA);
+        // rings are closed
+        assertEquals(result.getX(result.getRingStart(1)), result.getX(result.getRingEnd(1) - 1), DELTA);
+        assertEquals(result.getY(result.getRingStart(1)), result.getY(result.getRingEnd(1) - 1), DELTA);
+    }
+
+    @Test
+    public void testDifferenceAtBorder() {
+        CoordinateBuffer result = PolygonClipper.compute(rectangle(0, 0, 10, 10), rectangle(8, -1, 12, 11),
+                PolygonClipper.Operation.DIFFERENCE);
+
+        assertEquals(1, result.getRingCount());
+        assertEquals(80.0, getArea(result), DELTA);
+    }
+
+    @Test
+    public void testIntersection() {
+        CoordinateBuffer result = PolygonClipper.compute(rectangle(0, 0, 10, 10), rectangle(5, 5, 15, 15),
+                PolygonClipper.Operation.INTERSECTION);
+
+        assertEquals(1, result.getRingCount());
+        assertEquals(25.0, getArea(result), DELTA);
+
+        CoordinateBuffer disjoint = PolygonClipper.compute(rectangle(0, 0, 1, 1), rectangle(5, 5, 6, 6),
+                PolygonClipper.Operation.INTERSECTION);
+        assertTrue(disjoint.isEmpty());
+    }
+
+    @Test
+    public void testUnion() {
+        CoordinateBuffer overlapping = PolygonClipper.compute(rectangle(0, 0, 10, 10), rectangle(5, 5, 15, 15),
+                PolygonClipper.Operation.UNION);
+        assertEquals(1, overlapping.getRingCount());
+        assertEquals(175.0, getArea(overlapping), DELTA);
+
+        // rectangles sharing an edge merge into one ring
+        CoordinateBuffer adjacent = PolygonClipper.compute(rectangle(0, 0, 10, 10), rectangle(10, 0, 20, 10),
+                PolygonClipper.Operation.UNION);
+        assertEquals(1, adjacent.getRingCount());
+        assertEquals(200.0, getArea(adjacent), DELTA);
+    }
+
+    @Test
+    public void testNestedDifference() {
+        CoordinateBuffer withOpening = PolygonClipper.compute(rectangle(0, 0, 10, 10), rectangle(2, 2, 8, 8),
+                PolygonClipper.Operation.DIFFERENCE);
+        // fill part of the opening again, island becomes an outer ring
+        CoordinateBuffer result = PolygonClipper.compute(withOpening, rectangle(4, 4, 6, 6), PolygonClipper.Operation.UNION);
+
+        assertEquals(3, result.getRingCount());
+        assertEquals(68.0, getArea(result), DELTA);
+    }
+
+    @Test
+    public void testCollinearEdgesOfSameRing() {
+        // ring runs back and forth along line from (0, 2) to (4, 0), area by even-odd rule
+        CoordinateBuffer ring = new CoordinateBuffer();
+        double[][] points = {{0, 2}, {2, 4}, {0, 0}, {4, 0}, {0, 2}, {2, 1}, {0, 2}};
+        for (double[] point : points) {
+            ring.add(point[0], point[1], 0.0);
+        }
+        ring.closeRing();
+
+        CoordinateBuffer result = PolygonClipper.compute(ring, new CoordinateBuffer(), PolygonClipper.Operation.UNION);
+
+        assertEquals(2, result.getRingCount());
+        assertEquals(4.4, getArea(result), DELTA);
+    }
+
+    @Test
+    public void testFootprint() {
+        // faces of a box, vertical faces project to lines
+        CoordinateBuffer faces = new CoordinateBuffer();
+        faces.addRings(rectangle(0, 0, 4, 3));
+        faces.addRings(rectangle(0, 0, 4, 3));
+        faces.add(0, 0, 0);
+        faces.add(4, 0, 0);
+        faces.add(4, 0, 2);
+        faces.add(0, 0, 2);
+        faces.closeRing();
+        faces.addRings(rectangle(3, 1, 6, 2));
+
+        CoordinateBuffer footprint = PolygonClipper.footprint(faces);
+
+        assertEquals(1, footprint.getRingCount());
+        assertEquals(14.0, getArea(footprint), DELTA);
+    }
+
+    @Test
+    public void testFootprintOfFacesWithHole() {
+        // top and bottom face of a plate with hole, wall of hole projects to lines
+        CoordinateBuffer faces = new CoordinateBuffer();
+        for (int i = 0; i < 2; i++) {
+            faces.addRings(rectangle(0, 0, 10, 10));
+            faces.addRings(rectangle(2, 2, 4, 5));
+            faces.markInnerRing();
+        }
+        faces.add(2, 2, 0);
+        faces.add(4, 2, 0);
+        faces.add(4, 2, 1);
+        faces.add(2, 2, 1);
+        faces.closeRing();
+
+        CoordinateBuffer footprint = PolygonClipper.footprint(faces);
+
+        assertEquals(2, footprint.getRingCount());
+        assertFalse(footprint.isInnerRing(0));
+        assertTrue(footprint.isInnerRing(1));
+        assertEquals(94.0, getArea(footprint), DELTA);
+    }
+}
@@ -0,0 +1,72 @@
+package io.parser.optimizer;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.optimizer.InputOptimizer;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests of {@link InputOptimizer} class.
+ */
+public class InputOptimizerTest {
+
+    @Test
+    public void testRemoveBlockComments() throws IOException {
+        assertEquals("#1=IFCWALL('a',$);\n#2=IFCSLAB($);\n",
+                optimize("#1=IFCWALL('a',$);/* comment */\n#2=IFCSLAB($);\n"));
+    }
+
+    @Test
+    public void testRemoveMultiLineBlockComments() throws IOException {
+        assertEquals("HEADER;\n\nDATA;\n",
+                optimize("HEADER;\n/* first line\n * second line\n **/\nDATA;\n"));
+    }
+
+    @Test
+    public void testKeepStringLiterals() throws IOException {
+        assertEquals("#1=IFCLABEL('/* no comment */');\n#2=IFCLABEL('it''s /*');\n",
+                optimize("#1=IFCLABEL('/* no comment */');\n#2=IFCLABEL('it''s /*');\n"));
+    }
+
+    @Test
+    public void testKeepSlashes() throws IOException {
+        assertEquals("#1=IFCLABEL(1/2);/", optimize("#1=IFCLABEL(1/2);/"));
+    }
+
+    @Test
+    public void testPruneUnreachableEntities() throws IOException {
+        String header = "ISO-10303-21;\nHEADER;\nFILE_SCHEMA(('IFC2X3'));\nENDSEC;\nDATA;\n";
+        String footer = "ENDSEC;\nEND-ISO-10303-21;\n";
+        assertEquals(header + "#1=IFCWALL('w',#2);\n#2=IFCLOCALPLACEMENT($,#3);\n#3=IFCAXIS2PLACEMENT3D($);\n" + footer,
+                optimize(header + "#1=IFCWALL('w',#2);\n#2=IFCLOCALPLACEMENT($,#3);\n#3=IFCAXIS2PLACEMENT3D($);\n" +
+                        "#4=IFCPROPERTYSET('#3;',(#5));\n#5=IFCPROPERTYSINGLEVALUE($);\n" +
+                        "#6=IFCRELDEFINESBYPROPERTIES((#1),#4);\n" + footer, new InputOptimizer.Configuration(true, true)));
+    }
+
+    private String optimize(String content) throws IOException {
+        return optimize(content, new InputOptimizer.Configuration(true));
+    }
+
+    private String optimize(String content, InputOptimizer.Configuration config) throws IOException {
+        File file = File.createTempFile("InputOptimizerTest", ".ifc");
+        file.deleteOnExit();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream input = InputOptimizer.optimizeIfcFile(config, file.getPath())) {
+            byte[] buffer = new byte[3];
+            int n;
+            while ((n = input.read(buffer)) != -1) {
+                output.write(buffer, 0, n);
+            }
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -1,27 +1,32 @@
 package io.parser.optimizer;
 
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.openstreetmap.josm.plugins.indoorhelper.io.optimizer.OutputOptimizer;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.ParserGeoMath;
 import org.junit.Test;
-import org.junit.jupiter.api.Disabled;
 import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
-import org.openstreetmap.josm.testutils.DatasetFactory;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
-@Disabled("Causes java.lang.SecurityException: class \"org.openstreetmap.josm.tools.MemoryManagerTest\"'s " +
-        "signer information does not match signer information of other classes in the same package\n")
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests of {@link OutputOptimizer} class.
+ */
 public class OutputOptimizerTest {
 
-    /**
-     * Setup test.
-     */
-//    @Rule
-//    public JOSMTestRules test = new JOSMTestRules().preferences();
-    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    private static final double MERGE_DISTANCE = 1.5;
+    // about 1.1 m
+    private static final double STEP = 1e-5;
 
     public ArrayList<LatLon> testNodes1 = new ArrayList<LatLon>() {
         {
@@ -45,25 +50,131 @@ public class OutputOptimizerTest {
      */
     @Test
     public void testOptimize() {
-//        ArrayList<Node> nodes = llsToNodes(testNodes1);
-//        ArrayList<Way> ways = new ArrayList<>();
-//        Pair<ArrayList<Node>, ArrayList<Way>> testData = new Pair<>(nodes, ways);
-//        OutputOptimizer.optimize(testData);
-        // TODO implement after fixing java.lang.SecurityException
+        DataSet ds = new DataSet();
+        List<Node> nodes = new ArrayList<>();
+        testNodes1.forEach(ll -> nodes.add(addNode(ds, ll, true)));
+
+        OutputOptimizer.optimize(new OutputOptimizer.Configuration(true, MERGE_DISTANCE), ds);
+
+        // remaining nodes are not close, every removed node was close to a remaining one
+        List<Node> remaining = new ArrayList<>(ds.getNodes());
+        assertTrue(remaining.size() < nodes.size());
+        for (Node node : nodes) {
+            boolean removed = !remaining.contains(node);
+            int closeNodes = 0;
+            for (Node other : remaining) {
+                if (other != node && getDistance(node, other) < MERGE_DISTANCE) closeNodes++;
+            }
+            assertEquals(removed ? 1 : 0, Math.min(closeNodes, 1));
+        }
+    }
+
+    @Test
+    public void testChainOfCloseNodesIsNotCollapsed() {
+        DataSet ds = new DataSet();
+        for (int i = 0; i < 3; i++) {
+            addNode(ds, new LatLon(50.0 + i * STEP, 12.0), true);
+        }
+
+        OutputOptimizer.optimize(new OutputOptimizer.Configuration(true, MERGE_DISTANCE), ds);
+
+        // first and last node are too far apart to share one node
+        assertEquals(2, ds.getNodes().size());
+    }
+
+    @Test
+    public void testNodesOfSameWayAreNotMerged() {
+        DataSet ds = new DataSet();
+        // short segment of first way, second way starts between both of its nodes
+        Way first = addWay(ds, addNode(ds, new LatLon(50.0, 12.0), false), addNode(ds, new LatLon(50.0 + STEP, 12.0), false));
+        Way second = addWay(ds, addNode(ds, new LatLon(50.0 + STEP / 2, 12.0), false), addNode(ds, new LatLon(50.1, 12.0), false));
+
+        OutputOptimizer.optimize(new OutputOptimizer.Configuration(true, MERGE_DISTANCE), ds);
+
+        // start of second way is merged into one node of first way only
+        assertEquals(3, ds.getNodes().size());
+        assertEquals(2, new HashSet<>(first.getNodes()).size());
+        assertEquals(2, first.getNodesCount());
+        assertTrue(first.containsNode(second.firstNode()));
+    }
+
+    @Test
+    public void testLoopsOfMergedWaysAreRemoved() {
+        DataSet ds = new DataSet();
+        Node b = addNode(ds, new LatLon(50.0 + 10 * STEP, 12.0), false);
+        Node c = addNode(ds, new LatLon(50.0 + 20 * STEP, 12.0), false);
+        Node d = addNode(ds, new LatLon(50.0 + 30 * STEP, 12.0 + 10 * STEP), false);
+        // spike b, c, b of way packed with shared nodes
+        Way way = addWay(ds, addNode(ds, new LatLon(50.0, 12.0), false), b, c, b, d);
+        addWay(ds, addNode(ds, new LatLon(50.0, 12.0 + STEP), false), addNode(ds, new LatLon(50.1, 12.0), false));
+
+        OutputOptimizer.optimize(new OutputOptimizer.Configuration(true, MERGE_DISTANCE), ds);
+
+        assertEquals(3, way.getNodesCount());
+        assertEquals(3, new HashSet<>(way.getNodes()).size());
+        assertEquals(d, way.lastNode());
+        assertNull(c.getDataSet());
+        assertEquals(4, ds.getNodes().size());
+    }
+
+    @Test
+    public void testCollapsedWaysAreRemoved() {
+        DataSet ds = new DataSet();
+        Node p = addNode(ds, new LatLon(50.0, 12.0), false);
+        Node q = addNode(ds, new LatLon(50.0 + 10 * STEP, 12.0), false);
+        // closed way without area
+        Way way = addWay(ds, p, q, p);
+        Way other = addWay(ds, addNode(ds, new LatLon(50.0, 12.0 + STEP), false), addNode(ds, new LatLon(50.1, 12.0), false));
+
+        OutputOptimizer.optimize(new OutputOptimizer.Configuration(true, MERGE_DISTANCE), ds);
+
+        assertNull(way.getDataSet());
+        assertNull(q.getDataSet());
+        assertEquals(1, ds.getWays().size());
+        assertEquals(2, other.getNodesCount());
+        assertEquals(2, ds.getNodes().size());
+    }
+
+    @Test
+    public void testCollapsedWaysLeaveMultipolygons() {
+        DataSet ds = new DataSet();
+        Node p = addNode(ds, new LatLon(50.0, 12.0), false);
+        Node q = addNode(ds, new LatLon(50.0 + 10 * STEP, 12.0), false);
+        Way outer = addWay(ds, addNode(ds, new LatLon(50.0, 12.0 + STEP), false), addNode(ds, new LatLon(50.1, 12.0), false));
+        // hole without area
+        Way inner = addWay(ds, p, q, p);
+        Relation multipolygon = new Relation();
+        multipolygon.addMember(new RelationMember("outer", outer));
+        multipolygon.addMember(new RelationMember("inner", inner));
+        ds.addPrimitive(multipolygon);
+        Relation collapsed = new Relation();
+        collapsed.addMember(new RelationMember("outer", inner));
+        ds.addPrimitive(collapsed);
+
+        OutputOptimizer.optimize(new OutputOptimizer.Configuration(true, MERGE_DISTANCE), ds);
+
+        assertNull(inner.getDataSet());
+        assertEquals(1, multipolygon.getMembersCount());
+        assertEquals(outer, multipolygon.getMember(0).getMember());
+        assertNull(collapsed.getDataSet());
+    }
+
+    private static Node addNode(DataSet ds, LatLon ll, boolean tagged) {
+        Node node = new Node(ll);
+        if (tagged) node.put("level", "0");
+        ds.addPrimitive(node);
+        return node;
     }
 
-    private ArrayList<Node> llsToNodes(List<LatLon> lls) {
-        ArrayList<Node> nodes = new ArrayList<>();
-        AtomicInteger id = new AtomicInteger();
-        lls.forEach(ll -> nodes.add(llToNode(ll, id.incrementAndGet())));
-        return nodes;
+    private static Way addWay(DataSet ds, Node... nodes) {
+        Way way = new Way();
+        way.setNodes(Arrays.asList(nodes));
+        way.put("level", "0");
+        ds.addPrimitive(way);
+        return way;
     }
 
-    private Node llToNode(LatLon ll, int id) {
-        DatasetFactory dsFactory = new DatasetFactory();
-        dsFactory.addNode(id);
-        Node n = dsFactory.getNode(id);
-        n.setCoor(ll);
-        return n;
+    private static double getDistance(Node node1, Node node2) {
+        return ParserGeoMath.getDistance(node1.lat(), node1.lon(), node2.lat(), node2.lon());
     }
-}
\ No newline at end of file
+}
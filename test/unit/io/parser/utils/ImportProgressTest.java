@@ -0,0 +1,64 @@
+package io.parser.utils;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ImportProgress;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests of {@link ImportProgress} class.
+ */
+public class ImportProgressTest {
+
+    @Test
+    public void testStageProgress() {
+        List<Integer> reported = new ArrayList<>();
+        ImportProgress progress = new ImportProgress(reported::add);
+
+        progress.beginStage(ImportProgress.Stage.EXTRACT, 4);
+        progress.advance(1);
+        progress.advance(1);
+        progress.advance(2);
+        // more work than expected does not exceed stage
+        progress.advance(1);
+        progress.beginStage(ImportProgress.Stage.OPTIMIZE, 0);
+
+        assertEquals(Arrays.asList(40, 50, 60, 80, 90), reported);
+    }
+
+    @Test
+    public void testTrackedStream() throws IOException {
+        List<Integer> reported = new ArrayList<>();
+        ImportProgress progress = new ImportProgress(reported::add);
+        progress.beginStage(ImportProgress.Stage.LOAD, 100);
+
+        try (InputStream input = progress.track(new ByteArrayInputStream(new byte[100]))) {
+            assertEquals(50, input.read(new byte[50]));
+            assertEquals(0, input.read());
+        }
+
+        // 51 of 100 bytes read in stage of 40 percent
+        assertEquals(Arrays.asList(0, 20), reported);
+    }
+
+    @Test
+    public void testCancel() {
+        ImportProgress progress = ImportProgress.silent();
+        progress.beginStage(ImportProgress.Stage.LOAD, 10);
+        progress.cancel();
+
+        assertTrue(progress.isCancelled());
+        assertThrows(CancellationException.class, () -> progress.advance(1));
+        assertThrows(CancellationException.class, () -> progress.track(new ByteArrayInputStream(new byte[1])).read());
+    }
+}
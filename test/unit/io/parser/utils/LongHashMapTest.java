@@ -0,0 +1,35 @@
+package io.parser.utils;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.LongHashMap;
+import org.junit.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Unit tests of {@link LongHashMap} class.
+ */
+public class LongHashMapTest {
+
+    @Test
+    public void testPutAndGet() {
+        LongHashMap<String> map = new LongHashMap<>(2);
+        for (long i = -500; i < 500; i++) {
+            map.put(i << 32 | (i & 0xffffffffL), Long.toString(i));
+        }
+        assertEquals(1000, map.size());
+        for (long i = -500; i < 500; i++) {
+            assertEquals(Long.toString(i), map.get(i << 32 | (i & 0xffffffffL)));
+        }
+        assertNull(map.get(1L));
+    }
+
+    @Test
+    public void testReplace() {
+        LongHashMap<String> map = new LongHashMap<>();
+        assertNull(map.put(0L, "a"));
+        assertEquals("a", map.put(0L, "b"));
+        assertEquals("b", map.get(0L));
+        assertEquals(1, map.size());
+    }
+}
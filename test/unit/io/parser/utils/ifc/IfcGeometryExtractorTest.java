@@ -0,0 +1,138 @@
+package io.parser.utils.ifc;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.CoordinateBuffer;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.ifc.IfcRepresentation;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.ifc.IfcRepresentationCatalog.RepresentationType;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.math.PolygonClipper;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc.BIMtoOSMUtility;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc.IfcGeometryExtractor;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc.IfcObjectIdentifier;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc.IfcTypeIndex;
+import nl.tue.buildingsmart.express.population.EntityInstance;
+import nl.tue.buildingsmart.express.population.ModelPopulation;
+import org.junit.Test;
+import org.openstreetmap.josm.TestUtils;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests of {@link IfcGeometryExtractor} class.
+ */
+public class IfcGeometryExtractorTest {
+
+    private static final double DELTA = 1e-9;
+
+    String pluginDir = System.getProperty("user.dir");
+    String resourcePathDir = TestUtils.getTestDataRoot();
+
+    @Test
+    public void testTriangulatedFaceSetFootprint() throws IOException {
+        ModelPopulation ifcModel = loadModel("test5_IFC4.ifc");
+
+        int extracted = 0;
+        for (EntityInstance shapeRepresentation : ifcModel.getInstancesOfType("IfcShapeRepresentation")) {
+            IfcRepresentation representation = IfcObjectIdentifier.identifyShapeRepresentation(shapeRepresentation);
+            CoordinateBuffer footprint = IfcGeometryExtractor.getDataFromBodyRepresentation(ifcModel, representation);
+            assertNotNull(footprint);
+            assertEquals(1, footprint.getRingCount());
+
+            if (representation.getType() == RepresentationType.Tessellation) {
+                // box 4 x 3, closed ring of 4 corners
+                assertEquals(5, footprint.size());
+                assertEquals(12.0, PolygonClipper.getSignedArea(footprint, 0), DELTA);
+            } else {
+                // L-shaped plate, closed ring of 6 corners
+                assertEquals(RepresentationType.SurfaceModel, representation.getType());
+                assertEquals(7, footprint.size());
+                assertEquals(3.0, PolygonClipper.getSignedArea(footprint, 0), DELTA);
+            }
+            extracted++;
+        }
+        assertEquals(2, extracted);
+    }
+
+    @Test
+    public void testMappedItemTransformation() throws IOException {
+        ModelPopulation ifcModel = loadModel("test6_IFC4.ifc");
+
+        int extracted = 0;
+        for (EntityInstance shapeRepresentation : ifcModel.getInstancesOfType("IfcShapeRepresentation")) {
+            IfcRepresentation representation = IfcObjectIdentifier.identifyShapeRepresentation(shapeRepresentation);
+            if (representation.getType() != RepresentationType.MappedRepresentation) continue;
+            CoordinateBuffer footprint = IfcGeometryExtractor.getDataFromBodyRepresentation(ifcModel, representation);
+            assertNotNull(footprint);
+            assertEquals(1, footprint.getRingCount());
+
+            double[] bounds = getBounds(footprint);
+            if (bounds[0] < 15.0) {
+                // unit cube scaled by 2 and rotated by 90 degrees
+                assertArrayEquals(new double[] {8.0, 0.0, 10.0, 2.0}, bounds, DELTA);
+                assertEquals(4.0, PolygonClipper.getSignedArea(footprint, 0), DELTA);
+            } else {
+                // unit cube scaled by 3 along y-axis only
+                assertArrayEquals(new double[] {20.0, 0.0, 21.0, 3.0}, bounds, DELTA);
+                assertEquals(3.0, PolygonClipper.getSignedArea(footprint, 0), DELTA);
+            }
+            extracted++;
+        }
+        assertEquals(2, extracted);
+    }
+
+    @Test
+    public void testSlabOpeningPlacement() throws IOException {
+        ModelPopulation ifcModel = loadModel("test7_IFC4.ifc");
+        EntityInstance slab = ifcModel.getInstancesOfType("IfcSlab").get(0);
+
+        CoordinateBuffer footprint = BIMtoOSMUtility.getShapeData(ifcModel, slab, BIMtoOSMUtility.GeometrySolution.BODY);
+
+        // opening placed relative to slab cuts a hole inside slab, not at origin of slab
+        assertNotNull(footprint);
+        assertEquals(2, footprint.getRingCount());
+        assertFalse(footprint.isInnerRing(0));
+        assertTrue(footprint.isInnerRing(1));
+        assertArrayEquals(new double[] {0.0, 0.0, 10.0, 10.0}, getBounds(footprint, 0), DELTA);
+        assertArrayEquals(new double[] {2.0, 3.0, 4.0, 4.0}, getBounds(footprint, 1), DELTA);
+        assertEquals(98.0, PolygonClipper.getSignedArea(footprint, 0) + PolygonClipper.getSignedArea(footprint, 1), DELTA);
+    }
+
+    private static double[] getBounds(CoordinateBuffer buffer) {
+        double[] bounds = {Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (int i = 0; i < buffer.size(); i++) {
+            bounds[0] = Math.min(bounds[0], buffer.getX(i));
+            bounds[1] = Math.min(bounds[1], buffer.getY(i));
+            bounds[2] = Math.max(bounds[2], buffer.getX(i));
+            bounds[3] = Math.max(bounds[3], buffer.getY(i));
+        }
+        return bounds;
+    }
+
+    private static double[] getBounds(CoordinateBuffer buffer, int ring) {
+        double[] bounds = {Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (int i = buffer.getRingStart(ring); i < buffer.getRingEnd(ring); i++) {
+            bounds[0] = Math.min(bounds[0], buffer.getX(i));
+            bounds[1] = Math.min(bounds[1], buffer.getY(i));
+            bounds[2] = Math.max(bounds[2], buffer.getX(i));
+            bounds[3] = Math.max(bounds[3], buffer.getY(i));
+        }
+        return bounds;
+    }
+
+    private ModelPopulation loadModel(String filename) throws IOException {
+        try (InputStream inputStream = new FileInputStream(resourcePathDir + filename)) {
+            ModelPopulation ifcModel = new ModelPopulation(inputStream);
+            ifcModel.setSchemaFile(Paths.get(pluginDir + "/resources/IFC4.exp"));
+            ifcModel.load();
+            IfcTypeIndex.build(ifcModel);
+            return ifcModel;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package io.parser.utils.ifc;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.CoordinateBuffer;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.utils.ifc.IfcMappedGeometryCache;
+import nl.tue.buildingsmart.express.population.EntityInstance;
+import nl.tue.buildingsmart.express.population.ModelPopulation;
+import org.junit.Test;
+import org.openstreetmap.josm.TestUtils;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Unit tests of {@link IfcMappedGeometryCache} class.
+ */
+public class IfcMappedGeometryCacheTest {
+
+    String pluginDir = System.getProperty("user.dir");
+    String resourcePathDir = TestUtils.getTestDataRoot();
+
+    @Test
+    public void testGeometryExtractedOnce() throws IOException {
+        ModelPopulation ifcModel = loadModel("test6_IFC4.ifc");
+        EntityInstance representationMap = ifcModel.getInstancesOfType("IfcRepresentationMap").get(0);
+        AtomicInteger extractions = new AtomicInteger();
+        CoordinateBuffer geometry = new CoordinateBuffer();
+        geometry.add(1.0, 2.0, 3.0);
+
+        IfcMappedGeometryCache cache = IfcMappedGeometryCache.of(ifcModel);
+        assertSame(geometry, cache.getGeometry(representationMap, map -> {
+            extractions.incrementAndGet();
+            return geometry;
+        }));
+        assertSame(geometry, cache.getGeometry(representationMap, map -> {
+            extractions.incrementAndGet();
+            return new CoordinateBuffer();
+        }));
+        assertEquals(1, extractions.get());
+
+        // released cache is replaced by an empty one
+        IfcMappedGeometryCache.release(ifcModel);
+        assertNotSame(cache, IfcMappedGeometryCache.of(ifcModel));
+    }
+
+    @Test
+    public void testUnsupportedGeometryExtractedOnce() throws IOException {
+        ModelPopulation ifcModel = loadModel("test6_IFC4.ifc");
+        EntityInstance representationMap = ifcModel.getInstancesOfType("IfcRepresentationMap").get(0);
+        AtomicInteger extractions = new AtomicInteger();
+
+        IfcMappedGeometryCache cache = IfcMappedGeometryCache.of(ifcModel);
+        assertNull(cache.getGeometry(representationMap, map -> {
+            extractions.incrementAndGet();
+            return null;
+        }));
+        // empty geometry is not supported either, first result is kept
+        assertNull(cache.getGeometry(representationMap, map -> {
+            extractions.incrementAndGet();
+            return new CoordinateBuffer();
+        }));
+        assertEquals(1, extractions.get());
+    }
+
+    private ModelPopulation loadModel(String filename) throws IOException {
+        try (InputStream inputStream = new FileInputStream(resourcePathDir + filename)) {
+            ModelPopulation ifcModel = new ModelPopulation(inputStream);
+            ifcModel.setSchemaFile(Paths.get(pluginDir + "/resources/IFC4.exp"));
+            ifcModel.load();
+            return ifcModel;
+        }
+    }
+}
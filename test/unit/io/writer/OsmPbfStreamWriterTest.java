@@ -0,0 +1,275 @@
+package io.writer;
+
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.BIMObject3D;
+import org.openstreetmap.josm.plugins.indoorhelper.io.parser.data.CoordinateBuffer;
+import org.openstreetmap.josm.plugins.indoorhelper.io.writer.OsmPbfStreamWriter;
+import org.openstreetmap.josm.plugins.indoorhelper.io.writer.OsmStreamWriter;
+import org.openstreetmap.josm.plugins.indoorhelper.io.writer.OsmXmlStreamWriter;
+import org.junit.Test;
+import org.openstreetmap.josm.data.osm.Tag;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests of {@link OsmPbfStreamWriter} class.
+ */
+public class OsmPbfStreamWriterTest {
+
+    private final List<Tag> tags = Arrays.asList(new Tag("indoor", "room"), new Tag("level", "1"));
+    private final List<Tag> memberTags = Arrays.asList(new Tag("level", "1"));
+
+    @Test
+    public void testRoundTrip() throws IOException, DataFormatException {
+        List<BIMObject3D> objects = createObjects(3);
+        Decoded decoded = decode(write(new ByteArrayOutputStream(), objects, true));
+
+        // closed ring of 5 vertices, open ring of 2 vertices and ring of 1 vertex (skipped) per object
+        assertEquals(18, decoded.lats.size());
+        assertEquals(6, decoded.wayRefs.size());
+        assertEquals(-1L, (long) decoded.nodeIds.get(0));
+        assertEquals(50.8140088, decoded.lats.get(0), 1e-7);
+        assertEquals(12.9240191, decoded.lons.get(0), 1e-7);
+        assertEquals(Arrays.asList(-1L, -2L, -3L, -4L, -1L), decoded.wayRefs.get(0));
+        assertEquals(Arrays.asList(-5L, -6L), decoded.wayRefs.get(1));
+        assertEquals(Arrays.asList(-7L, -8L, -9L, -10L, -7L), decoded.wayRefs.get(2));
+        assertEquals(Arrays.asList("indoor", "room", "level", "1"), decoded.wayTags.get(5));
+    }
+
+    @Test
+    public void testMultipolygon() throws IOException, DataFormatException {
+        List<BIMObject3D> objects = createObjects(2);
+        // second ring of first object becomes a hole
+        CoordinateBuffer geometry = objects.get(0).getGeodeticGeometryCoordinates();
+        CoordinateBuffer withHole = new CoordinateBuffer();
+        for (int ring = 0; ring < 2; ring++) {
+            for (int i = geometry.getRingStart(ring); i < geometry.getRingEnd(ring); i++) {
+                withHole.add(geometry.getX(i), geometry.getY(i), 0.0);
+            }
+            withHole.closeRing();
+        }
+        withHole.markInnerRing();
+        objects.get(0).setGeodeticGeometryCoordinates(withHole);
+
+        Decoded decoded = decode(write(new ByteArrayOutputStream(), objects, true));
+
+        assertEquals(4, decoded.wayRefs.size());
+        assertEquals(Arrays.asList("level", "1"), decoded.wayTags.get(0));
+        assertEquals(Arrays.asList("level", "1"), decoded.wayTags.get(1));
+        assertEquals(Arrays.asList("indoor", "room", "level", "1"), decoded.wayTags.get(2));
+        assertEquals(1, decoded.relationMembers.size());
+        assertEquals(Arrays.asList(-1L, -2L), decoded.relationMembers.get(0));
+        assertEquals(Arrays.asList("outer", "inner"), decoded.relationRoles.get(0));
+        assertEquals(Arrays.asList("type", "multipolygon", "indoor", "room", "level", "1"), decoded.relationTags.get(0));
+    }
+
+    @Test
+    public void testSizeComparedToXml() throws IOException {
+        List<BIMObject3D> objects = createObjects(1000);
+        int pbfSize = write(new ByteArrayOutputStream(), objects, true).length;
+        int xmlSize = write(new ByteArrayOutputStream(), objects, false).length;
+        assertTrue(pbfSize * 5 < xmlSize, pbfSize + " bytes PBF, " + xmlSize + " bytes XML");
+    }
+
+    private List<BIMObject3D> createObjects(int count) {
+        List<BIMObject3D> objects = new ArrayList<>();
+        for (int o = 0; o < count; o++) {
+            double lat = 50.8140088 + o * 1e-5;
+            double lon = 12.9240191 + o * 1e-5;
+            CoordinateBuffer geometry = new CoordinateBuffer();
+            geometry.add(lat, lon, 0.0);
+            geometry.add(lat + 1e-5, lon, 0.0);
+            geometry.add(lat + 1e-5, lon + 1e-5, 0.0);
+            geometry.add(lat, lon + 1e-5, 0.0);
+            geometry.add(lat, lon, 0.0);
+            geometry.closeRing();
+            geometry.add(lat, lon, 0.0);
+            geometry.add(lat + 2e-5, lon, 0.0);
+            geometry.closeRing();
+            geometry.add(lat, lon, 0.0);
+            BIMObject3D object = new BIMObject3D(o);
+            object.setGeodeticGeometryCoordinates(geometry);
+            objects.add(object);
+        }
+        return objects;
+    }
+
+    private byte[] write(ByteArrayOutputStream output, List<BIMObject3D> objects, boolean pbf) throws IOException {
+        try (OsmStreamWriter writer = pbf ? new OsmPbfStreamWriter(Channels.newChannel(output)) :
+                new OsmXmlStreamWriter(Channels.newChannel(output))) {
+            writer.write(objects, o -> tags, o -> memberTags);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Decodes dense nodes, ways and relations of PBF file
+     */
+    private Decoded decode(byte[] data) throws DataFormatException {
+        Decoded decoded = new Decoded();
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            byte[] header = new byte[buffer.getInt()];
+            buffer.get(header);
+            String type = null;
+            int dataSize = 0;
+            for (Field field : fields(header)) {
+                if (field.number == 1) type = new String(field.bytes, StandardCharsets.UTF_8);
+                if (field.number == 3) dataSize = (int) field.value;
+            }
+            byte[] blob = new byte[dataSize];
+            buffer.get(blob);
+
+            int rawSize = 0;
+            byte[] zlibData = null;
+            for (Field field : fields(blob)) {
+                if (field.number == 2) rawSize = (int) field.value;
+                if (field.number == 3) zlibData = field.bytes;
+            }
+            Inflater inflater = new Inflater();
+            inflater.setInput(zlibData);
+            byte[] raw = new byte[rawSize];
+            assertEquals(rawSize, inflater.inflate(raw));
+            inflater.end();
+
+            if ("OSMData".equals(type)) decodeBlock(raw, decoded);
+        }
+        return decoded;
+    }
+
+    private void decodeBlock(byte[] block, Decoded decoded) {
+        List<String> strings = new ArrayList<>();
+        for (Field field : fields(block)) {
+            if (field.number == 1) {
+                for (Field s : fields(field.bytes)) strings.add(new String(s.bytes, StandardCharsets.UTF_8));
+            }
+        }
+        for (Field field : fields(block)) {
+            if (field.number != 2) continue;
+            for (Field group : fields(field.bytes)) {
+                if (group.number == 2) {
+                    for (Field dense : fields(group.bytes)) {
+                        List<Long> values = deltaDecode(packedSigned(dense.bytes));
+                        if (dense.number == 1) decoded.nodeIds.addAll(values);
+                        if (dense.number == 8) values.forEach(v -> decoded.lats.add(v * 1e-7));
+                        if (dense.number == 9) values.forEach(v -> decoded.lons.add(v * 1e-7));
+                    }
+                } else if (group.number == 3) {
+                    List<Long> keys = new ArrayList<>();
+                    List<Long> vals = new ArrayList<>();
+                    for (Field way : fields(group.bytes)) {
+                        if (way.number == 2) keys = packed(way.bytes);
+                        if (way.number == 3) vals = packed(way.bytes);
+                        if (way.number == 8) decoded.wayRefs.add(deltaDecode(packedSigned(way.bytes)));
+                    }
+                    List<String> wayTags = new ArrayList<>();
+                    for (int i = 0; i < keys.size(); i++) {
+                        wayTags.add(strings.get(keys.get(i).intValue()));
+                        wayTags.add(strings.get(vals.get(i).intValue()));
+                    }
+                    decoded.wayTags.add(wayTags);
+                } else if (group.number == 4) {
+                    List<Long> keys = new ArrayList<>();
+                    List<Long> vals = new ArrayList<>();
+                    List<String> roles = new ArrayList<>();
+                    for (Field relation : fields(group.bytes)) {
+                        if (relation.number == 2) keys = packed(relation.bytes);
+                        if (relation.number == 3) vals = packed(relation.bytes);
+                        if (relation.number == 8) packed(relation.bytes).forEach(r -> roles.add(strings.get(r.intValue())));
+                        if (relation.number == 9) decoded.relationMembers.add(deltaDecode(packedSigned(relation.bytes)));
+                        if (relation.number == 10) packed(relation.bytes).forEach(t -> assertEquals(1L, (long) t));
+                    }
+                    List<String> relationTags = new ArrayList<>();
+                    for (int i = 0; i < keys.size(); i++) {
+                        relationTags.add(strings.get(keys.get(i).intValue()));
+                        relationTags.add(strings.get(vals.get(i).intValue()));
+                    }
+                    decoded.relationRoles.add(roles);
+                    decoded.relationTags.add(relationTags);
+                }
+            }
+        }
+    }
+
+    private static List<Field> fields(byte[] message) {
+        List<Field> fields = new ArrayList<>();
+        int[] position = {0};
+        while (position[0] < message.length) {
+            long tag = varint(message, position);
+            Field field = new Field();
+            field.number = (int) (tag >>> 3);
+            if ((tag & 7) == 0) {
+                field.value = varint(message, position);
+            } else {
+                int length = (int) varint(message, position);
+                field.bytes = Arrays.copyOfRange(message, position[0], position[0] + length);
+                position[0] += length;
+            }
+            fields.add(field);
+        }
+        return fields;
+    }
+
+    private static List<Long> packed(byte[] data) {
+        List<Long> values = new ArrayList<>();
+        int[] position = {0};
+        while (position[0] < data.length) values.add(varint(data, position));
+        return values;
+    }
+
+    private static List<Long> packedSigned(byte[] data) {
+        List<Long> values = new ArrayList<>();
+        for (long v : packed(data)) values.add((v >>> 1) ^ -(v & 1));
+        return values;
+    }
+
+    private static List<Long> deltaDecode(List<Long> deltas) {
+        List<Long> values = new ArrayList<>();
+        long value = 0;
+        for (long delta : deltas) {
+            value += delta;
+            values.add(value);
+        }
+        return values;
+    }
+
+    private static long varint(byte[] data, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static class Field {
+        int number;
+        long value;
+        byte[] bytes;
+    }
+
+    private static class Decoded {
+        final List<Long> nodeIds = new ArrayList<>();
+        final List<Double> lats = new ArrayList<>();
+        final List<Double> lons = new ArrayList<>();
+        final List<List<Long>> wayRefs = new ArrayList<>();
+        final List<List<String>> wayTags = new ArrayList<>();
+        final List<List<Long>> relationMembers = new ArrayList<>();
+        final List<List<String>> relationRoles = new ArrayList<>();
+        final List<List<String>> relationTags = new ArrayList<>();
+    }
+}